@@ -122,6 +122,18 @@ public class ProGuardTask extends ConfigurationTask
     }
 
 
+    public void setPrintusagegraph(File printUsageGraph)
+    {
+        configuration.printUsageGraph = resolvedFile(printUsageGraph);
+    }
+
+
+    public void setPrintkeeprulecosts(File printKeepRuleCosts)
+    {
+        configuration.printKeepRuleCosts = optionalFile(printKeepRuleCosts);
+    }
+
+
     public void setOptimize(boolean optimize)
     {
         configuration.optimize = optimize;
@@ -11,6 +11,7 @@ import proguard.classfile.*;
 import proguard.configuration.InitialStateInfo;
 import proguard.io.ExtraDataEntryNameMap;
 import proguard.resources.file.ResourceFilePool;
+import proguard.util.*;
 
 public class AppView
 {
@@ -21,11 +22,23 @@ public class AppView
 
     public final ExtraDataEntryNameMap extraDataEntryNameMap;
 
+    /**
+     * Collects the warnings about the Kotlin metadata of library classes,
+     * which is only decoded when it is accessed, if any. The pass runner
+     * prints them out after each pass, in class pool order.
+     */
+    public       WarningSink           kotlinMetadataWarningSink;
+
     /**
      * Stores information about the original state of the program class pool used for configuration debugging.
      */
     public       InitialStateInfo      initialStateInfo;
 
+    /**
+     * Collects statistics per keep rule while marking, if requested.
+     */
+    public       KeepClassSpecificationStatistics keepClassSpecificationStatistics;
+
     public AppView(ClassPool programClassPool, ClassPool libraryClassPool)
     {
         this(programClassPool, libraryClassPool, new ResourceFilePool(), new ExtraDataEntryNameMap());
@@ -0,0 +1,98 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard;
+
+import proguard.classfile.attribute.visitor.AllAttributeVisitor;
+import proguard.classfile.editor.*;
+import proguard.classfile.visitor.*;
+import proguard.pass.Pass;
+
+/**
+ * This pass trims the line number table attributes and sorts the elements
+ * of all program classes, in a single parallel traversal. Both only change
+ * the classes that they visit.
+ *
+ * @see proguard.optimize.LineNumberTrimmer
+ */
+public class ClassFinisher implements Pass
+{
+    private final boolean trimLineNumbers;
+    private final boolean sortClassElements;
+
+
+    /**
+     * Creates a new ClassFinisher.
+     * @param trimLineNumbers   specifies whether to trim the line number
+     *                          table attributes.
+     * @param sortClassElements specifies whether to sort the interfaces and
+     *                          constants of the classes.
+     */
+    public ClassFinisher(boolean trimLineNumbers,
+                         boolean sortClassElements)
+    {
+        this.trimLineNumbers   = trimLineNumbers;
+        this.sortClassElements = sortClassElements;
+    }
+
+
+    // Implementations for Pass.
+
+    @Override
+    public void execute(AppView appView)
+    {
+        // Each thread gets its own visitors.
+        appView.programClassPool.accept(
+            new ParallelAllClassVisitor(this::createClassFinisher));
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Creates a class visitor that finishes the classes that it visits.
+     */
+    private ClassVisitor createClassFinisher()
+    {
+        MultiClassVisitor classFinisher = new MultiClassVisitor();
+
+        if (trimLineNumbers)
+        {
+            classFinisher.addClassVisitor(
+                new AllAttributeVisitor(true,
+                new LineNumberTableAttributeTrimmer()));
+        }
+
+        if (sortClassElements)
+        {
+            classFinisher.addClassVisitor(
+                new ClassElementSorter(
+                    /* sortInterfaces = */ true,
+                    /* sortConstants = */ true,
+                    // Sorting members can cause problems with code such as clazz.getMethods()[1]
+                    /* sortMembers = */ false,
+                    // PGD-192: Sorting attributes can cause problems for some compilers
+                    /* sortAttributes = */ false
+                ));
+        }
+
+        return classFinisher;
+    }
+}
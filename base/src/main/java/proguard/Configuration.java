@@ -131,6 +131,19 @@ public class Configuration
      */
     public File                         printUsage;
 
+    /**
+     * An optional output file for the graph of dependencies between the
+     * classes and class members, as discovered in the shrinking step.
+     */
+    public File                         printUsageGraph;
+
+    /**
+     * An optional output file for listing the costs of the keep options in
+     * the shrinking step, as JSON if the file name ends with ".json", or as
+     * CSV otherwise. An empty file name means the standard output.
+     */
+    public File                         printKeepRuleCosts;
+
     /**
      * A list of {@link ClassSpecification} instances, for which an explanation
      * is to be printed, why they are kept in the shrinking step.
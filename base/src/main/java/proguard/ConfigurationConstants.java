@@ -52,9 +52,11 @@ public class ConfigurationConstants
     public static final String ALLOW_OBFUSCATION_SUBOPTION           = "allowobfuscation";
     public static final String PRINT_SEEDS_OPTION                    = "-printseeds";
 
-    public static final String DONT_SHRINK_OPTION         = "-dontshrink";
-    public static final String PRINT_USAGE_OPTION         = "-printusage";
-    public static final String WHY_ARE_YOU_KEEPING_OPTION = "-whyareyoukeeping";
+    public static final String DONT_SHRINK_OPTION           = "-dontshrink";
+    public static final String PRINT_USAGE_OPTION           = "-printusage";
+    public static final String PRINT_USAGE_GRAPH_OPTION     = "-printusagegraph";
+    public static final String PRINT_KEEP_RULE_COSTS_OPTION = "-printkeeprulecosts";
+    public static final String WHY_ARE_YOU_KEEPING_OPTION   = "-whyareyoukeeping";
 
     public static final String DONT_OPTIMIZE_OPTION                    = "-dontoptimize";
     public static final String OPTIMIZATIONS                           = "-optimizations";
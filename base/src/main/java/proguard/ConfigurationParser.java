@@ -35,9 +35,16 @@ import java.io.LineNumberReader;
 import java.io.StringReader;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 import java.util.function.BiConsumer;
 
 /**
@@ -49,13 +56,139 @@ import java.util.function.BiConsumer;
  */
 public class ConfigurationParser implements AutoCloseable
 {
+    private static final String RULE_CACHE_DIRECTORY = System.getProperty("proguard.configurationcache");
+
+    /**
+     * The options, in the order in which they are matched. An abbreviated
+     * option stands for the first option that starts with it.
+     */
+    private static final String[] OPTIONS = new String[]
+    {
+        ConfigurationConstants.AT_DIRECTIVE,
+        ConfigurationConstants.INCLUDE_DIRECTIVE,
+        ConfigurationConstants.BASE_DIRECTORY_DIRECTIVE,
+        ConfigurationConstants.INJARS_OPTION,
+        ConfigurationConstants.OUTJARS_OPTION,
+        ConfigurationConstants.LIBRARYJARS_OPTION,
+        ConfigurationConstants.RESOURCEJARS_OPTION,
+        ConfigurationConstants.SKIP_NON_PUBLIC_LIBRARY_CLASSES_OPTION,
+        ConfigurationConstants.DONT_SKIP_NON_PUBLIC_LIBRARY_CLASSES_OPTION,
+        ConfigurationConstants.DONT_SKIP_NON_PUBLIC_LIBRARY_CLASS_MEMBERS_OPTION,
+        ConfigurationConstants.TARGET_OPTION,
+        ConfigurationConstants.DONT_COMPRESS_OPTION,
+        ConfigurationConstants.ZIP_ALIGN_OPTION,
+        ConfigurationConstants.FORCE_PROCESSING_OPTION,
+        ConfigurationConstants.IF_OPTION,
+        ConfigurationConstants.KEEP_OPTION,
+        ConfigurationConstants.KEEP_CLASS_MEMBERS_OPTION,
+        ConfigurationConstants.KEEP_CLASSES_WITH_MEMBERS_OPTION,
+        ConfigurationConstants.KEEP_NAMES_OPTION,
+        ConfigurationConstants.KEEP_CLASS_MEMBER_NAMES_OPTION,
+        ConfigurationConstants.KEEP_CLASSES_WITH_MEMBER_NAMES_OPTION,
+        ConfigurationConstants.KEEP_CODE_OPTION,
+        ConfigurationConstants.PRINT_SEEDS_OPTION,
+        ConfigurationConstants.KEEP_DIRECTORIES_OPTION,
+        ConfigurationConstants.DONT_SHRINK_OPTION,
+        ConfigurationConstants.PRINT_USAGE_OPTION,
+        ConfigurationConstants.PRINT_USAGE_GRAPH_OPTION,
+        ConfigurationConstants.PRINT_KEEP_RULE_COSTS_OPTION,
+        ConfigurationConstants.WHY_ARE_YOU_KEEPING_OPTION,
+        ConfigurationConstants.DONT_OPTIMIZE_OPTION,
+        ConfigurationConstants.OPTIMIZATION_PASSES,
+        ConfigurationConstants.OPTIMIZATIONS,
+        ConfigurationConstants.ASSUME_NO_SIDE_EFFECTS_OPTION,
+        ConfigurationConstants.ASSUME_NO_EXTERNAL_SIDE_EFFECTS_OPTION,
+        ConfigurationConstants.ASSUME_NO_ESCAPING_PARAMETERS_OPTION,
+        ConfigurationConstants.ASSUME_NO_EXTERNAL_RETURN_VALUES_OPTION,
+        ConfigurationConstants.ASSUME_VALUES_OPTION,
+        ConfigurationConstants.ALLOW_ACCESS_MODIFICATION_OPTION,
+        ConfigurationConstants.MERGE_INTERFACES_AGGRESSIVELY_OPTION,
+        ConfigurationConstants.DONT_OBFUSCATE_OPTION,
+        ConfigurationConstants.PRINT_MAPPING_OPTION,
+        ConfigurationConstants.APPLY_MAPPING_OPTION,
+        ConfigurationConstants.OBFUSCATION_DICTIONARY_OPTION,
+        ConfigurationConstants.CLASS_OBFUSCATION_DICTIONARY_OPTION,
+        ConfigurationConstants.PACKAGE_OBFUSCATION_DICTIONARY_OPTION,
+        ConfigurationConstants.OVERLOAD_AGGRESSIVELY_OPTION,
+        ConfigurationConstants.USE_UNIQUE_CLASS_MEMBER_NAMES_OPTION,
+        ConfigurationConstants.DONT_USE_MIXED_CASE_CLASS_NAMES_OPTION,
+        ConfigurationConstants.KEEP_PACKAGE_NAMES_OPTION,
+        ConfigurationConstants.FLATTEN_PACKAGE_HIERARCHY_OPTION,
+        ConfigurationConstants.REPACKAGE_CLASSES_OPTION,
+        ConfigurationConstants.DEFAULT_PACKAGE_OPTION,
+        ConfigurationConstants.KEEP_ATTRIBUTES_OPTION,
+        ConfigurationConstants.KEEP_PARAMETER_NAMES_OPTION,
+        ConfigurationConstants.RENAME_SOURCE_FILE_ATTRIBUTE_OPTION,
+        ConfigurationConstants.ADAPT_CLASS_STRINGS_OPTION,
+        ConfigurationConstants.ADAPT_RESOURCE_FILE_NAMES_OPTION,
+        ConfigurationConstants.ADAPT_RESOURCE_FILE_CONTENTS_OPTION,
+        ConfigurationConstants.DONT_PROCESS_KOTLIN_METADATA,
+        ConfigurationConstants.KEEP_KOTLIN_METADATA,
+        ConfigurationConstants.DONT_PREVERIFY_OPTION,
+        ConfigurationConstants.MICRO_EDITION_OPTION,
+        ConfigurationConstants.ANDROID_OPTION,
+        ConfigurationConstants.KEY_STORE_OPTION,
+        ConfigurationConstants.KEY_STORE_PASSWORD_OPTION,
+        ConfigurationConstants.KEY_ALIAS_OPTION,
+        ConfigurationConstants.KEY_PASSWORD_OPTION,
+        ConfigurationConstants.VERBOSE_OPTION,
+        ConfigurationConstants.DONT_NOTE_OPTION,
+        ConfigurationConstants.DONT_WARN_OPTION,
+        ConfigurationConstants.IGNORE_WARNINGS_OPTION,
+        ConfigurationConstants.PRINT_CONFIGURATION_OPTION,
+        ConfigurationConstants.DUMP_OPTION,
+        ConfigurationConstants.ADD_CONFIGURATION_DEBUGGING_OPTION,
+        ConfigurationConstants.OPTIMIZE_AGGRESSIVELY,
+        ConfigurationConstants.ALWAYS_INLINE,
+        ConfigurationConstants.IDENTIFIER_NAME_STRING
+    };
+
+    /**
+     * All prefixes of the options, mapped to the first options that start
+     * with them, so options can be looked up in a single step.
+     */
+    private static final Map<String, String> OPTION_PREFIXES = createOptionPrefixes();
+
+    /**
+     * The options that only add class specifications or names to lists in
+     * the configuration, like the options in typical consumer rule files.
+     * Included files with only these options can be cached.
+     */
+    private static final Set<String> RULE_OPTIONS = new HashSet<>(Arrays.asList(
+        ConfigurationConstants.IF_OPTION,
+        ConfigurationConstants.KEEP_OPTION,
+        ConfigurationConstants.KEEP_CLASS_MEMBERS_OPTION,
+        ConfigurationConstants.KEEP_CLASSES_WITH_MEMBERS_OPTION,
+        ConfigurationConstants.KEEP_NAMES_OPTION,
+        ConfigurationConstants.KEEP_CLASS_MEMBER_NAMES_OPTION,
+        ConfigurationConstants.KEEP_CLASSES_WITH_MEMBER_NAMES_OPTION,
+        ConfigurationConstants.KEEP_CODE_OPTION,
+        ConfigurationConstants.WHY_ARE_YOU_KEEPING_OPTION,
+        ConfigurationConstants.ASSUME_NO_SIDE_EFFECTS_OPTION,
+        ConfigurationConstants.ASSUME_NO_EXTERNAL_SIDE_EFFECTS_OPTION,
+        ConfigurationConstants.ASSUME_NO_ESCAPING_PARAMETERS_OPTION,
+        ConfigurationConstants.ASSUME_NO_EXTERNAL_RETURN_VALUES_OPTION,
+        ConfigurationConstants.ASSUME_VALUES_OPTION,
+        ConfigurationConstants.KEEP_PACKAGE_NAMES_OPTION,
+        ConfigurationConstants.KEEP_ATTRIBUTES_OPTION,
+        ConfigurationConstants.ADAPT_CLASS_STRINGS_OPTION,
+        ConfigurationConstants.DONT_NOTE_OPTION,
+        ConfigurationConstants.DONT_WARN_OPTION
+    ));
+
+
     private final boolean useDalvikVerification = System.getProperty("proguard.use.dalvik.identifier.verification") != null;
 
+    private final ConfigurationRuleCache ruleCache = RULE_CACHE_DIRECTORY != null ?
+        new ConfigurationRuleCache(new File(RULE_CACHE_DIRECTORY), useDalvikVerification) :
+        null;
+
     private final WordReader reader;
     private final Properties properties;
 
     private String     nextWord;
     private String     lastComments;
+    private boolean    replacedSystemProperties;
 
 
     /**
@@ -173,94 +306,12 @@ public class ConfigurationParser implements AutoCloseable
         {
             lastComments = reader.lastComments();
 
-            // First include directives.
-            if      (ConfigurationConstants.AT_DIRECTIVE                                     .startsWith(nextWord) ||
-                     ConfigurationConstants.INCLUDE_DIRECTIVE                                .startsWith(nextWord)) configuration.lastModified                          = parseIncludeArgument(configuration.lastModified);
-            else if (ConfigurationConstants.BASE_DIRECTORY_DIRECTIVE                         .startsWith(nextWord)) parseBaseDirectoryArgument();
-
-            // Then configuration options with or without arguments.
-            else if (ConfigurationConstants.INJARS_OPTION                                    .startsWith(nextWord)) configuration.programJars                           = parseClassPathArgument(configuration.programJars, false, true);
-            else if (ConfigurationConstants.OUTJARS_OPTION                                   .startsWith(nextWord)) configuration.programJars                           = parseClassPathArgument(configuration.programJars, true, false);
-            else if (ConfigurationConstants.LIBRARYJARS_OPTION                               .startsWith(nextWord)) configuration.libraryJars                           = parseClassPathArgument(configuration.libraryJars, false, false);
-            else if (ConfigurationConstants.RESOURCEJARS_OPTION                              .startsWith(nextWord)) throw new ParseException("The '-resourcejars' option is no longer supported. Please use the '-injars' option for all input");
-            else if (ConfigurationConstants.SKIP_NON_PUBLIC_LIBRARY_CLASSES_OPTION           .startsWith(nextWord)) configuration.skipNonPublicLibraryClasses           = parseNoArgument(true);
-            else if (ConfigurationConstants.DONT_SKIP_NON_PUBLIC_LIBRARY_CLASSES_OPTION      .startsWith(nextWord)) configuration.skipNonPublicLibraryClasses           = parseNoArgument(false);
-            else if (ConfigurationConstants.DONT_SKIP_NON_PUBLIC_LIBRARY_CLASS_MEMBERS_OPTION.startsWith(nextWord)) configuration.skipNonPublicLibraryClassMembers      = parseNoArgument(false);
-            else if (ConfigurationConstants.TARGET_OPTION                                    .startsWith(nextWord)) configuration.targetClassVersion                    = parseClassVersion();
-            else if (ConfigurationConstants.DONT_COMPRESS_OPTION                             .startsWith(nextWord)) configuration.dontCompress                          = parseCommaSeparatedList("file name", true, true, false, true, false, true, false, false, false, configuration.dontCompress);
-            else if (ConfigurationConstants.ZIP_ALIGN_OPTION                                 .startsWith(nextWord)) configuration.zipAlign                              = parseIntegerArgument();
-            else if (ConfigurationConstants.FORCE_PROCESSING_OPTION                          .startsWith(nextWord)) configuration.lastModified                          = parseNoArgument(Long.MAX_VALUE);
-
-            else if (ConfigurationConstants.IF_OPTION                                        .startsWith(nextWord)) configuration.keep                                  = parseIfCondition(configuration.keep);
-            else if (ConfigurationConstants.KEEP_OPTION                                      .startsWith(nextWord)) configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, true,  true,  false, false, false, null);
-            else if (ConfigurationConstants.KEEP_CLASS_MEMBERS_OPTION                        .startsWith(nextWord)) configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, false, true,  false, false, false, null);
-            else if (ConfigurationConstants.KEEP_CLASSES_WITH_MEMBERS_OPTION                 .startsWith(nextWord)) configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, false, true,  false, true,  false, null);
-            else if (ConfigurationConstants.KEEP_NAMES_OPTION                                .startsWith(nextWord)) configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, true,  true,  false, false, true,  null);
-            else if (ConfigurationConstants.KEEP_CLASS_MEMBER_NAMES_OPTION                   .startsWith(nextWord)) configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, false, true,  false, false, true,  null);
-            else if (ConfigurationConstants.KEEP_CLASSES_WITH_MEMBER_NAMES_OPTION            .startsWith(nextWord)) configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, false, true,  false, true,  true,  null);
-            else if (ConfigurationConstants.KEEP_CODE_OPTION                                 .startsWith(nextWord)) configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, false, false, true,  false, false, null);
-            else if (ConfigurationConstants.PRINT_SEEDS_OPTION                               .startsWith(nextWord)) configuration.printSeeds                            = parseOptionalFile();
-
-            // After '-keep'.
-            else if (ConfigurationConstants.KEEP_DIRECTORIES_OPTION                          .startsWith(nextWord)) configuration.keepDirectories                       = parseCommaSeparatedList("directory name", true, true, false, true, false, true, true, false, false, configuration.keepDirectories);
-
-            else if (ConfigurationConstants.DONT_SHRINK_OPTION                               .startsWith(nextWord)) configuration.shrink                                = parseNoArgument(false);
-            else if (ConfigurationConstants.PRINT_USAGE_OPTION                               .startsWith(nextWord)) configuration.printUsage                            = parseOptionalFile();
-            else if (ConfigurationConstants.WHY_ARE_YOU_KEEPING_OPTION                       .startsWith(nextWord)) configuration.whyAreYouKeeping                      = parseClassSpecificationArguments(configuration.whyAreYouKeeping);
-
-            else if (ConfigurationConstants.DONT_OPTIMIZE_OPTION                             .startsWith(nextWord)) configuration.optimize                              = parseNoArgument(false);
-            else if (ConfigurationConstants.OPTIMIZATION_PASSES                              .startsWith(nextWord)) configuration.optimizationPasses                    = parseIntegerArgument();
-            else if (ConfigurationConstants.OPTIMIZATIONS                                    .startsWith(nextWord)) configuration.optimizations                         = parseCommaSeparatedList("optimization name", true, false, false, false, false, true, false, false, false, configuration.optimizations);
-            else if (ConfigurationConstants.ASSUME_NO_SIDE_EFFECTS_OPTION                    .startsWith(nextWord)) configuration.assumeNoSideEffects                   = parseAssumeClassSpecificationArguments(configuration.assumeNoSideEffects);
-            else if (ConfigurationConstants.ASSUME_NO_EXTERNAL_SIDE_EFFECTS_OPTION           .startsWith(nextWord)) configuration.assumeNoExternalSideEffects           = parseAssumeClassSpecificationArguments(configuration.assumeNoExternalSideEffects);
-            else if (ConfigurationConstants.ASSUME_NO_ESCAPING_PARAMETERS_OPTION             .startsWith(nextWord)) configuration.assumeNoEscapingParameters            = parseAssumeClassSpecificationArguments(configuration.assumeNoEscapingParameters);
-            else if (ConfigurationConstants.ASSUME_NO_EXTERNAL_RETURN_VALUES_OPTION          .startsWith(nextWord)) configuration.assumeNoExternalReturnValues          = parseAssumeClassSpecificationArguments(configuration.assumeNoExternalReturnValues);
-            else if (ConfigurationConstants.ASSUME_VALUES_OPTION                             .startsWith(nextWord)) configuration.assumeValues                          = parseAssumeClassSpecificationArguments(configuration.assumeValues);
-            else if (ConfigurationConstants.ALLOW_ACCESS_MODIFICATION_OPTION                 .startsWith(nextWord)) configuration.allowAccessModification               = parseNoArgument(true);
-            else if (ConfigurationConstants.MERGE_INTERFACES_AGGRESSIVELY_OPTION             .startsWith(nextWord)) configuration.mergeInterfacesAggressively           = parseNoArgument(true);
-
-            else if (ConfigurationConstants.DONT_OBFUSCATE_OPTION                            .startsWith(nextWord)) configuration.obfuscate                             = parseNoArgument(false);
-            else if (ConfigurationConstants.PRINT_MAPPING_OPTION                             .startsWith(nextWord)) configuration.printMapping                          = parseOptionalFile();
-            else if (ConfigurationConstants.APPLY_MAPPING_OPTION                             .startsWith(nextWord)) configuration.applyMapping                          = parseFile();
-            else if (ConfigurationConstants.OBFUSCATION_DICTIONARY_OPTION                    .startsWith(nextWord)) configuration.obfuscationDictionary                 = parseURL();
-            else if (ConfigurationConstants.CLASS_OBFUSCATION_DICTIONARY_OPTION              .startsWith(nextWord)) configuration.classObfuscationDictionary            = parseURL();
-            else if (ConfigurationConstants.PACKAGE_OBFUSCATION_DICTIONARY_OPTION            .startsWith(nextWord)) configuration.packageObfuscationDictionary          = parseURL();
-            else if (ConfigurationConstants.OVERLOAD_AGGRESSIVELY_OPTION                     .startsWith(nextWord)) configuration.overloadAggressively                  = parseNoArgument(true);
-            else if (ConfigurationConstants.USE_UNIQUE_CLASS_MEMBER_NAMES_OPTION             .startsWith(nextWord)) configuration.useUniqueClassMemberNames             = parseNoArgument(true);
-            else if (ConfigurationConstants.DONT_USE_MIXED_CASE_CLASS_NAMES_OPTION           .startsWith(nextWord)) configuration.useMixedCaseClassNames                = parseNoArgument(false);
-            else if (ConfigurationConstants.KEEP_PACKAGE_NAMES_OPTION                        .startsWith(nextWord)) configuration.keepPackageNames                      = parseCommaSeparatedList("package name", true, true, false, false, true, false, false, true, false, configuration.keepPackageNames);
-            else if (ConfigurationConstants.FLATTEN_PACKAGE_HIERARCHY_OPTION                 .startsWith(nextWord)) configuration.flattenPackageHierarchy               = ClassUtil.internalClassName(parseOptionalArgument());
-            else if (ConfigurationConstants.REPACKAGE_CLASSES_OPTION                         .startsWith(nextWord) ||
-                     ConfigurationConstants.DEFAULT_PACKAGE_OPTION                           .startsWith(nextWord)) configuration.repackageClasses                      = ClassUtil.internalClassName(parseOptionalArgument());
-            else if (ConfigurationConstants.KEEP_ATTRIBUTES_OPTION                           .startsWith(nextWord)) configuration.keepAttributes                        = parseCommaSeparatedList("attribute name", true, true, false, false, true, false, false, false, false, configuration.keepAttributes);
-            else if (ConfigurationConstants.KEEP_PARAMETER_NAMES_OPTION                      .startsWith(nextWord)) configuration.keepParameterNames                    = parseNoArgument(true);
-            else if (ConfigurationConstants.RENAME_SOURCE_FILE_ATTRIBUTE_OPTION              .startsWith(nextWord)) configuration.newSourceFileAttribute                = parseOptionalArgument();
-            else if (ConfigurationConstants.ADAPT_CLASS_STRINGS_OPTION                       .startsWith(nextWord)) configuration.adaptClassStrings                     = parseCommaSeparatedList("class name", true, true, false, false, true, false, false, true, false, configuration.adaptClassStrings);
-            else if (ConfigurationConstants.ADAPT_RESOURCE_FILE_NAMES_OPTION                 .startsWith(nextWord)) configuration.adaptResourceFileNames                = parseCommaSeparatedList("resource file name", true, true, false, true, false, true, false, false, false, configuration.adaptResourceFileNames);
-            else if (ConfigurationConstants.ADAPT_RESOURCE_FILE_CONTENTS_OPTION              .startsWith(nextWord)) configuration.adaptResourceFileContents             = parseCommaSeparatedList("resource file name", true, true, false, true, false, true, false, false, false, configuration.adaptResourceFileContents);
-            else if (ConfigurationConstants.DONT_PROCESS_KOTLIN_METADATA                     .startsWith(nextWord)) configuration.dontProcessKotlinMetadata             = parseNoArgument(true);
-            else if (ConfigurationConstants.KEEP_KOTLIN_METADATA                             .startsWith(nextWord)) configuration.keepKotlinMetadata                    = parseKeepKotlinMetadata();
-
-            else if (ConfigurationConstants.DONT_PREVERIFY_OPTION                            .startsWith(nextWord)) configuration.preverify                             = parseNoArgument(false);
-            else if (ConfigurationConstants.MICRO_EDITION_OPTION                             .startsWith(nextWord)) configuration.microEdition                          = parseNoArgument(true);
-            else if (ConfigurationConstants.ANDROID_OPTION                                   .startsWith(nextWord)) configuration.android                               = parseNoArgument(true);
-
-            else if (ConfigurationConstants.KEY_STORE_OPTION                                 .startsWith(nextWord)) configuration.keyStores                             = parseFiles(configuration.keyStores);
-            else if (ConfigurationConstants.KEY_STORE_PASSWORD_OPTION                        .startsWith(nextWord)) configuration.keyStorePasswords                     = parseCommaSeparatedList("keystore password", true, false, false, false, false, false, true, false, false, configuration.keyStorePasswords);
-            else if (ConfigurationConstants.KEY_ALIAS_OPTION                                 .startsWith(nextWord)) configuration.keyAliases                            = parseCommaSeparatedList("key", true, false, false, false, false, false, true, false, false, configuration.keyAliases);
-            else if (ConfigurationConstants.KEY_PASSWORD_OPTION                              .startsWith(nextWord)) configuration.keyPasswords                          = parseCommaSeparatedList("key password", true, false, false, false, false, false, true, false, false, configuration.keyPasswords);
-
-            else if (ConfigurationConstants.VERBOSE_OPTION                                   .startsWith(nextWord)) configuration.verbose                               = parseNoArgument(true);
-            else if (ConfigurationConstants.DONT_NOTE_OPTION                                 .startsWith(nextWord)) configuration.note                                  = parseCommaSeparatedList("class name", true, true, false, false, true, false, false, true, false, configuration.note);
-            else if (ConfigurationConstants.DONT_WARN_OPTION                                 .startsWith(nextWord)) configuration.warn                                  = parseCommaSeparatedList("class name", true, true, false, false, true, false, false, true, false, configuration.warn);
-            else if (ConfigurationConstants.IGNORE_WARNINGS_OPTION                           .startsWith(nextWord)) configuration.ignoreWarnings                        = parseNoArgument(true);
-            else if (ConfigurationConstants.PRINT_CONFIGURATION_OPTION                       .startsWith(nextWord)) configuration.printConfiguration                    = parseOptionalFile();
-            else if (ConfigurationConstants.DUMP_OPTION                                      .startsWith(nextWord)) configuration.dump                                  = parseOptionalFile();
-            else if (ConfigurationConstants.ADD_CONFIGURATION_DEBUGGING_OPTION               .startsWith(nextWord)) configuration.addConfigurationDebugging             = parseNoArgument(true);
-            else if (ConfigurationConstants.OPTIMIZE_AGGRESSIVELY                            .startsWith(nextWord)) configuration.optimizeConservatively                = parseNoArgument(false);
-            else if (ConfigurationConstants.ALWAYS_INLINE                                    .startsWith(nextWord))                                                       parseUnsupportedR8Rules(ConfigurationConstants.ALWAYS_INLINE, true);
-            else if (ConfigurationConstants.IDENTIFIER_NAME_STRING                           .startsWith(nextWord))                                                       parseUnsupportedR8Rules(ConfigurationConstants.IDENTIFIER_NAME_STRING, true);
-            else if (ConfigurationConstants.MAXIMUM_REMOVED_ANDROID_LOG_LEVEL                .equals(nextWord))                                                           parseMaximumRemovedAndroidLogLevel();
+            // Look up the option, which may be abbreviated.
+            String option = OPTION_PREFIXES.get(nextWord);
+            if (option != null)
+            {
+                parseOption(configuration, option);
+            }
             else
             {
                 if (unknownOptionHandler != null) {
@@ -277,6 +328,111 @@ public class ConfigurationParser implements AutoCloseable
     }
 
 
+    /**
+     * Parses the given option and its arguments.
+     * @param configuration the configuration that is updated as a side-effect.
+     * @param option        the full name of the option.
+     */
+    private void parseOption(Configuration configuration, String option)
+    throws ParseException, IOException
+    {
+        switch (option)
+        {
+            // First include directives.
+            case ConfigurationConstants.AT_DIRECTIVE:
+            case ConfigurationConstants.INCLUDE_DIRECTIVE:                                 configuration.lastModified                          = parseIncludeArgument(configuration, configuration.lastModified); break;
+            case ConfigurationConstants.BASE_DIRECTORY_DIRECTIVE:                          parseBaseDirectoryArgument(); break;
+
+            // Then configuration options with or without arguments.
+            case ConfigurationConstants.INJARS_OPTION:                                     configuration.programJars                           = parseClassPathArgument(configuration.programJars, false, true); break;
+            case ConfigurationConstants.OUTJARS_OPTION:                                    configuration.programJars                           = parseClassPathArgument(configuration.programJars, true, false); break;
+            case ConfigurationConstants.LIBRARYJARS_OPTION:                                configuration.libraryJars                           = parseClassPathArgument(configuration.libraryJars, false, false); break;
+            case ConfigurationConstants.RESOURCEJARS_OPTION:                               throw new ParseException("The '-resourcejars' option is no longer supported. Please use the '-injars' option for all input");
+            case ConfigurationConstants.SKIP_NON_PUBLIC_LIBRARY_CLASSES_OPTION:            configuration.skipNonPublicLibraryClasses           = parseNoArgument(true); break;
+            case ConfigurationConstants.DONT_SKIP_NON_PUBLIC_LIBRARY_CLASSES_OPTION:       configuration.skipNonPublicLibraryClasses           = parseNoArgument(false); break;
+            case ConfigurationConstants.DONT_SKIP_NON_PUBLIC_LIBRARY_CLASS_MEMBERS_OPTION: configuration.skipNonPublicLibraryClassMembers      = parseNoArgument(false); break;
+            case ConfigurationConstants.TARGET_OPTION:                                     configuration.targetClassVersion                    = parseClassVersion(); break;
+            case ConfigurationConstants.DONT_COMPRESS_OPTION:                              configuration.dontCompress                          = parseCommaSeparatedList("file name", true, true, false, true, false, true, false, false, false, configuration.dontCompress); break;
+            case ConfigurationConstants.ZIP_ALIGN_OPTION:                                  configuration.zipAlign                              = parseIntegerArgument(); break;
+            case ConfigurationConstants.FORCE_PROCESSING_OPTION:                           configuration.lastModified                          = parseNoArgument(Long.MAX_VALUE); break;
+
+            case ConfigurationConstants.IF_OPTION:                                         configuration.keep                                  = parseIfCondition(configuration.keep); break;
+            case ConfigurationConstants.KEEP_OPTION:                                       configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, true,  true,  false, false, false, null); break;
+            case ConfigurationConstants.KEEP_CLASS_MEMBERS_OPTION:                         configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, false, true,  false, false, false, null); break;
+            case ConfigurationConstants.KEEP_CLASSES_WITH_MEMBERS_OPTION:                  configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, false, true,  false, true,  false, null); break;
+            case ConfigurationConstants.KEEP_NAMES_OPTION:                                 configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, true,  true,  false, false, true,  null); break;
+            case ConfigurationConstants.KEEP_CLASS_MEMBER_NAMES_OPTION:                    configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, false, true,  false, false, true,  null); break;
+            case ConfigurationConstants.KEEP_CLASSES_WITH_MEMBER_NAMES_OPTION:             configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, false, true,  false, true,  true,  null); break;
+            case ConfigurationConstants.KEEP_CODE_OPTION:                                  configuration.keep                                  = parseKeepClassSpecificationArguments(configuration.keep, false, false, true,  false, false, null); break;
+            case ConfigurationConstants.PRINT_SEEDS_OPTION:                                configuration.printSeeds                            = parseOptionalFile(); break;
+
+            // After '-keep'.
+            case ConfigurationConstants.KEEP_DIRECTORIES_OPTION:                           configuration.keepDirectories                       = parseCommaSeparatedList("directory name", true, true, false, true, false, true, true, false, false, configuration.keepDirectories); break;
+
+            case ConfigurationConstants.DONT_SHRINK_OPTION:                                configuration.shrink                                = parseNoArgument(false); break;
+            case ConfigurationConstants.PRINT_USAGE_OPTION:                                configuration.printUsage                            = parseOptionalFile(); break;
+            case ConfigurationConstants.PRINT_USAGE_GRAPH_OPTION:                          configuration.printUsageGraph                       = parseFile(); break;
+            case ConfigurationConstants.PRINT_KEEP_RULE_COSTS_OPTION:                      configuration.printKeepRuleCosts                    = parseOptionalFile(); break;
+            case ConfigurationConstants.WHY_ARE_YOU_KEEPING_OPTION:                        configuration.whyAreYouKeeping                      = parseClassSpecificationArguments(configuration.whyAreYouKeeping); break;
+
+            case ConfigurationConstants.DONT_OPTIMIZE_OPTION:                              configuration.optimize                              = parseNoArgument(false); break;
+            case ConfigurationConstants.OPTIMIZATION_PASSES:                               configuration.optimizationPasses                    = parseIntegerArgument(); break;
+            case ConfigurationConstants.OPTIMIZATIONS:                                     configuration.optimizations                         = parseCommaSeparatedList("optimization name", true, false, false, false, false, true, false, false, false, configuration.optimizations); break;
+            case ConfigurationConstants.ASSUME_NO_SIDE_EFFECTS_OPTION:                     configuration.assumeNoSideEffects                   = parseAssumeClassSpecificationArguments(configuration.assumeNoSideEffects); break;
+            case ConfigurationConstants.ASSUME_NO_EXTERNAL_SIDE_EFFECTS_OPTION:            configuration.assumeNoExternalSideEffects           = parseAssumeClassSpecificationArguments(configuration.assumeNoExternalSideEffects); break;
+            case ConfigurationConstants.ASSUME_NO_ESCAPING_PARAMETERS_OPTION:              configuration.assumeNoEscapingParameters            = parseAssumeClassSpecificationArguments(configuration.assumeNoEscapingParameters); break;
+            case ConfigurationConstants.ASSUME_NO_EXTERNAL_RETURN_VALUES_OPTION:           configuration.assumeNoExternalReturnValues          = parseAssumeClassSpecificationArguments(configuration.assumeNoExternalReturnValues); break;
+            case ConfigurationConstants.ASSUME_VALUES_OPTION:                              configuration.assumeValues                          = parseAssumeClassSpecificationArguments(configuration.assumeValues); break;
+            case ConfigurationConstants.ALLOW_ACCESS_MODIFICATION_OPTION:                  configuration.allowAccessModification               = parseNoArgument(true); break;
+            case ConfigurationConstants.MERGE_INTERFACES_AGGRESSIVELY_OPTION:              configuration.mergeInterfacesAggressively           = parseNoArgument(true); break;
+
+            case ConfigurationConstants.DONT_OBFUSCATE_OPTION:                             configuration.obfuscate                             = parseNoArgument(false); break;
+            case ConfigurationConstants.PRINT_MAPPING_OPTION:                              configuration.printMapping                          = parseOptionalFile(); break;
+            case ConfigurationConstants.APPLY_MAPPING_OPTION:                              configuration.applyMapping                          = parseFile(); break;
+            case ConfigurationConstants.OBFUSCATION_DICTIONARY_OPTION:                     configuration.obfuscationDictionary                 = parseURL(); break;
+            case ConfigurationConstants.CLASS_OBFUSCATION_DICTIONARY_OPTION:               configuration.classObfuscationDictionary            = parseURL(); break;
+            case ConfigurationConstants.PACKAGE_OBFUSCATION_DICTIONARY_OPTION:             configuration.packageObfuscationDictionary          = parseURL(); break;
+            case ConfigurationConstants.OVERLOAD_AGGRESSIVELY_OPTION:                      configuration.overloadAggressively                  = parseNoArgument(true); break;
+            case ConfigurationConstants.USE_UNIQUE_CLASS_MEMBER_NAMES_OPTION:              configuration.useUniqueClassMemberNames             = parseNoArgument(true); break;
+            case ConfigurationConstants.DONT_USE_MIXED_CASE_CLASS_NAMES_OPTION:            configuration.useMixedCaseClassNames                = parseNoArgument(false); break;
+            case ConfigurationConstants.KEEP_PACKAGE_NAMES_OPTION:                         configuration.keepPackageNames                      = parseCommaSeparatedList("package name", true, true, false, false, true, false, false, true, false, configuration.keepPackageNames); break;
+            case ConfigurationConstants.FLATTEN_PACKAGE_HIERARCHY_OPTION:                  configuration.flattenPackageHierarchy               = ClassUtil.internalClassName(parseOptionalArgument()); break;
+            case ConfigurationConstants.REPACKAGE_CLASSES_OPTION:
+            case ConfigurationConstants.DEFAULT_PACKAGE_OPTION:                            configuration.repackageClasses                      = ClassUtil.internalClassName(parseOptionalArgument()); break;
+            case ConfigurationConstants.KEEP_ATTRIBUTES_OPTION:                            configuration.keepAttributes                        = parseCommaSeparatedList("attribute name", true, true, false, false, true, false, false, false, false, configuration.keepAttributes); break;
+            case ConfigurationConstants.KEEP_PARAMETER_NAMES_OPTION:                       configuration.keepParameterNames                    = parseNoArgument(true); break;
+            case ConfigurationConstants.RENAME_SOURCE_FILE_ATTRIBUTE_OPTION:               configuration.newSourceFileAttribute                = parseOptionalArgument(); break;
+            case ConfigurationConstants.ADAPT_CLASS_STRINGS_OPTION:                        configuration.adaptClassStrings                     = parseCommaSeparatedList("class name", true, true, false, false, true, false, false, true, false, configuration.adaptClassStrings); break;
+            case ConfigurationConstants.ADAPT_RESOURCE_FILE_NAMES_OPTION:                  configuration.adaptResourceFileNames                = parseCommaSeparatedList("resource file name", true, true, false, true, false, true, false, false, false, configuration.adaptResourceFileNames); break;
+            case ConfigurationConstants.ADAPT_RESOURCE_FILE_CONTENTS_OPTION:               configuration.adaptResourceFileContents             = parseCommaSeparatedList("resource file name", true, true, false, true, false, true, false, false, false, configuration.adaptResourceFileContents); break;
+            case ConfigurationConstants.DONT_PROCESS_KOTLIN_METADATA:                      configuration.dontProcessKotlinMetadata             = parseNoArgument(true); break;
+            case ConfigurationConstants.KEEP_KOTLIN_METADATA:                              configuration.keepKotlinMetadata                    = parseKeepKotlinMetadata(); break;
+
+            case ConfigurationConstants.DONT_PREVERIFY_OPTION:                             configuration.preverify                             = parseNoArgument(false); break;
+            case ConfigurationConstants.MICRO_EDITION_OPTION:                              configuration.microEdition                          = parseNoArgument(true); break;
+            case ConfigurationConstants.ANDROID_OPTION:                                    configuration.android                               = parseNoArgument(true); break;
+
+            case ConfigurationConstants.KEY_STORE_OPTION:                                  configuration.keyStores                             = parseFiles(configuration.keyStores); break;
+            case ConfigurationConstants.KEY_STORE_PASSWORD_OPTION:                         configuration.keyStorePasswords                     = parseCommaSeparatedList("keystore password", true, false, false, false, false, false, true, false, false, configuration.keyStorePasswords); break;
+            case ConfigurationConstants.KEY_ALIAS_OPTION:                                  configuration.keyAliases                            = parseCommaSeparatedList("key", true, false, false, false, false, false, true, false, false, configuration.keyAliases); break;
+            case ConfigurationConstants.KEY_PASSWORD_OPTION:                               configuration.keyPasswords                          = parseCommaSeparatedList("key password", true, false, false, false, false, false, true, false, false, configuration.keyPasswords); break;
+
+            case ConfigurationConstants.VERBOSE_OPTION:                                    configuration.verbose                               = parseNoArgument(true); break;
+            case ConfigurationConstants.DONT_NOTE_OPTION:                                  configuration.note                                  = parseCommaSeparatedList("class name", true, true, false, false, true, false, false, true, false, configuration.note); break;
+            case ConfigurationConstants.DONT_WARN_OPTION:                                  configuration.warn                                  = parseCommaSeparatedList("class name", true, true, false, false, true, false, false, true, false, configuration.warn); break;
+            case ConfigurationConstants.IGNORE_WARNINGS_OPTION:                            configuration.ignoreWarnings                        = parseNoArgument(true); break;
+            case ConfigurationConstants.PRINT_CONFIGURATION_OPTION:                        configuration.printConfiguration                    = parseOptionalFile(); break;
+            case ConfigurationConstants.DUMP_OPTION:                                       configuration.dump                                  = parseOptionalFile(); break;
+            case ConfigurationConstants.ADD_CONFIGURATION_DEBUGGING_OPTION:                configuration.addConfigurationDebugging             = parseNoArgument(true); break;
+            case ConfigurationConstants.OPTIMIZE_AGGRESSIVELY:                             configuration.optimizeConservatively                = parseNoArgument(false); break;
+            case ConfigurationConstants.ALWAYS_INLINE:                                     parseUnsupportedR8Rules(ConfigurationConstants.ALWAYS_INLINE, true); break;
+            case ConfigurationConstants.IDENTIFIER_NAME_STRING:                            parseUnsupportedR8Rules(ConfigurationConstants.IDENTIFIER_NAME_STRING, true); break;
+            case ConfigurationConstants.MAXIMUM_REMOVED_ANDROID_LOG_LEVEL:                 parseMaximumRemovedAndroidLogLevel(); break;
+
+        }
+    }
+
+
     /**
      * Closes the configuration.
      * @throws IOException if an IO error occurs while closing the configuration.
@@ -299,7 +455,8 @@ public class ConfigurationParser implements AutoCloseable
     }
 
 
-    private long parseIncludeArgument(long lastModified) throws ParseException, IOException
+    private long parseIncludeArgument(Configuration configuration,
+                                      long          lastModified) throws ParseException, IOException
     {
         // Read the configuration file name.
         readNextWord("configuration file name", true, true, false);
@@ -335,7 +492,15 @@ public class ConfigurationParser implements AutoCloseable
             else
             {
                 File file = file(nextWord);
-                reader.includeWordReader(new FileWordReader(file));
+
+                // Can we add the cached rules of the file, instead of
+                // parsing it?
+                if (ruleCache == null ||
+                    !file.isFile()    ||
+                    !includeRules(file, configuration))
+                {
+                    reader.includeWordReader(new FileWordReader(file));
+                }
 
                 long fileLastModified = file.lastModified();
                 if (fileLastModified > lastModified)
@@ -351,6 +516,82 @@ public class ConfigurationParser implements AutoCloseable
     }
 
 
+    /**
+     * Adds the rules of the given configuration file to the given
+     * configuration, from the rule cache if possible, or otherwise from a
+     * separate parser, updating the cache.
+     * @return whether the file only contains rules, so they could be added.
+     */
+    private boolean includeRules(File          file,
+                                 Configuration configuration)
+    throws IOException
+    {
+        byte[] contents = Files.readAllBytes(file.toPath());
+
+        Configuration rules = ruleCache.load(contents);
+        if (rules == null)
+        {
+            rules = parseRules(file, contents);
+
+            ruleCache.store(contents, rules);
+        }
+
+        if (rules == ConfigurationRuleCache.NOT_CACHEABLE)
+        {
+            return false;
+        }
+
+        ConfigurationRuleCache.addRules(rules, configuration);
+
+        return true;
+    }
+
+
+    /**
+     * Parses the given contents of the given configuration file into a new
+     * configuration, if it only contains rules that don't depend on any
+     * properties.
+     * @return the new configuration, or NOT_CACHEABLE otherwise.
+     */
+    private Configuration parseRules(File   file,
+                                     byte[] contents)
+    throws IOException
+    {
+        Configuration rules = new Configuration();
+
+        try (ConfigurationParser parser =
+                 new ConfigurationParser(new LineWordReader(new LineNumberReader(new StringReader(new String(contents, StandardCharsets.UTF_8))),
+                                                            "file '" + file.getPath() + "'",
+                                                            file.getParentFile()),
+                                         properties))
+        {
+            while (parser.nextWord != null)
+            {
+                parser.lastComments = parser.reader.lastComments();
+
+                String option = OPTION_PREFIXES.get(parser.nextWord);
+                if (option == null ||
+                    !RULE_OPTIONS.contains(option))
+                {
+                    return ConfigurationRuleCache.NOT_CACHEABLE;
+                }
+
+                parser.parseOption(rules, option);
+            }
+
+            return parser.replacedSystemProperties ?
+                ConfigurationRuleCache.NOT_CACHEABLE :
+                rules;
+        }
+        catch (ParseException e)
+        {
+            // Leave it to the regular parser to report the error in
+            // context.
+            return ConfigurationRuleCache.NOT_CACHEABLE;
+        }
+    }
+
+
     private void parseBaseDirectoryArgument() throws ParseException, IOException
     {
         // Read the base directory name.
@@ -1856,6 +2097,8 @@ public class ConfigurationParser implements AutoCloseable
 
             word = word.substring(0, fromIndex) + propertyValue + word.substring(toIndex+1);
 
+            replacedSystemProperties = true;
+
             fromIndex += propertyValue.length();
         }
 
@@ -2142,6 +2385,30 @@ public class ConfigurationParser implements AutoCloseable
         warnUnsupportedR8Option(ConfigurationConstants.MAXIMUM_REMOVED_ANDROID_LOG_LEVEL);
     }
 
+    /**
+     * Creates a map of all prefixes of the options to the first options that
+     * start with them.
+     */
+    private static Map<String, String> createOptionPrefixes()
+    {
+        Map<String, String> optionPrefixes = new HashMap<>(4096);
+
+        for (String option : OPTIONS)
+        {
+            for (int length = 0; length <= option.length(); length++)
+            {
+                optionPrefixes.putIfAbsent(option.substring(0, length), option);
+            }
+        }
+
+        // This option can't be abbreviated.
+        optionPrefixes.putIfAbsent(ConfigurationConstants.MAXIMUM_REMOVED_ANDROID_LOG_LEVEL,
+                                   ConfigurationConstants.MAXIMUM_REMOVED_ANDROID_LOG_LEVEL);
+
+        return optionPrefixes;
+    }
+
+
     private static void warnUnsupportedR8Option(String option) {
         System.out.println("Warning: The R8 option " + option + " is currently not supported by ProGuard.\n" +
                 "This option will have no effect on the optimized artifact.");
@@ -0,0 +1,605 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2020 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard;
+
+import java.io.*;
+import java.nio.file.*;
+import java.security.*;
+import java.util.*;
+
+/**
+ * This class caches the rules of configuration files, like the consumer
+ * rules of libraries, in a directory. The cache entries are keyed by the
+ * hashes of the contents of the files, so unchanged files can be read back
+ * from the cache, instead of being parsed again.
+ * <p>
+ * The cached rules are the class specifications and names that the
+ * configuration files add to the lists of a configuration, like keep
+ * options and '-dontwarn' options.
+ *
+ * @see ConfigurationParser
+ */
+public class ConfigurationRuleCache
+{
+    /**
+     * A marker for files that can't be cached, for instance because they
+     * contain other options than rules.
+     */
+    public static final Configuration NOT_CACHEABLE = new Configuration();
+
+
+    private static final int MAGIC   = 0x50475243;
+    private static final int VERSION = 1;
+
+    private static final int MEMBER_SPECIFICATION       = 0;
+    private static final int MEMBER_VALUE_SPECIFICATION = 1;
+
+
+    private final File    directory;
+    private final boolean useDalvikVerification;
+
+
+    /**
+     * Creates a new ConfigurationRuleCache.
+     * @param directory             the directory in which the cache entries
+     *                              are stored.
+     * @param useDalvikVerification specifies whether the rules are parsed
+     *                              with Dalvik identifier verification, which
+     *                              is part of the keys of the entries.
+     */
+    public ConfigurationRuleCache(File    directory,
+                                  boolean useDalvikVerification)
+    {
+        this.directory             = directory;
+        this.useDalvikVerification = useDalvikVerification;
+    }
+
+
+    /**
+     * Returns the cached rules of a configuration file with the given
+     * contents.
+     * @return a configuration with the cached rules, NOT_CACHEABLE if the
+     *         file has been found not to be cacheable, or null if the file
+     *         isn't in the cache.
+     */
+    public Configuration load(byte[] contents)
+    {
+        File file = entryFile(contents);
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        // Read the entire entry at once, since the entries are small.
+        try (DataInputStream dataInputStream =
+                 new DataInputStream(
+                 new ByteArrayInputStream(
+                 Files.readAllBytes(file.toPath()))))
+        {
+            if (dataInputStream.readInt() != MAGIC)
+            {
+                return null;
+            }
+
+            if (!dataInputStream.readBoolean())
+            {
+                return NOT_CACHEABLE;
+            }
+
+            Configuration rules = new Configuration();
+
+            rules.keep                         = readKeepClassSpecifications(dataInputStream);
+            rules.whyAreYouKeeping             = readClassSpecifications(dataInputStream);
+            rules.assumeNoSideEffects          = readClassSpecifications(dataInputStream);
+            rules.assumeNoExternalSideEffects  = readClassSpecifications(dataInputStream);
+            rules.assumeNoEscapingParameters   = readClassSpecifications(dataInputStream);
+            rules.assumeNoExternalReturnValues = readClassSpecifications(dataInputStream);
+            rules.assumeValues                 = readClassSpecifications(dataInputStream);
+            rules.keepPackageNames             = readStrings(dataInputStream);
+            rules.keepAttributes               = readStrings(dataInputStream);
+            rules.adaptClassStrings            = readStrings(dataInputStream);
+            rules.note                         = readStrings(dataInputStream);
+            rules.warn                         = readStrings(dataInputStream);
+
+            return rules;
+        }
+        catch (IOException e)
+        {
+            // The entry is incomplete or corrupt, so we'll just parse the
+            // file again and overwrite it.
+            return null;
+        }
+    }
+
+
+    /**
+     * Stores the given rules of a configuration file with the given contents,
+     * or NOT_CACHEABLE if the file can't be cached. Failures are ignored,
+     * since the cache is only an optimization.
+     */
+    public void store(byte[] contents, Configuration rules)
+    {
+        File file = entryFile(contents);
+
+        File tempFile = null;
+        try
+        {
+            directory.mkdirs();
+
+            // Write a temporary file first, so concurrent builds never see
+            // incomplete entries.
+            tempFile = File.createTempFile(file.getName(), ".tmp", directory);
+
+            try (DataOutputStream dataOutputStream =
+                     new DataOutputStream(
+                     new BufferedOutputStream(
+                     new FileOutputStream(tempFile))))
+            {
+                dataOutputStream.writeInt(MAGIC);
+                dataOutputStream.writeBoolean(rules != NOT_CACHEABLE);
+
+                if (rules != NOT_CACHEABLE)
+                {
+                    writeKeepClassSpecifications(dataOutputStream, rules.keep);
+                    writeClassSpecifications(dataOutputStream, rules.whyAreYouKeeping);
+                    writeClassSpecifications(dataOutputStream, rules.assumeNoSideEffects);
+                    writeClassSpecifications(dataOutputStream, rules.assumeNoExternalSideEffects);
+                    writeClassSpecifications(dataOutputStream, rules.assumeNoEscapingParameters);
+                    writeClassSpecifications(dataOutputStream, rules.assumeNoExternalReturnValues);
+                    writeClassSpecifications(dataOutputStream, rules.assumeValues);
+                    writeStrings(dataOutputStream, rules.keepPackageNames);
+                    writeStrings(dataOutputStream, rules.keepAttributes);
+                    writeStrings(dataOutputStream, rules.adaptClassStrings);
+                    writeStrings(dataOutputStream, rules.note);
+                    writeStrings(dataOutputStream, rules.warn);
+                }
+            }
+
+            Files.move(tempFile.toPath(),
+                       file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+        }
+        catch (IOException e)
+        {
+            if (tempFile != null)
+            {
+                tempFile.delete();
+            }
+        }
+    }
+
+
+    /**
+     * Adds the given cached rules to the given configuration, as if the
+     * corresponding configuration file had been parsed at this point.
+     */
+    public static void addRules(Configuration rules, Configuration configuration)
+    {
+        configuration.keep                         = addAll(configuration.keep,                         rules.keep);
+        configuration.whyAreYouKeeping             = addAll(configuration.whyAreYouKeeping,             rules.whyAreYouKeeping);
+        configuration.assumeNoSideEffects          = addAll(configuration.assumeNoSideEffects,          rules.assumeNoSideEffects);
+        configuration.assumeNoExternalSideEffects  = addAll(configuration.assumeNoExternalSideEffects,  rules.assumeNoExternalSideEffects);
+        configuration.assumeNoEscapingParameters   = addAll(configuration.assumeNoEscapingParameters,   rules.assumeNoEscapingParameters);
+        configuration.assumeNoExternalReturnValues = addAll(configuration.assumeNoExternalReturnValues, rules.assumeNoExternalReturnValues);
+        configuration.assumeValues                 = addAll(configuration.assumeValues,                 rules.assumeValues);
+        configuration.keepPackageNames             = addAll(configuration.keepPackageNames,             rules.keepPackageNames);
+        configuration.keepAttributes               = addAll(configuration.keepAttributes,               rules.keepAttributes);
+        configuration.adaptClassStrings            = addAll(configuration.adaptClassStrings,            rules.adaptClassStrings);
+        configuration.note                         = addAll(configuration.note,                         rules.note);
+        configuration.warn                         = addAll(configuration.warn,                         rules.warn);
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns the file of the cache entry for the given contents.
+     */
+    private File entryFile(byte[] contents)
+    {
+        try
+        {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+
+            messageDigest.update((byte)VERSION);
+            messageDigest.update((byte)(useDalvikVerification ? 1 : 0));
+            messageDigest.update(contents);
+
+            StringBuilder builder = new StringBuilder(64 + 6);
+            for (byte b : messageDigest.digest())
+            {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16))
+                       .append(Character.forDigit( b       & 0xf, 16));
+            }
+
+            return new File(directory, builder.append(".rules").toString());
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            // Every Java platform supports SHA-256.
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * Returns the given list with the given additional elements, creating
+     * the list if necessary.
+     */
+    private static <T> List<T> addAll(List<T> list, List<T> elements)
+    {
+        if (elements != null)
+        {
+            if (list == null)
+            {
+                list = new ArrayList<>(elements.size());
+            }
+
+            list.addAll(elements);
+        }
+
+        return list;
+    }
+
+
+    private static void writeKeepClassSpecifications(DataOutputStream             dataOutputStream,
+                                                     List<KeepClassSpecification> keepClassSpecifications)
+    throws IOException
+    {
+        if (keepClassSpecifications == null)
+        {
+            dataOutputStream.writeInt(-1);
+        }
+        else
+        {
+            dataOutputStream.writeInt(keepClassSpecifications.size());
+
+            for (KeepClassSpecification keepClassSpecification : keepClassSpecifications)
+            {
+                dataOutputStream.writeBoolean(keepClassSpecification.markClasses);
+                dataOutputStream.writeBoolean(keepClassSpecification.markClassMembers);
+                dataOutputStream.writeBoolean(keepClassSpecification.markConditionally);
+                dataOutputStream.writeBoolean(keepClassSpecification.markDescriptorClasses);
+                dataOutputStream.writeBoolean(keepClassSpecification.markCodeAttributes);
+                dataOutputStream.writeBoolean(keepClassSpecification.allowShrinking);
+                dataOutputStream.writeBoolean(keepClassSpecification.allowOptimization);
+                dataOutputStream.writeBoolean(keepClassSpecification.allowObfuscation);
+
+                dataOutputStream.writeBoolean(keepClassSpecification.condition != null);
+                if (keepClassSpecification.condition != null)
+                {
+                    writeClassSpecification(dataOutputStream, keepClassSpecification.condition);
+                }
+
+                writeClassSpecification(dataOutputStream, keepClassSpecification);
+            }
+        }
+    }
+
+
+    private static List<KeepClassSpecification> readKeepClassSpecifications(DataInputStream dataInputStream)
+    throws IOException
+    {
+        int size = dataInputStream.readInt();
+        if (size < 0)
+        {
+            return null;
+        }
+
+        List<KeepClassSpecification> keepClassSpecifications = new ArrayList<>(size);
+
+        for (int index = 0; index < size; index++)
+        {
+            boolean markClasses           = dataInputStream.readBoolean();
+            boolean markClassMembers      = dataInputStream.readBoolean();
+            boolean markConditionally     = dataInputStream.readBoolean();
+            boolean markDescriptorClasses = dataInputStream.readBoolean();
+            boolean markCodeAttributes    = dataInputStream.readBoolean();
+            boolean allowShrinking        = dataInputStream.readBoolean();
+            boolean allowOptimization     = dataInputStream.readBoolean();
+            boolean allowObfuscation      = dataInputStream.readBoolean();
+
+            ClassSpecification condition = dataInputStream.readBoolean() ?
+                readClassSpecification(dataInputStream) :
+                null;
+
+            keepClassSpecifications.add(
+                new KeepClassSpecification(markClasses,
+                                           markClassMembers,
+                                           markConditionally,
+                                           markDescriptorClasses,
+                                           markCodeAttributes,
+                                           allowShrinking,
+                                           allowOptimization,
+                                           allowObfuscation,
+                                           condition,
+                                           readClassSpecification(dataInputStream)));
+        }
+
+        return keepClassSpecifications;
+    }
+
+
+    private static void writeClassSpecifications(DataOutputStream         dataOutputStream,
+                                                 List<ClassSpecification> classSpecifications)
+    throws IOException
+    {
+        if (classSpecifications == null)
+        {
+            dataOutputStream.writeInt(-1);
+        }
+        else
+        {
+            dataOutputStream.writeInt(classSpecifications.size());
+
+            for (ClassSpecification classSpecification : classSpecifications)
+            {
+                writeClassSpecification(dataOutputStream, classSpecification);
+            }
+        }
+    }
+
+
+    private static List<ClassSpecification> readClassSpecifications(DataInputStream dataInputStream)
+    throws IOException
+    {
+        int size = dataInputStream.readInt();
+        if (size < 0)
+        {
+            return null;
+        }
+
+        List<ClassSpecification> classSpecifications = new ArrayList<>(size);
+
+        for (int index = 0; index < size; index++)
+        {
+            classSpecifications.add(readClassSpecification(dataInputStream));
+        }
+
+        return classSpecifications;
+    }
+
+
+    private static void writeClassSpecification(DataOutputStream   dataOutputStream,
+                                                ClassSpecification classSpecification)
+    throws IOException
+    {
+        writeString(dataOutputStream, classSpecification.comments);
+        writeString(dataOutputStream, classSpecification.memberComments);
+        dataOutputStream.writeInt(classSpecification.requiredSetAccessFlags);
+        dataOutputStream.writeInt(classSpecification.requiredUnsetAccessFlags);
+        writeString(dataOutputStream, classSpecification.annotationType);
+        writeString(dataOutputStream, classSpecification.className);
+        writeString(dataOutputStream, classSpecification.extendsAnnotationType);
+        writeString(dataOutputStream, classSpecification.extendsClassName);
+        writeMemberSpecifications(dataOutputStream, classSpecification.fieldSpecifications);
+        writeMemberSpecifications(dataOutputStream, classSpecification.methodSpecifications);
+    }
+
+
+    private static ClassSpecification readClassSpecification(DataInputStream dataInputStream)
+    throws IOException
+    {
+        String comments                 = readString(dataInputStream);
+        String memberComments           = readString(dataInputStream);
+        int    requiredSetAccessFlags   = dataInputStream.readInt();
+        int    requiredUnsetAccessFlags = dataInputStream.readInt();
+        String annotationType           = readString(dataInputStream);
+        String className                = readString(dataInputStream);
+        String extendsAnnotationType    = readString(dataInputStream);
+        String extendsClassName         = readString(dataInputStream);
+
+        ClassSpecification classSpecification =
+            new ClassSpecification(comments,
+                                   requiredSetAccessFlags,
+                                   requiredUnsetAccessFlags,
+                                   annotationType,
+                                   className,
+                                   extendsAnnotationType,
+                                   extendsClassName,
+                                   readMemberSpecifications(dataInputStream),
+                                   readMemberSpecifications(dataInputStream));
+
+        classSpecification.memberComments = memberComments;
+
+        return classSpecification;
+    }
+
+
+    private static void writeMemberSpecifications(DataOutputStream          dataOutputStream,
+                                                  List<MemberSpecification> memberSpecifications)
+    throws IOException
+    {
+        if (memberSpecifications == null)
+        {
+            dataOutputStream.writeInt(-1);
+        }
+        else
+        {
+            dataOutputStream.writeInt(memberSpecifications.size());
+
+            for (MemberSpecification memberSpecification : memberSpecifications)
+            {
+                boolean hasValues = memberSpecification instanceof MemberValueSpecification;
+
+                dataOutputStream.writeByte(hasValues ?
+                                               MEMBER_VALUE_SPECIFICATION :
+                                               MEMBER_SPECIFICATION);
+                dataOutputStream.writeInt(memberSpecification.requiredSetAccessFlags);
+                dataOutputStream.writeInt(memberSpecification.requiredUnsetAccessFlags);
+                writeString(dataOutputStream, memberSpecification.annotationType);
+                writeString(dataOutputStream, memberSpecification.name);
+                writeString(dataOutputStream, memberSpecification.descriptor);
+
+                if (hasValues)
+                {
+                    writeValues(dataOutputStream, ((MemberValueSpecification)memberSpecification).values);
+                }
+            }
+        }
+    }
+
+
+    private static List<MemberSpecification> readMemberSpecifications(DataInputStream dataInputStream)
+    throws IOException
+    {
+        int size = dataInputStream.readInt();
+        if (size < 0)
+        {
+            return null;
+        }
+
+        List<MemberSpecification> memberSpecifications = new ArrayList<>(size);
+
+        for (int index = 0; index < size; index++)
+        {
+            int    kind                     = dataInputStream.readByte();
+            int    requiredSetAccessFlags   = dataInputStream.readInt();
+            int    requiredUnsetAccessFlags = dataInputStream.readInt();
+            String annotationType           = readString(dataInputStream);
+            String name                     = readString(dataInputStream);
+            String descriptor               = readString(dataInputStream);
+
+            memberSpecifications.add(kind == MEMBER_VALUE_SPECIFICATION ?
+                new MemberValueSpecification(requiredSetAccessFlags,
+                                             requiredUnsetAccessFlags,
+                                             annotationType,
+                                             name,
+                                             descriptor,
+                                             readValues(dataInputStream)) :
+                new MemberSpecification(requiredSetAccessFlags,
+                                        requiredUnsetAccessFlags,
+                                        annotationType,
+                                        name,
+                                        descriptor));
+        }
+
+        return memberSpecifications;
+    }
+
+
+    private static void writeValues(DataOutputStream dataOutputStream,
+                                    Number[]         values)
+    throws IOException
+    {
+        if (values == null)
+        {
+            dataOutputStream.writeInt(-1);
+        }
+        else
+        {
+            dataOutputStream.writeInt(values.length);
+
+            for (Number value : values)
+            {
+                // The parser only creates integer values.
+                if (!(value instanceof Integer))
+                {
+                    throw new IOException("Can't cache value ["+value+"]");
+                }
+
+                dataOutputStream.writeInt(value.intValue());
+            }
+        }
+    }
+
+
+    private static Number[] readValues(DataInputStream dataInputStream)
+    throws IOException
+    {
+        int length = dataInputStream.readInt();
+        if (length < 0)
+        {
+            return null;
+        }
+
+        Number[] values = new Number[length];
+
+        for (int index = 0; index < length; index++)
+        {
+            values[index] = Integer.valueOf(dataInputStream.readInt());
+        }
+
+        return values;
+    }
+
+
+    private static void writeStrings(DataOutputStream dataOutputStream,
+                                     List<String>     strings)
+    throws IOException
+    {
+        if (strings == null)
+        {
+            dataOutputStream.writeInt(-1);
+        }
+        else
+        {
+            dataOutputStream.writeInt(strings.size());
+
+            for (String string : strings)
+            {
+                writeString(dataOutputStream, string);
+            }
+        }
+    }
+
+
+    private static List<String> readStrings(DataInputStream dataInputStream)
+    throws IOException
+    {
+        int size = dataInputStream.readInt();
+        if (size < 0)
+        {
+            return null;
+        }
+
+        List<String> strings = new ArrayList<>(size);
+
+        for (int index = 0; index < size; index++)
+        {
+            strings.add(readString(dataInputStream));
+        }
+
+        return strings;
+    }
+
+
+    private static void writeString(DataOutputStream dataOutputStream,
+                                    String           string)
+    throws IOException
+    {
+        dataOutputStream.writeBoolean(string != null);
+        if (string != null)
+        {
+            dataOutputStream.writeUTF(string);
+        }
+    }
+
+
+    private static String readString(DataInputStream dataInputStream)
+    throws IOException
+    {
+        return dataInputStream.readBoolean() ?
+            dataInputStream.readUTF() :
+            null;
+    }
+}
@@ -123,6 +123,8 @@ public class ConfigurationWriter implements AutoCloseable
 
         writeOption(ConfigurationConstants.DONT_SHRINK_OPTION, !configuration.shrink);
         writeOption(ConfigurationConstants.PRINT_USAGE_OPTION, configuration.printUsage);
+        writeOption(ConfigurationConstants.PRINT_USAGE_GRAPH_OPTION, configuration.printUsageGraph);
+        writeOption(ConfigurationConstants.PRINT_KEEP_RULE_COSTS_OPTION, configuration.printKeepRuleCosts);
 
         writeOption(ConfigurationConstants.DONT_OPTIMIZE_OPTION,                 !configuration.optimize);
         writeOption(ConfigurationConstants.OPTIMIZATIONS,                        configuration.optimizations);
@@ -193,6 +195,17 @@ public class ConfigurationWriter implements AutoCloseable
     }
 
 
+    /**
+     * Writes the given keep class specification as a keep option.
+     * @param keepClassSpecification the keep class specification that is to
+     *                               be written out.
+     */
+    public void write(KeepClassSpecification keepClassSpecification)
+    {
+        writeOption(KEEP_OPTIONS, keepClassSpecification);
+    }
+
+
     private void writeJarOptions(String    inputEntryOptionName,
                                  String    outputEntryOptionName,
                                  ClassPath classPath)
@@ -24,6 +24,7 @@ import proguard.classfile.*;
 import proguard.classfile.util.*;
 import proguard.classfile.visitor.*;
 import proguard.optimize.*;
+import proguard.util.kotlin.EncodedKotlinMetadataSkipper;
 
 import java.util.List;
 
@@ -68,7 +69,7 @@ implements   MemberVisitor,
     {
         // Clean up any old processing info.
         programClassPool.classesAccept(new ClassCleaner());
-        libraryClassPool.classesAccept(new ClassCleaner());
+        libraryClassPool.classesAccept(new EncodedKotlinMetadataSkipper(new ClassCleaner()));
 
         // Create a visitor for marking the seeds.
         KeepMarker keepMarker = new KeepMarker();
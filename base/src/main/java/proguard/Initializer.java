@@ -35,6 +35,7 @@ import proguard.pass.Pass;
 import proguard.resources.file.visitor.ResourceJavaReferenceClassInitializer;
 import proguard.resources.kotlinmodule.util.KotlinModuleReferenceInitializer;
 import proguard.util.*;
+import proguard.util.kotlin.*;
 
 import java.io.*;
 import java.util.*;
@@ -70,8 +71,13 @@ public class Initializer implements Pass
 
         int originalLibraryClassPoolSize = appView.libraryClassPool.size();
 
+        // The notes and warnings are all logged through a single sink, so
+        // they come out in the same order as in a sequential pass, even if
+        // some class pool traversals run in parallel.
+        WarningSink warningSink = new WarningSink(logger);
+
         // Perform basic checks on the configuration.
-        WarningPrinter fullyQualifiedClassNameNotePrinter = new WarningLogger(logger, configuration.note);
+        WarningPrinter fullyQualifiedClassNameNotePrinter = new ConcurrentWarningLogger(warningSink, configuration.note);
 
         if (checkConfiguration)
         {
@@ -91,7 +97,7 @@ public class Initializer implements Pass
             new ListParser(new NameParser()).parse(configuration.keepAttributes) :
             new EmptyStringMatcher();
 
-        WarningPrinter getAnnotationNotePrinter = new WarningLogger(logger, configuration.note);
+        WarningPrinter getAnnotationNotePrinter = new ConcurrentWarningLogger(warningSink, configuration.note);
 
         if (!keepAttributesMatcher.matches(Attribute.RUNTIME_VISIBLE_ANNOTATIONS))
         {
@@ -100,7 +106,7 @@ public class Initializer implements Pass
                 new GetAnnotationChecker(getAnnotationNotePrinter)));
         }
 
-        WarningPrinter getSignatureNotePrinter = new WarningLogger(logger, configuration.note);
+        WarningPrinter getSignatureNotePrinter = new ConcurrentWarningLogger(warningSink, configuration.note);
 
         if (!keepAttributesMatcher.matches(Attribute.SIGNATURE))
         {
@@ -109,7 +115,7 @@ public class Initializer implements Pass
                 new GetSignatureChecker(getSignatureNotePrinter)));
         }
 
-        WarningPrinter getEnclosingClassNotePrinter = new WarningLogger(logger, configuration.note);
+        WarningPrinter getEnclosingClassNotePrinter = new ConcurrentWarningLogger(warningSink, configuration.note);
 
         if (!keepAttributesMatcher.matches(Attribute.INNER_CLASSES))
         {
@@ -118,7 +124,7 @@ public class Initializer implements Pass
                 new GetEnclosingClassChecker(getEnclosingClassNotePrinter)));
         }
 
-        WarningPrinter getEnclosingMethodNotePrinter = new WarningLogger(logger, configuration.note);
+        WarningPrinter getEnclosingMethodNotePrinter = new ConcurrentWarningLogger(warningSink, configuration.note);
 
         if (!keepAttributesMatcher.matches(Attribute.ENCLOSING_METHOD))
         {
@@ -134,8 +140,8 @@ public class Initializer implements Pass
         ClassPool reducedLibraryClassPool = configuration.useUniqueClassMemberNames ?
             null : new ClassPool();
 
-        WarningPrinter classReferenceWarningPrinter = new WarningLogger(logger, configuration.warn);
-        WarningPrinter dependencyWarningPrinter     = new WarningLogger(logger, configuration.warn);
+        WarningPrinter classReferenceWarningPrinter = new ConcurrentWarningLogger(warningSink, configuration.warn);
+        WarningPrinter dependencyWarningPrinter     = new ConcurrentWarningLogger(warningSink, configuration.warn);
 
         // Initialize the superclass hierarchies for program classes.
         appView.programClassPool.classesAccept(
@@ -155,16 +161,17 @@ public class Initializer implements Pass
         // Initialize the class references of program class members and
         // attributes. Note that all superclass hierarchies have to be
         // initialized for this purpose.
-        WarningPrinter programMemberReferenceWarningPrinter = new WarningLogger(logger, configuration.warn);
-        WarningPrinter libraryMemberReferenceWarningPrinter = new WarningLogger(logger, configuration.warn);
-
-        appView.programClassPool.classesAccept(
-            new ClassReferenceInitializer(appView.programClassPool,
-                                          appView.libraryClassPool,
-                                          classReferenceWarningPrinter,
-                                          programMemberReferenceWarningPrinter,
-                                          libraryMemberReferenceWarningPrinter,
-                                          null));
+        WarningPrinter programMemberReferenceWarningPrinter = new ConcurrentWarningLogger(warningSink, configuration.warn);
+        WarningPrinter libraryMemberReferenceWarningPrinter = new ConcurrentWarningLogger(warningSink, configuration.warn);
+
+        initializeClassReferences(appView.programClassPool,
+                                  () -> new ClassReferenceInitializer(appView.programClassPool,
+                                                                      appView.libraryClassPool,
+                                                                      classReferenceWarningPrinter,
+                                                                      programMemberReferenceWarningPrinter,
+                                                                      libraryMemberReferenceWarningPrinter,
+                                                                      null),
+                                  warningSink);
 
         if (reducedLibraryClassPool != null)
         {
@@ -172,10 +179,8 @@ public class Initializer implements Pass
             {
                 // TODO(T16917): Improve this, so that only relevant classes are kept.
                 appView.libraryClassPool.classesAccept(
-                    new ReferencedKotlinMetadataVisitor(
-                        (clazz, kotlinMetadata) -> clazz.accept(new ClassPoolFiller(reducedLibraryClassPool))
-                    )
-                );
+                    new KotlinMetadataPresenceFilter(
+                    new ClassPoolFiller(reducedLibraryClassPool)));
             }
 
             // Collect the library classes that are directly referenced by
@@ -194,49 +199,56 @@ public class Initializer implements Pass
                                                    null));
         }
 
-        // Initialize the enum annotation references.
-        appView.programClassPool.classesAccept(
-            new AllAttributeVisitor(true,
-            new AllElementValueVisitor(true,
-            new EnumFieldReferenceInitializer())));
-
-        // Initialize the Class.forName references.
-        WarningPrinter dynamicClassReferenceNotePrinter = new WarningLogger(logger, configuration.note);
-        WarningPrinter classForNameNotePrinter          = new WarningLogger(logger, configuration.note);
+        // Initialize the enum annotation references and the Class.forName
+        // references, in a single traversal of the program classes. The
+        // enum initializer doesn't print any notes, so the notes still come
+        // out in the same order.
+        WarningPrinter dynamicClassReferenceNotePrinter = new ConcurrentWarningLogger(warningSink, configuration.note);
+        WarningPrinter classForNameNotePrinter          = new ConcurrentWarningLogger(warningSink, configuration.note);
 
         appView.programClassPool.classesAccept(
-            new AllMethodVisitor(
-            new AllAttributeVisitor(
-            new AllInstructionVisitor(
-            new DynamicClassReferenceInitializer(appView.programClassPool,
-                                                 appView.libraryClassPool,
-                                                 dynamicClassReferenceNotePrinter,
-                                                 null,
-                                                 classForNameNotePrinter,
-                                                 createClassNoteExceptionMatcher(configuration.keep, true))))));
-
-        // Initialize the Class.get[Declared]{Field,Method} references.
-        WarningPrinter getMemberNotePrinter = new WarningLogger(logger, configuration.note);
+            new MultiClassVisitor(
+                new AllAttributeVisitor(true,
+                new AllElementValueVisitor(true,
+                new EnumFieldReferenceInitializer())),
+
+                new AllMethodVisitor(
+                new AllAttributeVisitor(
+                new AllInstructionVisitor(
+                new DynamicClassReferenceInitializer(appView.programClassPool,
+                                                     appView.libraryClassPool,
+                                                     dynamicClassReferenceNotePrinter,
+                                                     null,
+                                                     classForNameNotePrinter,
+                                                     createClassNoteExceptionMatcher(configuration.keep, true)))))));
+
+        // Initialize the Class.get[Declared]{Field,Method} references and
+        // other string constant references, if requested, in a single
+        // traversal of the program classes. Again, only the first one
+        // prints notes.
+        WarningPrinter getMemberNotePrinter = new ConcurrentWarningLogger(warningSink, configuration.note);
+
+        MultiClassVisitor referenceInitializers =
+            new MultiClassVisitor(
+                new AllMethodVisitor(
+                new AllAttributeVisitor(
+                new DynamicMemberReferenceInitializer(appView.programClassPool,
+                                                      appView.libraryClassPool,
+                                                      getMemberNotePrinter,
+                                                      createClassMemberNoteExceptionMatcher(configuration.keep, true),
+                                                      createClassMemberNoteExceptionMatcher(configuration.keep, false)))));
 
-        appView.programClassPool.classesAccept(
-            new AllMethodVisitor(
-            new AllAttributeVisitor(
-            new DynamicMemberReferenceInitializer(appView.programClassPool,
-                                                  appView.libraryClassPool,
-                                                  getMemberNotePrinter,
-                                                  createClassMemberNoteExceptionMatcher(configuration.keep, true),
-                                                  createClassMemberNoteExceptionMatcher(configuration.keep, false)))));
-
-        // Initialize other string constant references, if requested.
         if (configuration.adaptClassStrings != null)
         {
-            appView.programClassPool.classesAccept(
+            referenceInitializers.addClassVisitor(
                 new ClassNameFilter(configuration.adaptClassStrings,
                 new AllConstantVisitor(
                 new StringReferenceInitializer(appView.programClassPool,
                                                appView.libraryClassPool))));
         }
 
+        appView.programClassPool.classesAccept(referenceInitializers);
+
         // Initialize the class references of library class members.
         if (reducedLibraryClassPool != null)
         {
@@ -250,14 +262,29 @@ public class Initializer implements Pass
                 new ClassPoolFiller(reducedLibraryClassPool))))));
 
             // Initialize the class references of referenced library
-            // classes, without warnings.
-            reducedLibraryClassPool.classesAccept(
-                new ClassReferenceInitializer(appView.programClassPool,
-                                              appView.libraryClassPool,
-                                              null,
-                                              null,
-                                              null,
-                                              dependencyWarningPrinter));
+            // classes, without warnings. Any encoded Kotlin metadata gets
+            // its references when it is decoded.
+            initializeClassReferences(reducedLibraryClassPool,
+                                      () -> new EncodedKotlinMetadataSkipper(
+                                            new ClassReferenceInitializer(appView.programClassPool,
+                                                                          appView.libraryClassPool,
+                                                                          null,
+                                                                          null,
+                                                                          null,
+                                                                          dependencyWarningPrinter)),
+                                      warningSink);
+
+            // Decode the encoded Kotlin metadata of the referenced library
+            // classes, while all library classes are still available, so
+            // its references are resolved. Collecting the classes that it
+            // refers to, below, would decode it anyway. The metadata of the
+            // other library classes stays encoded.
+            if (configuration.keepKotlinMetadata)
+            {
+                reducedLibraryClassPool.classesAccept(
+                    new ReferencedKotlinMetadataVisitor(
+                    (clazz, kotlinMetadata) -> {}));
+            }
 
             // Reset the library class pool.
             appView.libraryClassPool.clear();
@@ -281,13 +308,17 @@ public class Initializer implements Pass
         else
         {
             // Initialize the class references of all library class members.
-            appView.libraryClassPool.classesAccept(
-                new ClassReferenceInitializer(appView.programClassPool,
-                                              appView.libraryClassPool,
-                                              null,
-                                              null,
-                                              null,
-                                              dependencyWarningPrinter));
+            // Any encoded Kotlin metadata gets its references when it is
+            // decoded.
+            initializeClassReferences(appView.libraryClassPool,
+                                      () -> new EncodedKotlinMetadataSkipper(
+                                            new ClassReferenceInitializer(appView.programClassPool,
+                                                                          appView.libraryClassPool,
+                                                                          null,
+                                                                          null,
+                                                                          null,
+                                                                          dependencyWarningPrinter)),
+                                      warningSink);
         }
 
         // Initialize the subclass hierarchies (in the right order,
@@ -303,12 +334,17 @@ public class Initializer implements Pass
             appView.resourceFilePool.resourceFilesAccept(new KotlinModuleReferenceInitializer(appView.programClassPool, appView.libraryClassPool));
         }
 
-        // Share strings between the classes, to reduce heap memory usage.
-        appView.programClassPool.classesAccept(new StringSharer());
-        appView.libraryClassPool.classesAccept(new StringSharer());
+        // Share strings between all classes, to reduce heap memory usage.
+        // Each class only updates its own constants, so we can do this in
+        // parallel, with a single thread-safe sharer. Encoded Kotlin
+        // metadata of library classes is left alone.
+        SymbolSharer symbolSharer = new SymbolSharer();
+
+        appView.programClassPool.accept(new ParallelAllClassVisitor(() -> symbolSharer));
+        appView.libraryClassPool.accept(new ParallelAllClassVisitor(() -> new EncodedKotlinMetadataSkipper(symbolSharer)));
 
         // Check for any unmatched class members.
-        WarningPrinter classMemberNotePrinter = new WarningLogger(logger, configuration.note);
+        WarningPrinter classMemberNotePrinter = new ConcurrentWarningLogger(warningSink, configuration.note);
 
         if (checkConfiguration)
         {
@@ -324,7 +360,7 @@ public class Initializer implements Pass
         }
 
         // Check for unkept descriptor classes of kept class members.
-        WarningPrinter descriptorKeepNotePrinter = new WarningLogger(logger, configuration.note);
+        WarningPrinter descriptorKeepNotePrinter = new ConcurrentWarningLogger(warningSink, configuration.note);
 
         if (checkConfiguration)
         {
@@ -334,7 +370,7 @@ public class Initializer implements Pass
         }
 
         // Check for keep options that only match library classes.
-        WarningPrinter libraryKeepNotePrinter = new WarningLogger(logger, configuration.note);
+        WarningPrinter libraryKeepNotePrinter = new ConcurrentWarningLogger(warningSink, configuration.note);
 
         if (checkConfiguration)
         {
@@ -542,15 +578,38 @@ public class Initializer implements Pass
         {
             ClassCounter counter = new ClassCounter();
             appView.libraryClassPool.classesAccept(
-                new ReferencedKotlinMetadataVisitor(
-                    (clazz, kotlinMetadata) -> clazz.accept(counter)
-                )
-            );
+                new KotlinMetadataPresenceFilter(counter));
             logger.info("  Number of library classes with @kotlin.Metadata: {}", counter.getCount());
         }
     }
 
 
+    /**
+     * Initializes the class references of the classes in the given class
+     * pool, with class reference initializers from the given factory. The
+     * initializers run in parallel, unless the Kotlin metadata is kept: its
+     * initialization also updates the metadata of other classes. The
+     * warnings still come out in the same order.
+     */
+    private void initializeClassReferences(ClassPool                                   classPool,
+                                           ParallelAllClassVisitor.ClassVisitorFactory classReferenceInitializerFactory,
+                                           WarningSink                                 warningSink)
+    {
+        if (configuration.keepKotlinMetadata)
+        {
+            classPool.classesAccept(classReferenceInitializerFactory.createClassVisitor());
+        }
+        else
+        {
+            // Collect the warnings of the parallel threads, to log them in
+            // class pool order.
+            warningSink.startCollecting();
+            classPool.accept(new ParallelAllClassVisitor(classReferenceInitializerFactory));
+            warningSink.flush();
+        }
+    }
+
+
     /**
      * Extracts a list of exceptions of classes for which not to print notes,
      * from the keep configuration.
@@ -22,6 +22,9 @@ package proguard;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import proguard.classfile.*;
+import proguard.classfile.constant.*;
+import proguard.classfile.constant.visitor.*;
 import proguard.classfile.kotlin.KotlinConstants;
 import proguard.classfile.util.*;
 import proguard.classfile.visitor.*;
@@ -32,9 +35,10 @@ import proguard.resources.file.io.ResourceFileDataEntryReader;
 import proguard.resources.file.visitor.*;
 import proguard.resources.kotlinmodule.io.KotlinModuleDataEntryReader;
 import proguard.util.*;
+import proguard.util.kotlin.*;
 
 import java.io.*;
-import java.util.List;
+import java.util.*;
 
 import static proguard.DataEntryReaderFactory.getFilterExcludingVersionedClasses;
 
@@ -47,10 +51,12 @@ public class InputReader implements Pass
 {
     private static final Logger logger = LogManager.getLogger(InputReader.class);
 
-    private static final boolean DONT_READ_LIBRARY_KOTLIN_METADATA = System.getProperty("proguard.dontreadlibrarykotlinmetadata") != null;
+    private static final boolean DONT_READ_LIBRARY_KOTLIN_METADATA     = System.getProperty("proguard.dontreadlibrarykotlinmetadata")     != null;
+    private static final boolean READ_REFERENCED_LIBRARY_CLASSES_ONLY = System.getProperty("proguard.readreferencedlibraryclassesonly") != null;
 
 
-    private final Configuration configuration;
+    private final Configuration     configuration;
+    private final LibraryClassCache libraryClassCache;
 
     // Field that acts as a parameter to the visitors that attach
     // feature names to classes and resource files.
@@ -62,7 +68,22 @@ public class InputReader implements Pass
      */
     public InputReader(Configuration configuration)
     {
-        this.configuration = configuration;
+        this(configuration, null);
+    }
+
+
+    /**
+     * Creates a new InputReader to read input class files as specified by the
+     * given configuration.
+     * @param configuration     the configuration.
+     * @param libraryClassCache an optional cache of library classes that are
+     *                          shared between subsequent runs.
+     */
+    public InputReader(Configuration     configuration,
+                       LibraryClassCache libraryClassCache)
+    {
+        this.configuration     = configuration;
+        this.libraryClassCache = libraryClassCache;
     }
 
 
@@ -152,20 +173,74 @@ public class InputReader implements Pass
              configuration.preverify ||
              configuration.backport))
         {
-            // Read the library class files and put then in the library class
-            // pool.
-            readInput("Reading library ",
-                      configuration.libraryJars,
-                      new ClassFilter(
-                      new ClassReader(true,
-                                      configuration.skipNonPublicLibraryClasses,
-                                      configuration.skipNonPublicLibraryClassMembers,
-                                      true,
-                                      !DONT_READ_LIBRARY_KOTLIN_METADATA && configuration.keepKotlinMetadata,
-                                      warningPrinter,
-                      new ClassPresenceFilter(appView.programClassPool, duplicateClassPrinter,
-                      new ClassPresenceFilter(appView.libraryClassPool, duplicateClassPrinter,
-                      new ClassPoolFiller(appView.libraryClassPool))))));
+            boolean readLibraryKotlinMetadata =
+                !DONT_READ_LIBRARY_KOTLIN_METADATA && configuration.keepKotlinMetadata;
+
+            // Create a visitor to fill the library class pool (while checking
+            // for duplicates).
+            ClassVisitor libraryClassPoolFiller =
+                new ClassPresenceFilter(appView.programClassPool, duplicateClassPrinter,
+                new ClassPresenceFilter(appView.libraryClassPool, duplicateClassPrinter,
+                new ClassPoolFiller(appView.libraryClassPool)));
+
+            // We can't cache Kotlin metadata, since it can't be copied.
+            if (libraryClassCache != null &&
+                !readLibraryKotlinMetadata)
+            {
+                // Read the library class files from the cache, if possible,
+                // and put them in the library class pool.
+                readCachedLibraryInput(libraryClassPoolFiller, warningPrinter);
+            }
+            else
+            {
+                // Create a reader to fill the library class pool. Any Kotlin
+                // metadata is only decoded when it is accessed, since most
+                // library classes are never queried. Any warnings about it
+                // are printed out after the pass that decodes it.
+                if (readLibraryKotlinMetadata)
+                {
+                    appView.kotlinMetadataWarningSink = new WarningSink(logger);
+                }
+
+                DataEntryReader libraryClassReader = readLibraryKotlinMetadata ?
+                    new LazyLibraryClassReader(configuration.skipNonPublicLibraryClasses,
+                                               configuration.skipNonPublicLibraryClassMembers,
+                                               new LazyKotlinMetadataDecoder(appView.programClassPool,
+                                                                             appView.libraryClassPool,
+                                                                             new ConcurrentWarningLogger(appView.kotlinMetadataWarningSink,
+                                                                                                         configuration.warn)),
+                                               warningPrinter,
+                                               libraryClassPoolFiller) :
+                    new ClassReader(true,
+                                    configuration.skipNonPublicLibraryClasses,
+                                    configuration.skipNonPublicLibraryClassMembers,
+                                    true,
+                                    false,
+                                    warningPrinter,
+                                    libraryClassPoolFiller);
+
+                // The initializer will only retain the library classes that the
+                // program classes need, unless it has to come up with globally
+                // unique class member names or keep the Kotlin metadata of all
+                // library classes.
+                if (READ_REFERENCED_LIBRARY_CLASSES_ONLY &&
+                    !configuration.useUniqueClassMemberNames &&
+                    !configuration.keepKotlinMetadata)
+                {
+                    // Read only the library class files that the program class
+                    // files need.
+                    readReferencedLibraryInput(appView.programClassPool,
+                                               libraryClassReader);
+                }
+                else
+                {
+                    // Read the library class files and put then in the library
+                    // class pool.
+                    readInput("Reading library ",
+                              configuration.libraryJars,
+                              new ClassFilter(libraryClassReader));
+                }
+            }
         }
 
         // Print out a summary of the notes, if necessary.
@@ -195,6 +270,200 @@ public class InputReader implements Pass
     }
 
 
+    /**
+     * Reads the library class files, borrowing the classes of any class path
+     * entries that are already present in the library class cache, and
+     * adding the classes of any other class path entries to the cache.
+     */
+    private void readCachedLibraryInput(ClassVisitor   libraryClassPoolFiller,
+                                        WarningPrinter warningPrinter)
+    throws IOException
+    {
+        String options =
+            configuration.skipNonPublicLibraryClasses      + "," +
+            configuration.skipNonPublicLibraryClassMembers + "," +
+            configuration.android;
+
+        ClassPath libraryJars = configuration.libraryJars;
+        for (int index = 0; index < libraryJars.size(); index++)
+        {
+            ClassPathEntry entry = libraryJars.get(index);
+            if (!entry.isOutput())
+            {
+                String key = LibraryClassCache.key(entry.getFile(),
+                                                   entry + "|" + options);
+
+                if (key == null ||
+                    !libraryClassCache.classesAccept(key, libraryClassPoolFiller))
+                {
+                    // Collect pristine copies of the classes that we read.
+                    List<LibraryClass> libraryClasses = new ArrayList<>();
+
+                    readInput("Reading library ",
+                              entry,
+                              new ClassFilter(
+                              new ClassReader(true,
+                                              configuration.skipNonPublicLibraryClasses,
+                                              configuration.skipNonPublicLibraryClassMembers,
+                                              true,
+                                              false,
+                                              warningPrinter,
+                              new MultiClassVisitor(
+                                  new LibraryClassFilter(
+                                      clazz -> libraryClasses.add((LibraryClass)clazz)),
+                                  libraryClassPoolFiller
+                              ))));
+
+                    if (key != null)
+                    {
+                        libraryClassCache.put(key, libraryClasses);
+                    }
+                }
+                else
+                {
+                    logger.info("Reusing library [{}] from the cache", entry.getName());
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Reads the library class files that are needed by the given program
+     * classes, in two phases: first indexing all library class files, and
+     * then only reading the needed class files.
+     */
+    private void readReferencedLibraryInput(ClassPool       programClassPool,
+                                            DataEntryReader libraryClassReader)
+    throws IOException
+    {
+        ClassPath libraryJars = configuration.libraryJars;
+
+        // Index the names and the references of all library classes.
+        LibraryClassIndex libraryClassIndex = new LibraryClassIndex();
+
+        for (int index = 0; index < libraryJars.size(); index++)
+        {
+            ClassPathEntry entry = libraryJars.get(index);
+            if (!entry.isOutput())
+            {
+                readInput("Indexing library ",
+                          entry,
+                          new ClassFilter(
+                          new LibraryClassIndexer(libraryClassIndex, index)));
+            }
+        }
+
+        // Collect the names of all classes that the program classes and the
+        // class specifications may refer to, including through reflection.
+        Set<String> referencedClassNames = new HashSet<>();
+
+        programClassPool.classesAccept(
+            new AllConstantVisitor(
+            new ConstantTagFilter(Constant.UTF8,
+            new ConstantVisitor()
+            {
+                @Override
+                public void visitUtf8Constant(Clazz clazz, Utf8Constant utf8Constant)
+                {
+                    LibraryClassIndex.addClassNameCandidates(utf8Constant.getString(),
+                                                             referencedClassNames);
+                }
+            })));
+
+        addClassNameCandidates(configuration.keep,                         referencedClassNames);
+        addClassNameCandidates(configuration.whyAreYouKeeping,             referencedClassNames);
+        addClassNameCandidates(configuration.assumeNoSideEffects,          referencedClassNames);
+        addClassNameCandidates(configuration.assumeNoExternalSideEffects,  referencedClassNames);
+        addClassNameCandidates(configuration.assumeNoEscapingParameters,   referencedClassNames);
+        addClassNameCandidates(configuration.assumeNoExternalReturnValues, referencedClassNames);
+        addClassNameCandidates(configuration.assumeValues,                 referencedClassNames);
+
+        Set<String> neededClassNames =
+            libraryClassIndex.neededClassNames(referencedClassNames);
+
+        logger.info("  Number of indexed library classes:               {}", libraryClassIndex.size());
+        logger.info("  Number of needed library classes:                {}", neededClassNames.size());
+
+        // Read the needed library class files and put them in the library
+        // class pool.
+        for (int index = 0; index < libraryJars.size(); index++)
+        {
+            ClassPathEntry entry = libraryJars.get(index);
+            if (!entry.isOutput())
+            {
+                Set<String> dataEntryNames =
+                    libraryClassIndex.dataEntryNames(index, neededClassNames);
+
+                if (!dataEntryNames.isEmpty())
+                {
+                    readInput("Reading library ",
+                              entry,
+                              new ClassFilter(
+                              new FilteredDataEntryReader(
+                              new DataEntryNameFilter(
+                              new CollectionMatcher(dataEntryNames)),
+                              libraryClassReader)));
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Adds the names of all classes that the given class specifications may
+     * refer to, to the given set.
+     */
+    private void addClassNameCandidates(List<? extends ClassSpecification> classSpecifications,
+                                        Set<String>                        classNames)
+    {
+        if (classSpecifications != null)
+        {
+            for (ClassSpecification classSpecification : classSpecifications)
+            {
+                addClassNameCandidate(classSpecification.className,             classNames);
+                addClassNameCandidate(classSpecification.extendsClassName,      classNames);
+                addClassNameCandidate(classSpecification.annotationType,        classNames);
+                addClassNameCandidate(classSpecification.extendsAnnotationType, classNames);
+
+                addClassNameCandidates(classSpecification.fieldSpecifications,  classNames);
+                addClassNameCandidates(classSpecification.methodSpecifications, classNames);
+            }
+        }
+    }
+
+
+    /**
+     * Adds the names of all classes that the given member specifications may
+     * refer to, to the given set.
+     */
+    private void addClassNameCandidates(Collection<MemberSpecification> memberSpecifications,
+                                        Set<String>                     classNames)
+    {
+        if (memberSpecifications != null)
+        {
+            for (MemberSpecification memberSpecification : memberSpecifications)
+            {
+                addClassNameCandidate(memberSpecification.annotationType, classNames);
+                addClassNameCandidate(memberSpecification.descriptor,     classNames);
+            }
+        }
+    }
+
+
+    /**
+     * Adds the names of all classes that the given string may refer to, if
+     * any, to the given set.
+     */
+    private void addClassNameCandidate(String string, Set<String> classNames)
+    {
+        if (string != null)
+        {
+            LibraryClassIndex.addClassNameCandidates(string, classNames);
+        }
+    }
+
+
     /**
      * Reads all input entries from the given class path.
      */
@@ -0,0 +1,183 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard;
+
+import proguard.classfile.*;
+import proguard.classfile.visitor.*;
+import proguard.util.Processable;
+
+import java.util.*;
+
+/**
+ * This class collects statistics per keep class specification: the time
+ * spent matching it and the classes and class members that it keeps
+ * directly, as seeds.
+ * <p>
+ * A {@link KeepClassSpecificationVisitorFactory} times the class pool
+ * visitors that it creates for the keep class specifications, while
+ * setting the current specification. As a ClassVisitor and MemberVisitor,
+ * this class then records the classes and class members that it visits as
+ * the seeds of the current specification.
+ *
+ * @see proguard.shrink.KeepRuleCostPrinter
+ */
+public class KeepClassSpecificationStatistics
+implements   ClassVisitor,
+             MemberVisitor
+{
+    private final Map<KeepClassSpecification, Entry> entries = new IdentityHashMap<>();
+
+    private Entry currentEntry;
+
+
+    /**
+     * Returns a ClassPoolVisitor that delegates to the given visitor for the
+     * given keep class specification, timing it and recording any seeds
+     * that are visited meanwhile.
+     */
+    public ClassPoolVisitor createClassPoolVisitor(KeepClassSpecification keepClassSpecification,
+                                                   ClassPoolVisitor       classPoolVisitor)
+    {
+        return new MyTimedClassPoolVisitor(entry(keepClassSpecification),
+                                           classPoolVisitor);
+    }
+
+
+    /**
+     * Returns the total time spent matching the given keep class
+     * specification, in nanoseconds.
+     */
+    public long getMatchingTime(KeepClassSpecification keepClassSpecification)
+    {
+        Entry entry = entries.get(keepClassSpecification);
+
+        return entry == null ? 0L : entry.matchingTime;
+    }
+
+
+    /**
+     * Returns the classes and class members that the given keep class
+     * specification keeps directly, in the order in which they were found.
+     */
+    public Collection<Processable> getSeeds(KeepClassSpecification keepClassSpecification)
+    {
+        Entry entry = entries.get(keepClassSpecification);
+
+        return entry == null ?
+            Collections.emptySet() :
+            Collections.unmodifiableSet(entry.seeds);
+    }
+
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz)
+    {
+        addSeed(clazz);
+    }
+
+
+    // Implementations for MemberVisitor.
+
+    @Override
+    public void visitAnyMember(Clazz clazz, Member member)
+    {
+        addSeed(member);
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Adds the given seed to the current keep class specification, if any.
+     */
+    private void addSeed(Processable processable)
+    {
+        if (currentEntry != null)
+        {
+            currentEntry.seeds.add(processable);
+        }
+    }
+
+
+    /**
+     * Returns the statistics entry of the given keep class specification,
+     * creating it if necessary.
+     */
+    private Entry entry(KeepClassSpecification keepClassSpecification)
+    {
+        return entries.computeIfAbsent(keepClassSpecification, key -> new Entry());
+    }
+
+
+    /**
+     * The statistics of a single keep class specification.
+     */
+    private static class Entry
+    {
+        private long             matchingTime;
+        private Set<Processable> seeds = new LinkedHashSet<>();
+    }
+
+
+    /**
+     * This ClassPoolVisitor times its delegate, while making its statistics
+     * entry the current one.
+     */
+    private class MyTimedClassPoolVisitor
+    implements    ClassPoolVisitor
+    {
+        private final Entry            entry;
+        private final ClassPoolVisitor classPoolVisitor;
+
+
+        public MyTimedClassPoolVisitor(Entry            entry,
+                                       ClassPoolVisitor classPoolVisitor)
+        {
+            this.entry            = entry;
+            this.classPoolVisitor = classPoolVisitor;
+        }
+
+
+        // Implementations for ClassPoolVisitor.
+
+        @Override
+        public void visitClassPool(ClassPool classPool)
+        {
+            Entry previousEntry = currentEntry;
+            currentEntry = entry;
+
+            long startTime = System.nanoTime();
+
+            try
+            {
+                classPoolVisitor.visitClassPool(classPool);
+            }
+            finally
+            {
+                entry.matchingTime += System.nanoTime() - startTime;
+
+                currentEntry = previousEntry;
+            }
+        }
+    }
+}
@@ -36,9 +36,10 @@ import java.util.List;
 public class KeepClassSpecificationVisitorFactory
 extends      ClassSpecificationVisitorFactory
 {
-    private final boolean shrinking;
-    private final boolean optimizing;
-    private final boolean obfuscating;
+    private final boolean                          shrinking;
+    private final boolean                          optimizing;
+    private final boolean                          obfuscating;
+    private final KeepClassSpecificationStatistics statistics;
 
 
     /**
@@ -55,10 +56,34 @@ extends      ClassSpecificationVisitorFactory
     public KeepClassSpecificationVisitorFactory(boolean shrinking,
                                                 boolean optimizing,
                                                 boolean obfuscating)
+    {
+        this(shrinking, optimizing, obfuscating, null);
+    }
+
+
+    /**
+     * Creates a new KeepClassSpecificationVisitorFactory that creates
+     * visitors for the specified goal, collecting statistics per keep
+     * class specification.
+     *
+     * @param shrinking   a flag that specifies whether the visitors are
+     *                    intended for the shrinking step.
+     * @param optimizing  a flag that specifies whether the visitors are
+     *                    intended for the optimization step.
+     * @param obfuscating a flag that specifies whether the visitors are
+     *                    intended for the obfuscation step.
+     * @param statistics  optional statistics that time the created visitors
+     *                    per keep class specification.
+     */
+    public KeepClassSpecificationVisitorFactory(boolean                          shrinking,
+                                                boolean                          optimizing,
+                                                boolean                          obfuscating,
+                                                KeepClassSpecificationStatistics statistics)
     {
         this.shrinking   = shrinking;
         this.optimizing  = optimizing;
         this.obfuscating = obfuscating;
+        this.statistics  = statistics;
     }
 
 
@@ -98,12 +123,22 @@ extends      ClassSpecificationVisitorFactory
                     (optimizing  && !keepClassSpecification.allowOptimization) ||
                     (obfuscating && !keepClassSpecification.allowObfuscation))
                 {
-                    multiClassPoolVisitor.addClassPoolVisitor(
+                    ClassPoolVisitor classPoolVisitor =
                         createClassPoolVisitor(keepClassSpecification,
                                                classVisitor,
                                                fieldVisitor,
                                                methodVisitor,
-                                               attributeVisitor));
+                                               attributeVisitor);
+
+                    // Time the visitor, if requested.
+                    if (statistics != null)
+                    {
+                        classPoolVisitor =
+                            statistics.createClassPoolVisitor(keepClassSpecification,
+                                                              classPoolVisitor);
+                    }
+
+                    multiClassPoolVisitor.addClassPoolVisitor(classPoolVisitor);
                 }
             }
         }
@@ -46,12 +46,20 @@ import java.util.*;
 /**
  * This pass writes the output class files and resource files, packaged in
  * jar files, etc, if required.
+ * <p>
+ * If the system property "proguard.storeprogramclasses" is set, it first
+ * stores the processed program classes in a temporary file, so they can be
+ * garbage collected while the output is written.
  *
+ * @see ProgramClassStore
  * @author Eric Lafortune
  */
 public class OutputWriter implements Pass
 {
     private static final Logger logger = LogManager.getLogger(OutputWriter.class);
+
+    private static final boolean STORE_PROGRAM_CLASSES = System.getProperty("proguard.storeprogramclasses") != null;
+
     private final Configuration configuration;
 
     public OutputWriter(Configuration configuration)
@@ -96,84 +104,121 @@ public class OutputWriter implements Pass
              currentDate.getMinutes()     << 5  |
              currentDate.getSeconds()     >> 1;
 
-        // Create a main data entry writer factory for all nested archives.
-        DataEntryWriterFactory dataEntryWriterFactory =
-            new DataEntryWriterFactory(appView.programClassPool,
-                                       appView.resourceFilePool,
-                                       modificationTime,
-                                       uncompressedFilter,
-                                       configuration.zipAlign,
-                                       configuration.android, //resourceInfo.pageAlignNativeLibs,
-                                       configuration.obfuscate,
-                                       privateKeyEntries
-            );
-
-        DataEntryWriter extraDataEntryWriter = null;
-        if (configuration.extraJar != null)
+        // Store the program classes, if requested and if nothing needs
+        // them anymore after writing the output.
+        try (ProgramClassStore programClassStore =
+                 STORE_PROGRAM_CLASSES                    &&
+                 configuration.dump == null               &&
+                 !configuration.addConfigurationDebugging &&
+                 !configuration.keepKotlinMetadata ?
+                     storeProgramClasses(appView) :
+                     null)
         {
-            // Extra data entries can optionally be written to a separate jar file.
-            // This prevents duplicates if there are multiple -outjars that are later
-            // combined together, after ProGuard processing.
-            ClassPath extraClassPath = new ClassPath();
-            extraClassPath.add(new ClassPathEntry(configuration.extraJar, true));
-            log(extraClassPath, 0, 1, privateKeyEntries);
-            extraDataEntryWriter =
-                    new UniqueDataEntryWriter(
-                    dataEntryWriterFactory.createDataEntryWriter(extraClassPath, 0, 1, null));
-        }
-
-        int firstInputIndex = 0;
-        int lastInputIndex  = 0;
-
-        // Go over all program class path entries.
-        for (int index = 0; index < programJars.size(); index++)
-        {
-            // Is it an input entry?
-            ClassPathEntry entry = programJars.get(index);
-            if (!entry.isOutput())
+            // Create a main data entry writer factory for all nested archives,
+            // copying stored classes instead of writing them, if applicable.
+            DataEntryWriterFactory dataEntryWriterFactory =
+                new DataEntryWriterFactory(appView.programClassPool,
+                                           appView.resourceFilePool,
+                                           modificationTime,
+                                           uncompressedFilter,
+                                           configuration.zipAlign,
+                                           configuration.android, //resourceInfo.pageAlignNativeLibs,
+                                           configuration.obfuscate,
+                                           privateKeyEntries,
+                                           programClassStore == null ? null :
+                                               writer -> new StoredClassDataEntryWriter(appView.programClassPool,
+                                                                                        programClassStore,
+                                                                                        new NonClosingDataEntryWriter(writer))
+                );
+
+            DataEntryWriter extraDataEntryWriter = null;
+            if (configuration.extraJar != null)
             {
-                // It's an input entry. Remember the highest index.
-                lastInputIndex = index;
+                // Extra data entries can optionally be written to a separate jar file.
+                // This prevents duplicates if there are multiple -outjars that are later
+                // combined together, after ProGuard processing.
+                ClassPath extraClassPath = new ClassPath();
+                extraClassPath.add(new ClassPathEntry(configuration.extraJar, true));
+                log(extraClassPath, 0, 1, privateKeyEntries);
+                extraDataEntryWriter =
+                        new UniqueDataEntryWriter(
+                        dataEntryWriterFactory.createDataEntryWriter(extraClassPath, 0, 1, null));
             }
-            else
+
+            int firstInputIndex = 0;
+            int lastInputIndex  = 0;
+
+            // Go over all program class path entries.
+            for (int index = 0; index < programJars.size(); index++)
             {
-                // It's an output entry. Is it the last one in a
-                // series of output entries?
-                int nextIndex = index + 1;
-                if (nextIndex == programJars.size() ||
-                    !programJars.get(nextIndex).isOutput())
+                // Is it an input entry?
+                ClassPathEntry entry = programJars.get(index);
+                if (!entry.isOutput())
+                {
+                    // It's an input entry. Remember the highest index.
+                    lastInputIndex = index;
+                }
+                else
                 {
-                    log(programJars, lastInputIndex + 1, nextIndex, privateKeyEntries);
-                    // Write the processed input entries to the output entries.
-                    writeOutput(dataEntryWriterFactory,
-                                configuration,
-                                appView.programClassPool,
-                                appView.initialStateInfo,
-                                appView.resourceFilePool,
-                                extraDataEntryWriter != null ?
-                                        // The extraDataEntryWriter must be remain open
-                                        // until all outputs have been written.
-                                        new NonClosingDataEntryWriter(extraDataEntryWriter) :
-                                        // no extraDataEntryWriter supplied
-                                        null,
-                                appView.extraDataEntryNameMap,
-                                programJars,
-                                firstInputIndex,
-                                lastInputIndex + 1,
-                                nextIndex);
-
-                    // Start with the next series of input entries.
-                    firstInputIndex = nextIndex;
+                    // It's an output entry. Is it the last one in a
+                    // series of output entries?
+                    int nextIndex = index + 1;
+                    if (nextIndex == programJars.size() ||
+                        !programJars.get(nextIndex).isOutput())
+                    {
+                        log(programJars, lastInputIndex + 1, nextIndex, privateKeyEntries);
+                        // Write the processed input entries to the output entries.
+                        writeOutput(dataEntryWriterFactory,
+                                    configuration,
+                                    appView.programClassPool,
+                                    appView.initialStateInfo,
+                                    appView.resourceFilePool,
+                                    extraDataEntryWriter != null ?
+                                            // The extraDataEntryWriter must be remain open
+                                            // until all outputs have been written.
+                                            new NonClosingDataEntryWriter(extraDataEntryWriter) :
+                                            // no extraDataEntryWriter supplied
+                                            null,
+                                    appView.extraDataEntryNameMap,
+                                    programJars,
+                                    firstInputIndex,
+                                    lastInputIndex + 1,
+                                    nextIndex);
+
+                        // Start with the next series of input entries.
+                        firstInputIndex = nextIndex;
+                    }
                 }
             }
-        }
 
-        if (extraDataEntryWriter != null)
-        {
-            extraDataEntryWriter.close();
+            if (extraDataEntryWriter != null)
+            {
+                extraDataEntryWriter.close();
+            }
         }
     }
 
+
+    /**
+     * Stores the program classes of the given application view in a new
+     * program class store, clearing the classes in memory.
+     */
+    private ProgramClassStore storeProgramClasses(AppView appView)
+    throws IOException
+    {
+        logger.info("Storing program classes...");
+
+        ProgramClassStore programClassStore = new ProgramClassStore();
+
+        programClassStore.storeClasses(appView.programClassPool);
+
+        logger.info("  Stored {} classes ({} bytes)",
+                    programClassStore.size(),
+                    programClassStore.byteCount());
+
+        return programClassStore;
+    }
+
     /**
      * Gets the private keys from the key stores, based on the given configuration.
      */
@@ -463,7 +508,7 @@ public class OutputWriter implements Pass
         return
             new NameFilteredDataEntryReader("META-INF/MANIFEST.MF,META-INF/*.SF",
                 new ManifestRewriter(programClassPool, charset, writer),
-            new DataEntryRewriter(programClassPool, charset, writer));
+            new ClassNameDataEntryRewriter(programClassPool, charset, writer));
     }
 
 
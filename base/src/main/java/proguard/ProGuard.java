@@ -23,12 +23,13 @@ package proguard;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import proguard.backport.Backporter;
-import proguard.classfile.editor.ClassElementSorter;
 import proguard.classfile.pass.PrimitiveArrayConstantIntroducer;
 import proguard.classfile.util.PrimitiveArrayConstantReplacer;
+import proguard.classfile.visitor.ParallelAllClassVisitor;
 import proguard.configuration.ConfigurationLoggingAdder;
 import proguard.configuration.InitialStateInfo;
 import proguard.evaluation.IncompleteClassHierarchyException;
+import proguard.io.LibraryClassCache;
 import proguard.logging.Logging;
 import proguard.mark.Marker;
 import proguard.normalize.StringNormalizer;
@@ -36,7 +37,6 @@ import proguard.obfuscate.NameObfuscationReferenceFixer;
 import proguard.obfuscate.ObfuscationPreparation;
 import proguard.obfuscate.Obfuscator;
 import proguard.obfuscate.ResourceFileNameAdapter;
-import proguard.optimize.LineNumberTrimmer;
 import proguard.optimize.Optimizer;
 import proguard.optimize.gson.GsonOptimizer;
 import proguard.optimize.peephole.LineNumberLinearizer;
@@ -69,9 +69,14 @@ public class ProGuard
      * A data object containing pass inputs in a centralized location. Passes can access and update the information
      * at any point in the pipeline.
      */
-    private final AppView       appView;
-    private final PassRunner    passRunner;
-    private final Configuration configuration;
+    private final AppView           appView;
+    private final PassRunner        passRunner;
+    private final Configuration     configuration;
+    private final LibraryClassCache libraryClassCache;
+
+    // The Kotlin metadata verifier is reused, so it only needs to check the
+    // classes that have changed since its previous run.
+    private KotlinMetadataVerifier kotlinMetadataVerifier;
 
     /**
      * Creates a new ProGuard object to process jars as specified by the given
@@ -79,9 +84,20 @@ public class ProGuard
      */
     public ProGuard(Configuration configuration)
     {
-        this.appView       = new AppView();
-        this.passRunner    = new PassRunner();
-        this.configuration = configuration;
+        this(configuration, null);
+    }
+
+    /**
+     * Creates a new ProGuard object to process jars as specified by the given
+     * configuration, borrowing library classes from the given cache, if any.
+     */
+    public ProGuard(Configuration     configuration,
+                    LibraryClassCache libraryClassCache)
+    {
+        this.appView           = new AppView();
+        this.passRunner        = new PassRunner();
+        this.configuration     = configuration;
+        this.libraryClassCache = libraryClassCache;
     }
 
     /**
@@ -235,18 +251,20 @@ public class ProGuard
 
             // Trim line numbers after preverification as this might
             // also remove some instructions.
-            if (configuration.optimize ||
-                configuration.preverify)
-            {
-                trimLineNumbers();
-            }
+            boolean trimLineNumbers =
+                configuration.optimize ||
+                configuration.preverify;
 
-            if (configuration.shrink    ||
+            boolean sortClassElements =
+                configuration.shrink    ||
                 configuration.optimize  ||
                 configuration.obfuscate ||
-                configuration.preverify)
+                configuration.preverify;
+
+            if (trimLineNumbers ||
+                sortClassElements)
             {
-                sortClassElements();
+                finishClasses(trimLineNumbers, sortClassElements);
             }
 
             if (configuration.programJars.hasOutput())
@@ -333,7 +351,7 @@ public class ProGuard
     private void readInput() throws Exception
     {
         // Fill the program class pool and the library class pool.
-        passRunner.run(new InputReader(configuration), appView);
+        passRunner.run(new InputReader(configuration, libraryClassCache), appView);
     }
 
 
@@ -524,7 +542,12 @@ public class ProGuard
         if (configuration.keepKotlinMetadata &&
             configuration.enableKotlinAsserter)
         {
-            passRunner.run(new KotlinMetadataVerifier(configuration), appView);
+            if (kotlinMetadataVerifier == null)
+            {
+                kotlinMetadataVerifier = new KotlinMetadataVerifier(configuration);
+            }
+
+            passRunner.run(kotlinMetadataVerifier, appView);
         }
     }
 
@@ -534,7 +557,10 @@ public class ProGuard
      */
     private void expandPrimitiveArrayConstants()
     {
-        appView.programClassPool.classesAccept(new PrimitiveArrayConstantReplacer());
+        // The replacer only changes the classes that it visits, so we can
+        // use a separate replacer for each thread.
+        appView.programClassPool.accept(
+            new ParallelAllClassVisitor(PrimitiveArrayConstantReplacer::new));
     }
 
 
@@ -558,29 +584,13 @@ public class ProGuard
 
 
     /**
-     * Trims the line number table attributes of all program classes.
-     */
-    private void trimLineNumbers() throws Exception
-    {
-        passRunner.run(new LineNumberTrimmer(), appView);
-    }
-
-
-    /**
-     * Sorts the elements of all program classes.
+     * Trims the line number table attributes and sorts the elements of all
+     * program classes.
      */
-    private void sortClassElements()
+    private void finishClasses(boolean trimLineNumbers,
+                               boolean sortClassElements) throws Exception
     {
-        appView.programClassPool.classesAccept(
-            new ClassElementSorter(
-                /* sortInterfaces = */ true,
-                /* sortConstants = */ true,
-                // Sorting members can cause problems with code such as clazz.getMethods()[1]
-                /* sortMembers = */ false,
-                // PGD-192: Sorting attributes can cause problems for some compilers
-                /* sortAttributes = */ false
-            )
-        );
+        passRunner.run(new ClassFinisher(trimLineNumbers, sortClassElements), appView);
     }
 
 
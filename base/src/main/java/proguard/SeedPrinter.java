@@ -24,6 +24,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import proguard.classfile.visitor.*;
 import proguard.optimize.*;
+import proguard.util.kotlin.EncodedKotlinMetadataSkipper;
 import proguard.pass.Pass;
 import proguard.util.PrintWriterUtil;
 
@@ -68,7 +69,7 @@ public class SeedPrinter implements Pass
 
             // Clean up any old processing info.
             appView.programClassPool.classesAccept(new ClassCleaner());
-            appView.libraryClassPool.classesAccept(new ClassCleaner());
+            appView.libraryClassPool.classesAccept(new EncodedKotlinMetadataSkipper(new ClassCleaner()));
 
             // Create a visitor for printing out the seeds. We're  printing out
             // the program elements that are preserved against shrinking,
@@ -25,6 +25,7 @@ import org.apache.logging.log4j.Logger;
 import proguard.classfile.ClassPool;
 import proguard.classfile.util.ClassUtil;
 import proguard.classfile.visitor.ClassVersionSetter;
+import proguard.classfile.visitor.ParallelAllClassVisitor;
 import proguard.pass.Pass;
 
 import java.io.IOException;
@@ -54,10 +55,14 @@ public class Targeter implements Pass
     {
         logger.info("Setting target versions...");
 
-        Set newerClassVersions = configuration.warn != null ? null : new HashSet();
+        // The setters share the set of newer class versions, so it has to
+        // be synchronized.
+        Set newerClassVersions = configuration.warn != null ? null : Collections.synchronizedSet(new HashSet());
 
-        appView.programClassPool.classesAccept(new ClassVersionSetter(configuration.targetClassVersion,
-                                                                      newerClassVersions));
+        appView.programClassPool.accept(
+            new ParallelAllClassVisitor(() ->
+                new ClassVersionSetter(configuration.targetClassVersion,
+                                       newerClassVersions)));
 
         if (newerClassVersions != null &&
             newerClassVersions.size() > 0)
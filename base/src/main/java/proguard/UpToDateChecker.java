@@ -96,6 +96,8 @@ public class UpToDateChecker
             // Check the dates of the auxiliary output files.
             checker.updateOutputModificationTime(configuration.printSeeds);
             checker.updateOutputModificationTime(configuration.printUsage);
+            checker.updateOutputModificationTime(configuration.printUsageGraph);
+            checker.updateOutputModificationTime(configuration.printKeepRuleCosts);
             checker.updateOutputModificationTime(configuration.printMapping);
             checker.updateOutputModificationTime(configuration.printConfiguration);
             checker.updateOutputModificationTime(configuration.dump);
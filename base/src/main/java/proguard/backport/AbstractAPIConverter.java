@@ -36,6 +36,8 @@ import proguard.classfile.util.*;
 import proguard.classfile.visitor.*;
 import proguard.util.*;
 
+import java.util.*;
+
 /**
  * Abstract base class for API converter implementations.
  * <p>
@@ -63,6 +65,8 @@ implements ClassVisitor,
 {
     private static final Logger logger = LogManager.getFormatterLogger(AbstractAPIConverter.class);
 
+    private static final int[] NO_INDICES = new int[0];
+
     private final ClassPool          programClassPool;
     private final ClassPool          libraryClassPool;
     private final WarningPrinter     warningPrinter;
@@ -72,6 +76,17 @@ implements ClassVisitor,
     private       TypeReplacement[]   typeReplacements;
     private       MethodReplacement[] methodReplacements;
 
+    // Indices of the replacements, for looking them up by name. Patterns
+    // with wildcards are checked separately, in their original order.
+    private       Map<String, Integer> typeReplacementIndices;
+    private       int[]                wildcardTypeReplacementIndices;
+    private       Map<String, int[]>   methodReplacementIndices;
+    private       int[]                wildcardMethodReplacementIndices;
+
+    // Memoized replacements for class names and descriptors.
+    private final Map<String, Integer> typeReplacementIndexCache = new HashMap<>();
+    private final Map<String, String>  descriptorCache           = new HashMap<>();
+
     private final CodeAttributeEditor codeAttributeEditor = new CodeAttributeEditor(true, true);
     private       ConstantPoolEditor  constantPoolEditor;
 
@@ -79,6 +94,7 @@ implements ClassVisitor,
     private Method  referencingMethod;
     private boolean classModified;
     private boolean instructionReplaced;
+    private boolean missingReplacement;
 
 
     /**
@@ -141,12 +157,56 @@ implements ClassVisitor,
     protected void setTypeReplacements(TypeReplacement[] replacements)
     {
         this.typeReplacements = replacements;
+
+        typeReplacementIndices = new HashMap<>();
+
+        List<Integer> wildcardIndices = new ArrayList<>();
+        for (int index = 0; index < replacements.length; index++)
+        {
+            String className = replacements[index].matchingClassName;
+            if (isExactName(className, true))
+            {
+                // Only the first replacement can match.
+                typeReplacementIndices.putIfAbsent(className, index);
+            }
+            else
+            {
+                wildcardIndices.add(index);
+            }
+        }
+
+        wildcardTypeReplacementIndices = toArray(wildcardIndices);
+
+        typeReplacementIndexCache.clear();
+        descriptorCache.clear();
     }
 
 
     protected void setMethodReplacements(MethodReplacement[] replacements)
     {
         this.methodReplacements = replacements;
+
+        // The class names can't be indexed, since the replacements also
+        // apply to the subclasses of the matching classes.
+        Map<String, List<Integer>> methodIndices   = new HashMap<>();
+        List<Integer>              wildcardIndices = new ArrayList<>();
+        for (int index = 0; index < replacements.length; index++)
+        {
+            String methodName = replacements[index].matchingMethodName;
+            if (isExactName(methodName, false))
+            {
+                methodIndices.computeIfAbsent(methodName, name -> new ArrayList<>()).add(index);
+            }
+            else
+            {
+                wildcardIndices.add(index);
+            }
+        }
+
+        methodReplacementIndices = new HashMap<>();
+        methodIndices.forEach((methodName, indices) -> methodReplacementIndices.put(methodName, toArray(indices)));
+
+        wildcardMethodReplacementIndices = toArray(wildcardIndices);
     }
 
 
@@ -468,20 +528,55 @@ implements ClassVisitor,
      */
     private String replaceClassName(Clazz clazz, String className)
     {
-        for (TypeReplacement typeReplacement : typeReplacements)
+        int index = typeReplacementIndex(className);
+        if (index < 0)
+        {
+            return className;
+        }
+
+        TypeReplacement typeReplacement = typeReplacements[index];
+        if (typeReplacement instanceof MissingTypeReplacement)
+        {
+            missingReplacement = true;
+        }
+
+        return typeReplacement.replaceClassName(clazz, className);
+    }
+
+
+    /**
+     * Returns the index of the first type replacement that matches the
+     * given class name, or -1 if there isn't any.
+     */
+    private int typeReplacementIndex(String className)
+    {
+        Integer cachedIndex = typeReplacementIndexCache.get(className);
+        if (cachedIndex != null)
+        {
+            return cachedIndex;
+        }
+
+        int exactIndex = typeReplacementIndices.getOrDefault(className, Integer.MAX_VALUE);
+        int index      = exactIndex == Integer.MAX_VALUE ? -1 : exactIndex;
+
+        // Check any wildcard replacements that precede the exact match.
+        for (int wildcardIndex : wildcardTypeReplacementIndices)
         {
-            String newClassName =
-                typeReplacement.matchesClassName(className) ?
-                    typeReplacement.replaceClassName(clazz, className) :
-                    null;
+            if (wildcardIndex > exactIndex)
+            {
+                break;
+            }
 
-            if (newClassName != null)
+            if (typeReplacements[wildcardIndex].matchesClassName(className))
             {
-                return newClassName;
+                index = wildcardIndex;
+                break;
             }
         }
 
-        return className;
+        typeReplacementIndexCache.put(className, index);
+
+        return index;
     }
 
 
@@ -489,6 +584,32 @@ implements ClassVisitor,
      * Replaces all class types that appear in the given descriptor.
      */
     private String replaceDescriptor(Clazz clazz, String descriptor)
+    {
+        String newDescriptor = descriptorCache.get(descriptor);
+        if (newDescriptor == null)
+        {
+            missingReplacement = false;
+
+            newDescriptor = replaceDescriptorClassNames(clazz, descriptor);
+
+            // Don't remember descriptors with missing replacements, so
+            // the warnings are still printed for all classes that contain
+            // them.
+            if (!missingReplacement)
+            {
+                descriptorCache.put(descriptor, newDescriptor);
+            }
+        }
+
+        return newDescriptor;
+    }
+
+
+    /**
+     * Replaces all class types that appear in the given descriptor,
+     * without memoization.
+     */
+    private String replaceDescriptorClassNames(Clazz clazz, String descriptor)
     {
         DescriptorClassEnumeration descriptorClassEnumeration =
             new DescriptorClassEnumeration(descriptor);
@@ -543,8 +664,25 @@ implements ClassVisitor,
      */
     private boolean replaceMethodInvocation(int offset, Clazz clazz, Method method, AnyMethodrefConstant anyMethodrefConstant)
     {
-        for (MethodReplacement methodReplacement : methodReplacements)
+        // Only check the replacements for the invoked method name and the
+        // wildcard replacements, in their original order.
+        int[] exactIndices =
+            methodReplacementIndices.getOrDefault(anyMethodrefConstant.getName(clazz), NO_INDICES);
+        int[] wildcardIndices = wildcardMethodReplacementIndices;
+
+        int exactCounter    = 0;
+        int wildcardCounter = 0;
+        while (exactCounter    < exactIndices.length ||
+               wildcardCounter < wildcardIndices.length)
         {
+            int index =
+                wildcardCounter == wildcardIndices.length ||
+                exactCounter    <  exactIndices.length    &&
+                exactIndices[exactCounter] < wildcardIndices[wildcardCounter] ?
+                    exactIndices[exactCounter++] :
+                    wildcardIndices[wildcardCounter++];
+
+            MethodReplacement methodReplacement = methodReplacements[index];
             if (methodReplacement.matches(clazz, anyMethodrefConstant))
             {
                 methodReplacement.replaceInstruction(offset, clazz, method, anyMethodrefConstant);
@@ -557,6 +695,38 @@ implements ClassVisitor,
     }
 
 
+    /**
+     * Returns whether the given class name or method name pattern only
+     * matches itself.
+     */
+    private static boolean isExactName(String pattern, boolean className)
+    {
+        for (int index = 0; index < pattern.length(); index++)
+        {
+            char c = pattern.charAt(index);
+            if (!(Character.isJavaIdentifierPart(c) ||
+                  className && c == TypeConstants.PACKAGE_SEPARATOR))
+            {
+                return false;
+            }
+        }
+
+        return pattern.length() > 0;
+    }
+
+
+    private static int[] toArray(List<Integer> list)
+    {
+        int[] array = new int[list.size()];
+        for (int index = 0; index < array.length; index++)
+        {
+            array[index] = list.get(index);
+        }
+
+        return array;
+    }
+
+
     // Private helper classes.
 
     /**
@@ -640,6 +810,10 @@ implements ClassVisitor,
         final StringMatcher methodNameMatcher;
         final StringMatcher descMatcher;
 
+        // The referenced class for the matching class name.
+        // Might be null for wildcard class names.
+        final Clazz referencedMatchingClass;
+
 
         MethodReplacement(String className,            String methodName,            String methodDesc,
                           String replacementClassName, String replacementMethodName, String replacementMethodDesc)
@@ -657,6 +831,8 @@ implements ClassVisitor,
             descMatcher       = matchingMethodDesc.equals("**") ?
                                     new ConstantMatcher(true) :
                                     new ClassNameParser(null).parse(matchingMethodDesc);
+
+            referencedMatchingClass = findReferencedClass(matchingClassName);
         }
 
 
@@ -689,10 +865,6 @@ implements ClassVisitor,
             String methodName = anyMethodrefConstant.getName(clazz);
             String methodDesc = anyMethodrefConstant.getType(clazz);
 
-            // Get the referenced class for the matching className.
-            // Might be null for wildcard classNames.
-            Clazz referencedMatchingClass = findReferencedClass(matchingClassName);
-
             Clazz referencedClass = anyMethodrefConstant.referencedClass;
 
             if (referencedClass == null)
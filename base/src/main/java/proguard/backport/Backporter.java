@@ -33,8 +33,11 @@ import proguard.classfile.instruction.visitor.InstructionCounter;
 import proguard.classfile.util.*;
 import proguard.classfile.visitor.*;
 import proguard.pass.Pass;
+import proguard.util.*;
+import proguard.util.kotlin.EncodedKotlinMetadataSkipper;
 
 import java.io.IOException;
+import java.util.*;
 
 /**
  * This pass backports classes to the specified targetClassVersion.
@@ -61,7 +64,7 @@ public class Backporter implements Pass
 
         // Clean up any previous processing info.
         appView.programClassPool.classesAccept(new ClassCleaner());
-        appView.libraryClassPool.classesAccept(new ClassCleaner());
+        appView.libraryClassPool.classesAccept(new EncodedKotlinMetadataSkipper(new ClassCleaner()));
 
         final InstructionCounter replacedStringConcatCounter      = new InstructionCounter();
         final ClassCounter       lambdaExpressionCounter          = new ClassCounter();
@@ -74,27 +77,43 @@ public class Backporter implements Pass
         if (targetClassVersion < VersionConstants.CLASS_VERSION_1_9)
         {
             // Convert indy string concatenations to StringBuilder chains
-            CodeAttributeEditor codeAttributeEditor = new CodeAttributeEditor(true, true);
-            appView.programClassPool.classesAccept(
-                new ClassVersionFilter(VersionConstants.CLASS_VERSION_1_9,
-                new AllAttributeVisitor(
-                new AttributeNameFilter(Attribute.BOOTSTRAP_METHODS,
-                new AttributeToClassVisitor(
-                new MultiClassVisitor(
-                    new AllMethodVisitor(
-                        new AllAttributeVisitor(
-                        new PeepholeEditor(codeAttributeEditor,
-                                           // Replace the indy instructions related to String concatenation.
-                                           new StringConcatenationConverter(replacedStringConcatCounter,
-                                                         codeAttributeEditor)))
-                    ),
-
-                    // Clean up unused bootstrap methods and their dangling constants.
-                    new BootstrapMethodsAttributeShrinker(),
+            ParallelAllClassVisitor.ClassVisitorFactory stringConcatenationConverterFactory = () ->
+                {
+                    CodeAttributeEditor codeAttributeEditor = new CodeAttributeEditor(true, true);
 
-                    // Initialize new references to StringBuilder.
-                    new ClassReferenceInitializer(appView.programClassPool, appView.libraryClassPool)
-                ))))));
+                    return
+                        new ClassVersionFilter(VersionConstants.CLASS_VERSION_1_9,
+                        new AllAttributeVisitor(
+                        new AttributeNameFilter(Attribute.BOOTSTRAP_METHODS,
+                        new AttributeToClassVisitor(
+                        new MultiClassVisitor(
+                            new AllMethodVisitor(
+                                new AllAttributeVisitor(
+                                new PeepholeEditor(codeAttributeEditor,
+                                                   // Replace the indy instructions related to String concatenation.
+                                                   new StringConcatenationConverter(replacedStringConcatCounter,
+                                                                 codeAttributeEditor)))
+                            ),
+
+                            // Clean up unused bootstrap methods and their dangling constants.
+                            new BootstrapMethodsAttributeShrinker(),
+
+                            // Initialize new references to StringBuilder.
+                            new ClassReferenceInitializer(appView.programClassPool, appView.libraryClassPool)
+                        )))));
+                };
+
+            // The class reference initializer also updates the Kotlin
+            // metadata of other classes, so it can only run in parallel
+            // if the metadata isn't kept.
+            if (configuration.keepKotlinMetadata)
+            {
+                appView.programClassPool.classesAccept(stringConcatenationConverterFactory.createClassVisitor());
+            }
+            else
+            {
+                appView.programClassPool.accept(new ParallelAllClassVisitor(stringConcatenationConverterFactory));
+            }
         }
 
         if (targetClassVersion < VersionConstants.CLASS_VERSION_1_8)
@@ -162,54 +181,10 @@ public class Backporter implements Pass
         if (targetClassVersion < VersionConstants.CLASS_VERSION_1_7)
         {
             // Replace / remove method calls only available in Java 7+.
-            InstructionSequenceBuilder ____ =
-                new InstructionSequenceBuilder(appView.programClassPool,
-                                               appView.libraryClassPool);
-
-            Instruction[][][] instructions = new Instruction[][][]
-            {
-                // Replace Objects.requireNonNull(...) with Object.getClass().
-
-                // Starting in JDK 9, javac uses {@code requireNonNull} for
-                // synthetic null-checks
-                // (see <a href="http://bugs.openjdk.java.net/browse/JDK-8074306">
-                // JDK-8074306</a>).
-                {
-                    ____.invokestatic("java/util/Objects",
-                                      "requireNonNull",
-                                      "(Ljava/lang/Object;)Ljava/lang/Object;").__(),
-
-                    ____.dup()
-                        .invokevirtual(ClassConstants.NAME_JAVA_LANG_OBJECT,
-                                       ClassConstants.METHOD_NAME_OBJECT_GET_CLASS,
-                                       ClassConstants.METHOD_TYPE_OBJECT_GET_CLASS)
-                        .pop().__()
-                },
-
-                // Remove Throwable.addSuppressed(...).
-                {
-                    ____.invokevirtual("java/util/Throwable",
-                                       "addSuppressed",
-                                       "(Ljava/lang/Throwable;)V").__(),
-
-                    ____.pop()      // the suppressed exception
-                        .pop().__() // the original exception
-                }
-            };
-
-            Constant[] constants = ____.constants();
-
-            CodeAttributeEditor codeAttributeEditor = new CodeAttributeEditor();
-
-            appView.programClassPool.classesAccept(
-                new AllMethodVisitor(
-                new AllAttributeVisitor(
-                new PeepholeEditor(null, codeAttributeEditor,
-                                   new InstructionSequencesReplacer(constants,
-                                                 instructions,
-                                                 null,
-                                                 codeAttributeEditor,
-                                                 replacedMethodCallCounter)))));
+            appView.programClassPool.accept(
+                new ParallelAllClassVisitor(() ->
+                    createJava7MethodCallReplacer(appView,
+                                                  replacedMethodCallCounter)));
         }
 
         if (targetClassVersion < VersionConstants.CLASS_VERSION_1_8)
@@ -227,24 +202,31 @@ public class Backporter implements Pass
 
             if (streamSupportClasses.getCount() > 0)
             {
+                // The converters share the warning printer and the modified
+                // classes, so they have to be thread-safe. The warnings are
+                // collected, to print them out in class pool order.
+                WarningSink    warningSink = new WarningSink(logger);
                 WarningPrinter streamSupportWarningPrinter =
-                    new WarningLogger(logger, configuration.warn);
+                    new ConcurrentWarningLogger(warningSink, configuration.warn);
 
-                ClassPool modifiedClasses = new ClassPool();
+                Set<Clazz> modifiedClasses = Collections.synchronizedSet(new HashSet<>());
                 ClassVisitor modifiedClassCollector =
-                    new ClassPoolFiller(modifiedClasses);
-
-                appView.programClassPool.classesAccept(
-                    // Do not process classes of the stream support library itself.
-                    new ClassNameFilter("!java8/**",
-                    new StreamSupportConverter(appView.programClassPool,
-                                               appView.libraryClassPool,
-                                               streamSupportWarningPrinter,
-                                               modifiedClassCollector,
-                                               replacedStreamsMethodCallCounter)));
+                    new ClassCollector(modifiedClasses);
+
+                warningSink.startCollecting();
+                appView.programClassPool.accept(
+                    new ParallelAllClassVisitor(() ->
+                        // Do not process classes of the stream support library itself.
+                        new ClassNameFilter("!java8/**",
+                        new StreamSupportConverter(appView.programClassPool,
+                                                   appView.libraryClassPool,
+                                                   streamSupportWarningPrinter,
+                                                   modifiedClassCollector,
+                                                   replacedStreamsMethodCallCounter))));
+                warningSink.flush();
 
                 // Re-Initialize references in modified classes.
-                modifiedClasses.classesAccept(
+                new ClassPool(modifiedClasses).classesAccept(
                     new ClassReferenceInitializer(appView.programClassPool,
                                                   appView.libraryClassPool));
 
@@ -274,24 +256,31 @@ public class Backporter implements Pass
 
             if (threetenClasses.getCount() > 0)
             {
+                // The converters share the warning printer and the modified
+                // classes, so they have to be thread-safe. The warnings are
+                // collected, to print them out in class pool order.
+                WarningSink    warningSink = new WarningSink(logger);
                 WarningPrinter threetenWarningPrinter =
-                    new WarningLogger(logger, configuration.warn);
+                    new ConcurrentWarningLogger(warningSink, configuration.warn);
 
-                ClassPool modifiedClasses = new ClassPool();
+                Set<Clazz> modifiedClasses = Collections.synchronizedSet(new HashSet<>());
                 ClassVisitor modifiedClassCollector =
-                    new ClassPoolFiller(modifiedClasses);
-
-                appView.programClassPool.classesAccept(
-                    // Do not process classes of the threeten library itself.
-                    new ClassNameFilter("!org/threeten/bp/**",
-                                        new JSR310Converter(appView.programClassPool,
-                                                            appView.libraryClassPool,
-                                                            threetenWarningPrinter,
-                                                            modifiedClassCollector,
-                                                            replacedTimeMethodCallCounter)));
+                    new ClassCollector(modifiedClasses);
+
+                warningSink.startCollecting();
+                appView.programClassPool.accept(
+                    new ParallelAllClassVisitor(() ->
+                        // Do not process classes of the threeten library itself.
+                        new ClassNameFilter("!org/threeten/bp/**",
+                                            new JSR310Converter(appView.programClassPool,
+                                                                appView.libraryClassPool,
+                                                                threetenWarningPrinter,
+                                                                modifiedClassCollector,
+                                                                replacedTimeMethodCallCounter))));
+                warningSink.flush();
 
                 // Re-Initialize references in modified classes.
-                modifiedClasses.classesAccept(
+                new ClassPool(modifiedClasses).classesAccept(
                     new ClassReferenceInitializer(appView.programClassPool,
                                                   appView.libraryClassPool));
 
@@ -328,4 +317,65 @@ public class Backporter implements Pass
         logger.info("  Number of replaced Java 8 stream method calls: {}", replacedStreamsMethodCallCounter.getCount());
         logger.info("  Number of replaced Java 8 time method calls:   {}", replacedTimeMethodCallCounter.getCount());
     }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns a class visitor that replaces or removes the method calls
+     * that are only available in Java 7+. Each thread of a parallel class
+     * visitor needs its own instance.
+     */
+    private ClassVisitor createJava7MethodCallReplacer(AppView            appView,
+                                                       InstructionCounter replacedMethodCallCounter)
+    {
+        InstructionSequenceBuilder ____ =
+            new InstructionSequenceBuilder(appView.programClassPool,
+                                           appView.libraryClassPool);
+
+        Instruction[][][] instructions = new Instruction[][][]
+        {
+            // Replace Objects.requireNonNull(...) with Object.getClass().
+
+            // Starting in JDK 9, javac uses {@code requireNonNull} for
+            // synthetic null-checks
+            // (see <a href="http://bugs.openjdk.java.net/browse/JDK-8074306">
+            // JDK-8074306</a>).
+            {
+                ____.invokestatic("java/util/Objects",
+                                  "requireNonNull",
+                                  "(Ljava/lang/Object;)Ljava/lang/Object;").__(),
+
+                ____.dup()
+                    .invokevirtual(ClassConstants.NAME_JAVA_LANG_OBJECT,
+                                   ClassConstants.METHOD_NAME_OBJECT_GET_CLASS,
+                                   ClassConstants.METHOD_TYPE_OBJECT_GET_CLASS)
+                    .pop().__()
+            },
+
+            // Remove Throwable.addSuppressed(...).
+            {
+                ____.invokevirtual("java/util/Throwable",
+                                   "addSuppressed",
+                                   "(Ljava/lang/Throwable;)V").__(),
+
+                ____.pop()      // the suppressed exception
+                    .pop().__() // the original exception
+            }
+        };
+
+        Constant[] constants = ____.constants();
+
+        CodeAttributeEditor codeAttributeEditor = new CodeAttributeEditor();
+
+        return
+            new AllMethodVisitor(
+            new AllAttributeVisitor(
+            new PeepholeEditor(null, codeAttributeEditor,
+                               new InstructionSequencesReplacer(constants,
+                                             instructions,
+                                             null,
+                                             codeAttributeEditor,
+                                             replacedMethodCallCounter))));
+    }
 }
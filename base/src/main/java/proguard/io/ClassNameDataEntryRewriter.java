@@ -0,0 +1,467 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.io;
+
+import proguard.classfile.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.util.Iterator;
+
+/**
+ * This DataEntryRewriter writes the resource data entries that it reads to a
+ * given DataEntryWriter, updating their contents based on the renamed classes
+ * in the given ClassPool, like its super class.
+ * <p>
+ * For UTF-8 and US-ASCII contents, it works on the raw bytes, without
+ * decoding and encoding the characters. It recognizes the same words as the
+ * {@link DataEntryTokenizer} and looks them up in a table of all renamed
+ * class names, which it prepares once, in both internal and external form.
+ * All bytes other than the replaced names are copied unchanged. For any
+ * other character sets, it falls back on its super class.
+ * <p>
+ * The table is immutable, so the rewriter can copy different data entries
+ * from different threads.
+ */
+public class ClassNameDataEntryRewriter
+extends      DataEntryRewriter
+{
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final boolean[] IDENTIFIER_CHARACTERS = new boolean[128];
+
+    static
+    {
+        for (char c = 0; c < IDENTIFIER_CHARACTERS.length; c++)
+        {
+            IDENTIFIER_CHARACTERS[c] = isIdentifierCharacter(c);
+        }
+    }
+
+
+    private final boolean        ascii;
+    private final ClassNameTable classNameTable;
+
+
+    /**
+     * Creates a new ClassNameDataEntryRewriter.
+     * @param classPool       the class pool with the (possibly renamed)
+     *                        classes, keyed by their original names.
+     * @param charset         the character set of the data entries.
+     * @param dataEntryWriter the writer to which the data entries are
+     *                        written.
+     */
+    public ClassNameDataEntryRewriter(ClassPool       classPool,
+                                      Charset         charset,
+                                      DataEntryWriter dataEntryWriter)
+    {
+        super(classPool, charset, dataEntryWriter);
+
+        boolean utf8 = charset.equals(StandardCharsets.UTF_8);
+
+        this.ascii          = charset.equals(StandardCharsets.US_ASCII);
+        this.classNameTable = utf8 || ascii ?
+            new ClassNameTable(classPool, charset, ascii) :
+            null;
+    }
+
+
+    // Overridden methods for DataEntryRewriter.
+
+    @Override
+    protected void copyData(InputStream  inputStream,
+                            OutputStream outputStream)
+    throws IOException
+    {
+        if (classNameTable == null)
+        {
+            super.copyData(inputStream, outputStream);
+        }
+        else
+        {
+            new MyByteRewriter(outputStream).rewrite(inputStream);
+        }
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns whether the given character is part of words, according to
+     * the {@link DataEntryTokenizer}.
+     */
+    private static boolean isIdentifierCharacter(char c)
+    {
+        return Character.isJavaIdentifierPart(c) ||
+               c == '.'                          ||
+               c == '-';
+    }
+
+
+    /**
+     * This utility class rewrites the bytes of a single data entry. It
+     * collects the bytes of words and writes out all other bytes directly.
+     */
+    private class MyByteRewriter
+    {
+        private final OutputStream outputStream;
+
+        // The current word.
+        private byte[] word = new byte[256];
+        private int    wordLength;
+        private int    wordHash;
+
+        // The current multi-byte UTF-8 sequence.
+        private final byte[] sequence = new byte[4];
+        private int          sequenceLength;
+        private int          expectedSequenceLength;
+        private int          codePoint;
+
+
+        public MyByteRewriter(OutputStream outputStream)
+        {
+            this.outputStream = new BufferedOutputStream(outputStream, BUFFER_SIZE);
+        }
+
+
+        public void rewrite(InputStream inputStream) throws IOException
+        {
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            int count;
+            while ((count = inputStream.read(buffer)) >= 0)
+            {
+                for (int index = 0; index < count; index++)
+                {
+                    int b = buffer[index] & 0xff;
+
+                    // Handle plain ASCII characters right away.
+                    if (b < 0x80 && expectedSequenceLength == 0)
+                    {
+                        if (IDENTIFIER_CHARACTERS[b])
+                        {
+                            appendToWord(b);
+                        }
+                        else
+                        {
+                            flushWord();
+                            outputStream.write(b);
+                        }
+                    }
+                    else
+                    {
+                        rewriteByte(b);
+                    }
+                }
+            }
+
+            // Flush any incomplete sequence and any trailing word.
+            flushSequence();
+            flushWord();
+
+            outputStream.flush();
+        }
+
+
+        // Small utility methods.
+
+        /**
+         * Handles the given byte of a non-ASCII character, or of a
+         * malformed sequence, which the decoder would consider to be a
+         * non-word character.
+         */
+        private void rewriteByte(int b) throws IOException
+        {
+            if (expectedSequenceLength > 0)
+            {
+                if ((b & 0xc0) == 0x80)
+                {
+                    // Continue the sequence.
+                    sequence[sequenceLength++] = (byte)b;
+                    codePoint = (codePoint << 6) | (b & 0x3f);
+
+                    if (sequenceLength == expectedSequenceLength)
+                    {
+                        endSequence();
+                    }
+                    return;
+                }
+
+                // The sequence is malformed. Write it out and handle the
+                // byte by itself.
+                flushSequence();
+
+                if (b < 0x80)
+                {
+                    if (IDENTIFIER_CHARACTERS[b])
+                    {
+                        appendToWord(b);
+                    }
+                    else
+                    {
+                        outputStream.write(b);
+                    }
+                    return;
+                }
+            }
+
+            int length =
+                ascii               ? 0 :
+                (b & 0xe0) == 0xc0 ? 2 :
+                (b & 0xf0) == 0xe0 ? 3 :
+                (b & 0xf8) == 0xf0 ? 4 :
+                                      0;
+
+            if (length == 0)
+            {
+                // Write out the invalid byte.
+                flushWord();
+                outputStream.write(b);
+            }
+            else
+            {
+                // Start a sequence.
+                sequence[0]            = (byte)b;
+                sequenceLength         = 1;
+                expectedSequenceLength = length;
+                codePoint              = b & (0x7f >> length);
+            }
+        }
+
+
+        /**
+         * Handles the completed multi-byte sequence.
+         */
+        private void endSequence() throws IOException
+        {
+            int minimumCodePoint =
+                sequenceLength == 2 ? 0x80  :
+                sequenceLength == 3 ? 0x800 :
+                                      0x10000;
+
+            // The tokenizer considers each character of a surrogate pair
+            // separately, so supplementary code points are never part of
+            // words.
+            boolean identifierCharacter =
+                codePoint >= minimumCodePoint              &&
+                codePoint <  0x10000                       &&
+                !Character.isSurrogate((char)codePoint)    &&
+                isIdentifierCharacter((char)codePoint);
+
+            if (identifierCharacter)
+            {
+                for (int index = 0; index < sequenceLength; index++)
+                {
+                    appendToWord(sequence[index] & 0xff);
+                }
+
+                sequenceLength         = 0;
+                expectedSequenceLength = 0;
+            }
+            else
+            {
+                flushSequence();
+            }
+        }
+
+
+        /**
+         * Writes out the bytes of the current sequence, if any, as
+         * non-word bytes.
+         */
+        private void flushSequence() throws IOException
+        {
+            if (sequenceLength > 0)
+            {
+                flushWord();
+                outputStream.write(sequence, 0, sequenceLength);
+            }
+
+            sequenceLength         = 0;
+            expectedSequenceLength = 0;
+        }
+
+
+        private void appendToWord(int b)
+        {
+            if (wordLength == word.length)
+            {
+                byte[] newWord = new byte[wordLength * 2];
+                System.arraycopy(word, 0, newWord, 0, wordLength);
+                word = newWord;
+            }
+
+            word[wordLength++] = (byte)b;
+            wordHash = 31 * wordHash + b;
+        }
+
+
+        /**
+         * Writes out the current word, if any, replacing it if it is the
+         * original name of a renamed class.
+         */
+        private void flushWord() throws IOException
+        {
+            if (wordLength > 0)
+            {
+                byte[] newName = classNameTable.newName(word, wordLength, wordHash);
+                if (newName != null)
+                {
+                    outputStream.write(newName);
+                }
+                else
+                {
+                    outputStream.write(word, 0, wordLength);
+                }
+
+                wordLength = 0;
+                wordHash   = 0;
+            }
+        }
+    }
+
+
+    /**
+     * This utility class maps the encoded original names of renamed classes
+     * to their encoded new names, with an open addressing hash table.
+     */
+    private static class ClassNameTable
+    {
+        private final int      mask;
+        private final byte[][] names;
+        private final byte[][] newNames;
+
+
+        public ClassNameTable(ClassPool classPool,
+                              Charset   charset,
+                              boolean   ascii)
+        {
+            int capacity = Integer.highestOneBit(Math.max(classPool.size(), 1) * 4);
+
+            mask     = capacity - 1;
+            names    = new byte[capacity][];
+            newNames = new byte[capacity][];
+
+            Iterator<String> iterator = classPool.classNames();
+            while (iterator.hasNext())
+            {
+                String name    = iterator.next();
+                String newName = classPool.getClass(name).getName();
+
+                // The rewriter only looks up words with dots as class names
+                // with slashes, so names with dots never match.
+                if (!newName.equals(name) &&
+                    name.indexOf('.') < 0)
+                {
+                    // Words with dots get names with dots.
+                    boolean external = name.indexOf('/') >= 0;
+
+                    String word = external ? name.replace('/', '.') : name;
+                    String replacement = external ? newName.replace('/', '.') : newName;
+
+                    if (!ascii || isAscii(word))
+                    {
+                        add(word.getBytes(charset), replacement.getBytes(charset));
+                    }
+                }
+            }
+        }
+
+
+        /**
+         * Returns the encoded new name of the given encoded word, or null
+         * if the word isn't the original name of a renamed class.
+         */
+        public byte[] newName(byte[] word, int length, int hash)
+        {
+            for (int slot = slot(hash); names[slot] != null; slot = (slot + 1) & mask)
+            {
+                byte[] name = names[slot];
+                if (equals(name, word, length))
+                {
+                    return newNames[slot];
+                }
+            }
+
+            return null;
+        }
+
+
+        // Small utility methods.
+
+        private void add(byte[] name, byte[] newName)
+        {
+            int hash = 0;
+            for (byte b : name)
+            {
+                hash = 31 * hash + (b & 0xff);
+            }
+
+            int slot = slot(hash);
+            while (names[slot] != null)
+            {
+                slot = (slot + 1) & mask;
+            }
+
+            names[slot]    = name;
+            newNames[slot] = newName;
+        }
+
+
+        private int slot(int hash)
+        {
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+
+        private static boolean equals(byte[] name, byte[] word, int length)
+        {
+            if (name.length != length)
+            {
+                return false;
+            }
+
+            for (int index = 0; index < length; index++)
+            {
+                if (name[index] != word[index])
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+
+        private static boolean isAscii(String string)
+        {
+            for (int index = 0; index < string.length(); index++)
+            {
+                if (string.charAt(index) >= 0x80)
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+    }
+}
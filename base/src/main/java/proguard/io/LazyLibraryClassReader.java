@@ -0,0 +1,112 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.io;
+
+import proguard.classfile.*;
+import proguard.classfile.io.LibraryClassReader;
+import proguard.classfile.util.*;
+import proguard.classfile.visitor.ClassVisitor;
+import proguard.util.kotlin.*;
+
+import java.io.*;
+
+/**
+ * This DataEntryReader applies a given ClassVisitor to the library class
+ * definitions that it reads, like a {@link ClassReader} for library classes.
+ * Unlike the ClassReader, it keeps any Kotlin metadata in its encoded form,
+ * so it is only decoded if it is actually accessed.
+ *
+ * @see LazyKotlinMetadata
+ */
+public class LazyLibraryClassReader
+implements   DataEntryReader
+{
+    private final boolean                   skipNonPublicLibraryClasses;
+    private final boolean                   skipNonPublicLibraryClassMembers;
+    private final LazyKotlinMetadataDecoder kotlinMetadataDecoder;
+    private final WarningPrinter            warningPrinter;
+    private final ClassVisitor              classVisitor;
+
+
+    /**
+     * Creates a new LazyLibraryClassReader for reading the specified
+     * library class files.
+     */
+    public LazyLibraryClassReader(boolean                   skipNonPublicLibraryClasses,
+                                  boolean                   skipNonPublicLibraryClassMembers,
+                                  LazyKotlinMetadataDecoder kotlinMetadataDecoder,
+                                  WarningPrinter            warningPrinter,
+                                  ClassVisitor              classVisitor)
+    {
+        this.skipNonPublicLibraryClasses      = skipNonPublicLibraryClasses;
+        this.skipNonPublicLibraryClassMembers = skipNonPublicLibraryClassMembers;
+        this.kotlinMetadataDecoder            = kotlinMetadataDecoder;
+        this.warningPrinter                   = warningPrinter;
+        this.classVisitor                     = classVisitor;
+    }
+
+
+    // Implementations for DataEntryReader.
+
+    @Override
+    public void read(DataEntry dataEntry) throws IOException
+    {
+        try
+        {
+            // Get the input stream.
+            InputStream inputStream = dataEntry.getInputStream();
+
+            // Wrap it into a data input stream.
+            DataInputStream dataInputStream = new DataInputStream(inputStream);
+
+            // Create a library class and load its encoded Kotlin metadata,
+            // if any.
+            LibraryClass libraryClass = new LibraryClass();
+            libraryClass.accept(
+                new LibraryClassReader(dataInputStream,
+                                       skipNonPublicLibraryClasses,
+                                       skipNonPublicLibraryClassMembers,
+                                       kotlinMetadataDecoder.lazyKotlinMetadataSetter(libraryClass)));
+
+            // Apply the visitor, if we have a real class.
+            String className = libraryClass.getName();
+            if (className != null)
+            {
+                String dataEntryName = dataEntry.getName();
+                if (!dataEntryName.equals("module-info.class") &&
+                    !dataEntryName.replace(File.pathSeparatorChar, TypeConstants.PACKAGE_SEPARATOR).equals(className + ClassConstants.CLASS_FILE_EXTENSION) &&
+                    warningPrinter != null)
+                {
+                    warningPrinter.print(className,
+                                         "Warning: class [" + dataEntry.getName() + "] unexpectedly contains class [" + ClassUtil.externalClassName(className) + "]");
+                }
+
+                libraryClass.accept(classVisitor);
+            }
+
+            dataEntry.closeInputStream();
+        }
+        catch (Exception ex)
+        {
+            throw (IOException)new IOException("Can't process class ["+dataEntry.getName()+"] ("+ex.getMessage()+")").initCause(ex);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.io;
+
+import proguard.classfile.*;
+import proguard.classfile.visitor.ClassVisitor;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class caches the library classes that have been read from class path
+ * entries, so subsequent runs in the same process, for instance in a build
+ * daemon, don't have to read and parse the same libraries again.
+ * <p>
+ * The cached classes are keyed on the files of the class path entries, with
+ * their sizes and modification times, their filters, and the options that
+ * affect the parsing. The cache only keeps pristine copies of the classes,
+ * and it hands out fresh copies, since processing modifies the classes.
+ * When the cache exceeds its maximum number of classes, it evicts the least
+ * recently used class path entries.
+ * <p>
+ * The cache is thread-safe, so concurrent runs can share it.
+ *
+ * @see proguard.InputReader
+ */
+public class LibraryClassCache
+{
+    private final int maximumClassCount;
+
+    private final LinkedHashMap<String, LibraryClass[]> cachedClasses = new LinkedHashMap<>(16, 0.75f, true);
+    private int                                         cachedClassCount;
+
+
+    /**
+     * Creates a new LibraryClassCache.
+     *
+     * @param maximumClassCount the maximum total number of classes that the
+     *                          cache keeps.
+     */
+    public LibraryClassCache(int maximumClassCount)
+    {
+        this.maximumClassCount = maximumClassCount;
+    }
+
+
+    /**
+     * Returns the key under which the classes read from the given file are
+     * cached, or null if the file can't be cached, for instance because it
+     * is a directory.
+     *
+     * @param file        the file of the class path entry.
+     * @param description a description of the class path entry, including
+     *                    its filters, and of the options that affect the
+     *                    parsing of the classes.
+     */
+    public static String key(File file, String description)
+    throws IOException
+    {
+        if (!file.isFile())
+        {
+            return null;
+        }
+
+        return file.getCanonicalPath() + '|' +
+               file.length()           + '|' +
+               file.lastModified()     + '|' +
+               description;
+    }
+
+
+    /**
+     * Applies the given visitor to fresh copies of the cached classes with
+     * the given key, if any.
+     *
+     * @return whether the cache contained classes for the given key.
+     */
+    public boolean classesAccept(String key, ClassVisitor classVisitor)
+    {
+        LibraryClass[] libraryClasses;
+        synchronized (this)
+        {
+            libraryClasses = cachedClasses.get(key);
+        }
+
+        if (libraryClasses == null)
+        {
+            return false;
+        }
+
+        for (LibraryClass libraryClass : libraryClasses)
+        {
+            copy(libraryClass).accept(classVisitor);
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Caches copies of the given classes under the given key, evicting the
+     * least recently used classes if necessary.
+     */
+    public void put(String key, List<LibraryClass> libraryClasses)
+    {
+        LibraryClass[] copies = new LibraryClass[libraryClasses.size()];
+        for (int index = 0; index < copies.length; index++)
+        {
+            copies[index] = copy(libraryClasses.get(index));
+        }
+
+        synchronized (this)
+        {
+            LibraryClass[] previousClasses = cachedClasses.put(key, copies);
+            if (previousClasses != null)
+            {
+                cachedClassCount -= previousClasses.length;
+            }
+
+            cachedClassCount += copies.length;
+
+            // Evict the least recently used entries, if necessary.
+            Iterator<LibraryClass[]> iterator = cachedClasses.values().iterator();
+            while (cachedClassCount > maximumClassCount &&
+                   iterator.hasNext())
+            {
+                cachedClassCount -= iterator.next().length;
+                iterator.remove();
+            }
+        }
+    }
+
+
+    /**
+     * Returns the total number of cached classes.
+     */
+    public synchronized int size()
+    {
+        return cachedClassCount;
+    }
+
+
+    /**
+     * Clears the cache.
+     */
+    public synchronized void clear()
+    {
+        cachedClasses.clear();
+        cachedClassCount = 0;
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns an unlinked copy of the given library class and its members.
+     * Kotlin metadata isn't copied.
+     */
+    private static LibraryClass copy(LibraryClass libraryClass)
+    {
+        LibraryClass copy = new LibraryClass();
+
+        copy.u2accessFlags  = libraryClass.u2accessFlags;
+        copy.thisClassName  = libraryClass.thisClassName;
+        copy.superClassName = libraryClass.superClassName;
+        copy.interfaceNames = libraryClass.interfaceNames.clone();
+
+        LibraryField[] fields = new LibraryField[libraryClass.fields.length];
+        for (int index = 0; index < fields.length; index++)
+        {
+            LibraryField field = libraryClass.fields[index];
+
+            fields[index] = new LibraryField(field.u2accessFlags,
+                                             field.name,
+                                             field.descriptor);
+        }
+
+        LibraryMethod[] methods = new LibraryMethod[libraryClass.methods.length];
+        for (int index = 0; index < methods.length; index++)
+        {
+            LibraryMethod method = libraryClass.methods[index];
+
+            methods[index] = new LibraryMethod(method.u2accessFlags,
+                                               method.name,
+                                               method.descriptor);
+        }
+
+        copy.fields  = fields;
+        copy.methods = methods;
+
+        return copy;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.io;
+
+import java.util.*;
+
+/**
+ * This class indexes library classes by their names, with the locations of
+ * their class files and the names of the classes that they refer to. It
+ * allows to read only the library classes that the program classes need,
+ * instead of all library classes.
+ * <p>
+ * The needed classes are the same ones that the {@link proguard.Initializer}
+ * retains in its reduced library class pool: the hierarchies of the classes
+ * that are referenced by the program classes, and the hierarchies of the
+ * classes that are referenced by those classes in turn.
+ *
+ * @see LibraryClassIndexer
+ */
+public class LibraryClassIndex
+{
+    private static final String[] EMPTY_NAMES = new String[0];
+
+    private final Map<String, IndexedClass> indexedClasses = new HashMap<>();
+
+
+    /**
+     * Adds the given class to the index, unless a class with the same name
+     * has already been added before.
+     *
+     * @param className            the internal name of the class.
+     * @param classPathIndex       the index of the class path entry that
+     *                             contains the class.
+     * @param dataEntryName        the name of the data entry of the class
+     *                             file.
+     * @param superClassNames      the names of the superclass and the
+     *                             interfaces of the class.
+     * @param referencedClassNames the names of other classes that the class
+     *                             refers to.
+     */
+    public void addClass(String   className,
+                         int      classPathIndex,
+                         String   dataEntryName,
+                         String[] superClassNames,
+                         String[] referencedClassNames)
+    {
+        indexedClasses.putIfAbsent(className,
+                                   new IndexedClass(classPathIndex,
+                                                    dataEntryName,
+                                                    superClassNames,
+                                                    referencedClassNames));
+    }
+
+
+    /**
+     * Returns the number of indexed classes.
+     */
+    public int size()
+    {
+        return indexedClasses.size();
+    }
+
+
+    /**
+     * Returns the names of the indexed classes that are needed by classes
+     * that refer to the given class names. Names that don't correspond to
+     * indexed classes are ignored, so the given names may contain any
+     * candidates.
+     */
+    public Set<String> neededClassNames(Collection<String> referencedClassNames)
+    {
+        // Collect the hierarchies of the directly referenced classes.
+        Set<String> directClassNames = new HashSet<>();
+        for (String className : referencedClassNames)
+        {
+            addClassHierarchy(className, directClassNames);
+        }
+
+        // Add the hierarchies of the classes that they refer to.
+        Set<String> neededClassNames = new HashSet<>(directClassNames);
+        for (String className : directClassNames)
+        {
+            for (String referencedClassName : indexedClasses.get(className).referencedClassNames)
+            {
+                addClassHierarchy(referencedClassName, neededClassNames);
+            }
+        }
+
+        return neededClassNames;
+    }
+
+
+    /**
+     * Returns the names of the data entries of the given classes that are
+     * located in the class path entry with the given index.
+     */
+    public Set<String> dataEntryNames(int classPathIndex, Set<String> classNames)
+    {
+        Set<String> dataEntryNames = new HashSet<>();
+        for (String className : classNames)
+        {
+            IndexedClass indexedClass = indexedClasses.get(className);
+            if (indexedClass != null &&
+                indexedClass.classPathIndex == classPathIndex)
+            {
+                dataEntryNames.add(indexedClass.dataEntryName);
+            }
+        }
+
+        return dataEntryNames;
+    }
+
+
+    /**
+     * Adds the names of all classes that may be referenced in the given
+     * string to the given collection: the string itself as a class name,
+     * and the class types that it may contain as a descriptor or signature.
+     * The result is a superset of the actual class names.
+     */
+    public static void addClassNameCandidates(String string, Collection<String> classNames)
+    {
+        classNames.add(string.replace('.', '/'));
+
+        int length = string.length();
+        int end    = -1;
+        for (int index = 0; index < length; index++)
+        {
+            if (string.charAt(index) == 'L')
+            {
+                // Find the end of the potential class type.
+                if (end <= index)
+                {
+                    end = index + 1;
+                    while (end < length &&
+                           string.charAt(end) != ';' &&
+                           string.charAt(end) != '<')
+                    {
+                        end++;
+                    }
+                }
+
+                if (end < length)
+                {
+                    classNames.add(string.substring(index + 1, end));
+                }
+            }
+        }
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Adds the given class and all of its indexed superclasses and
+     * interfaces to the given set.
+     */
+    private void addClassHierarchy(String className, Set<String> classNames)
+    {
+        Deque<String> pendingClassNames = new ArrayDeque<>();
+        pendingClassNames.push(className);
+
+        while (!pendingClassNames.isEmpty())
+        {
+            String       pendingClassName = pendingClassNames.pop();
+            IndexedClass indexedClass     = indexedClasses.get(pendingClassName);
+            if (indexedClass != null &&
+                classNames.add(pendingClassName))
+            {
+                for (String superClassName : indexedClass.superClassNames)
+                {
+                    pendingClassNames.push(superClassName);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * This class contains the indexed information of a class.
+     */
+    private static class IndexedClass
+    {
+        private final int      classPathIndex;
+        private final String   dataEntryName;
+        private final String[] superClassNames;
+        private final String[] referencedClassNames;
+
+
+        private IndexedClass(int      classPathIndex,
+                             String   dataEntryName,
+                             String[] superClassNames,
+                             String[] referencedClassNames)
+        {
+            this.classPathIndex       = classPathIndex;
+            this.dataEntryName        = dataEntryName;
+            this.superClassNames      = superClassNames      != null ? superClassNames      : EMPTY_NAMES;
+            this.referencedClassNames = referencedClassNames != null ? referencedClassNames : EMPTY_NAMES;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.io;
+
+import proguard.classfile.constant.Constant;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This DataEntryReader adds the class files that it reads to a given
+ * {@link LibraryClassIndex}. It only scans the constant pool, the
+ * superclass, the interfaces, and the member descriptors of the class
+ * files, skipping all attributes, so it is a lot cheaper than fully
+ * parsing the classes.
+ *
+ * @see ClassReader
+ */
+public class LibraryClassIndexer implements DataEntryReader
+{
+    private final LibraryClassIndex libraryClassIndex;
+    private final int               classPathIndex;
+
+
+    /**
+     * Creates a new LibraryClassIndexer.
+     *
+     * @param libraryClassIndex the index to which the classes are added.
+     * @param classPathIndex    the index of the class path entry from which
+     *                          the class files are read.
+     */
+    public LibraryClassIndexer(LibraryClassIndex libraryClassIndex,
+                               int               classPathIndex)
+    {
+        this.libraryClassIndex = libraryClassIndex;
+        this.classPathIndex    = classPathIndex;
+    }
+
+
+    // Implementations for DataEntryReader.
+
+    @Override
+    public void read(DataEntry dataEntry) throws IOException
+    {
+        try
+        {
+            DataInputStream dataInput =
+                new DataInputStream(
+                new BufferedInputStream(dataEntry.getInputStream()));
+
+            indexClass(dataEntry.getName(), dataInput);
+
+            dataEntry.closeInputStream();
+        }
+        catch (Exception ex)
+        {
+            throw new IOException("Can't index class ["+dataEntry.getName()+"] ("+ex.getMessage()+")", ex);
+        }
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Adds the class file from the given input to the index.
+     */
+    private void indexClass(String dataEntryName, DataInputStream dataInput)
+    throws IOException
+    {
+        // Skip the magic number and the version.
+        skip(dataInput, 8);
+
+        // Read the constant pool, only remembering the strings and the
+        // class constants.
+        int      constantPoolCount = dataInput.readUnsignedShort();
+        String[] utf8Strings       = new String[constantPoolCount];
+        int[]    classNameIndices  = new int[constantPoolCount];
+
+        for (int index = 1; index < constantPoolCount; index++)
+        {
+            int tag = dataInput.readUnsignedByte();
+            switch (tag)
+            {
+                case Constant.UTF8:                utf8Strings[index] = dataInput.readUTF(); break;
+                case Constant.CLASS:               classNameIndices[index] = dataInput.readUnsignedShort(); break;
+                case Constant.STRING:
+                case Constant.METHOD_TYPE:
+                case Constant.MODULE:
+                case Constant.PACKAGE:             skip(dataInput, 2); break;
+                case Constant.METHOD_HANDLE:       skip(dataInput, 3); break;
+                case Constant.INTEGER:
+                case Constant.FLOAT:
+                case Constant.FIELDREF:
+                case Constant.METHODREF:
+                case Constant.INTERFACE_METHODREF:
+                case Constant.NAME_AND_TYPE:
+                case Constant.DYNAMIC:
+                case Constant.INVOKE_DYNAMIC:      skip(dataInput, 4); break;
+                case Constant.LONG:
+                case Constant.DOUBLE:              skip(dataInput, 8); index++; break;
+                default: throw new IOException("Unknown constant type ["+tag+"] in constant pool");
+            }
+        }
+
+        // Read the class itself.
+        skip(dataInput, 2);
+        String className = classConstantName(dataInput.readUnsignedShort(), utf8Strings, classNameIndices);
+
+        Set<String> superClassNames = new LinkedHashSet<>();
+
+        int superClassIndex = dataInput.readUnsignedShort();
+        if (superClassIndex != 0)
+        {
+            superClassNames.add(classConstantName(superClassIndex, utf8Strings, classNameIndices));
+        }
+
+        int interfacesCount = dataInput.readUnsignedShort();
+        for (int index = 0; index < interfacesCount; index++)
+        {
+            superClassNames.add(classConstantName(dataInput.readUnsignedShort(), utf8Strings, classNameIndices));
+        }
+
+        // Collect the classes of all class constants.
+        Set<String> referencedClassNames = new HashSet<>();
+        for (int index = 1; index < constantPoolCount; index++)
+        {
+            if (classNameIndices[index] == 0)
+            {
+                continue;
+            }
+
+            String name = utf8Strings[classNameIndices[index]];
+            if (name.charAt(0) == '[')
+            {
+                addDescriptorClassNames(name, referencedClassNames);
+            }
+            else
+            {
+                referencedClassNames.add(name.intern());
+            }
+        }
+
+        // Collect the classes in the descriptors of the fields and methods.
+        for (int memberType = 0; memberType < 2; memberType++)
+        {
+            int membersCount = dataInput.readUnsignedShort();
+            for (int index = 0; index < membersCount; index++)
+            {
+                skip(dataInput, 4);
+                addDescriptorClassNames(utf8Strings[dataInput.readUnsignedShort()], referencedClassNames);
+
+                int attributesCount = dataInput.readUnsignedShort();
+                for (int attributeIndex = 0; attributeIndex < attributesCount; attributeIndex++)
+                {
+                    skip(dataInput, 2);
+                    skip(dataInput, dataInput.readInt());
+                }
+            }
+        }
+
+        referencedClassNames.remove(className);
+        referencedClassNames.removeAll(superClassNames);
+
+        libraryClassIndex.addClass(className,
+                                   classPathIndex,
+                                   dataEntryName,
+                                   superClassNames.toArray(new String[0]),
+                                   referencedClassNames.toArray(new String[0]));
+    }
+
+
+    /**
+     * Returns the interned class name of the class constant at the given
+     * constant pool index.
+     */
+    private String classConstantName(int      constantIndex,
+                                     String[] utf8Strings,
+                                     int[]    classNameIndices)
+    throws IOException
+    {
+        int nameIndex = classNameIndices[constantIndex];
+        if (nameIndex == 0)
+        {
+            throw new IOException("Expected class constant at index ["+constantIndex+"]");
+        }
+
+        return utf8Strings[nameIndex].intern();
+    }
+
+
+    /**
+     * Adds the interned names of the classes in the given descriptor to
+     * the given set.
+     */
+    private void addDescriptorClassNames(String descriptor, Set<String> classNames)
+    {
+        int length = descriptor.length();
+        int index  = 0;
+        while (index < length)
+        {
+            if (descriptor.charAt(index++) == 'L')
+            {
+                int end = descriptor.indexOf(';', index);
+                if (end < 0)
+                {
+                    break;
+                }
+
+                classNames.add(descriptor.substring(index, end).intern());
+                index = end + 1;
+            }
+        }
+    }
+
+
+    /**
+     * Skips the given number of bytes in the given input.
+     */
+    private void skip(DataInputStream dataInput, int count) throws IOException
+    {
+        while (count > 0)
+        {
+            int skipped = dataInput.skipBytes(count);
+            if (skipped <= 0)
+            {
+                throw new EOFException();
+            }
+
+            count -= skipped;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.io;
+
+import proguard.classfile.*;
+import proguard.classfile.attribute.Attribute;
+import proguard.classfile.constant.*;
+import proguard.classfile.io.ProgramClassWriter;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class stores the class files of fully processed program classes in a
+ * temporary file, so the program classes themselves don't have to stay in
+ * memory while the output is written.
+ * <p>
+ * After storing the classes, it clears them, except for their names, access
+ * flags, and processing flags, so their code, members, attributes, constant
+ * pools, and processing info can be garbage collected. The stored class
+ * files can then be copied to the output one at a time.
+ *
+ * @see StoredClassDataEntryWriter
+ */
+public class ProgramClassStore
+implements   Closeable
+{
+    private final File                  file;
+    private final Map<String, Long>     classOffsets = new HashMap<>();
+    private final ByteArrayOutputStream classBuffer  = new ByteArrayOutputStream();
+    private final DataOutputStream      dataOutputStream;
+    private       long                  byteCount;
+    private       RandomAccessFile      randomAccessFile;
+
+
+    /**
+     * Creates a new ProgramClassStore, backed by a new temporary file.
+     */
+    public ProgramClassStore() throws IOException
+    {
+        this.file = File.createTempFile("proguard", ".classes");
+
+        file.deleteOnExit();
+
+        this.dataOutputStream =
+            new DataOutputStream(
+            new BufferedOutputStream(
+            new FileOutputStream(file)));
+    }
+
+
+    /**
+     * Stores all classes of the given class pool, under their names in the
+     * class pool, and then clears them, except for their names, access
+     * flags, feature names, and processing flags.
+     */
+    public void storeClasses(ClassPool programClassPool)
+    throws IOException
+    {
+        Iterator<String> classNames = programClassPool.classNames();
+        while (classNames.hasNext())
+        {
+            String       className    = classNames.next();
+            ProgramClass programClass = (ProgramClass)programClassPool.getClass(className);
+
+            storeClass(className, programClass);
+
+            // Clear the class in place, so any remaining references to it
+            // don't keep its contents or any other classes in memory.
+            clear(programClass);
+        }
+    }
+
+
+    /**
+     * Stores the class file of the given program class under the given key.
+     */
+    public void storeClass(String key, ProgramClass programClass)
+    throws IOException
+    {
+        classBuffer.reset();
+        programClass.accept(new ProgramClassWriter(new DataOutputStream(classBuffer)));
+
+        classOffsets.put(key, byteCount);
+
+        dataOutputStream.writeInt(classBuffer.size());
+        classBuffer.writeTo(dataOutputStream);
+
+        byteCount += 4 + classBuffer.size();
+    }
+
+
+    /**
+     * Writes the class file that is stored under the given key to the given
+     * output stream.
+     *
+     * @return whether the store contained a class file for the given key.
+     */
+    public boolean writeClass(String key, OutputStream outputStream)
+    throws IOException
+    {
+        Long offset = classOffsets.get(key);
+        if (offset == null)
+        {
+            return false;
+        }
+
+        // Make sure all stored classes can be read.
+        if (randomAccessFile == null)
+        {
+            dataOutputStream.flush();
+
+            randomAccessFile = new RandomAccessFile(file, "r");
+        }
+
+        randomAccessFile.seek(offset);
+
+        byte[] bytes = new byte[randomAccessFile.readInt()];
+        randomAccessFile.readFully(bytes);
+
+        outputStream.write(bytes);
+
+        return true;
+    }
+
+
+    /**
+     * Returns the number of stored classes.
+     */
+    public int size()
+    {
+        return classOffsets.size();
+    }
+
+
+    /**
+     * Returns the total number of bytes in the store.
+     */
+    public long byteCount()
+    {
+        return byteCount;
+    }
+
+
+    // Implementation for Closeable.
+
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            dataOutputStream.close();
+
+            if (randomAccessFile != null)
+            {
+                randomAccessFile.close();
+            }
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Clears the given program class, except for its name, its access
+     * flags, its feature name, and its processing flags.
+     */
+    private static void clear(ProgramClass programClass)
+    {
+        Constant[] constantPool = new Constant[]
+        {
+            null,
+            new Utf8Constant(programClass.getName()),
+            new ClassConstant(1, null),
+        };
+
+        programClass.u2constantPoolCount = constantPool.length;
+        programClass.constantPool        = constantPool;
+        programClass.u2thisClass         = 2;
+        programClass.u2superClass        = 0;
+        programClass.u2interfacesCount   = 0;
+        programClass.u2interfaces        = new int[0];
+        programClass.u2fieldsCount       = 0;
+        programClass.fields              = new ProgramField[0];
+        programClass.u2methodsCount      = 0;
+        programClass.methods             = new ProgramMethod[0];
+        programClass.u2attributesCount   = 0;
+        programClass.attributes          = new Attribute[0];
+        programClass.kotlinMetadata      = null;
+        programClass.subClasses          = null;
+        programClass.subClassCount       = 0;
+
+        programClass.setProcessingInfo(null);
+    }
+}
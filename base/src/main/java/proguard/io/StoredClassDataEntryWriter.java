@@ -0,0 +1,138 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.io;
+
+import proguard.classfile.*;
+
+import java.io.*;
+
+/**
+ * This DataEntryWriter finds received class entries in the given class pool
+ * and copies their class files from the given program class store to the
+ * given data entry writer, with the names of the classes in the class pool.
+ * It passes other entries on to the writer. It is the counterpart of the
+ * ClassDataEntryWriter for classes that have been stored.
+ *
+ * @see ClassDataEntryWriter
+ * @see ProgramClassStore
+ */
+public class StoredClassDataEntryWriter
+implements   DataEntryWriter
+{
+    private final ClassPool         classPool;
+    private final ProgramClassStore programClassStore;
+    private final DataEntryWriter   dataEntryWriter;
+
+
+    /**
+     * Creates a new StoredClassDataEntryWriter.
+     *
+     * @param classPool         the class pool in which classes are found.
+     * @param programClassStore the store that contains the class files.
+     * @param dataEntryWriter   the writer to which the class files are
+     *                          written.
+     */
+    public StoredClassDataEntryWriter(ClassPool         classPool,
+                                      ProgramClassStore programClassStore,
+                                      DataEntryWriter   dataEntryWriter)
+    {
+        this.classPool         = classPool;
+        this.programClassStore = programClassStore;
+        this.dataEntryWriter   = dataEntryWriter;
+    }
+
+
+    // Implementations for DataEntryWriter.
+
+    @Override
+    public boolean createDirectory(DataEntry dataEntry) throws IOException
+    {
+        return dataEntryWriter.createDirectory(dataEntry);
+    }
+
+
+    @Override
+    public boolean sameOutputStream(DataEntry dataEntry1,
+                                    DataEntry dataEntry2)
+    throws IOException
+    {
+        return dataEntryWriter.sameOutputStream(dataEntry1, dataEntry2);
+    }
+
+
+    @Override
+    public OutputStream createOutputStream(DataEntry dataEntry) throws IOException
+    {
+        String inputName = dataEntry.getName();
+
+        // Is it a class entry?
+        if (!inputName.endsWith(ClassConstants.CLASS_FILE_EXTENSION))
+        {
+            return dataEntryWriter.createOutputStream(dataEntry);
+        }
+
+        // Does it still have a corresponding class?
+        String className = inputName.substring(0, inputName.length() - ClassConstants.CLASS_FILE_EXTENSION.length());
+        Clazz  clazz     = classPool.getClass(className);
+        if (clazz != null)
+        {
+            // Rename the data entry if necessary.
+            String newClassName = clazz.getName();
+            if (!className.equals(newClassName))
+            {
+                dataEntry = new RenamedDataEntry(dataEntry, newClassName + ClassConstants.CLASS_FILE_EXTENSION);
+            }
+
+            // Get the output stream for this input entry.
+            OutputStream outputStream = dataEntryWriter.createOutputStream(dataEntry);
+            if (outputStream != null)
+            {
+                try
+                {
+                    // Copy the stored class file.
+                    programClassStore.writeClass(className, outputStream);
+                }
+                finally
+                {
+                    outputStream.close();
+                }
+            }
+        }
+
+        // Return a dummy, non-null output stream, like the class writer.
+        return new FilterOutputStream(null);
+    }
+
+
+    @Override
+    public void close() throws IOException
+    {
+        dataEntryWriter.close();
+    }
+
+
+    @Override
+    public void println(PrintWriter pw, String prefix)
+    {
+        pw.println(prefix + "StoredClassDataEntryWriter");
+        dataEntryWriter.println(pw, prefix + "  ");
+    }
+}
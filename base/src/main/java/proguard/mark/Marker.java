@@ -24,6 +24,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import proguard.AppView;
 import proguard.Configuration;
+import proguard.KeepClassSpecificationStatistics;
 import proguard.KeepClassSpecificationVisitorFactory;
 import proguard.classfile.AccessConstants;
 import proguard.classfile.ClassConstants;
@@ -70,6 +71,7 @@ import proguard.pass.Pass;
 import proguard.util.Processable;
 import proguard.util.ProcessingFlagSetter;
 import proguard.util.ProcessingFlags;
+import proguard.util.kotlin.EncodedKotlinMetadataSkipper;
 
 import java.util.Arrays;
 import java.util.List;
@@ -111,12 +113,20 @@ public class Marker implements Pass
     {
         logger.info("Marking classes and class members to be kept...");
 
+        // Collect statistics per keep rule, if we have to print them.
+        KeepClassSpecificationStatistics statistics =
+            configuration.printKeepRuleCosts != null ?
+                new KeepClassSpecificationStatistics() :
+                null;
+
+        appView.keepClassSpecificationStatistics = statistics;
+
         // Create a combined ClassPool visitor for marking classes.
         MultiClassPoolVisitor classPoolVisitor =
             new MultiClassPoolVisitor(
-                createShrinkingMarker(configuration),
-                createOptimizationMarker(configuration),
-                createObfuscationMarker(configuration)
+                createShrinkingMarker(configuration, statistics),
+                createOptimizationMarker(configuration, statistics),
+                createObfuscationMarker(configuration, statistics)
             );
 
         // Mark the seeds.
@@ -180,29 +190,40 @@ public class Marker implements Pass
 
     // Small utility methods.
 
-    private ClassPoolVisitor createShrinkingMarker(Configuration configuration)
+    private ClassPoolVisitor createShrinkingMarker(Configuration                    configuration,
+                                                   KeepClassSpecificationStatistics statistics)
     {
-        // Automatically mark the parameterless constructors of seed classes,
-        // mainly for convenience and for backward compatibility.
-        ProcessingFlagSetter marker =
+        ProcessingFlagSetter flagSetter =
             new ProcessingFlagSetter(ProcessingFlags.DONT_SHRINK);
 
+        // Also record the seeds per keep rule, if requested.
+        ClassVisitor classMarker = statistics == null ?
+            flagSetter :
+            new MultiClassVisitor(flagSetter, statistics);
+
+        MemberVisitor memberMarker = statistics == null ?
+            flagSetter :
+            new MultiMemberVisitor(flagSetter, statistics);
+
+        // Automatically mark the parameterless constructors of seed classes,
+        // mainly for convenience and for backward compatibility.
         ClassVisitor classUsageMarker =
             new MultiClassVisitor(
-                marker,
+                classMarker,
                 new NamedMethodVisitor(ClassConstants.METHOD_NAME_INIT,
                                        ClassConstants.METHOD_TYPE_INIT,
-                                       marker));
+                                       memberMarker));
 
         // Create a visitor for marking the seeds.
-        return new KeepClassSpecificationVisitorFactory(true, false, false)
+        return new KeepClassSpecificationVisitorFactory(true, false, false, statistics)
             .createClassPoolVisitor(configuration.keep,
                                     classUsageMarker,
-                                    marker);
+                                    memberMarker);
     }
 
 
-    private ClassPoolVisitor createOptimizationMarker(Configuration configuration)
+    private ClassPoolVisitor createOptimizationMarker(Configuration                    configuration,
+                                                      KeepClassSpecificationStatistics statistics)
     {
         ProcessingFlagSetter marker =
             new ProcessingFlagSetter(ProcessingFlags.DONT_OPTIMIZE);
@@ -217,7 +238,7 @@ public class Marker implements Pass
 
         return new MultiClassPoolVisitor(
             // Create a visitor for marking the seeds.
-            new KeepClassSpecificationVisitorFactory(false, true, false)
+            new KeepClassSpecificationVisitorFactory(false, true, false, statistics)
                 .createClassPoolVisitor(configuration.keep,
                                         marker, // marking classes
                                         marker, // marking fields
@@ -228,7 +249,7 @@ public class Marker implements Pass
             // descriptors of obfuscation class member seeds, to avoid
             // merging such classes, to avoid having to rename these class
             // members.
-            new KeepClassSpecificationVisitorFactory(false, false, true)
+            new KeepClassSpecificationVisitorFactory(false, false, true, statistics)
                 .createClassPoolVisitor(configuration.keep,
                                         null,
                                         descriptorClassMarker, // for fields
@@ -238,7 +259,8 @@ public class Marker implements Pass
     }
 
 
-    private ClassPoolVisitor createObfuscationMarker(Configuration configuration)
+    private ClassPoolVisitor createObfuscationMarker(Configuration                    configuration,
+                                                     KeepClassSpecificationStatistics statistics)
     {
         // We exclude injected classes from any user-defined pattern
         // that prevents obfuscation.
@@ -258,7 +280,7 @@ public class Marker implements Pass
             marker);
 
         // Create a visitor for marking the seeds.
-        return new KeepClassSpecificationVisitorFactory(false, false, true)
+        return new KeepClassSpecificationVisitorFactory(false, false, true, statistics)
             .createClassPoolVisitor(configuration.keep,
                                     classMarker,
                                     memberMarker,
@@ -293,7 +315,10 @@ public class Marker implements Pass
     {
         ClassVisitor classVisitor = new ReferencedKotlinMetadataVisitor(new KotlinDontOptimizeMarker());
         programClassPool.classesAccept(classVisitor);
-        libraryClassPool.classesAccept(classVisitor);
+
+        // Library classes aren't optimized anyway, so there's no need to
+        // decode any encoded metadata for them.
+        libraryClassPool.classesAccept(new EncodedKotlinMetadataSkipper(classVisitor));
     }
 
 
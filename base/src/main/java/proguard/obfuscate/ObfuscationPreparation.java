@@ -14,6 +14,7 @@ import proguard.Configuration;
 import proguard.classfile.visitor.ClassCleaner;
 import proguard.pass.Pass;
 import proguard.util.PrintWriterUtil;
+import proguard.util.kotlin.EncodedKotlinMetadataSkipper;
 
 import java.io.*;
 
@@ -48,6 +49,6 @@ public class ObfuscationPreparation implements Pass
 
         // Clean up any old processing info.
         appView.programClassPool.classesAccept(new ClassCleaner());
-        appView.libraryClassPool.classesAccept(new ClassCleaner());
+        appView.libraryClassPool.classesAccept(new EncodedKotlinMetadataSkipper(new ClassCleaner()));
     }
 }
@@ -0,0 +1,404 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2021 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.optimize;
+
+import proguard.classfile.*;
+import proguard.classfile.attribute.visitor.AllAttributeVisitor;
+import proguard.classfile.instruction.visitor.AllInstructionVisitor;
+import proguard.classfile.visitor.*;
+
+import java.util.*;
+
+/**
+ * This class represents the static call graph between the methods of a
+ * class pool, in a compact form. Every method is numbered once, in an open
+ * addressing hash table of the methods and their indices, and the edges
+ * are stored in compressed sparse rows of integer arrays, in both
+ * directions. A caller is only stored once for each callee, and vice versa.
+ * <p>
+ * The edges are the invocations of program methods that a
+ * {@link CalledMemberVisitor} reports, including the implied invocations
+ * of static initializers. The call graph is constructed in parallel over
+ * the classes of the class pool.
+ *
+ * @see ReverseDependencyStore
+ */
+public class MethodCallGraph
+{
+    private final Clazz[]  classes;
+    private final Method[] methods;
+
+    // The hash table of the methods and their indices, based on the
+    // identity hash codes of the methods.
+    private final Method[] methodTable;
+    private final int[]    methodTableIndices;
+
+    // The compressed sparse rows of callers and callees, indexed by method.
+    private final int[] callerOffsets;
+    private final int[] callers;
+    private final int[] calleeOffsets;
+    private final int[] callees;
+
+
+    /**
+     * Creates a new MethodCallGraph of all methods in the given class pool.
+     */
+    public MethodCallGraph(ClassPool classPool)
+    {
+        // Number all methods.
+        List<Clazz>  classList  = new ArrayList<>();
+        List<Method> methodList = new ArrayList<>();
+
+        classPool.classesAccept(new AllMethodVisitor(new MemberVisitor()
+        {
+            @Override
+            public void visitAnyMember(Clazz clazz, Member member)
+            {
+                classList.add(clazz);
+                methodList.add((Method)member);
+            }
+        }));
+
+        int methodCount = methodList.size();
+
+        classes = classList.toArray(new Clazz[methodCount]);
+        methods = methodList.toArray(new Method[methodCount]);
+
+        // Fill out the hash table, keeping it at most half full.
+        int tableSize = Integer.highestOneBit(Math.max(methodCount, 1)) * 4;
+
+        methodTable        = new Method[tableSize];
+        methodTableIndices = new int[tableSize];
+
+        for (int index = 0; index < methodCount; index++)
+        {
+            int slot = slot(methods[index]);
+
+            methodTable[slot]        = methods[index];
+            methodTableIndices[slot] = index;
+        }
+
+        // Collect the invocations, in parallel over the classes.
+        List<EdgeCollector> edgeCollectors = Collections.synchronizedList(new ArrayList<>());
+
+        classPool.accept(new ParallelAllClassVisitor(() ->
+        {
+            EdgeCollector edgeCollector = new EdgeCollector();
+            edgeCollectors.add(edgeCollector);
+
+            return new AllMethodVisitor(edgeCollector);
+        }));
+
+        // Compress the edges in both directions.
+        callerOffsets = new int[methodCount + 1];
+        calleeOffsets = new int[methodCount + 1];
+
+        callers = compress(edgeCollectors, true,  callerOffsets);
+        callees = compress(edgeCollectors, false, calleeOffsets);
+    }
+
+
+    /**
+     * Returns the number of methods in the call graph.
+     */
+    public int methodCount()
+    {
+        return methods.length;
+    }
+
+
+    /**
+     * Returns the index of the given method in the call graph, or -1 if
+     * the method isn't part of it.
+     */
+    public int methodIndex(Method method)
+    {
+        int slot = slot(method);
+
+        return methodTable[slot] != null ? methodTableIndices[slot] : -1;
+    }
+
+
+    /**
+     * Returns the method with the given index.
+     */
+    public Method method(int methodIndex)
+    {
+        return methods[methodIndex];
+    }
+
+
+    /**
+     * Returns the class of the method with the given index.
+     */
+    public Clazz methodClass(int methodIndex)
+    {
+        return classes[methodIndex];
+    }
+
+
+    /**
+     * Returns the number of distinct methods that invoke the given method.
+     */
+    public int callerCount(Method method)
+    {
+        int index = methodIndex(method);
+
+        return index < 0 ? 0 : callerOffsets[index + 1] - callerOffsets[index];
+    }
+
+
+    /**
+     * Returns the number of distinct methods that the given method invokes.
+     */
+    public int calleeCount(Method method)
+    {
+        int index = methodIndex(method);
+
+        return index < 0 ? 0 : calleeOffsets[index + 1] - calleeOffsets[index];
+    }
+
+
+    /**
+     * Applies the given visitor to all distinct methods that invoke the
+     * given method.
+     */
+    public void callersAccept(Method method, MemberVisitor memberVisitor)
+    {
+        int index = methodIndex(method);
+        if (index >= 0)
+        {
+            callersAccept(index, memberVisitor);
+        }
+    }
+
+
+    /**
+     * Applies the given visitor to all distinct methods that invoke the
+     * method with the given index.
+     */
+    public void callersAccept(int methodIndex, MemberVisitor memberVisitor)
+    {
+        methodsAccept(callers,
+                      callerOffsets[methodIndex],
+                      callerOffsets[methodIndex + 1],
+                      memberVisitor);
+    }
+
+
+    /**
+     * Applies the given visitor to all distinct program methods that the
+     * given method invokes.
+     */
+    public void calleesAccept(Method method, MemberVisitor memberVisitor)
+    {
+        int index = methodIndex(method);
+        if (index >= 0)
+        {
+            calleesAccept(index, memberVisitor);
+        }
+    }
+
+
+    /**
+     * Applies the given visitor to all distinct program methods that the
+     * method with the given index invokes.
+     */
+    public void calleesAccept(int methodIndex, MemberVisitor memberVisitor)
+    {
+        methodsAccept(callees,
+                      calleeOffsets[methodIndex],
+                      calleeOffsets[methodIndex + 1],
+                      memberVisitor);
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns the slot of the given method in the hash table, or the empty
+     * slot where it would be, with linear probing.
+     */
+    private int slot(Method method)
+    {
+        int mask = methodTable.length - 1;
+
+        int hash = System.identityHashCode(method);
+        int slot = (hash ^ (hash >>> 16)) & mask;
+
+        while (methodTable[slot] != null &&
+               methodTable[slot] != method)
+        {
+            slot = (slot + 1) & mask;
+        }
+
+        return slot;
+    }
+
+
+    /**
+     * Applies the given visitor to the methods with the given indices.
+     */
+    private void methodsAccept(int[]         methodIndices,
+                               int           startOffset,
+                               int           endOffset,
+                               MemberVisitor memberVisitor)
+    {
+        for (int offset = startOffset; offset < endOffset; offset++)
+        {
+            int methodIndex = methodIndices[offset];
+
+            methods[methodIndex].accept(classes[methodIndex], memberVisitor);
+        }
+    }
+
+
+    /**
+     * Compresses the edges of the given collectors into sparse rows of
+     * callees per caller (or of callers per callee, if reversed), without
+     * duplicates, filling out the given row offsets.
+     */
+    private int[] compress(List<EdgeCollector> edgeCollectors,
+                           boolean             reverse,
+                           int[]               offsets)
+    {
+        int methodCount = methods.length;
+
+        // Count the edges per row.
+        for (EdgeCollector edgeCollector : edgeCollectors)
+        {
+            int[] rows = reverse ? edgeCollector.targets : edgeCollector.sources;
+            for (int index = 0; index < edgeCollector.size; index++)
+            {
+                offsets[rows[index] + 1]++;
+            }
+        }
+
+        for (int index = 0; index < methodCount; index++)
+        {
+            offsets[index + 1] += offsets[index];
+        }
+
+        // Fill out the rows.
+        int[] values    = new int[offsets[methodCount]];
+        int[] positions = Arrays.copyOf(offsets, methodCount);
+
+        for (EdgeCollector edgeCollector : edgeCollectors)
+        {
+            int[] rows    = reverse ? edgeCollector.targets : edgeCollector.sources;
+            int[] columns = reverse ? edgeCollector.sources : edgeCollector.targets;
+            for (int index = 0; index < edgeCollector.size; index++)
+            {
+                values[positions[rows[index]]++] = columns[index];
+            }
+        }
+
+        // Remove the duplicates from each row, compacting the array in place.
+        int newOffset = 0;
+        for (int row = 0; row < methodCount; row++)
+        {
+            int startOffset = offsets[row];
+            int endOffset   = offsets[row + 1];
+
+            Arrays.sort(values, startOffset, endOffset);
+
+            offsets[row] = newOffset;
+
+            for (int offset = startOffset; offset < endOffset; offset++)
+            {
+                if (offset == startOffset ||
+                    values[offset] != values[offset - 1])
+                {
+                    values[newOffset++] = values[offset];
+                }
+            }
+        }
+
+        offsets[methodCount] = newOffset;
+
+        return newOffset == values.length ?
+            values :
+            Arrays.copyOf(values, newOffset);
+    }
+
+
+    /**
+     * This MemberVisitor collects the invocations from the methods that it
+     * visits, as pairs of method indices. Each thread has its own instance.
+     */
+    private class EdgeCollector
+    implements    MemberVisitor
+    {
+        private int[] sources = new int[256];
+        private int[] targets = new int[256];
+        private int   size;
+
+        private final MemberVisitor invocationCollector =
+            new AllAttributeVisitor(
+            new AllInstructionVisitor(
+            new CalledMemberVisitor(
+            new InvokedMethodCollector())));
+
+        private int currentSource;
+
+
+        // Implementations for MemberVisitor.
+
+        @Override
+        public void visitAnyMember(Clazz clazz, Member member)
+        {
+            currentSource = methodIndex((Method)member);
+
+            member.accept(clazz, invocationCollector);
+        }
+
+
+        /**
+         * This MemberVisitor adds an edge from the current method to the
+         * program methods that it visits.
+         */
+        private class InvokedMethodCollector
+        implements    MemberVisitor
+        {
+            @Override
+            public void visitAnyMember(Clazz clazz, Member member) { }
+
+
+            @Override
+            public void visitProgramMethod(ProgramClass programClass, ProgramMethod programMethod)
+            {
+                int target = methodIndex(programMethod);
+                if (target >= 0)
+                {
+                    if (size == sources.length)
+                    {
+                        sources = Arrays.copyOf(sources, size * 2);
+                        targets = Arrays.copyOf(targets, size * 2);
+                    }
+
+                    sources[size] = currentSource;
+                    targets[size] = target;
+                    size++;
+                }
+            }
+        }
+    }
+}
@@ -187,6 +187,7 @@ import proguard.util.NameParser;
 import proguard.util.ProcessingFlagSetter;
 import proguard.util.ProcessingFlags;
 import proguard.util.StringMatcher;
+import proguard.util.kotlin.EncodedKotlinMetadataSkipper;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -504,7 +505,7 @@ public class Optimizer implements Pass
 
         // Clean up any old processing info.
         programClassPool.classesAccept(new ClassCleaner());
-        libraryClassPool.classesAccept(new ClassCleaner());
+        libraryClassPool.classesAccept(new EncodedKotlinMetadataSkipper(new ClassCleaner()));
 
         // Link all methods that should get the same optimization info.
         programClassPool.classesAccept(new BottomClassFilter(
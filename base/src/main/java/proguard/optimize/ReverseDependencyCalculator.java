@@ -22,18 +22,12 @@ package proguard.optimize;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
-import proguard.ProGuard;
 import proguard.classfile.*;
-import proguard.classfile.attribute.visitor.*;
-import proguard.classfile.instruction.visitor.*;
-import proguard.classfile.visitor.*;
-import proguard.optimize.info.*;
-import proguard.util.MultiValueMap;
 
 /**
  * This class serves to construct a ReverseDependencyStore through computing its depending objects;
- *  - isCalledBy:       a mapping which tells which classes refer to which other classes
- *  - classEqualizers:  a mapping which tells which classes have some method with a certain ProgramMethodOptimizationInfo
+ *  - callGraph:        a compact call graph which tells which methods refer to which other methods
+ *  - method groups:    a grouping which tells which methods have a certain ProgramMethodOptimizationInfo
  *
  *  Note that we never consider library classes as their optimizationInfo is not mutable.
  */
@@ -57,134 +51,11 @@ public class ReverseDependencyCalculator
     public ReverseDependencyStore reverseDependencyStore()
     {
         long start = System.currentTimeMillis();
-        ReverseDependencyStore out = new ReverseDependencyStore(isCalledBy(), methodsByProgramMethodOptimizationInfo());
+        ReverseDependencyStore out = new ReverseDependencyStore(new MethodCallGraph(classPool));
 
         long end = System.currentTimeMillis();
         logger.trace("Calculating Reverse Dependencies................ took: %6d ms", (end - start));
 
         return out;
     }
-
-
-    /**
-     * This function constructs a map which maps a class to all other classes which refer to the key.
-     *
-     * The construction of this map is a two step process:
-     *   - Add all direct dependencies: These are found through a ReferencedClassVisitor
-     *   - Add the references to superclasses: These are found through a hierarchyAccept
-     */
-    private MultiValueMap<Method, ClassMemberPair> isCalledBy()
-    {
-        MultiValueMap<Method, ClassMemberPair> isCalledBy = new MultiValueMap<>();
-        classPool.classesAccept(new AllMethodVisitor(new AddDependencies(isCalledBy)));
-        return isCalledBy;
-    }
-
-
-    /**
-     * This function constructs a map which maps a ProgramMethodOptimizationInfo to all methods have the key
-     * object as their OptimizationInfo.
-     *
-     * This map is constructed through a single pass over all methods in the classPool.
-     *
-     */
-    private MultiValueMap<ProgramMethodOptimizationInfo, Method> methodsByProgramMethodOptimizationInfo()
-    {
-        MultiValueMap<ProgramMethodOptimizationInfo, Method> map = new MultiValueMap<>();
-        classPool.classesAccept(new AllMethodVisitor(new FillMethodsByProgramMethodOptimizationInfo(map)));
-        return map;
-    }
-
-
-    /**
-     * Fills the map which maps ProgramMethodOptimizationInfo to all the methods which have the key object
-     * as their OptimizationInfo.
-     */
-    private static class FillMethodsByProgramMethodOptimizationInfo
-    implements           MemberVisitor
-    {
-        private final MultiValueMap<ProgramMethodOptimizationInfo, Method> map;
-
-
-        public FillMethodsByProgramMethodOptimizationInfo(MultiValueMap<ProgramMethodOptimizationInfo, Method> map)
-        {
-            this.map = map;
-        }
-
-
-        @Override
-        public void visitProgramField(ProgramClass programClass, ProgramField programField) { }
-
-
-        @Override
-        public void visitProgramMethod(ProgramClass programClass, ProgramMethod programMethod)
-        {
-            MethodOptimizationInfo methodOptimizationInfo =
-                MethodOptimizationInfo.getMethodOptimizationInfo(programMethod);
-            if (methodOptimizationInfo instanceof ProgramMethodOptimizationInfo)
-            {
-                map.put((ProgramMethodOptimizationInfo)methodOptimizationInfo,programMethod);
-            }
-        }
-
-
-        @Override
-        public void visitLibraryField(LibraryClass libraryClass, LibraryField libraryField) {}
-
-
-        @Override
-        public void visitLibraryMethod(LibraryClass libraryClass, LibraryMethod libraryMethod) {}
-    }
-
-    /**
-     * Fills the isCalledBy map which maps a method to all LocatedMembers which can be influenced by it.
-     */
-    private static class AddDependencies
-    implements           MemberVisitor
-    {
-        private final MultiValueMap<Method, ClassMemberPair> isCalledBy;
-
-
-        AddDependencies(MultiValueMap<Method, ClassMemberPair> isCalledBy)
-        {
-            this.isCalledBy = isCalledBy;
-        }
-
-
-        @Override
-        public void visitAnyMember(Clazz clazz, Member member)
-        {
-            member.accept(clazz, new AllAttributeVisitor(
-                          new AllInstructionVisitor(
-                          new CalledMemberVisitor(
-                          new Adder(new ClassMemberPair(clazz, member))))));
-        }
-
-
-        /**
-         * Adds a certain tuple to the map
-         */
-        private class Adder
-        implements    MemberVisitor
-        {
-            private final ClassMemberPair source;
-
-
-            Adder(ClassMemberPair source)
-            {
-                this.source = source;
-            }
-
-
-            @Override
-            public void visitAnyMember(Clazz clazz, Member member) { }
-
-
-            @Override
-            public void visitProgramMethod(ProgramClass programClass, ProgramMethod programMethod)
-            {
-                isCalledBy.put(programMethod, source);
-            }
-        }
-    }
 }
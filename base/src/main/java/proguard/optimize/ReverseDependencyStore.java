@@ -23,7 +23,8 @@ package proguard.optimize;
 import proguard.classfile.*;
 import proguard.classfile.visitor.*;
 import proguard.optimize.info.*;
-import proguard.util.MultiValueMap;
+
+import java.util.*;
 
 /**
  * This classes is a data class that is used to query which methods need to be reconsidered for side effects
@@ -31,21 +32,93 @@ import proguard.util.MultiValueMap;
  */
 public class ReverseDependencyStore
 {
-    private final MultiValueMap<ProgramMethodOptimizationInfo, Method> methodsByProgramMethodOptimizationInfo;
-    private final MultiValueMap<Method, ClassMemberPair>               calledBy;
+    private final MethodCallGraph callGraph;
+
+    // The compressed sparse rows of methods that share the same
+    // ProgramMethodOptimizationInfo, and the row of each method.
+    private final int[] methodGroups;
+    private final int[] groupOffsets;
+    private final int[] groupMethods;
 
 
     /**
-     * Constructs a ReverseDependencyStore by its contents.
+     * Constructs a ReverseDependencyStore for the given call graph.
      *
-     * @param calledBy Maps a method to all LocatedMembers that refer to it
-     * @param methodsByProgramMethodOptimizationInfo Maps some optimizationInfo to all Methods that use it
+     * @param callGraph the call graph that tells which methods refer to which other methods.
      */
-    public ReverseDependencyStore(MultiValueMap<Method, ClassMemberPair>               calledBy,
-                                  MultiValueMap<ProgramMethodOptimizationInfo, Method> methodsByProgramMethodOptimizationInfo)
+    public ReverseDependencyStore(MethodCallGraph callGraph)
     {
-        this.calledBy                               = calledBy;
-        this.methodsByProgramMethodOptimizationInfo = methodsByProgramMethodOptimizationInfo;
+        this.callGraph = callGraph;
+
+        int methodCount = callGraph.methodCount();
+
+        // Number the shared optimization infos of all methods.
+        Map<ProgramMethodOptimizationInfo, Integer> groupIndices = new IdentityHashMap<>();
+
+        methodGroups = new int[methodCount];
+
+        for (int methodIndex = 0; methodIndex < methodCount; methodIndex++)
+        {
+            MethodOptimizationInfo methodOptimizationInfo =
+                MethodOptimizationInfo.getMethodOptimizationInfo(callGraph.method(methodIndex));
+
+            if (methodOptimizationInfo instanceof ProgramMethodOptimizationInfo)
+            {
+                Integer groupIndex = groupIndices.get(methodOptimizationInfo);
+                if (groupIndex == null)
+                {
+                    groupIndex = groupIndices.size();
+                    groupIndices.put((ProgramMethodOptimizationInfo)methodOptimizationInfo, groupIndex);
+                }
+
+                methodGroups[methodIndex] = groupIndex;
+            }
+            else
+            {
+                methodGroups[methodIndex] = -1;
+            }
+        }
+
+        // Collect the methods of each group.
+        int groupCount = groupIndices.size();
+
+        groupOffsets = new int[groupCount + 1];
+
+        for (int methodIndex = 0; methodIndex < methodCount; methodIndex++)
+        {
+            int groupIndex = methodGroups[methodIndex];
+            if (groupIndex >= 0)
+            {
+                groupOffsets[groupIndex + 1]++;
+            }
+        }
+
+        for (int groupIndex = 0; groupIndex < groupCount; groupIndex++)
+        {
+            groupOffsets[groupIndex + 1] += groupOffsets[groupIndex];
+        }
+
+        groupMethods = new int[groupOffsets[groupCount]];
+
+        int[] positions = Arrays.copyOf(groupOffsets, groupCount);
+
+        for (int methodIndex = 0; methodIndex < methodCount; methodIndex++)
+        {
+            int groupIndex = methodGroups[methodIndex];
+            if (groupIndex >= 0)
+            {
+                groupMethods[positions[groupIndex]++] = methodIndex;
+            }
+        }
+    }
+
+
+    /**
+     * Returns the call graph on which this store is based.
+     */
+    public MethodCallGraph getCallGraph()
+    {
+        return callGraph;
     }
 
 
@@ -71,25 +144,16 @@ public class ReverseDependencyStore
         @Override
         public void visitProgramMethod(ProgramClass programClass, ProgramMethod programMethod)
         {
-            MethodOptimizationInfo methodOptimizationInfo =
-                MethodOptimizationInfo.getMethodOptimizationInfo(programMethod);
-
-
-            if (methodOptimizationInfo instanceof ProgramMethodOptimizationInfo)
+            int methodIndex = callGraph.methodIndex(programMethod);
+            if (methodIndex >= 0)
             {
-                ProgramMethodOptimizationInfo info =
-                    (ProgramMethodOptimizationInfo)methodOptimizationInfo;
-
-                for (Method rootMethod : methodsByProgramMethodOptimizationInfo.get(info))
+                int groupIndex = methodGroups[methodIndex];
+                if (groupIndex >= 0)
                 {
-                    if (!calledBy.keySet().contains(rootMethod))
-                    {
-                        continue;
-                    }
-
-                    for (ClassMemberPair locatedMember : calledBy.get(rootMethod))
+                    int endOffset = groupOffsets[groupIndex + 1];
+                    for (int offset = groupOffsets[groupIndex]; offset < endOffset; offset++)
                     {
-                        locatedMember.accept(memberVisitor);
+                        callGraph.callersAccept(groupMethods[offset], memberVisitor);
                     }
                 }
             }
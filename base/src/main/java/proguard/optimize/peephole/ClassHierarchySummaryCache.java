@@ -0,0 +1,511 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2021 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.optimize.peephole;
+
+import proguard.classfile.*;
+import proguard.classfile.visitor.*;
+import proguard.optimize.info.*;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * This class caches summaries of the class hierarchies of classes, for the
+ * checks of the {@link ClassMerger}: the names and descriptors of the
+ * members in the subclasses and superclasses of classes, and the
+ * superclasses with specific optimization properties.
+ * <p>
+ * The summaries are computed lazily and shared between all class mergers of
+ * a single merging pass. Identical summaries of different classes are
+ * interned, so they take up memory only once. The summaries in the class
+ * hierarchy of a class must be invalidated when another class is merged
+ * into it.
+ *
+ * @see ClassMerger
+ */
+public class ClassHierarchySummaryCache
+{
+    // Member signatures in the classes and their subclasses.
+    private final Map<Clazz, Set<String>> subFieldSignatures                 = new HashMap<>();
+    private final Map<Clazz, Set<String>> subNonInitializerMethodSignatures  = new HashMap<>();
+    private final Map<Clazz, Set<String>> subPrivateOrStaticMethodSignatures = new HashMap<>();
+
+    // Member signatures in the classes and their superclasses.
+    private final Map<Clazz, Set<String>> superNonPrivateFieldSignatures     = new HashMap<>();
+    private final Map<Clazz, Set<String>> superOverridableMethodSignatures   = new HashMap<>();
+    private final Map<Clazz, Set<String>> superFinalMethodSignatures         = new HashMap<>();
+    private final Map<Clazz, Set<String>> superNonPrivateMethodSignatures    = new HashMap<>();
+    private final Map<Clazz, Set<String>> superAbstractMethodSignatures      = new HashMap<>();
+
+    // Member signatures in the classes themselves.
+    private final Map<Clazz, Set<String>> fieldSignatures                    = new HashMap<>();
+    private final Map<Clazz, Set<String>> concreteMethodSignatures           = new HashMap<>();
+    private final Map<Clazz, Set<String>> concreteNonInitializerSignatures   = new HashMap<>();
+    private final Map<Clazz, Set<String>> abstractMethodSignatures           = new HashMap<>();
+
+    // Superclasses and interfaces with specific optimization properties.
+    private final Map<Clazz, Set<Clazz>>  sideEffectSuperClasses             = new HashMap<>();
+    private final Map<Clazz, Set<Clazz>>  instanceofedSuperClasses           = new HashMap<>();
+    private final Map<Clazz, Set<Clazz>>  caughtSuperClasses                 = new HashMap<>();
+
+    private final List<Map<Clazz, ?>> summaries = Arrays.asList(
+        subFieldSignatures,
+        subNonInitializerMethodSignatures,
+        subPrivateOrStaticMethodSignatures,
+        superNonPrivateFieldSignatures,
+        superOverridableMethodSignatures,
+        superFinalMethodSignatures,
+        superNonPrivateMethodSignatures,
+        superAbstractMethodSignatures,
+        fieldSignatures,
+        concreteMethodSignatures,
+        concreteNonInitializerSignatures,
+        abstractMethodSignatures,
+        sideEffectSuperClasses,
+        instanceofedSuperClasses,
+        caughtSuperClasses);
+
+    // The interned summaries.
+    private final Map<Set<?>, Set<?>> internedSets = new HashMap<>();
+
+
+    /**
+     * Returns whether the given class or its subclasses have fields with the
+     * same names and descriptors as non-private fields in the class
+     * hierarchy of the given target class.
+     */
+    public boolean shadowsAnyFields(Clazz clazz, Clazz targetClass)
+    {
+        return intersect(subFieldSignatures(clazz),
+                         superNonPrivateFieldSignatures(targetClass));
+    }
+
+
+    /**
+     * Returns whether the given classes have fields with the same names
+     * and descriptors.
+     */
+    public boolean haveAnyIdenticalFields(Clazz clazz, Clazz targetClass)
+    {
+        return intersect(fieldSignatures(clazz),
+                         fieldSignatures(targetClass));
+    }
+
+
+    /**
+     * Returns whether the given classes have non-abstract methods with the
+     * same names and descriptors.
+     */
+    public boolean haveAnyIdenticalMethods(Clazz clazz, Clazz targetClass)
+    {
+        return intersect(concreteMethodSignatures(clazz),
+                         concreteMethodSignatures(targetClass));
+    }
+
+
+    /**
+     * Returns whether the given class has non-abstract methods that override
+     * non-private, non-static, non-abstract methods in the given target class
+     * or its superclasses.
+     */
+    public boolean overridesAnyMethods(Clazz clazz, Clazz targetClass)
+    {
+        return intersect(concreteNonInitializerSignatures(clazz),
+                         superOverridableMethodSignatures(targetClass));
+    }
+
+
+    /**
+     * Returns whether the given class or its subclasses have methods that
+     * shadow final methods in the given target class or its superclasses,
+     * or private or static methods that shadow non-private methods in the
+     * class hierarchy of the given target class.
+     */
+    public boolean shadowsAnyMethods(Clazz clazz, Clazz targetClass)
+    {
+        return intersect(subNonInitializerMethodSignatures(clazz),
+                         superFinalMethodSignatures(targetClass)) ||
+               intersect(subPrivateOrStaticMethodSignatures(clazz),
+                         superNonPrivateMethodSignatures(targetClass));
+    }
+
+
+    /**
+     * Returns whether the given class has any abstract methods that don't
+     * have abstract counterparts in the class hierarchy of the given target
+     * class.
+     */
+    public boolean hasAnyUnmatchedAbstractMethods(Clazz clazz, Clazz targetClass)
+    {
+        return !superAbstractMethodSignatures(targetClass).containsAll(abstractMethodSignatures(clazz));
+    }
+
+
+    /**
+     * Returns the set of superclasses and interfaces that are initialized.
+     */
+    public Set<Clazz> sideEffectSuperClasses(Clazz clazz)
+    {
+        return summary(sideEffectSuperClasses, clazz, c ->
+        {
+            Set<Clazz> set = new HashSet<>();
+
+            // Visit all superclasses and interfaces, collecting the ones that
+            // have static initializers.
+            c.hierarchyAccept(true, true, true, false,
+                              new SideEffectClassFilter(
+                              new ClassCollector(set)));
+
+            return set;
+        });
+    }
+
+
+    /**
+     * Returns the set of superclasses and interfaces that are used in
+     * 'instanceof' tests.
+     */
+    public Set<Clazz> instanceofedSuperClasses(Clazz clazz)
+    {
+        return summary(instanceofedSuperClasses, clazz, c ->
+        {
+            Set<Clazz> set = new HashSet<>();
+
+            // Visit all superclasses and interfaces, collecting the ones that
+            // are used in an 'instanceof' test.
+            c.hierarchyAccept(true, true, true, false,
+                              new InstanceofClassFilter(
+                              new ClassCollector(set)));
+
+            return set;
+        });
+    }
+
+
+    /**
+     * Returns the set of superclasses that are caught as exceptions.
+     */
+    public Set<Clazz> caughtSuperClasses(Clazz clazz)
+    {
+        return summary(caughtSuperClasses, clazz, c ->
+        {
+            Set<Clazz> set = new HashSet<>();
+
+            // Don't bother if this isn't an exception at all.
+            if (c.extends_(ClassConstants.NAME_JAVA_LANG_THROWABLE))
+            {
+                // Visit all superclasses, collecting the ones that are caught
+                // (plus java.lang.Object, in the current implementation).
+                c.hierarchyAccept(true, true, false, false,
+                                  new CaughtClassFilter(
+                                  new ClassCollector(set)));
+            }
+
+            return set;
+        });
+    }
+
+
+    /**
+     * Invalidates the summaries of the given class, of its superclasses and
+     * interfaces, and of its subclasses, after its members or its class
+     * hierarchy have changed.
+     */
+    public void invalidate(Clazz clazz)
+    {
+        clazz.hierarchyAccept(true, true, true, true, new ClassVisitor()
+        {
+            @Override
+            public void visitAnyClass(Clazz clazz)
+            {
+                for (Map<Clazz, ?> summary : summaries)
+                {
+                    summary.remove(clazz);
+                }
+            }
+        });
+    }
+
+
+    /**
+     * Clears all summaries.
+     */
+    public void clear()
+    {
+        for (Map<Clazz, ?> summary : summaries)
+        {
+            summary.clear();
+        }
+
+        internedSets.clear();
+    }
+
+
+    // Summaries of member signatures.
+
+    private Set<String> subFieldSignatures(Clazz clazz)
+    {
+        return summary(subFieldSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.hierarchyAccept(true, false, false, true,
+                              new AllFieldVisitor(
+                              new MemberCollector(false, true, true, signatures)));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> subNonInitializerMethodSignatures(Clazz clazz)
+    {
+        return summary(subNonInitializerMethodSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.hierarchyAccept(true, false, false, true,
+                              new AllMethodVisitor(
+                              new InitializerMethodFilter(null,
+                              new MemberCollector(false, true, true, signatures))));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> subPrivateOrStaticMethodSignatures(Clazz clazz)
+    {
+        return summary(subPrivateOrStaticMethodSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            MemberVisitor collector = new MemberCollector(false, true, true, signatures);
+
+            c.hierarchyAccept(true, false, false, true,
+                              new AllMethodVisitor(
+                              new InitializerMethodFilter(null,
+                              new MultiMemberVisitor(
+                                  new MemberAccessFilter(AccessConstants.PRIVATE, 0, collector),
+                                  new MemberAccessFilter(AccessConstants.STATIC,  0, collector)
+                              ))));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> superNonPrivateFieldSignatures(Clazz clazz)
+    {
+        return summary(superNonPrivateFieldSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.hierarchyAccept(true, true, true, false,
+                              new AllFieldVisitor(
+                              new MemberAccessFilter(0, AccessConstants.PRIVATE,
+                              new MemberCollector(false, true, true, signatures))));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> superOverridableMethodSignatures(Clazz clazz)
+    {
+        return summary(superOverridableMethodSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.hierarchyAccept(true, true, false, false,
+                              new AllMethodVisitor(
+                              new MemberAccessFilter(0, AccessConstants.PRIVATE | AccessConstants.STATIC | AccessConstants.ABSTRACT,
+                              new MemberCollector(false, true, true, signatures))));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> superFinalMethodSignatures(Clazz clazz)
+    {
+        return summary(superFinalMethodSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.hierarchyAccept(true, true, false, false,
+                              new AllMethodVisitor(
+                              new MemberAccessFilter(AccessConstants.FINAL, 0,
+                              new MemberCollector(false, true, true, signatures))));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> superNonPrivateMethodSignatures(Clazz clazz)
+    {
+        return summary(superNonPrivateMethodSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.hierarchyAccept(true, true, true, false,
+                              new AllMethodVisitor(
+                              new MemberAccessFilter(0, AccessConstants.PRIVATE,
+                              new MemberCollector(false, true, true, signatures))));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> superAbstractMethodSignatures(Clazz clazz)
+    {
+        return summary(superAbstractMethodSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.hierarchyAccept(true, true, true, false,
+                              new AllMethodVisitor(
+                              new MemberAccessFilter(AccessConstants.ABSTRACT, 0,
+                              new MemberCollector(false, true, true, signatures))));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> fieldSignatures(Clazz clazz)
+    {
+        return summary(fieldSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.fieldsAccept(new MemberCollector(false, true, true, signatures));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> concreteMethodSignatures(Clazz clazz)
+    {
+        return summary(concreteMethodSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.methodsAccept(new MemberAccessFilter(0, AccessConstants.ABSTRACT,
+                            new MemberCollector(false, true, true, signatures)));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> concreteNonInitializerSignatures(Clazz clazz)
+    {
+        return summary(concreteNonInitializerSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.methodsAccept(new MemberAccessFilter(0, AccessConstants.ABSTRACT,
+                            new InitializerMethodFilter(null,
+                            new MemberCollector(false, true, true, signatures))));
+
+            return signatures;
+        });
+    }
+
+
+    private Set<String> abstractMethodSignatures(Clazz clazz)
+    {
+        return summary(abstractMethodSignatures, clazz, c ->
+        {
+            Set<String> signatures = new HashSet<>();
+
+            c.methodsAccept(new MemberAccessFilter(AccessConstants.ABSTRACT, 0,
+                            new MemberCollector(false, true, true, signatures)));
+
+            return signatures;
+        });
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns whether the given sets have any elements in common.
+     */
+    static boolean intersect(Set<String> set1, Set<String> set2)
+    {
+        if (set1.size() > set2.size())
+        {
+            Set<String> set = set1;
+            set1 = set2;
+            set2 = set;
+        }
+
+        for (String element : set1)
+        {
+            if (set2.contains(element))
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Returns the cached summary of the given class, computing and interning
+     * it first if necessary.
+     */
+    private <T> Set<T> summary(Map<Clazz, Set<T>>      summaries,
+                               Clazz                   clazz,
+                               Function<Clazz, Set<T>> function)
+    {
+        Set<T> summary = summaries.get(clazz);
+        if (summary == null)
+        {
+            summary = intern(function.apply(clazz));
+            summaries.put(clazz, summary);
+        }
+
+        return summary;
+    }
+
+
+    /**
+     * Returns a shared instance of the given set.
+     */
+    private <T> Set<T> intern(Set<T> set)
+    {
+        if (set.isEmpty())
+        {
+            return Collections.emptySet();
+        }
+
+        Set<?> internedSet = internedSets.putIfAbsent(set, set);
+
+        return internedSet != null ? (Set<T>)internedSet : set;
+    }
+}
@@ -71,6 +71,8 @@ implements   ClassVisitor,
     private final boolean      mergeWrapperClasses;
     private final ClassVisitor extraClassVisitor;
 
+    private final ClassHierarchySummaryCache hierarchySummaries;
+
 
     /**
      * Creates a new ClassMerger that will merge classes into the given target
@@ -114,12 +116,46 @@ implements   ClassVisitor,
                        boolean      mergeInterfacesAggressively,
                        boolean      mergeWrapperClasses,
                        ClassVisitor extraClassVisitor)
+    {
+        this(targetClass,
+             allowAccessModification,
+             mergeInterfacesAggressively,
+             mergeWrapperClasses,
+             extraClassVisitor,
+             new ClassHierarchySummaryCache());
+    }
+
+
+    /**
+     * Creates a new ClassMerger that will merge classes into the given target
+     * class.
+     * @param targetClass                 the class into which all visited
+     *                                    classes will be merged.
+     * @param allowAccessModification     specifies whether the access modifiers
+     *                                    of classes can be changed in order to
+     *                                    merge them.
+     * @param mergeInterfacesAggressively specifies whether interfaces may
+     *                                    be merged aggressively.
+     * @param extraClassVisitor           an optional extra visitor for all
+     *                                    merged classes.
+     * @param hierarchySummaries          the cache of class hierarchy
+     *                                    summaries, which may be shared
+     *                                    between the class mergers of a
+     *                                    single merging pass.
+     */
+    public ClassMerger(ProgramClass               targetClass,
+                       boolean                    allowAccessModification,
+                       boolean                    mergeInterfacesAggressively,
+                       boolean                    mergeWrapperClasses,
+                       ClassVisitor               extraClassVisitor,
+                       ClassHierarchySummaryCache hierarchySummaries)
     {
         this.targetClass                 = targetClass;
         this.allowAccessModification     = allowAccessModification;
         this.mergeInterfacesAggressively = mergeInterfacesAggressively;
         this.mergeWrapperClasses         = mergeWrapperClasses;
         this.extraClassVisitor           = extraClassVisitor;
+        this.hierarchySummaries          = hierarchySummaries;
     }
 
 
@@ -279,6 +315,10 @@ implements   ClassVisitor,
             // Remember to replace the inlined class by the target class.
             setTargetClass(programClass, targetClass);
 
+            // The members and the class hierarchy of the target class have
+            // changed.
+            hierarchySummaries.invalidate(targetClass);
+
             logger.trace("=== After ====");
             logger.trace("Target instantiated? {}", InstantiationClassMarker.isInstantiated(targetClass));
             logger.trace("{}", () -> {
@@ -541,15 +581,7 @@ implements   ClassVisitor,
      */
     private Set sideEffectSuperClasses(Clazz clazz)
     {
-        Set set = new HashSet();
-
-        // Visit all superclasses and interfaces, collecting the ones that have
-        // static initializers.
-        clazz.hierarchyAccept(true, true, true, false,
-                              new SideEffectClassFilter(
-                              new ClassCollector(set)));
-
-        return set;
+        return hierarchySummaries.sideEffectSuperClasses(clazz);
     }
 
 
@@ -559,15 +591,7 @@ implements   ClassVisitor,
      */
     private Set instanceofedSuperClasses(Clazz clazz)
     {
-        Set set = new HashSet();
-
-        // Visit all superclasses and interfaces, collecting the ones that are
-        // used in an 'instanceof' test.
-        clazz.hierarchyAccept(true, true, true, false,
-                              new InstanceofClassFilter(
-                              new ClassCollector(set)));
-
-        return set;
+        return hierarchySummaries.instanceofedSuperClasses(clazz);
     }
 
 
@@ -576,21 +600,7 @@ implements   ClassVisitor,
      */
     private Set caughtSuperClasses(Clazz clazz)
     {
-        // Don't bother if this isn't an exception at all.
-        if (!clazz.extends_(ClassConstants.NAME_JAVA_LANG_THROWABLE))
-        {
-            return Collections.EMPTY_SET;
-        }
-
-        // Visit all superclasses, collecting the ones that are caught
-        // (plus java.lang.Object, in the current implementation).
-        Set set = new HashSet();
-
-        clazz.hierarchyAccept(true, true, false, false,
-                              new CaughtClassFilter(
-                              new ClassCollector(set)));
-
-        return set;
+        return hierarchySummaries.caughtSuperClasses(clazz);
     }
 
 
@@ -617,14 +627,7 @@ implements   ClassVisitor,
     private boolean haveAnyIdenticalFields(Clazz clazz,
                                            Clazz targetClass)
     {
-        MemberCounter counter = new MemberCounter();
-
-        // Visit all fields, counting the with the same name and descriptor in
-        // the target class.
-        clazz.fieldsAccept(new SimilarMemberVisitor(targetClass, true, false, false, false,
-                           counter));
-
-        return counter.getCount() > 0;
+        return hierarchySummaries.haveAnyIdenticalFields(clazz, targetClass);
     }
 
 
@@ -661,17 +664,9 @@ implements   ClassVisitor,
     private boolean shadowsAnyFields(Clazz clazz,
                                      Clazz targetClass)
     {
-        MemberCounter counter = new MemberCounter();
-
-        // Visit all fields, counting the ones that are shadowing non-private
-        // fields in the class hierarchy of the target class.
-        clazz.hierarchyAccept(true, false, false, true,
-                              new AllFieldVisitor(
-                              new SimilarMemberVisitor(targetClass, true, true, true, false,
-                              new MemberAccessFilter(0, AccessConstants.PRIVATE,
-                              counter))));
-
-        return counter.getCount() > 0;
+        // Check for fields that are shadowing non-private fields in the
+        // class hierarchy of the target class.
+        return hierarchySummaries.shadowsAnyFields(clazz, targetClass);
     }
 
 
@@ -682,16 +677,9 @@ implements   ClassVisitor,
     private boolean haveAnyIdenticalMethods(Clazz clazz,
                                             Clazz targetClass)
     {
-        MemberCounter counter = new MemberCounter();
-
-        // Visit all non-abstract methods, counting the ones that are also
-        // present in the target class.
-        clazz.methodsAccept(new MemberAccessFilter(0, AccessConstants.ABSTRACT,
-                            new SimilarMemberVisitor(targetClass, true, false, false, false,
-                            new MemberAccessFilter(0, AccessConstants.ABSTRACT,
-                            counter))));
-
-        return counter.getCount() > 0;
+        // Check for non-abstract methods that are also present as
+        // non-abstract methods in the target class.
+        return hierarchySummaries.haveAnyIdenticalMethods(clazz, targetClass);
     }
 
 
@@ -713,21 +701,9 @@ implements   ClassVisitor,
             return false;
         }
 
-        MemberCounter counter   = new MemberCounter();
-        Set           targetSet = new HashSet();
-
-        // Collect all abstract methods, and similar abstract methods in the
+        // Check for abstract methods without similar abstract methods in the
         // class hierarchy of the target class.
-        clazz.methodsAccept(new MemberAccessFilter(AccessConstants.ABSTRACT, 0,
-                            new MultiMemberVisitor(
-                                counter,
-
-                                new SimilarMemberVisitor(targetClass, true, true, true, false,
-                                new MemberAccessFilter(AccessConstants.ABSTRACT, 0,
-                                new MemberCollector(false, true, true, targetSet)))
-                            )));
-
-        return targetSet.size() < counter.getCount();
+        return hierarchySummaries.hasAnyUnmatchedAbstractMethods(clazz, targetClass);
     }
 
 
@@ -747,17 +723,9 @@ implements   ClassVisitor,
             return false;
         }
 
-        MemberCounter counter = new MemberCounter();
-
-        // Visit all non-abstract methods, counting the ones that are
-        // overriding methods in the class hierarchy of the target class.
-        clazz.methodsAccept(new MemberAccessFilter(0, AccessConstants.ABSTRACT,
-                            new InitializerMethodFilter(null,
-                            new SimilarMemberVisitor(targetClass, true, true, false, false,
-                            new MemberAccessFilter(0, AccessConstants.PRIVATE | AccessConstants.STATIC | AccessConstants.ABSTRACT,
-                            counter)))));
-
-        return counter.getCount() > 0;
+        // Check for non-abstract methods that are overriding methods in the
+        // class hierarchy of the target class.
+        return hierarchySummaries.overridesAnyMethods(clazz, targetClass);
     }
 
 
@@ -776,46 +744,10 @@ implements   ClassVisitor,
             return false;
         }
 
-        MemberCounter counter = new MemberCounter();
-
-        // Visit all methods, counting the ones that are shadowing
-        // final methods in the class hierarchy of the target class.
-        clazz.hierarchyAccept(true, false, false, true,
-                              new AllMethodVisitor(
-                              new InitializerMethodFilter(null,
-                              new SimilarMemberVisitor(targetClass, true, true, false, false,
-                              new MemberAccessFilter(AccessConstants.FINAL, 0,
-                                                     counter)))));
-        if (counter.getCount() > 0)
-        {
-            return true;
-        }
-
-        // Visit all private methods, counting the ones that are shadowing
-        // non-private methods in the class hierarchy of the target class.
-        clazz.hierarchyAccept(true, false, false, true,
-                              new AllMethodVisitor(
-                              new MemberAccessFilter(AccessConstants.PRIVATE, 0,
-                              new InitializerMethodFilter(null,
-                              new SimilarMemberVisitor(targetClass, true, true, true, false,
-                              new MemberAccessFilter(0, AccessConstants.PRIVATE,
-                                                     counter))))));
-        if (counter.getCount() > 0)
-        {
-            return true;
-        }
-
-        // Visit all static methods, counting the ones that are shadowing
-        // non-private methods in the class hierarchy of the target class.
-        clazz.hierarchyAccept(true, false, false, true,
-                              new AllMethodVisitor(
-                              new MemberAccessFilter(AccessConstants.STATIC, 0,
-                              new InitializerMethodFilter(null,
-                              new SimilarMemberVisitor(targetClass, true, true, true, false,
-                              new MemberAccessFilter(0, AccessConstants.PRIVATE,
-                              counter))))));
-
-        return counter.getCount() > 0;
+        // Check for methods that are shadowing final methods, and for
+        // private or static methods that are shadowing non-private methods,
+        // in the class hierarchy of the target class.
+        return hierarchySummaries.shadowsAnyMethods(clazz, targetClass);
     }
 
 
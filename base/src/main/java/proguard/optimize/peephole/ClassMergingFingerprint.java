@@ -0,0 +1,122 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2021 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.optimize.peephole;
+
+import proguard.classfile.*;
+import proguard.classfile.visitor.*;
+import proguard.optimize.info.*;
+
+import java.util.*;
+
+/**
+ * This class summarizes the properties of a program class that are local
+ * to the class itself and that are relevant for class merging: its field
+ * and concrete method signatures, its interfaces, and whether it is
+ * instantiated or has a static initializer with side effects.
+ * <p>
+ * Comparing the fingerprints of two classes is cheap, and rules out many
+ * pairs of classes that the {@link ClassMerger} would reject anyway, before
+ * it performs its more expensive checks on the class hierarchy. A
+ * fingerprint only reflects the current state of its class, so it must be
+ * recomputed when other classes are merged into the class.
+ *
+ * @see HorizontalClassMerger
+ */
+class ClassMergingFingerprint
+{
+    private final Clazz       clazz;
+    private final int         version;
+    private final Set<Clazz>  interfaces;
+    private final Set<String> fieldSignatures;
+    private final Set<String> concreteMethodSignatures;
+    private final boolean     isInstantiated;
+    private final boolean     hasInstanceFields;
+    private final boolean     hasSideEffects;
+
+
+    /**
+     * Creates a new fingerprint of the given program class, in its current
+     * state.
+     */
+    public ClassMergingFingerprint(ProgramClass programClass)
+    {
+        this.clazz   = programClass;
+        this.version = programClass.u4version;
+
+        interfaces = new HashSet<>();
+        programClass.interfaceConstantsAccept(
+            new ReferencedClassVisitor(
+            new ClassCollector(interfaces)));
+
+        fieldSignatures          = new HashSet<>();
+        concreteMethodSignatures = new HashSet<>();
+
+        MemberCounter instanceFieldCounter = new MemberCounter();
+
+        programClass.fieldsAccept(
+            new MultiMemberVisitor(
+                new MemberCollector(false, true, true, fieldSignatures),
+                new MemberAccessFilter(0, AccessConstants.STATIC, instanceFieldCounter)
+            ));
+
+        programClass.methodsAccept(
+            new MemberAccessFilter(0, AccessConstants.ABSTRACT,
+            new MemberCollector(false, true, true, concreteMethodSignatures)));
+
+        isInstantiated    = InstantiationClassMarker.isInstantiated(programClass);
+        hasInstanceFields = instanceFieldCounter.getCount() > 0;
+        hasSideEffects    = SideEffectClassMarker.hasSideEffects(programClass);
+    }
+
+
+    /**
+     * Returns whether the class of this fingerprint certainly can't be
+     * merged into the class of the given target fingerprint by a
+     * ClassMerger that doesn't merge wrapper classes. If this method
+     * returns false, the classes may or may not be mergeable.
+     */
+    public boolean excludesMergingInto(ClassMergingFingerprint target)
+    {
+        return
+            // The classes must be different and have the same version.
+            clazz   == target.clazz ||
+            version != target.version ||
+
+            // The target class must not implement the class directly.
+            target.interfaces.contains(clazz) ||
+
+            // The class itself must not have side effects, since the target
+            // class then can't have the same initialized superclasses.
+            hasSideEffects ||
+
+            // Similarly, if the target class has side effects, the class
+            // must extend or implement the target class.
+            target.hasSideEffects && !clazz.extendsOrImplements(target.clazz) ||
+
+            // Neither class may introduce fields in an instantiated class.
+            target.isInstantiated && hasInstanceFields ||
+            isInstantiated && target.hasInstanceFields ||
+
+            // The classes must not have clashing fields or methods.
+            ClassHierarchySummaryCache.intersect(fieldSignatures,          target.fieldSignatures) ||
+            ClassHierarchySummaryCache.intersect(concreteMethodSignatures, target.concreteMethodSignatures);
+    }
+}
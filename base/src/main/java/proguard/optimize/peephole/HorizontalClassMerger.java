@@ -48,6 +48,12 @@ implements   ClassPoolVisitor
     private final ClassVisitor extraClassVisitor;
     private final Set<String>  forbiddenClassNames;
 
+    // Fingerprints of the classes that are being considered for merging.
+    private final Map<Clazz, ClassMergingFingerprint> fingerprints = new HashMap<>();
+
+    // The class hierarchy summaries that are shared by all class mergers.
+    private final ClassHierarchySummaryCache hierarchySummaries = new ClassHierarchySummaryCache();
+
 
     /**
      * Creates a new HorizontalClassMerger.
@@ -97,6 +103,9 @@ implements   ClassPoolVisitor
 
         // 4. Try horizontal merging for each set of siblings
         siblingsCollections.values().forEach(this::handleSiblings);
+
+        fingerprints.clear();
+        hierarchySummaries.clear();
     }
 
 
@@ -133,21 +142,49 @@ implements   ClassPoolVisitor
      */
     private void mergeInto(List<Clazz> sourceClasses, List<Clazz> targetClasses)
     {
+        // Index the source classes by their class versions, preserving their
+        // order, since classes with different versions are never merged.
+        Map<Integer, List<Clazz>> sourceClassesByVersion =
+            sourceClasses.stream().collect(Collectors.groupingBy(clazz -> ((ProgramClass)clazz).u4version));
+
         for (Clazz target : targetClasses)
         {
             ClassMerger classMerger = new ClassMerger((ProgramClass)target,
                                                       allowAccessModification,
                                                       mergeInterfacesAggressively,
                                                       false,
-                                                      extraClassVisitor);
-            for (Clazz source : sourceClasses)
+                                                      extraClassVisitor,
+                                                      hierarchySummaries);
+            for (Clazz source : sourceClassesByVersion.getOrDefault(((ProgramClass)target).u4version,
+                                                                     Collections.emptyList()))
             {
-                source.accept(classMerger);
+                // Only let the class merger perform its expensive checks if
+                // the fingerprints of the classes don't rule out merging.
+                if (!fingerprint(source).excludesMergingInto(fingerprint(target)))
+                {
+                    source.accept(classMerger);
+
+                    // The target class has changed if the source class
+                    // has been merged into it.
+                    if (ClassMerger.getTargetClass(source) == target)
+                    {
+                        fingerprints.remove(target);
+                    }
+                }
             }
         }
     }
 
 
+    /**
+     * Returns the fingerprint of the given class in its current state.
+     */
+    private ClassMergingFingerprint fingerprint(Clazz clazz)
+    {
+        return fingerprints.computeIfAbsent(clazz, c -> new ClassMergingFingerprint((ProgramClass)c));
+    }
+
+
     /**
      * Checks if a class can trivially not be used for merging (either as target or source)
      * @param clazz the class.
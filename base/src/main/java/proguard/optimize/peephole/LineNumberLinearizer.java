@@ -39,6 +39,7 @@ import proguard.classfile.attribute.visitor.AttributeVisitor;
 import proguard.classfile.attribute.visitor.LineNumberRangeFinder;
 import proguard.classfile.visitor.ClassVisitor;
 import proguard.classfile.visitor.MemberVisitor;
+import proguard.classfile.visitor.ParallelAllClassVisitor;
 import proguard.pass.Pass;
 
 import java.util.Arrays;
@@ -50,14 +51,15 @@ import java.util.Stack;
  * (e.g. due to method inlining or class merging) to blocks that don't
  * overlap with the main line numbers and with each other. The line numbers
  * then uniquely identify the inlined and merged code in the classes.
+ * <p>
+ * The linearizer keeps the state of the class that it is visiting in a
+ * separate object, so it can visit different classes in parallel.
  *
  * @author Eric Lafortune
  */
 public class LineNumberLinearizer
 implements   Pass,
-             ClassVisitor,
-             MemberVisitor,
-             AttributeVisitor
+             ClassVisitor
 {
     private static final Logger logger = LogManager.getLogger(LineNumberLinearizer.class);
 
@@ -65,19 +67,14 @@ implements   Pass,
     private static final int SHIFT_ROUNDING_LIMIT = 50000;
 
 
-    private final Stack<MyLineNumberBlock> enclosingLineNumbers = new Stack<>();
-    private       LineNumberInfo           previousLineNumberInfo;
-    private       int                      highestUsedLineNumber;
-    private       int                      currentLineNumberShift;
-
-
     /**
      * Disambiguates the line numbers of all program classes, after
-     * optimizations like method inlining and class merging.
+     * optimizations like method inlining and class merging, in parallel
+     * over the classes.
      */
     @Override
     public void execute(AppView appView) {
-        appView.programClassPool.classesAccept(this);
+        appView.programClassPool.accept(new ParallelAllClassVisitor(() -> this));
     }
 
     // Implementations for ClassVisitor.
@@ -100,179 +97,200 @@ implements   Pass,
         // Are there any inlined line numbers?
         if (lineNumberRangeFinder.hasSource())
         {
-            // Remember the minimum initial shift.
-            highestUsedLineNumber = lineNumberRangeFinder.getHighestLineNumber();
-
-            // Shift the inlined line numbers.
-            programClass.methodsAccept(this);
+            // Shift the inlined line numbers, starting from the minimum
+            // initial shift.
+            programClass.methodsAccept(
+                new MyClassLinearizer(lineNumberRangeFinder.getHighestLineNumber()));
         }
     }
 
-    // Implementations for MemberVisitor.
 
-    @Override
-    public void visitProgramMethod(ProgramClass programClass, ProgramMethod programMethod)
+    /**
+     * This MemberVisitor disambiguates the line numbers in the methods of a
+     * single class. Inlined blocks in subsequent methods are shifted beyond
+     * each other, so it keeps the highest used line number across methods.
+     */
+    private static class MyClassLinearizer
+    implements           MemberVisitor,
+                         AttributeVisitor
     {
-        programMethod.attributesAccept(programClass, this);
-    }
+        private final Stack<MyLineNumberBlock> enclosingLineNumbers = new Stack<>();
+        private       int                      highestUsedLineNumber;
+        private       int                      currentLineNumberShift;
 
-    // Implementations for AttributeVisitor.
 
-    @Override
-    public void visitAnyAttribute(Clazz clazz, Attribute attribute) {}
+        public MyClassLinearizer(int highestUsedLineNumber)
+        {
+            this.highestUsedLineNumber = highestUsedLineNumber;
+        }
 
-    @Override
-    public void visitCodeAttribute(Clazz clazz, Method method, CodeAttribute codeAttribute)
-    {
-        codeAttribute.attributesAccept(clazz, method, this);
-    }
 
-    @Override
-    public void visitLineNumberTableAttribute(Clazz clazz, Method method, CodeAttribute codeAttribute, LineNumberTableAttribute lineNumberTableAttribute)
-    {
-        logger.debug("LineNumberLinearizer [{}.{}{}]:",
-                     clazz.getName(),
-                     method.getName(clazz),
-                     method.getDescriptor(clazz)
-        );
+        // Implementations for MemberVisitor.
 
-        enclosingLineNumbers.clear();
+        @Override
+        public void visitProgramMethod(ProgramClass programClass, ProgramMethod programMethod)
+        {
+            programMethod.attributesAccept(programClass, this);
+        }
 
-        // Figure out which lines need linearizing. Only freshly inlined blocks need to be linearized.
+        // Implementations for AttributeVisitor.
 
-        LineNumberInfo[] infos = lineNumberTableAttribute.lineNumberTable;
-        int lineNumberTableLength = lineNumberTableAttribute.u2lineNumberTableLength;
-        boolean[] inlinedBlock = new boolean[lineNumberTableLength];
+        @Override
+        public void visitAnyAttribute(Clazz clazz, Attribute attribute) {}
 
-        int currentDepth = 0;
-        for (int i = 0; i < lineNumberTableLength; i++)
+        @Override
+        public void visitCodeAttribute(Clazz clazz, Method method, CodeAttribute codeAttribute)
         {
-            LineNumberInfo currentInfo = infos[i];
-            if (currentInfo.u2lineNumber == MethodInliner.INLINED_METHOD_START_LINE_NUMBER)
-            {
-                currentDepth++;
-            }
-
-            inlinedBlock[i] = currentDepth > 0;
-
-            if (currentInfo.u2lineNumber == MethodInliner.INLINED_METHOD_END_LINE_NUMBER)
-            {
-                currentDepth--;
-            }
+            codeAttribute.attributesAccept(clazz, method, this);
         }
 
-        // Linearize the line numbers.
-
-        LineNumberInfo previousLineNumberInfo = null;
-        for (int i = 0; i < lineNumberTableLength; i++)
+        @Override
+        public void visitLineNumberTableAttribute(Clazz clazz, Method method, CodeAttribute codeAttribute, LineNumberTableAttribute lineNumberTableAttribute)
         {
-            LineNumberInfo lineNumberInfo = infos[i];
-            String source = lineNumberInfo.getSource();
+            logger.debug("LineNumberLinearizer [{}.{}{}]:",
+                         clazz.getName(),
+                         method.getName(clazz),
+                         method.getDescriptor(clazz)
+            );
+
+            enclosingLineNumbers.clear();
 
-            logger.debug("    [{}] line {}{}", lineNumberInfo.u2startPC, lineNumberInfo.u2lineNumber, source == null ? "" : " [" + source + "]");
+            // Figure out which lines need linearizing. Only freshly inlined blocks need to be linearized.
 
-            // Is it an inlined line number?
-            if (source != null && inlinedBlock[i])
+            LineNumberInfo[] infos = lineNumberTableAttribute.lineNumberTable;
+            int lineNumberTableLength = lineNumberTableAttribute.u2lineNumberTableLength;
+            boolean[] inlinedBlock = new boolean[lineNumberTableLength];
+
+            int currentDepth = 0;
+            for (int i = 0; i < lineNumberTableLength; i++)
             {
-                int lineNumber = lineNumberInfo.u2lineNumber;
+                LineNumberInfo currentInfo = infos[i];
+                if (currentInfo.u2lineNumber == MethodInliner.INLINED_METHOD_START_LINE_NUMBER)
+                {
+                    currentDepth++;
+                }
 
-                // Are we entering a new inlined block?
-                if (lineNumber == MethodInliner.INLINED_METHOD_START_LINE_NUMBER)
+                inlinedBlock[i] = currentDepth > 0;
+
+                if (currentInfo.u2lineNumber == MethodInliner.INLINED_METHOD_END_LINE_NUMBER)
                 {
-                    // Remember information about the inlined block.
-                    enclosingLineNumbers.push(
-                            previousLineNumberInfo != null
-                                    ? new MyLineNumberBlock(
-                                    currentLineNumberShift,
-                                    previousLineNumberInfo.u2lineNumber,
-                                    previousLineNumberInfo.getSource() != null
-                                            ? previousLineNumberInfo.getBlock()
-                                            : null)
-                                    : new MyLineNumberBlock(0, 0, null));
-
-                    // Parse the end line number from the source string, so we know how large a block this
-                    // will be.
-                    int separatorIndex1 = source.indexOf(':');
-                    int separatorIndex2 = source.indexOf(':', separatorIndex1 + 1);
-
-                    int startLineNumber =
-                            Integer.parseInt(source.substring(separatorIndex1 + 1, separatorIndex2));
-                    int endLineNumber = Integer.parseInt(source.substring(separatorIndex2 + 1));
-
-                    // TODO: this matches a quirk in the old behavior where the opening line is always :0:0
-                    // this is a bug that probably causes overlapping line numbers but for now we will match
-                    // this behavior so we can directly compare old and new mappings.
-                    startLineNumber = 0;
-                    endLineNumber = 0;
-
-                    // Start shifting, if necessary, so the block ends up beyond the highest used line number.
-                    // We're striving for rounded shifts, unless we've reached a given limit, to avoid running
-                    // out of line numbers too quickly.
-                    currentLineNumberShift =
-                            highestUsedLineNumber > SHIFT_ROUNDING_LIMIT
-                                    ? highestUsedLineNumber - startLineNumber + 1
-                                    : startLineNumber > highestUsedLineNumber
-                                    ? 0
-                                    : (highestUsedLineNumber - startLineNumber + SHIFT_ROUNDING)
-                                    / SHIFT_ROUNDING
-                                    * SHIFT_ROUNDING;
-
-                    highestUsedLineNumber = endLineNumber + currentLineNumberShift;
-
-
-                    logger.debug(" (enter with shift {})", currentLineNumberShift);
+                    currentDepth--;
                 }
+            }
+
+            // Linearize the line numbers.
+
+            LineNumberInfo previousLineNumberInfo = null;
+            for (int i = 0; i < lineNumberTableLength; i++)
+            {
+                LineNumberInfo lineNumberInfo = infos[i];
+                String source = lineNumberInfo.getSource();
 
-                // Are we exiting an inlined block?
-                else if (lineNumber == MethodInliner.INLINED_METHOD_END_LINE_NUMBER)
+                logger.debug("    [{}] line {}{}", lineNumberInfo.u2startPC, lineNumberInfo.u2lineNumber, source == null ? "" : " [" + source + "]");
+
+                // Is it an inlined line number?
+                if (source != null && inlinedBlock[i])
                 {
-                    // TODO: There appear to be cases where the stack is empty at this point, so we've added a
-                    // check.
-                    if (enclosingLineNumbers.isEmpty())
+                    int lineNumber = lineNumberInfo.u2lineNumber;
+
+                    // Are we entering a new inlined block?
+                    if (lineNumber == MethodInliner.INLINED_METHOD_START_LINE_NUMBER)
+                    {
+                        // Remember information about the inlined block.
+                        enclosingLineNumbers.push(
+                                previousLineNumberInfo != null
+                                        ? new MyLineNumberBlock(
+                                        currentLineNumberShift,
+                                        previousLineNumberInfo.u2lineNumber,
+                                        previousLineNumberInfo.getSource() != null
+                                                ? previousLineNumberInfo.getBlock()
+                                                : null)
+                                        : new MyLineNumberBlock(0, 0, null));
+
+                        // Parse the end line number from the source string, so we know how large a block this
+                        // will be.
+                        int separatorIndex1 = source.indexOf(':');
+                        int separatorIndex2 = source.indexOf(':', separatorIndex1 + 1);
+
+                        int startLineNumber =
+                                Integer.parseInt(source.substring(separatorIndex1 + 1, separatorIndex2));
+                        int endLineNumber = Integer.parseInt(source.substring(separatorIndex2 + 1));
+
+                        // TODO: this matches a quirk in the old behavior where the opening line is always :0:0
+                        // this is a bug that probably causes overlapping line numbers but for now we will match
+                        // this behavior so we can directly compare old and new mappings.
+                        startLineNumber = 0;
+                        endLineNumber = 0;
+
+                        // Start shifting, if necessary, so the block ends up beyond the highest used line number.
+                        // We're striving for rounded shifts, unless we've reached a given limit, to avoid running
+                        // out of line numbers too quickly.
+                        currentLineNumberShift =
+                                highestUsedLineNumber > SHIFT_ROUNDING_LIMIT
+                                        ? highestUsedLineNumber - startLineNumber + 1
+                                        : startLineNumber > highestUsedLineNumber
+                                        ? 0
+                                        : (highestUsedLineNumber - startLineNumber + SHIFT_ROUNDING)
+                                        / SHIFT_ROUNDING
+                                        * SHIFT_ROUNDING;
+
+                        highestUsedLineNumber = endLineNumber + currentLineNumberShift;
+
+
+                        logger.debug(" (enter with shift {})", currentLineNumberShift);
+                    }
+
+                    // Are we exiting an inlined block?
+                    else if (lineNumber == MethodInliner.INLINED_METHOD_END_LINE_NUMBER)
                     {
-                        logger.debug("Problem linearizing line numbers for optimized code ({}.{})", clazz.getName(), method.getName(clazz));
+                        // TODO: There appear to be cases where the stack is empty at this point, so we've added a
+                        // check.
+                        if (enclosingLineNumbers.isEmpty())
+                        {
+                            logger.debug("Problem linearizing line numbers for optimized code ({}.{})", clazz.getName(), method.getName(clazz));
+                        }
+                        else
+                        {
+                            // Pop information about the enclosing line number.
+                            MyLineNumberBlock lineNumberBlock = enclosingLineNumbers.pop();
+
+                            // Set this end of the block to the line at which it was inlined.
+                            lineNumberInfo =
+                                    lineNumberBlock.enclosingSource != null
+                                            ? lineNumberBlock.enclosingSource.line(
+                                            lineNumberInfo.u2startPC, lineNumberBlock.enclosingLineNumber)
+                                            : new LineNumberInfo(
+                                            lineNumberInfo.u2startPC, lineNumberBlock.enclosingLineNumber);
+                            infos[i] = lineNumberInfo;
+
+                            // Reset the shift to the shift of the block.
+                            currentLineNumberShift = lineNumberBlock.lineNumberShift;
+
+                            logger.debug(" (exit to shift {})", currentLineNumberShift);
+                        }
                     }
                     else
                     {
-                        // Pop information about the enclosing line number.
-                        MyLineNumberBlock lineNumberBlock = enclosingLineNumbers.pop();
-
-                        // Set this end of the block to the line at which it was inlined.
-                        lineNumberInfo =
-                                lineNumberBlock.enclosingSource != null
-                                        ? lineNumberBlock.enclosingSource.line(
-                                        lineNumberInfo.u2startPC, lineNumberBlock.enclosingLineNumber)
-                                        : new LineNumberInfo(
-                                        lineNumberInfo.u2startPC, lineNumberBlock.enclosingLineNumber);
-                        infos[i] = lineNumberInfo;
-
-                        // Reset the shift to the shift of the block.
-                        currentLineNumberShift = lineNumberBlock.lineNumberShift;
-
-                        logger.debug(" (exit to shift {})", currentLineNumberShift);
+                        logger.debug(" (apply shift {})", currentLineNumberShift);
+
+
+                        // Apply the shift.
+                        lineNumberInfo.u2lineNumber += currentLineNumberShift;
                     }
                 }
-                else
-                {
-                    logger.debug(" (apply shift {})", currentLineNumberShift);
 
+                previousLineNumberInfo = lineNumberInfo;
 
-                    // Apply the shift.
-                    lineNumberInfo.u2lineNumber += currentLineNumberShift;
-                }
+                logger.debug(" -> line {}", lineNumberInfo.u2lineNumber);
             }
 
-            previousLineNumberInfo = lineNumberInfo;
-
-            logger.debug(" -> line {}", lineNumberInfo.u2lineNumber);
+            lineNumberTableAttribute.lineNumberTable =
+                    Arrays.stream(infos, 0, lineNumberTableLength)
+                            .filter(info -> info.u2lineNumber != MethodInliner.INLINED_METHOD_START_LINE_NUMBER)
+                            .toArray(LineNumberInfo[]::new);
+            lineNumberTableAttribute.u2lineNumberTableLength =
+                    lineNumberTableAttribute.lineNumberTable.length;
         }
-
-        lineNumberTableAttribute.lineNumberTable =
-                Arrays.stream(infos, 0, lineNumberTableLength)
-                        .filter(info -> info.u2lineNumber != MethodInliner.INLINED_METHOD_START_LINE_NUMBER)
-                        .toArray(LineNumberInfo[]::new);
-        lineNumberTableAttribute.u2lineNumberTableLength =
-                lineNumberTableAttribute.lineNumberTable.length;
     }
 
 
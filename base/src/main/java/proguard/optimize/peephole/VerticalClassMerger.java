@@ -37,6 +37,9 @@ implements   ClassVisitor
     private final boolean                       mergeInterfacesAggressively;
     private final ClassVisitor                  extraClassVisitor;
 
+    // The class hierarchy summaries that are shared by all class mergers.
+    private final ClassHierarchySummaryCache    hierarchySummaries = new ClassHierarchySummaryCache();
+
 
     /**
      * Creates a new VerticalClassMerger.
@@ -90,6 +93,7 @@ implements   ClassVisitor
                                                       allowAccessModification,
                                                       mergeInterfacesAggressively,
                                                       false,
-                                                      extraClassVisitor)));
+                                                      extraClassVisitor,
+                                                      hierarchySummaries)));
     }
 }
@@ -41,6 +41,9 @@ implements   ClassVisitor
     private final boolean      allowAccessModification;
     private final ClassVisitor extraClassVisitor;
 
+    // The class hierarchy summaries that are shared by all class mergers.
+    private final ClassHierarchySummaryCache hierarchySummaries = new ClassHierarchySummaryCache();
+
 
     /**
      * Creates a new WrappedClassMerger.
@@ -93,7 +96,8 @@ implements   ClassVisitor
                                 allowAccessModification,
                                 false,
                                 true,
-                                extraClassVisitor).visitProgramClass(programClass);
+                                extraClassVisitor,
+                                hierarchySummaries).visitProgramClass(programClass);
             }
         }
     }
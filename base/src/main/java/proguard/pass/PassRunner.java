@@ -10,8 +10,7 @@ package proguard.pass;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import proguard.*;
-import proguard.util.Benchmark;
-import proguard.util.TimeUtil;
+import proguard.util.*;
 
 public class PassRunner
 {
@@ -20,9 +19,28 @@ public class PassRunner
 
     public void run(Pass pass, AppView appView) throws Exception
     {
-        benchmark.start();
-        pass.execute(appView);
-        benchmark.stop();
+        // Collect any warnings about Kotlin metadata of library classes
+        // that the pass decodes, possibly in parallel, and print them out
+        // after the pass, also if it fails on them.
+        WarningSink kotlinMetadataWarningSink = appView.kotlinMetadataWarningSink;
+        if (kotlinMetadataWarningSink != null)
+        {
+            kotlinMetadataWarningSink.startCollecting();
+        }
+
+        try
+        {
+            benchmark.start();
+            pass.execute(appView);
+            benchmark.stop();
+        }
+        finally
+        {
+            if (kotlinMetadataWarningSink != null)
+            {
+                kotlinMetadataWarningSink.flush();
+            }
+        }
 
         logger.debug("Pass {} completed in {}", pass::getName, () -> TimeUtil.millisecondsToMinSecReadable(benchmark.getElapsedTimeMs()));
     }
@@ -58,16 +58,18 @@ public class Preverifier implements Pass
         // Clean up any old processing info.
         appView.programClassPool.classesAccept(new ClassCleaner());
 
-        // Preverify all methods.
+        // Preverify all methods, in parallel over the classes, with a
+        // separate preverifier for each thread.
         // Classes for JME must be preverified.
         // Classes for JSE 6 may optionally be preverified.
         // Classes for JSE 7 or higher must be preverified.
-        appView.programClassPool.classesAccept(
-            new ClassVersionFilter(configuration.microEdition ?
-                                   VersionConstants.CLASS_VERSION_1_0 :
-                                   VersionConstants.CLASS_VERSION_1_6,
-            new AllMethodVisitor(
-            new AllAttributeVisitor(
-            new CodePreverifier(configuration.microEdition)))));
+        appView.programClassPool.accept(
+            new ParallelAllClassVisitor(() ->
+                new ClassVersionFilter(configuration.microEdition ?
+                                       VersionConstants.CLASS_VERSION_1_0 :
+                                       VersionConstants.CLASS_VERSION_1_6,
+                new AllMethodVisitor(
+                new AllAttributeVisitor(
+                new CodePreverifier(configuration.microEdition))))));
     }
 }
@@ -58,7 +58,19 @@ public class SubroutineInliner implements Pass
         // Clean up any old processing info.
         appView.programClassPool.classesAccept(new ClassCleaner());
 
-        // Inline all subroutines.
+        // Inline all subroutines, in parallel over the classes, with a
+        // separate inliner for each thread.
+        appView.programClassPool.accept(
+            new ParallelAllClassVisitor(this::createSubroutineInliner));
+    }
+
+
+    /**
+     * Creates a class visitor that inlines the subroutines in the methods
+     * of the classes that it visits.
+     */
+    private ClassVisitor createSubroutineInliner()
+    {
         ClassVisitor inliner =
             new AllMethodVisitor(
             new AllAttributeVisitor(
@@ -74,6 +86,6 @@ public class SubroutineInliner implements Pass
                                        inliner);
         }
 
-        appView.programClassPool.classesAccept(inliner);
+        return inliner;
     }
 }
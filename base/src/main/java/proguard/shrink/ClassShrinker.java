@@ -37,6 +37,10 @@ import java.util.*;
 /**
  * This ClassVisitor removes constant pool entries, class members, and other
  * class elements that are not marked as being used.
+ * <p>
+ * Instances can shrink different classes in parallel, if the removable
+ * interfaces of all classes have been collected beforehand, with an
+ * {@link UnusedInterfaceCollector}.
  *
  * @see ClassUsageMarker
  *
@@ -50,7 +54,9 @@ implements   ClassVisitor,
              AnnotationVisitor,
              ElementValueVisitor
 {
-    private final SimpleUsageMarker usageMarker;
+    private final SimpleUsageMarker        usageMarker;
+    private final Map<Clazz, boolean[]>    unusedInterfaces;
+    private final UnusedInterfaceCollector unusedInterfaceCollector;
 
     private       int[]                   constantIndexMap        = new int[ClassEstimates.TYPICAL_CONSTANT_POOL_SIZE];
     private       int[]                   bootstrapMethodIndexMap = new int[ClassEstimates.TYPICAL_CONSTANT_POOL_SIZE];
@@ -68,7 +74,28 @@ implements   ClassVisitor,
      */
     public ClassShrinker(SimpleUsageMarker usageMarker)
     {
-        this.usageMarker = usageMarker;
+        this(usageMarker, null);
+    }
+
+
+    /**
+     * Creates a new ClassShrinker that can run in parallel with other
+     * instances.
+     * @param usageMarker      the usage marker that is used to mark the
+     *                         classes and class members.
+     * @param unusedInterfaces the flags of the removable interfaces of the
+     *                         program classes, as collected by an
+     *                         UnusedInterfaceCollector before any classes
+     *                         are shrunk, or null to collect them on the fly.
+     */
+    public ClassShrinker(SimpleUsageMarker     usageMarker,
+                         Map<Clazz, boolean[]> unusedInterfaces)
+    {
+        this.usageMarker              = usageMarker;
+        this.unusedInterfaces         = unusedInterfaces;
+        this.unusedInterfaceCollector = unusedInterfaces == null ?
+            new UnusedInterfaceCollector(usageMarker, null) :
+            null;
     }
 
 
@@ -123,8 +150,28 @@ implements   ClassVisitor,
         // and class attributes.
         if (programClass.u2interfacesCount > 0)
         {
-            new InterfaceDeleter(shrinkInterfaceFlags(programClass), true)
-                .visitProgramClass(programClass);
+            boolean[] unused = unusedInterfaces != null ?
+                unusedInterfaces.get(programClass) :
+                unusedInterfaceCollector.unusedInterfaceFlags(programClass);
+
+            if (unused != null)
+            {
+                // Remove the class from the subclasses of the removed
+                // interfaces ourselves, synchronizing on the interfaces,
+                // since other threads may be updating them.
+                for (int index = 0; index < programClass.u2interfacesCount; index++)
+                {
+                    if (unused[index])
+                    {
+                        programClass.constantPoolEntryAccept(programClass.u2interfaces[index],
+                            new ReferencedClassVisitor(
+                            new MySubclassRemover(programClass)));
+                    }
+                }
+
+                new InterfaceDeleter(unused, false)
+                    .visitProgramClass(programClass);
+            }
         }
 
         // Shrink the arrays for nest members and permitted subclasses.
@@ -179,9 +226,12 @@ implements   ClassVisitor,
         programClass.attributesAccept(signatureCleaner);
 
         // Compact the extra field pointing to the subclasses of this class.
-        programClass.subClassCount =
-            shrinkArray(programClass.subClasses,
-                        programClass.subClassCount);
+        synchronized (programClass)
+        {
+            programClass.subClassCount =
+                shrinkArray(programClass.subClasses,
+                            programClass.subClassCount);
+        }
     }
 
 
@@ -191,9 +241,12 @@ implements   ClassVisitor,
         // Library classes are left unchanged.
 
         // Compact the extra field pointing to the subclasses of this class.
-        libraryClass.subClassCount =
-            shrinkArray(libraryClass.subClasses,
-                        libraryClass.subClassCount);
+        synchronized (libraryClass)
+        {
+            libraryClass.subClassCount =
+                shrinkArray(libraryClass.subClasses,
+                            libraryClass.subClassCount);
+        }
     }
 
 
@@ -455,6 +508,35 @@ implements   ClassVisitor,
     }
 
 
+    /**
+     * This ClassVisitor removes the given subclass from the classes that it
+     * visits, synchronizing on the classes.
+     */
+    private static class MySubclassRemover
+    implements           ClassVisitor
+    {
+        private final Clazz subclass;
+
+
+        public MySubclassRemover(Clazz subclass)
+        {
+            this.subclass = subclass;
+        }
+
+
+        // Implementations for ClassVisitor.
+
+        @Override
+        public void visitAnyClass(Clazz clazz)
+        {
+            synchronized (clazz)
+            {
+                clazz.removeSubClass(subclass);
+            }
+        }
+    }
+
+
     // Implementations for ElementValueVisitor.
 
     public void visitAnyElementValue(Clazz clazz, Annotation annotation, ElementValue elementValue) {}
@@ -555,63 +637,6 @@ implements   ClassVisitor,
     }
 
 
-    /**
-     * Creates an array marking unused constant pool entries for all the
-     * elements in the given array of constant pool indices, pointing to
-     * class constants of interfaces.
-     * @return an array of flags indicating unused elements.
-     */
-    private boolean[] shrinkInterfaceFlags(ProgramClass programClass)
-    {
-        Constant[] constantPool    = programClass.constantPool;
-        int[]      interfaces      = programClass.u2interfaces;
-        int        interfacesCount = programClass.u2interfacesCount;
-
-        // Collect the names of all indirectly implemented interfaces, unless
-        // they are kept or the class itself is kept. That avoids problems if
-        // some code applies reflection to the list of interfaces.
-        Set indirectlyImplementedInterfaces = new HashSet();
-
-        if ((programClass.getProcessingFlags() & ProcessingFlags.DONT_SHRINK) == 0)
-        {
-            ConstantVisitor interfaceNameCollector =
-                new ReferencedClassVisitor(
-                new UsedClassFilter(usageMarker,
-                new ClassHierarchyTraveler(false, true, true, false,
-                new ProgramClassFilter(
-                new UsedClassFilter(usageMarker,
-                new ClassAccessFilter(AccessConstants.INTERFACE, 0,
-                new ClassProcessingFlagFilter(0, ProcessingFlags.DONT_SHRINK,
-                new ClassNameCollector(indirectlyImplementedInterfaces))))))));
-
-            programClass.superClassConstantAccept(interfaceNameCollector);
-            programClass.interfaceConstantsAccept(interfaceNameCollector);
-        }
-
-        boolean[] unused = new boolean[interfacesCount];
-
-        // Remember the unused or unnecessary constants.
-        for (int index = 0; index < interfacesCount; index++)
-        {
-            // The interface may be unused, or it may be unnecessary in the
-            // list of implemented interfaces, if a superclass/interface
-            // already implements it.
-            ClassConstant interfaceClassConstant =
-                (ClassConstant)constantPool[interfaces[index]];
-            String interfaceClassName =
-                interfaceClassConstant.getName(programClass);
-
-            if (!usageMarker.isUsed(interfaceClassConstant) ||
-                indirectlyImplementedInterfaces.contains(interfaceClassName))
-            {
-                unused[index] = true;
-            }
-        }
-
-        return unused;
-    }
-
-
     /**
      * Removes all indices that point to unused constant pool entries
      * from the given array.
@@ -0,0 +1,361 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2020 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.shrink;
+
+import proguard.*;
+import proguard.classfile.Clazz;
+import proguard.util.Processable;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class prints out the costs of keep class specifications: the time
+ * spent matching them, the classes and class members that they keep
+ * directly, and the classes and class members that are only kept because
+ * of them.
+ * <p>
+ * The latter are computed by giving each keep class specification its own
+ * virtual root in a copy of the usage graph, and then counting the used
+ * nodes that are dominated by each virtual root. Since the dominators are
+ * correct but not necessarily complete, the counts are lower bounds.
+ *
+ * @see KeepClassSpecificationStatistics
+ * @see UsageGraph#computeDominators()
+ */
+public class KeepRuleCostPrinter
+{
+    private static final String CSV_HEADER =
+        "rule,option,matching_time_ms,seed_classes,seed_members,exclusive_classes,exclusive_members";
+
+    private static final int UNKNOWN_OWNER = -2;
+
+
+    private final UsageGraph                       usageGraph;
+    private final KeepClassSpecificationStatistics statistics;
+
+
+    /**
+     * Creates a new KeepRuleCostPrinter.
+     * @param usageGraph the usage graph that was recorded while marking,
+     *                   with its used nodes flagged.
+     * @param statistics the statistics that were collected while marking.
+     */
+    public KeepRuleCostPrinter(UsageGraph                       usageGraph,
+                               KeepClassSpecificationStatistics statistics)
+    {
+        this.usageGraph = usageGraph;
+        this.statistics = statistics;
+    }
+
+
+    /**
+     * Prints out the costs of the given keep class specifications.
+     * @param keepClassSpecifications the keep class specifications, as in
+     *                                the configuration.
+     * @param json                    specifies whether to print JSON,
+     *                                instead of CSV.
+     * @param pw                      the writer to which the costs are
+     *                                printed.
+     */
+    public void print(List<KeepClassSpecification> keepClassSpecifications,
+                      boolean                      json,
+                      PrintWriter                  pw)
+    throws IOException
+    {
+        int ruleCount = keepClassSpecifications.size();
+
+        int[] exclusiveClassCounts  = new int[ruleCount];
+        int[] exclusiveMemberCounts = new int[ruleCount];
+
+        computeExclusiveCounts(keepClassSpecifications,
+                               exclusiveClassCounts,
+                               exclusiveMemberCounts);
+
+        if (json)
+        {
+            pw.println("[");
+        }
+        else
+        {
+            pw.println(CSV_HEADER);
+        }
+
+        for (int index = 0; index < ruleCount; index++)
+        {
+            KeepClassSpecification keepClassSpecification =
+                keepClassSpecifications.get(index);
+
+            Collection<Processable> seeds = statistics.getSeeds(keepClassSpecification);
+
+            int seedClassCount = 0;
+            for (Processable seed : seeds)
+            {
+                if (seed instanceof Clazz)
+                {
+                    seedClassCount++;
+                }
+            }
+
+            String option       = optionString(keepClassSpecification);
+            String matchingTime = String.format(Locale.ROOT, "%.3f",
+                                                statistics.getMatchingTime(keepClassSpecification) / 1e6);
+
+            if (json)
+            {
+                pw.println("  {" +
+                           "\"rule\": "              + (index + 1)                   + ", " +
+                           "\"option\": "            + jsonString(option)            + ", " +
+                           "\"matching_time_ms\": "  + matchingTime                  + ", " +
+                           "\"seed_classes\": "      + seedClassCount                + ", " +
+                           "\"seed_members\": "      + (seeds.size() - seedClassCount) + ", " +
+                           "\"exclusive_classes\": " + exclusiveClassCounts[index]   + ", " +
+                           "\"exclusive_members\": " + exclusiveMemberCounts[index]  +
+                           (index < ruleCount - 1 ? "}," : "}"));
+            }
+            else
+            {
+                pw.println((index + 1)                      + "," +
+                           csvString(option)                + "," +
+                           matchingTime                     + "," +
+                           seedClassCount                   + "," +
+                           (seeds.size() - seedClassCount)  + "," +
+                           exclusiveClassCounts[index]      + "," +
+                           exclusiveMemberCounts[index]);
+            }
+        }
+
+        if (json)
+        {
+            pw.println("]");
+        }
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Counts the used program classes and class members that are only kept
+     * because of each of the given keep class specifications.
+     */
+    private void computeExclusiveCounts(List<KeepClassSpecification> keepClassSpecifications,
+                                        int[]                        exclusiveClassCounts,
+                                        int[]                        exclusiveMemberCounts)
+    {
+        int nodeCount = usageGraph.getNodeCount();
+        int ruleCount = keepClassSpecifications.size();
+
+        // Copy the nodes of the usage graph, with the same numbers.
+        UsageGraph ruleGraph = new UsageGraph();
+        for (int node = UsageGraph.ROOT + 1; node < nodeCount; node++)
+        {
+            ruleGraph.addNode(usageGraph.getNodeFlags(node),
+                              usageGraph.getClassNode(node),
+                              null,
+                              null);
+        }
+
+        // Add a virtual root for each keep class specification, and collect
+        // the virtual roots of each seed.
+        int[]                       ruleNodes = new int[ruleCount];
+        Map<Integer, List<Integer>> seedRules = new HashMap<>();
+
+        for (int index = 0; index < ruleCount; index++)
+        {
+            int ruleNode = ruleGraph.addNode(UsageGraph.ROOT_NODE | UsageGraph.USED, -1, null, null);
+            ruleNodes[index] = ruleNode;
+
+            ruleGraph.addEdge(UsageGraph.ROOT, UsageGraph.KEPT, ruleNode);
+
+            for (Processable seed : statistics.getSeeds(keepClassSpecifications.get(index)))
+            {
+                int seedNode = usageGraph.getNode(seed);
+                if (seedNode > UsageGraph.ROOT)
+                {
+                    seedRules.computeIfAbsent(seedNode, key -> new ArrayList<>()).add(ruleNode);
+                }
+            }
+        }
+
+        // Copy the edges, letting the virtual roots keep their seeds,
+        // instead of the root.
+        int edgeCount = usageGraph.getEdgeCount();
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            int sourceNode = usageGraph.getEdgeSource(edge);
+            int edgeKind   = usageGraph.getEdgeKind(edge);
+            int targetNode = usageGraph.getEdgeTarget(edge);
+
+            List<Integer> ruleNodeList = sourceNode == UsageGraph.ROOT ?
+                seedRules.get(targetNode) :
+                null;
+
+            if (ruleNodeList == null)
+            {
+                ruleGraph.addEdge(sourceNode, edgeKind, targetNode);
+            }
+            else
+            {
+                for (int ruleNode : ruleNodeList)
+                {
+                    ruleGraph.addEdge(ruleNode, edgeKind, targetNode);
+                }
+            }
+        }
+
+        int[] dominators = ruleGraph.computeDominators();
+
+        // Find the virtual root that dominates each node, if any.
+        int[] owners = new int[ruleGraph.getNodeCount()];
+        Arrays.fill(owners, UNKNOWN_OWNER);
+        for (int index = 0; index < ruleCount; index++)
+        {
+            owners[ruleNodes[index]] = index;
+        }
+
+        int[] path = new int[ruleGraph.getNodeCount()];
+
+        for (int node = UsageGraph.ROOT + 1; node < nodeCount; node++)
+        {
+            if (dominators[node] >= 0 &&
+                !usageGraph.isLibrary(node))
+            {
+                int owner = findOwner(node, dominators, owners, path);
+                if (owner >= 0)
+                {
+                    if (usageGraph.getNodeKind(node) == UsageGraph.CLASS_NODE)
+                    {
+                        exclusiveClassCounts[owner]++;
+                    }
+                    else
+                    {
+                        exclusiveMemberCounts[owner]++;
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Returns the index of the keep class specification whose virtual root
+     * dominates the given node, or -1 if there isn't any. Remembers the
+     * results for the nodes on the way, in the given array of owners.
+     */
+    private int findOwner(int   node,
+                          int[] dominators,
+                          int[] owners,
+                          int[] path)
+    {
+        int pathLength = 0;
+        while (node != UsageGraph.ROOT &&
+               owners[node] == UNKNOWN_OWNER)
+        {
+            path[pathLength++] = node;
+            node = dominators[node];
+        }
+
+        int owner = node == UsageGraph.ROOT ? -1 : owners[node];
+
+        for (int index = 0; index < pathLength; index++)
+        {
+            owners[path[index]] = owner;
+        }
+
+        return owner;
+    }
+
+
+    /**
+     * Returns the given keep class specification as a single line of
+     * configuration text.
+     */
+    private String optionString(KeepClassSpecification keepClassSpecification)
+    throws IOException
+    {
+        StringWriter stringWriter = new StringWriter();
+        PrintWriter  printWriter  = new PrintWriter(stringWriter);
+
+        new ConfigurationWriter(printWriter).write(keepClassSpecification);
+        printWriter.flush();
+
+        StringBuilder builder = new StringBuilder();
+        for (String line : stringWriter.toString().split("\n"))
+        {
+            line = line.trim();
+            if (line.length() > 0 &&
+                !line.startsWith("#"))
+            {
+                if (builder.length() > 0)
+                {
+                    builder.append(' ');
+                }
+
+                builder.append(line.replaceAll("\\s+", " "));
+            }
+        }
+
+        return builder.toString();
+    }
+
+
+    /**
+     * Returns the given string as a quoted CSV field.
+     */
+    private static String csvString(String string)
+    {
+        return '"' + string.replace("\"", "\"\"") + '"';
+    }
+
+
+    /**
+     * Returns the given string as a quoted JSON string.
+     */
+    private static String jsonString(String string)
+    {
+        StringBuilder builder = new StringBuilder(string.length() + 2);
+        builder.append('"');
+
+        for (int index = 0; index < string.length(); index++)
+        {
+            char c = string.charAt(index);
+            switch (c)
+            {
+                case '"':  builder.append("\\\""); break;
+                case '\\': builder.append("\\\\"); break;
+                case '\t': builder.append("\\t");  break;
+                case '\r': builder.append("\\r");  break;
+                case '\n': builder.append("\\n");  break;
+                default:
+                    if (c < ' ')
+                    {
+                        builder.append(String.format(Locale.ROOT, "\\u%04x", (int)c));
+                    }
+                    else
+                    {
+                        builder.append(c);
+                    }
+            }
+        }
+
+        return builder.append('"').toString();
+    }
+}
@@ -2,7 +2,7 @@
  * ProGuard -- shrinking, optimization, obfuscation, and preverification
  *             of Java bytecode.
  *
- * Copyright (c) 2002-2020 Guardsquare NV
+ * Copyright (c) 2002-2022 Guardsquare NV
  *
  * This program is free software; you can redistribute it and/or modify it
  * under the terms of the GNU General Public License as published by the Free
@@ -20,27 +20,27 @@
  */
 package proguard.shrink;
 
-import proguard.classfile.*;
-import proguard.util.Processable;
-
 /**
- * This UsageMarker constructs the shortest chain of dependencies.
+ * This UsageMarker constructs the shortest chain of dependencies, in the
+ * usage graph of the given {@link ShortestUsageMarker}.
  *
- * @author Eric Lafortune
- * @see ClassShrinker
  * @see ShortestUsagePrinter
+ *
+ * @deprecated Use a {@link UsageGraphMarker} instead.
  */
+@Deprecated
 public class ShortestClassUsageMarker
-extends      ClassUsageMarker
+extends      UsageGraphMarker
 {
     /**
-     * Creates a new ShortestUsageMarker with the given initial reason.
+     * Creates a new ShortestClassUsageMarker. The reason for the
+     * classes and class members that are kept by the configuration is
+     * the standard reason of the usage graph.
      */
     public ShortestClassUsageMarker(ShortestUsageMarker usageMarker,
                                     String              reason)
     {
-        super(usageMarker);
-        setCurrentUsageMark(new ShortestUsageMark(reason));
+        super(usageMarker, usageMarker.getUsageGraph());
     }
 
 
@@ -50,137 +50,4 @@ extends      ClassUsageMarker
     {
         return (ShortestUsageMarker)super.getUsageMarker();
     }
-
-
-    protected void markProgramClassBody(ProgramClass programClass)
-    {
-        ShortestUsageMark previousUsageMark = getCurrentUsageMark();
-
-        setCurrentUsageMark(new ShortestUsageMark(getShortestUsageMark(programClass),
-                                                  "is extended by   ",
-                                                  10000,
-                                                  programClass));
-
-        super.markProgramClassBody(programClass);
-
-        setCurrentUsageMark(previousUsageMark);
-    }
-
-
-    protected void markProgramFieldBody(ProgramClass programClass, ProgramField programField)
-    {
-        ShortestUsageMark previousUsageMark = getCurrentUsageMark();
-
-        setCurrentUsageMark(new ShortestUsageMark(getShortestUsageMark(programField),
-                                                  "is referenced by ",
-                                                  1,
-                                                  programClass,
-                                                  programField));
-
-        super.markProgramFieldBody(programClass, programField);
-
-        setCurrentUsageMark(previousUsageMark);
-    }
-
-
-    protected void markProgramMethodBody(ProgramClass programClass, ProgramMethod programMethod)
-    {
-        ShortestUsageMark previousUsageMark = getCurrentUsageMark();
-
-        setCurrentUsageMark(new ShortestUsageMark(getShortestUsageMark(programMethod),
-                                                  "is invoked by    ",
-                                                  1,
-                                                  programClass,
-                                                  programMethod));
-
-        super.markProgramMethodBody(programClass, programMethod);
-
-        setCurrentUsageMark(previousUsageMark);
-    }
-
-
-    protected void markMethodHierarchy(Clazz clazz, Method method)
-    {
-        ShortestUsageMark previousUsageMark = getCurrentUsageMark();
-
-        setCurrentUsageMark(new ShortestUsageMark(getShortestUsageMark(method),
-                                                  "implements       ",
-                                                  100,
-                                                  clazz,
-                                                  method));
-
-        super.markMethodHierarchy(clazz, method);
-
-        setCurrentUsageMark(previousUsageMark);
-    }
-
-
-    public boolean shouldBeMarkedAsUsed(ProgramClass programClass)
-    {
-        return getUsageMarker().shouldBeMarkedAsUsed(programClass);
-    }
-
-
-    public boolean shouldBeMarkedAsUsed(ProgramClass programClass,
-                                        ProgramMember programMember)
-    {
-        return getUsageMarker().shouldBeMarkedAsUsed(programClass, programMember);
-    }
-
-
-    public boolean shouldBeMarkedAsUsed(Processable processable)
-    {
-        return getUsageMarker().shouldBeMarkedAsUsed(processable);
-    }
-
-
-    public boolean isUsed(Processable processable)
-    {
-        return getUsageMarker().isUsed(processable);
-    }
-
-
-    public void markAsPossiblyUsed(Processable processable)
-    {
-        getUsageMarker().markAsPossiblyUsed(processable);
-    }
-
-
-    public boolean shouldBeMarkedAsPossiblyUsed(ProgramClass programClass,
-                                                ProgramMember programMember)
-    {
-        return getUsageMarker().shouldBeMarkedAsPossiblyUsed(programClass, programMember);
-    }
-
-
-    public boolean shouldBeMarkedAsPossiblyUsed(Processable processable)
-    {
-        return getUsageMarker().shouldBeMarkedAsPossiblyUsed(processable);
-    }
-
-
-    public boolean isPossiblyUsed(Processable processable)
-    {
-        return getUsageMarker().isPossiblyUsed(processable);
-    }
-
-
-    protected ShortestUsageMark getShortestUsageMark(Processable processable)
-    {
-        return getUsageMarker().getShortestUsageMark(processable);
-    }
-
-
-    // Small utility methods.
-
-    private ShortestUsageMark getCurrentUsageMark()
-    {
-        return getUsageMarker().currentUsageMark;
-    }
-
-
-    private void setCurrentUsageMark(ShortestUsageMark shortestUsageMark)
-    {
-        getUsageMarker().setCurrentUsageMark(shortestUsageMark);
-    }
 }
@@ -2,7 +2,7 @@
  * ProGuard -- shrinking, optimization, obfuscation, and preverification
  *             of Java bytecode.
  *
- * Copyright (c) 2002-2020 Guardsquare NV
+ * Copyright (c) 2002-2022 Guardsquare NV
  *
  * This program is free software; you can redistribute it and/or modify it
  * under the terms of the GNU General Public License as published by the Free
@@ -23,96 +23,46 @@ package proguard.shrink;
 import proguard.classfile.*;
 import proguard.classfile.visitor.*;
 
-
 /**
- * This class can be used as a mark when keeping classes, class members, and
- * other elements. It can be certain or preliminary. It also contains additional
- * information about the reasons why an element is being kept.
+ * This class describes the last link in the shortest chain of dependencies
+ * to a class or class member: the reason and the class or class member that
+ * is responsible.
  *
- * @see ClassShrinker
+ * @see ShortestUsageMarker
  *
- * @author Eric Lafortune
+ * @deprecated Use {@link UsageGraph#getParentNode(int)} and
+ * {@link UsageGraph#getParentEdgeKind(int)} instead.
  */
+@Deprecated
 final class ShortestUsageMark
 {
-    private final boolean certain;
-    private final String  reason;
-    private final int     depth;
-    private       Clazz   clazz;
-    private       Member  member;
+    private final String reason;
+    private final Clazz  clazz;
+    private final Member member;
 
 
     /**
-     * Creates a new certain ShortestUsageMark.
+     * Creates a new ShortestUsageMark.
      * @param reason the reason for this mark.
+     * @param clazz  the class causing this mark, if any.
+     * @param member the member in the above class causing this mark, if any.
      */
-    public ShortestUsageMark(String reason)
-    {
-        this.certain = true;
-        this.reason  = reason;
-        this.depth   = 0;
-    }
-
-
-    /**
-     * Creates a new certain ShortestUsageMark.
-     * @param previousUsageMark the previous mark to which this one is linked.
-     * @param reason            the reason for this mark.
-     * @param clazz             the class causing this mark.
-     */
-    public ShortestUsageMark(ShortestUsageMark previousUsageMark,
-                             String            reason,
-                             int               cost,
-                             Clazz             clazz)
-    {
-        this(previousUsageMark, reason, cost, clazz, null);
-    }
-
-
-    /**
-     * Creates a new certain ShortestUsageMark.
-     * @param previousUsageMark the previous mark to which this one is linked.
-     * @param reason            the reason for this mark.
-     * @param clazz             the class causing this mark.
-     * @param member            the member in the above class causing this mark.
-     * @param cost              the added cost of following this path.
-     */
-    public ShortestUsageMark(ShortestUsageMark previousUsageMark,
-                             String            reason,
-                             int               cost,
-                             Clazz             clazz,
-                             Member            member)
+    public ShortestUsageMark(String reason,
+                             Clazz  clazz,
+                             Member member)
     {
-        this.certain = true;
-        this.reason  = reason;
-        this.depth   = previousUsageMark.depth + cost;
-        this.clazz   = clazz;
-        this.member  = member;
+        this.reason = reason;
+        this.clazz  = clazz;
+        this.member = member;
     }
 
 
     /**
-     * Creates a new ShortestUsageMark, based on another mark.
-     * @param otherUsageMark the other mark, whose properties will be copied.
-     * @param certain        specifies whether this is a certain mark.
-     */
-    public ShortestUsageMark(ShortestUsageMark otherUsageMark,
-                             boolean           certain)
-    {
-        this.certain = certain;
-        this.reason  = otherUsageMark.reason;
-        this.depth   = otherUsageMark.depth;
-        this.clazz   = otherUsageMark.clazz;
-        this.member  = otherUsageMark.member;
-    }
-
-
-    /**
-     * Returns whether this is a certain mark.
+     * Returns whether this is a certain mark, which is always the case.
      */
     public boolean isCertain()
     {
-        return certain;
+        return true;
     }
 
 
@@ -125,16 +75,6 @@ final class ShortestUsageMark
     }
 
 
-    /**
-     * Returns whether this mark has a shorter chain of reasons than the
-     * given mark.
-     */
-    public boolean isShorter(ShortestUsageMark otherUsageMark)
-    {
-        return this.depth < otherUsageMark.depth;
-    }
-
-
     /**
      * Returns whether this is mark is caused by the given class.
      */
@@ -145,7 +85,7 @@ final class ShortestUsageMark
 
 
     /**
-     * Returns whether this is mark is caused by a mmeber of the given class.
+     * Returns whether this is mark is caused by a member of the given class.
      */
     public boolean isCausedByMember(Clazz clazz)
     {
@@ -195,9 +135,8 @@ final class ShortestUsageMark
 
     public String toString()
     {
-        return "certain=" + certain + ", depth="+depth+": " +
-               reason +
-               (clazz      != null ? clazz.getName() : "(none)") + ": " +
-               (member     != null ? member.getName(clazz) : "(none)");
+        return reason +
+               (clazz  != null ? clazz.getName() : "(none)") + ": " +
+               (member != null ? member.getName(clazz) : "(none)");
     }
 }
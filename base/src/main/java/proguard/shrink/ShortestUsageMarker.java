@@ -2,7 +2,7 @@
  * ProGuard -- shrinking, optimization, obfuscation, and preverification
  *             of Java bytecode.
  *
- * Copyright (c) 2002-2020 Guardsquare NV
+ * Copyright (c) 2002-2022 Guardsquare NV
  *
  * This program is free software; you can redistribute it and/or modify it
  * under the terms of the GNU General Public License as published by the Free
@@ -21,260 +21,62 @@
 package proguard.shrink;
 
 import proguard.classfile.*;
-import proguard.classfile.visitor.*;
 import proguard.util.Processable;
 
 /**
- * This SimpleUsageMarker keeps track of the shortest dependency chains.
+ * This SimpleUsageMarker keeps track of the shortest dependency chains,
+ * in a usage graph that is filled out by a {@link ShortestClassUsageMarker}.
  *
- * @author Johan Leys
+ * @see ShortestClassUsageMarker
+ * @see ShortestUsagePrinter
+ *
+ * @deprecated Use a {@link SimpleUsageMarker} with a {@link UsageGraphMarker}
+ * and a {@link UsageGraph} instead.
  */
+@Deprecated
 public class ShortestUsageMarker
 extends      SimpleUsageMarker
 {
-    // A field acting as a parameter to the visitor methods.
-    public ShortestUsageMark currentUsageMark;
-
-
-    // A utility object to check for direct or indirect references.
-    private final MyReferenceChecker referenceChecker = new MyReferenceChecker();
-
-
-    public void setCurrentUsageMark(ShortestUsageMark currentUsageMark)
-    {
-        this.currentUsageMark = currentUsageMark;
-    }
-
-
-    // Implementations for SimpleUsageMarker.
-
-    public void markAsUsed(Processable processable)
-    {
-        Object processingInfo = processable.getProcessingInfo();
-
-        ShortestUsageMark shortestUsageMark =
-            processingInfo instanceof ShortestUsageMark      &&
-            !((ShortestUsageMark)processingInfo).isCertain() &&
-            !currentUsageMark.isShorter((ShortestUsageMark)processingInfo) ?
-                new ShortestUsageMark((ShortestUsageMark)processingInfo, true):
-                currentUsageMark;
-
-        processable.setProcessingInfo(shortestUsageMark);
-    }
-
-
-    public boolean isUsed(Processable processable)
-    {
-        Object processingInfo = processable.getProcessingInfo();
-
-        return processingInfo != null                      &&
-               processingInfo instanceof ShortestUsageMark &&
-               ((ShortestUsageMark)processingInfo).isCertain();
-    }
-
-
-    public boolean shouldBeMarkedAsUsed(ProgramClass programClass)
-    {
-        Object processingInfo = programClass.getProcessingInfo();
-
-        return processingInfo == null                           ||
-               !(processingInfo instanceof ShortestUsageMark)   ||
-               !((ShortestUsageMark)processingInfo).isCertain() ||
-               currentUsageMark.isShorter((ShortestUsageMark)processingInfo) &&
-               !referencesClassMember(currentUsageMark, programClass);
-    }
-
-
-    public boolean shouldBeMarkedAsUsed(ProgramClass  programClass,
-                                        ProgramMember programMember)
-    {
-        Object processingInfo = programMember.getProcessingInfo();
-
-        return processingInfo == null                           ||
-               !(processingInfo instanceof ShortestUsageMark)   ||
-               !((ShortestUsageMark)processingInfo).isCertain() ||
-               currentUsageMark.isShorter((ShortestUsageMark)processingInfo) &&
-               !referencesClass(currentUsageMark, programClass);
-    }
-
-
-    public boolean shouldBeMarkedAsUsed(Processable processable)
-    {
-        Object processingInfo = processable.getProcessingInfo();
-
-        return processingInfo == null                           ||
-               !(processingInfo instanceof ShortestUsageMark)   ||
-               !((ShortestUsageMark)processingInfo).isCertain() ||
-               currentUsageMark.isShorter((ShortestUsageMark)processingInfo);
-    }
-
-
-    public void markAsPossiblyUsed(Processable processable)
-    {
-        processable.setProcessingInfo(new ShortestUsageMark(currentUsageMark, false));
-    }
-
-
-    public boolean shouldBeMarkedAsPossiblyUsed(ProgramClass  programClass,
-                                                ProgramMember programMember)
-    {
-        Object processingInfo = programMember.getProcessingInfo();
-
-        return processingInfo == null                         ||
-               !(processingInfo instanceof ShortestUsageMark) ||
-               currentUsageMark.isShorter((ShortestUsageMark)processingInfo) &&
-               // Do not overwrite a certain mark with a shorter potential mark.
-               !((ShortestUsageMark)processingInfo).isCertain()              &&
-               !referencesClass(currentUsageMark, programClass);
-    }
-
-
-    public boolean shouldBeMarkedAsPossiblyUsed(Processable processable)
-    {
-        Object processingInfo = processable.getProcessingInfo();
-
-        return processingInfo == null                         ||
-               !(processingInfo instanceof ShortestUsageMark) ||
-               currentUsageMark.isShorter((ShortestUsageMark)processingInfo) &&
-               // Do not overwrite a certain mark with a shorter potential mark.
-               !((ShortestUsageMark)processingInfo).isCertain();
-    }
-
-
-    public boolean isPossiblyUsed(Processable processable)
-    {
-        Object processingInfo = processable.getProcessingInfo();
-
-        return processingInfo != null                      &&
-               processingInfo instanceof ShortestUsageMark &&
-               !((ShortestUsageMark)processingInfo).isCertain();
-    }
-
-
-    protected ShortestUsageMark getShortestUsageMark(Processable processable)
-    {
-        Object processingInfo = processable.getProcessingInfo();
-
-        return (ShortestUsageMark)processingInfo;
-    }
-
-
-    // Small utility methods.
-
-    /**
-     * Returns whether the given usage mark references the given class,
-     * directly or indirectly.
-     */
-    private boolean referencesClass(ShortestUsageMark shortestUsageMark,
-                                    Clazz             clazz)
-    {
-        return referenceChecker.referencesClass(shortestUsageMark, clazz);
-    }
+    private final UsageGraph usageGraph = new UsageGraph();
 
 
     /**
-     * Returns whether the given usage mark references a member of the given
-     * class, directly or indirectly.
+     * Returns the graph in which the dependencies are recorded.
      */
-    private boolean referencesClassMember(ShortestUsageMark shortestUsageMark,
-                                          Clazz             clazz)
+    public UsageGraph getUsageGraph()
     {
-        return referenceChecker.referencesClassMember(shortestUsageMark, clazz);
+        return usageGraph;
     }
 
 
     /**
-     * This class checks whether a given usage mark is caused by a given
-     * class or a member of a given class, directly or indirectly.
+     * Returns the last link in the shortest chain of dependencies to the
+     * given class or class member, or null if it isn't being used.
      */
-    private class MyReferenceChecker
-    implements    ClassVisitor,
-                  MemberVisitor
+    protected ShortestUsageMark getShortestUsageMark(Processable processable)
     {
-        private Clazz   checkClass;
-        private boolean checkMember;
-        private boolean isReferencing;
-
-
-        public boolean referencesClass(ShortestUsageMark shortestUsageMark,
-                                       Clazz             clazz)
-        {
-            checkClass    = clazz;
-            checkMember   = false;
-            isReferencing = false;
-
-            checkReferenceFrom(shortestUsageMark);
-
-            return isReferencing;
-        }
-
-
-        public boolean referencesClassMember(ShortestUsageMark shortestUsageMark,
-                                             Clazz             clazz)
-        {
-            checkClass    = clazz;
-            checkMember   = true;
-            isReferencing = false;
-
-            checkReferenceFrom(shortestUsageMark);
-
-            return isReferencing;
-        }
-
-
-        // Implementations for ClassVisitor.
-
-        @Override
-        public void visitAnyClass(Clazz clazz) { }
-
-
-        @Override
-        public void visitProgramClass(ProgramClass programClass)
-        {
-            checkReferenceFrom(programClass);
-        }
-
-
-        // Implementations for MemberVisitor.
-        public void visitLibraryField(LibraryClass libraryClass, LibraryField libraryField) {}
-
-        public void visitLibraryMethod(LibraryClass libraryClass, LibraryMethod libraryMethod) {}
-
-
-        public void visitProgramField(ProgramClass programClass, ProgramField programField)
+        int node = usageGraph.getNode(processable);
+        if (!isUsed(processable) || node < 0)
         {
-            checkReferenceFrom(programField);
+            return null;
         }
 
-
-        public void visitProgramMethod(ProgramClass programClass, ProgramMethod programMethod)
+        if (!usageGraph.hasShortestPaths())
         {
-            checkReferenceFrom(programMethod);
+            usageGraph.markUsedNodes(this);
+            usageGraph.computeShortestPaths();
         }
 
-
-       // Small utility members.
-
-        private void checkReferenceFrom(Processable processable)
+        int parentNode = usageGraph.getParentNode(node);
+        if (parentNode < 0)
         {
-            // Check the causing class or member, if still necessary.
-            if (!isReferencing)
-            {
-                checkReferenceFrom(getShortestUsageMark(processable));
-            }
+            return null;
         }
 
+        Processable parent = usageGraph.getProcessable(parentNode);
 
-        private void checkReferenceFrom(ShortestUsageMark shortestUsageMark)
-        {
-            // Check whether the class is marked because of a member of the
-            // class, or the class member is marked because of the class.
-            isReferencing = checkMember ?
-                shortestUsageMark.isCausedByMember(checkClass) :
-                shortestUsageMark.isCausedBy(checkClass);
-
-            shortestUsageMark.acceptClassVisitor(this);
-            shortestUsageMark.acceptMemberVisitor(this);
-        }
+        return new ShortestUsageMark(UsageGraph.getReason(usageGraph.getParentEdgeKind(node)),
+                                     usageGraph.getClass(parentNode),
+                                     parent instanceof Member ? (Member)parent : null);
     }
 }
@@ -24,15 +24,18 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import proguard.*;
 import proguard.classfile.*;
-import proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor;
+import proguard.classfile.kotlin.visitor.*;
 import proguard.classfile.util.WarningLogger;
 import proguard.fixer.kotlin.KotlinAnnotationFlagFixer;
 import proguard.resources.file.visitor.ResourceFileProcessingFlagFilter;
 import proguard.classfile.visitor.*;
 import proguard.pass.Pass;
 import proguard.util.*;
+import proguard.util.kotlin.EncodedKotlinMetadataSkipper;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This pass shrinks class pools according to a given configuration.
@@ -72,6 +75,18 @@ public class Shrinker implements Pass
             logger.info("Printing usage to [" + PrintWriterUtil.fileName(configuration.printUsage) + "]...");
         }
 
+        // We'll print out the usage graph, if requested.
+        if (configuration.printUsageGraph != null && !afterOptimizer)
+        {
+            logger.info("Printing usage graph to [" + configuration.printUsageGraph.getAbsolutePath() + "]...");
+        }
+
+        // We'll print out the costs of the keep rules, if requested.
+        if (configuration.printKeepRuleCosts != null && !afterOptimizer)
+        {
+            logger.info("Printing keep rule costs to [" + PrintWriterUtil.fileName(configuration.printKeepRuleCosts) + "]...");
+        }
+
         // Check if we have at least some keep commands.
         if (configuration.keep == null)
         {
@@ -84,19 +99,32 @@ public class Shrinker implements Pass
 
         // Clean up any old processing info.
         appView.programClassPool.classesAccept(new ClassCleaner());
-        appView.libraryClassPool.classesAccept(new ClassCleaner());
+        appView.libraryClassPool.classesAccept(new EncodedKotlinMetadataSkipper(new ClassCleaner()));
+
+        // Assign indices to the program classes, class members, constants,
+        // and attributes, so the marker can keep its marks in a side table.
+        // Any other processables get their indices on demand. The index is
+        // dropped after this run, along with any removed processables.
+        ProcessableIndex processableIndex =
+            new ProcessableIndex(processableCount(appView.programClassPool));
 
-        // Create a visitor for marking the seeds.
-        SimpleUsageMarker simpleUsageMarker = configuration.whyAreYouKeeping == null || afterOptimizer ?
-            new SimpleUsageMarker() :
-            new ShortestUsageMarker();
+        appView.programClassPool.classesAccept(new ProcessableIndexer(processableIndex));
 
-         // Create a usage marker for resources and code, tracing the reasons
-         // if specified.
-         ClassUsageMarker classUsageMarker = configuration.whyAreYouKeeping == null || afterOptimizer ?
-             new ClassUsageMarker(simpleUsageMarker) :
-             new ShortestClassUsageMarker((ShortestUsageMarker) simpleUsageMarker,
-                                          "is kept by a directive in the configuration.\n\n");
+        // Create a visitor for marking the seeds, with the marks in a side
+        // table, based on the indices of the processables.
+        SimpleUsageMarker simpleUsageMarker = new SimpleUsageMarker(processableIndex);
+
+        // Create a usage marker for resources and code, recording the
+        // dependencies if we have to explain or print them.
+        UsageGraph usageGraph = (configuration.whyAreYouKeeping   != null ||
+                                 configuration.printUsageGraph    != null ||
+                                 configuration.printKeepRuleCosts != null) && !afterOptimizer ?
+            new UsageGraph() :
+            null;
+
+        ClassUsageMarker classUsageMarker = usageGraph == null ?
+            new ClassUsageMarker(simpleUsageMarker) :
+            new UsageGraphMarker(simpleUsageMarker, usageGraph);
 
         // Mark all used code and resources and resource files.
         new UsageMarker(configuration).mark(appView.programClassPool,
@@ -105,25 +133,71 @@ public class Shrinker implements Pass
                                                     simpleUsageMarker,
                                                     classUsageMarker);
 
+        // Make sure all class members have their classes, for their names
+        // and for their dependencies.
+        if ((configuration.printUsageGraph    != null ||
+             configuration.printKeepRuleCosts != null) && !afterOptimizer)
+        {
+            usageGraph.completeClassNodes(appView.programClassPool);
+            usageGraph.completeClassNodes(appView.libraryClassPool);
+            usageGraph.markUsedNodes(simpleUsageMarker);
+        }
+
+        // Should we print out the usage graph?
+        if (configuration.printUsageGraph != null && !afterOptimizer)
+        {
+            try (OutputStream outputStream = new FileOutputStream(configuration.printUsageGraph))
+            {
+                new UsageGraphWriter(outputStream).write(usageGraph);
+            }
+        }
+
         // Should we explain ourselves?
         if (configuration.whyAreYouKeeping != null && !afterOptimizer)
         {
-
             // Create a visitor for explaining classes and class members.
-            ShortestUsagePrinter shortestUsagePrinter =
-                new ShortestUsagePrinter((ShortestUsageMarker)classUsageMarker.getUsageMarker(),
-                                         configuration.verbose,
-                                         out);
+            UsageGraphPrinter usageGraphPrinter =
+                new UsageGraphPrinter(simpleUsageMarker,
+                                      usageGraph,
+                                      configuration.verbose,
+                                      out);
 
             ClassPoolVisitor whyClassPoolvisitor =
                 new ClassSpecificationVisitorFactory()
                     .createClassPoolVisitor(configuration.whyAreYouKeeping,
-                                            shortestUsagePrinter,
-                                            shortestUsagePrinter);
+                                            usageGraphPrinter,
+                                            usageGraphPrinter);
 
-            // Mark the seeds.
+            // Explain the specified classes and class members.
             appView.programClassPool.accept(whyClassPoolvisitor);
             appView.libraryClassPool.accept(whyClassPoolvisitor);
+
+            // The last reason doesn't end with a println.
+            out.flush();
+        }
+
+        // Should we print out the costs of the keep rules?
+        if (configuration.printKeepRuleCosts != null          &&
+            appView.keepClassSpecificationStatistics != null &&
+            !afterOptimizer)
+        {
+            boolean json = configuration.printKeepRuleCosts != Configuration.STD_OUT &&
+                           configuration.printKeepRuleCosts.getName().endsWith(".json");
+
+            PrintWriter costWriter =
+                PrintWriterUtil.createPrintWriterOut(configuration.printKeepRuleCosts);
+
+            try
+            {
+                new KeepRuleCostPrinter(usageGraph,
+                                        appView.keepClassSpecificationStatistics)
+                    .print(configuration.keep, json, costWriter);
+            }
+            finally
+            {
+                PrintWriterUtil.closePrintWriter(configuration.printKeepRuleCosts,
+                                                 costWriter);
+            }
         }
 
         if (configuration.printUsage != null && !afterOptimizer)
@@ -144,29 +218,60 @@ public class Shrinker implements Pass
             }
         }
 
-        // Clean up used program classes and discard unused program classes.
-        ClassPool newProgramClassPool = new ClassPool();
+        // Collect some statistics, and the unused program classes.
+        ClassCounter originalClassCounter = new ClassCounter();
+        ClassCounter newClassCounter      = new ClassCounter();
+        List<Clazz>  unusedClasses        = new ArrayList<>();
+
         appView.programClassPool.classesAccept(
-            new UsedClassFilter(simpleUsageMarker,
             new MultiClassVisitor(
-                new ClassShrinker(simpleUsageMarker),
-                new ClassPoolFiller(newProgramClassPool)
-            )));
+                new ClassProcessingFlagFilter(0, ProcessingFlags.INJECTED,
+                new MultiClassVisitor(
+                    originalClassCounter,
+                    new UsedClassFilter(simpleUsageMarker,
+                                        newClassCounter))),
+                new UsedClassFilter(simpleUsageMarker,
+                                    null,
+                                    new ClassCollector(unusedClasses))));
 
-        appView.libraryClassPool.classesAccept(
-            new UsedClassFilter(simpleUsageMarker,
-            new ClassShrinker(simpleUsageMarker)));
+        // Collect the interfaces that can be removed from the used program
+        // classes, before any classes change, so we can then clean up the
+        // classes in parallel.
+        Map<Clazz, boolean[]> unusedInterfaces = new ConcurrentHashMap<>();
 
-        if (configuration.keepKotlinMetadata)
+        appView.programClassPool.accept(
+            new ParallelAllClassVisitor(() ->
+                new UsedClassFilter(simpleUsageMarker,
+                new UnusedInterfaceCollector(simpleUsageMarker, unusedInterfaces))));
+
+        // Clean up used program classes and library classes.
+        appView.programClassPool.accept(
+            new ParallelAllClassVisitor(() ->
+                new UsedClassFilter(simpleUsageMarker,
+                new ClassShrinker(simpleUsageMarker, unusedInterfaces))));
+
+        appView.libraryClassPool.accept(
+            new ParallelAllClassVisitor(() ->
+                new UsedClassFilter(simpleUsageMarker,
+                new ClassShrinker(simpleUsageMarker, unusedInterfaces))));
+
+        // Discard unused program classes, in place.
+        for (Clazz unusedClass : unusedClasses)
         {
-            // Clean up Kotlin metadata for unused classes/members.
-            newProgramClassPool.classesAccept(
-                new ReferencedKotlinMetadataVisitor(
-                new KotlinShrinker(simpleUsageMarker)));
+            appView.programClassPool.removeClass(unusedClass);
+        }
 
-            newProgramClassPool.classesAccept(
-                new ReferencedKotlinMetadataVisitor(
-                new KotlinAnnotationFlagFixer()));
+        if (configuration.keepKotlinMetadata)
+        {
+            // Clean up Kotlin metadata for unused classes/members. Each
+            // class only updates its own metadata, so we can do this in
+            // parallel.
+            appView.programClassPool.accept(
+                new ParallelAllClassVisitor(() ->
+                    new ReferencedKotlinMetadataVisitor(
+                    new MultiKotlinMetadataVisitor(
+                        new KotlinShrinker(simpleUsageMarker),
+                        new KotlinAnnotationFlagFixer()))));
 
             // Shrink the content of the Kotlin module files.
             appView.resourceFilePool.resourceFilesAccept(
@@ -174,18 +279,7 @@ public class Shrinker implements Pass
                                                      new KotlinModuleShrinker(simpleUsageMarker)));
         }
 
-        int newProgramClassPoolSize = newProgramClassPool.size();
-
-        // Collect some statistics.
-       ClassCounter originalClassCounter = new ClassCounter();
-        appView.programClassPool.classesAccept(
-           new ClassProcessingFlagFilter(0, ProcessingFlags.INJECTED,
-                                         originalClassCounter));
-
-       ClassCounter newClassCounter = new ClassCounter();
-       newProgramClassPool.classesAccept(
-           new ClassProcessingFlagFilter(0, ProcessingFlags.INJECTED,
-           newClassCounter));
+        int newProgramClassPoolSize = appView.programClassPool.size();
 
         logger.info("Removing unused program classes and class elements...");
         logger.info("  Original number of program classes:            {}", originalClassCounter.getCount());
@@ -209,7 +303,31 @@ public class Shrinker implements Pass
             }
         }
 
-        appView.programClassPool.clear();
-        newProgramClassPool.classesAccept(new ClassPoolFiller(appView.programClassPool));
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns an estimate of the number of classes, class members,
+     * constants, and attributes in the given program class pool.
+     */
+    private static int processableCount(ClassPool programClassPool)
+    {
+        int count = 0;
+
+        for (Clazz clazz : programClassPool.classes())
+        {
+            ProgramClass programClass = (ProgramClass)clazz;
+
+            // Count a few attributes per class member.
+            count += 1                                +
+                     programClass.u2constantPoolCount +
+                     programClass.u2attributesCount   +
+                     programClass.u2fieldsCount  * 2  +
+                     programClass.u2methodsCount * 4;
+        }
+
+        return count;
     }
 }
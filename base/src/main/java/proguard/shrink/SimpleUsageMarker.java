@@ -20,16 +20,60 @@
  */
 package proguard.shrink;
 
-import proguard.util.Processable;
+import proguard.util.*;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * This class marks processables, in order to remember whether they are
  * unused, possibly used, or definitely used.
+ * <p>
+ * The marks are stored in a side table, based on the indices of the
+ * processables in a {@link ProcessableIndex}, so the processing info of
+ * the processables remains available for other purposes. Each instance
+ * has its own marks, so a new instance never recognizes the marks of a
+ * previous instance. Marking and testing the marks are thread-safe.
  */
 public class SimpleUsageMarker
 {
-    private final Object POSSIBLY_USED = new Object();
-    private final Object USED          = new Object();
+    private static final int UNUSED        = 0;
+    private static final int POSSIBLY_USED = 1;
+    private static final int USED          = 2;
+
+    private static final int MARK_BITS = 2;
+    private static final int MARK_MASK = (1 << MARK_BITS) - 1;
+
+    // Each long holds the marks of 32 processables. Each stripe holds the
+    // marks of 64K processables, so the marks can grow with the index.
+    private static final int LONG_SIZE_SHIFT   = 5;
+    private static final int LONG_SIZE_MASK    = (1 << LONG_SIZE_SHIFT) - 1;
+    private static final int STRIPE_SIZE_SHIFT = 16;
+    private static final int STRIPE_SIZE_MASK  = (1 << STRIPE_SIZE_SHIFT) - 1;
+
+    private final ProcessableIndex processableIndex;
+
+    // The stripes are copied on write, so they can be read without locking.
+    private volatile AtomicLongArray[] stripes = new AtomicLongArray[0];
+
+
+    /**
+     * Creates a new SimpleUsageMarker with its own processable index.
+     */
+    public SimpleUsageMarker()
+    {
+        this(new ProcessableIndex());
+    }
+
+
+    /**
+     * Creates a new SimpleUsageMarker that uses the given processable
+     * index.
+     */
+    public SimpleUsageMarker(ProcessableIndex processableIndex)
+    {
+        this.processableIndex = processableIndex;
+    }
 
 
     /**
@@ -37,7 +81,7 @@ public class SimpleUsageMarker
      */
     public void markAsPossiblyUsed(Processable processable)
     {
-        processable.setProcessingInfo(POSSIBLY_USED);
+        setMark(processableIndex.indexOf(processable), POSSIBLY_USED);
     }
 
 
@@ -47,7 +91,7 @@ public class SimpleUsageMarker
      */
     public boolean isPossiblyUsed(Processable processable)
     {
-        return processable.getProcessingInfo() == POSSIBLY_USED;
+        return getMark(processable) == POSSIBLY_USED;
     }
 
 
@@ -56,7 +100,7 @@ public class SimpleUsageMarker
      */
     public void markAsUsed(Processable processable)
     {
-        processable.setProcessingInfo(USED);
+        setMark(processableIndex.indexOf(processable), USED);
     }
 
 
@@ -65,7 +109,11 @@ public class SimpleUsageMarker
      */
     public void markAsUnused(Processable processable)
     {
-        processable.setProcessingInfo(null);
+        int index = processableIndex.find(processable);
+        if (index >= 0)
+        {
+            setMark(index, UNUSED);
+        }
     }
 
 
@@ -74,6 +122,105 @@ public class SimpleUsageMarker
      */
     public boolean isUsed(Processable processable)
     {
-        return processable.getProcessingInfo() == USED;
+        return getMark(processable) == USED;
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns the mark of the given processable.
+     */
+    private int getMark(Processable processable)
+    {
+        int index = processableIndex.find(processable);
+        if (index < 0)
+        {
+            return UNUSED;
+        }
+
+        AtomicLongArray[] stripes = this.stripes;
+
+        int stripeIndex = index >>> STRIPE_SIZE_SHIFT;
+        if (stripeIndex >= stripes.length)
+        {
+            return UNUSED;
+        }
+
+        int offset = index & STRIPE_SIZE_MASK;
+
+        long marks = stripes[stripeIndex].get(offset >>> LONG_SIZE_SHIFT);
+
+        return (int)(marks >>> shift(offset)) & MARK_MASK;
+    }
+
+
+    /**
+     * Sets the mark of the processable with the given index.
+     */
+    private void setMark(int index, int mark)
+    {
+        AtomicLongArray stripe = stripe(index >>> STRIPE_SIZE_SHIFT);
+
+        int offset    = index & STRIPE_SIZE_MASK;
+        int longIndex = offset >>> LONG_SIZE_SHIFT;
+        int shift     = shift(offset);
+
+        long clearMask = ~((long)MARK_MASK << shift);
+        long markBits  =   (long)mark      << shift;
+
+        // Update the mark without affecting the marks of other processables
+        // in the same long.
+        long oldMarks;
+        long newMarks;
+        do
+        {
+            oldMarks = stripe.get(longIndex);
+            newMarks = (oldMarks & clearMask) | markBits;
+        }
+        while (oldMarks != newMarks &&
+               !stripe.compareAndSet(longIndex, oldMarks, newMarks));
+    }
+
+
+    /**
+     * Returns the stripe with the given index, creating it and any
+     * preceding stripes if necessary.
+     */
+    private AtomicLongArray stripe(int stripeIndex)
+    {
+        AtomicLongArray[] stripes = this.stripes;
+        if (stripeIndex < stripes.length)
+        {
+            return stripes[stripeIndex];
+        }
+
+        synchronized (this)
+        {
+            stripes = this.stripes;
+
+            int stripeCount = stripes.length;
+            if (stripeIndex >= stripeCount)
+            {
+                stripes = Arrays.copyOf(stripes, stripeIndex + 1);
+                for (int index = stripeCount; index <= stripeIndex; index++)
+                {
+                    stripes[index] = new AtomicLongArray(1 << (STRIPE_SIZE_SHIFT - LONG_SIZE_SHIFT));
+                }
+
+                this.stripes = stripes;
+            }
+
+            return stripes[stripeIndex];
+        }
+    }
+
+
+    /**
+     * Returns the bit position of the mark at the given offset in its long.
+     */
+    private static int shift(int offset)
+    {
+        return (offset & LONG_SIZE_MASK) * MARK_BITS;
     }
 }
@@ -0,0 +1,145 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.shrink;
+
+import proguard.classfile.*;
+import proguard.classfile.constant.*;
+import proguard.classfile.constant.visitor.ConstantVisitor;
+import proguard.classfile.visitor.*;
+import proguard.util.ProcessingFlags;
+
+import java.util.*;
+
+/**
+ * This ClassVisitor collects the interfaces that the {@link ClassShrinker}
+ * can remove from the program classes that it visits: the unused interfaces
+ * and the interfaces that are already implemented indirectly, through a
+ * super class or super interface.
+ * <p>
+ * The collection only depends on the class hierarchy, so collecting the
+ * interfaces of all classes before shrinking any of them allows the classes
+ * to be shrunk in parallel.
+ *
+ * @see ClassShrinker
+ */
+public class UnusedInterfaceCollector
+implements   ClassVisitor
+{
+    private final SimpleUsageMarker     usageMarker;
+    private final Map<Clazz, boolean[]> unusedInterfaces;
+
+
+    /**
+     * Creates a new UnusedInterfaceCollector.
+     * @param usageMarker      the usage marker that has marked the classes
+     *                         and constants.
+     * @param unusedInterfaces the map in which the collector puts the flags
+     *                         of the removable interfaces of each class,
+     *                         for the classes that have any.
+     */
+    public UnusedInterfaceCollector(SimpleUsageMarker     usageMarker,
+                                    Map<Clazz, boolean[]> unusedInterfaces)
+    {
+        this.usageMarker      = usageMarker;
+        this.unusedInterfaces = unusedInterfaces;
+    }
+
+
+    /**
+     * Creates an array marking the unused or unnecessary interfaces in the
+     * list of interfaces of the given class.
+     * @return an array of flags indicating unused elements.
+     */
+    public boolean[] unusedInterfaceFlags(ProgramClass programClass)
+    {
+        Constant[] constantPool    = programClass.constantPool;
+        int[]      interfaces      = programClass.u2interfaces;
+        int        interfacesCount = programClass.u2interfacesCount;
+
+        // Collect the names of all indirectly implemented interfaces, unless
+        // they are kept or the class itself is kept. That avoids problems if
+        // some code applies reflection to the list of interfaces.
+        Set indirectlyImplementedInterfaces = new HashSet();
+
+        if ((programClass.getProcessingFlags() & ProcessingFlags.DONT_SHRINK) == 0)
+        {
+            ConstantVisitor interfaceNameCollector =
+                new ReferencedClassVisitor(
+                new UsedClassFilter(usageMarker,
+                new ClassHierarchyTraveler(false, true, true, false,
+                new ProgramClassFilter(
+                new UsedClassFilter(usageMarker,
+                new ClassAccessFilter(AccessConstants.INTERFACE, 0,
+                new ClassProcessingFlagFilter(0, ProcessingFlags.DONT_SHRINK,
+                new ClassNameCollector(indirectlyImplementedInterfaces))))))));
+
+            programClass.superClassConstantAccept(interfaceNameCollector);
+            programClass.interfaceConstantsAccept(interfaceNameCollector);
+        }
+
+        boolean[] unused = new boolean[interfacesCount];
+
+        // Remember the unused or unnecessary constants.
+        for (int index = 0; index < interfacesCount; index++)
+        {
+            // The interface may be unused, or it may be unnecessary in the
+            // list of implemented interfaces, if a superclass/interface
+            // already implements it.
+            ClassConstant interfaceClassConstant =
+                (ClassConstant)constantPool[interfaces[index]];
+            String interfaceClassName =
+                interfaceClassConstant.getName(programClass);
+
+            if (!usageMarker.isUsed(interfaceClassConstant) ||
+                indirectlyImplementedInterfaces.contains(interfaceClassName))
+            {
+                unused[index] = true;
+            }
+        }
+
+        return unused;
+    }
+
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz) {}
+
+
+    @Override
+    public void visitProgramClass(ProgramClass programClass)
+    {
+        if (programClass.u2interfacesCount > 0)
+        {
+            boolean[] unused = unusedInterfaceFlags(programClass);
+
+            for (boolean flag : unused)
+            {
+                if (flag)
+                {
+                    unusedInterfaces.put(programClass, unused);
+                    break;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,938 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.shrink;
+
+import proguard.classfile.*;
+import proguard.classfile.visitor.*;
+import proguard.util.Processable;
+
+import java.util.*;
+
+/**
+ * This class represents the graph of dependencies between classes and class
+ * members that a {@link UsageGraphMarker} discovers while marking them.
+ * The nodes are classes and class members, plus a root node that represents
+ * the configuration. The edges are labeled with the kind of dependency.
+ * <p>
+ * After marking, the graph can compute the shortest chains of dependencies
+ * from the root to all used classes and class members in a single pass, so
+ * any number of them can then be explained. It can also compute which
+ * classes and class members would no longer be used without some others,
+ * either exactly for a given set of nodes, or with dominators for all
+ * nodes at once.
+ * <p>
+ * The graph can be written to a compact file with a {@link UsageGraphWriter}
+ * and read back with a {@link UsageGraphReader}, without the actual classes.
+ * The nodes then only have names and descriptors.
+ *
+ * @see UsageGraphPrinter
+ * @see UsageGraphAnalyzer
+ */
+public class UsageGraph
+{
+    /**
+     * The node that represents the keep options in the configuration.
+     */
+    public static final int ROOT = 0;
+
+    // The kinds of nodes.
+    public static final int ROOT_NODE   = 0;
+    public static final int CLASS_NODE  = 1;
+    public static final int FIELD_NODE  = 2;
+    public static final int METHOD_NODE = 3;
+
+    // Additional node flags.
+    public static final int LIBRARY = 0x10;
+    public static final int USED    = 0x20;
+
+    public static final int KIND_MASK = 0x0f;
+
+    // The kinds of edges.
+    public static final int KEPT        = 0;
+    public static final int EXTENDED    = 1;
+    public static final int REFERENCED  = 2;
+    public static final int INVOKED     = 3;
+    public static final int IMPLEMENTED = 4;
+
+    private static final String[] REASONS =
+    {
+        "is kept by a directive in the configuration.\n\n",
+        "is extended by   ",
+        "is referenced by ",
+        "is invoked by    ",
+        "implements       ",
+    };
+
+    // The costs of the kinds of edges, favoring direct references over
+    // dependencies through class hierarchies.
+    private static final int[] COSTS = { 0, 10000, 1, 1, 100 };
+
+
+    private final Map<Processable, Integer> nodeIds = new IdentityHashMap<>();
+
+    private Processable[] processables = new Processable[1024];
+    private String[]      names        = new String[1024];
+    private String[]      descriptors  = new String[1024];
+    private int[]         classNodes   = new int[1024];
+    private byte[]        nodeFlags    = new byte[1024];
+    private int           nodeCount    = 1;
+
+    private int[]  edgeSources = new int[4096];
+    private int[]  edgeTargets = new int[4096];
+    private byte[] edgeKinds   = new byte[4096];
+    private int    edgeCount;
+
+    private int[]  parentNodes;
+    private byte[] parentEdgeKinds;
+
+
+    /**
+     * Returns the node of the given class or class member, adding it if
+     * necessary.
+     * @param clazz  the class, or the class of the class member.
+     * @param member the class member, or null for the class itself.
+     */
+    public int addNode(Clazz clazz, Member member)
+    {
+        if (member == null)
+        {
+            return addNode(clazz);
+        }
+
+        int node = addNode(member);
+
+        classNodes[node] = addNode(clazz);
+
+        return node;
+    }
+
+
+    /**
+     * Adds a node with the given properties, for instance when reading a
+     * graph back from a file.
+     * @param flags      the kind of the node, combined with any additional
+     *                   flags, like {@link #LIBRARY}.
+     * @param classNode  the node of the class of a class member, or -1 if it
+     *                   isn't known. Ignored for a class.
+     * @param name       the name of the class or class member.
+     * @param descriptor the descriptor of the class member, or null for a
+     *                   class.
+     * @return the new node.
+     */
+    public int addNode(int flags, int classNode, String name, String descriptor)
+    {
+        int node = newNode(flags);
+
+        classNodes[node]  = (flags & KIND_MASK) == CLASS_NODE ? node : classNode;
+        names[node]       = name;
+        descriptors[node] = descriptor;
+
+        return node;
+    }
+
+
+    /**
+     * Adds an edge of the given kind from the given node to the given class
+     * or class member. Other processables, like constants and attributes,
+     * are ignored.
+     */
+    public void addEdge(int sourceNode, int edgeKind, Processable target)
+    {
+        if (target instanceof Clazz ||
+            target instanceof Member)
+        {
+            addEdge(sourceNode, edgeKind, addNode(target));
+        }
+    }
+
+
+    /**
+     * Adds an edge of the given kind between the given nodes.
+     */
+    public void addEdge(int sourceNode, int edgeKind, int targetNode)
+    {
+        // Skip duplicates of the previous edge, which are common.
+        int lastEdge = edgeCount - 1;
+        if (lastEdge >= 0                          &&
+            edgeSources[lastEdge] == sourceNode    &&
+            edgeTargets[lastEdge] == targetNode    &&
+            edgeKinds[lastEdge]   == edgeKind)
+        {
+            return;
+        }
+
+        if (edgeCount == edgeSources.length)
+        {
+            int newLength = edgeCount * 2;
+            edgeSources = Arrays.copyOf(edgeSources, newLength);
+            edgeTargets = Arrays.copyOf(edgeTargets, newLength);
+            edgeKinds   = Arrays.copyOf(edgeKinds,   newLength);
+        }
+
+        edgeSources[edgeCount] = sourceNode;
+        edgeTargets[edgeCount] = targetNode;
+        edgeKinds[edgeCount++] = (byte)edgeKind;
+
+        parentNodes = null;
+    }
+
+
+    /**
+     * Flags the nodes of the classes and class members that the given usage
+     * marker has marked as used.
+     */
+    public void markUsedNodes(SimpleUsageMarker usageMarker)
+    {
+        for (int node = ROOT + 1; node < nodeCount; node++)
+        {
+            Processable processable = processables[node];
+            if (processable != null &&
+                usageMarker.isUsed(processable))
+            {
+                nodeFlags[node] |= USED;
+            }
+        }
+
+        parentNodes = null;
+    }
+
+
+    /**
+     * Fills out the classes of the class member nodes whose classes aren't
+     * known yet, from the classes in the given class pool.
+     */
+    public void completeClassNodes(ClassPool classPool)
+    {
+        classPool.classesAccept(new AllMemberVisitor(new MyClassNodeCompleter()));
+    }
+
+
+    /**
+     * Returns the number of nodes, including the root node.
+     */
+    public int getNodeCount()
+    {
+        return nodeCount;
+    }
+
+
+    /**
+     * Returns the number of edges.
+     */
+    public int getEdgeCount()
+    {
+        return edgeCount;
+    }
+
+
+    /**
+     * Returns the node of the given class or class member, or -1 if it
+     * isn't part of the graph.
+     */
+    public int getNode(Processable processable)
+    {
+        Integer node = nodeIds.get(processable);
+
+        return node != null ? node : -1;
+    }
+
+
+    /**
+     * Returns the class or class member of the given node, or null for the
+     * root node and for graphs that have been read back.
+     */
+    public Processable getProcessable(int node)
+    {
+        return processables[node];
+    }
+
+
+    /**
+     * Returns the class of the given node, if known, or null otherwise.
+     * The class of a class member is only known if the class member has
+     * been the source of any edges, or if its class nodes have been
+     * completed.
+     */
+    public Clazz getClass(int node)
+    {
+        int classNode = classNodes[node];
+
+        return classNode > ROOT ? (Clazz)processables[classNode] : null;
+    }
+
+
+    /**
+     * Returns the node of the class of the given node, or -1 if it isn't
+     * known.
+     */
+    public int getClassNode(int node)
+    {
+        return classNodes[node];
+    }
+
+
+    /**
+     * Returns the kind of the given node, like {@link #CLASS_NODE}.
+     */
+    public int getNodeKind(int node)
+    {
+        return nodeFlags[node] & KIND_MASK;
+    }
+
+
+    /**
+     * Returns the kind of the given node, combined with its additional
+     * flags.
+     */
+    public int getNodeFlags(int node)
+    {
+        return nodeFlags[node];
+    }
+
+
+    /**
+     * Returns whether the given node is a library class or class member.
+     */
+    public boolean isLibrary(int node)
+    {
+        return (nodeFlags[node] & LIBRARY) != 0;
+    }
+
+
+    /**
+     * Returns whether the given node has been flagged as used.
+     */
+    public boolean isUsed(int node)
+    {
+        return (nodeFlags[node] & USED) != 0;
+    }
+
+
+    /**
+     * Returns the internal name of the class or class member of the given
+     * node, or null if it isn't known.
+     */
+    public String getName(int node)
+    {
+        String name = names[node];
+        if (name == null)
+        {
+            Processable processable = processables[node];
+            if (processable instanceof Clazz)
+            {
+                name = ((Clazz)processable).getName();
+            }
+            else if (processable instanceof Member)
+            {
+                Clazz clazz = getClass(node);
+                if (clazz != null)
+                {
+                    name = ((Member)processable).getName(clazz);
+                }
+            }
+        }
+
+        return name;
+    }
+
+
+    /**
+     * Returns the internal descriptor of the class member of the given node,
+     * or null if it isn't known or if the node is a class.
+     */
+    public String getDescriptor(int node)
+    {
+        String descriptor = descriptors[node];
+        if (descriptor == null)
+        {
+            Processable processable = processables[node];
+            if (processable instanceof Member)
+            {
+                Clazz clazz = getClass(node);
+                if (clazz != null)
+                {
+                    descriptor = ((Member)processable).getDescriptor(clazz);
+                }
+            }
+        }
+
+        return descriptor;
+    }
+
+
+    /**
+     * Returns the source node of the given edge.
+     */
+    public int getEdgeSource(int edge)
+    {
+        return edgeSources[edge];
+    }
+
+
+    /**
+     * Returns the target node of the given edge.
+     */
+    public int getEdgeTarget(int edge)
+    {
+        return edgeTargets[edge];
+    }
+
+
+    /**
+     * Returns the kind of the given edge, like {@link #INVOKED}.
+     */
+    public int getEdgeKind(int edge)
+    {
+        return edgeKinds[edge];
+    }
+
+
+    /**
+     * Computes the shortest chains of dependencies from the root node to all
+     * other nodes, only following edges from nodes that have been flagged as
+     * used. The computation is a single pass over the graph with a priority
+     * queue, taking into account the costs of the kinds of edges.
+     */
+    public void computeShortestPaths()
+    {
+        // Collect the outgoing edges per node.
+        int[] firstEdges  = new int[nodeCount + 1];
+        int[] sortedEdges = sortEdges(edgeSources, firstEdges);
+
+        // Find the shortest paths from the root node.
+        long[] distances = new long[nodeCount];
+        Arrays.fill(distances, Long.MAX_VALUE);
+
+        int[]  parentNodes     = new int[nodeCount];
+        byte[] parentEdgeKinds = new byte[nodeCount];
+        Arrays.fill(parentNodes, -1);
+
+        // Carry the sorted classes of the members in the chain of each node
+        // along with the chain, sharing the arrays between chains where
+        // possible.
+        int[][] memberClassNodes = new int[nodeCount][];
+        memberClassNodes[ROOT] = new int[0];
+
+        // The queue contains pairs of distances and nodes, ordered by
+        // distance and then by node, for deterministic results.
+        PriorityQueue<long[]> queue =
+            new PriorityQueue<>((entry1, entry2) ->
+                entry1[0] != entry2[0] ?
+                    Long.compare(entry1[0], entry2[0]) :
+                    Long.compare(entry1[1], entry2[1]));
+
+        distances[ROOT] = 0L;
+        queue.add(new long[] { 0L, ROOT });
+
+        while (!queue.isEmpty())
+        {
+            long[] entry    = queue.poll();
+            long   distance = entry[0];
+            int    node     = (int)entry[1];
+
+            // Skip outdated entries and nodes that aren't used themselves.
+            if (distance > distances[node] ||
+                node != ROOT && !isUsed(node))
+            {
+                continue;
+            }
+
+            // The chain to the node is final at this point.
+            if (node != ROOT)
+            {
+                memberClassNodes[node] =
+                    addMemberClassNode(memberClassNodes[parentNodes[node]], node);
+            }
+
+            for (int index = firstEdges[node]; index < firstEdges[node + 1]; index++)
+            {
+                int  edge        = sortedEdges[index];
+                int  targetNode  = edgeTargets[edge];
+                long newDistance = distance + COSTS[edgeKinds[edge]];
+
+                if (newDistance < distances[targetNode] &&
+                    !isCausedByMember(memberClassNodes[node], targetNode))
+                {
+                    distances[targetNode]       = newDistance;
+                    parentNodes[targetNode]     = node;
+                    parentEdgeKinds[targetNode] = edgeKinds[edge];
+
+                    queue.add(new long[] { newDistance, targetNode });
+                }
+            }
+        }
+
+        this.parentNodes     = parentNodes;
+        this.parentEdgeKinds = parentEdgeKinds;
+    }
+
+
+    /**
+     * Returns whether the shortest chains of dependencies have been
+     * computed since the graph was last changed.
+     */
+    boolean hasShortestPaths()
+    {
+        return parentNodes != null;
+    }
+
+
+    /**
+     * Returns the previous node in the shortest chain of dependencies to the
+     * given node, or -1 if the node can't be reached. The shortest paths
+     * must have been computed.
+     */
+    public int getParentNode(int node)
+    {
+        return parentNodes[node];
+    }
+
+
+    /**
+     * Returns the kind of the last edge in the shortest chain of
+     * dependencies to the given node. The shortest paths must have been
+     * computed.
+     */
+    public int getParentEdgeKind(int node)
+    {
+        return parentEdgeKinds[node];
+    }
+
+
+    /**
+     * Computes which nodes would still be used without the given removed
+     * nodes, and without the edges from the root node to the given unkept
+     * nodes, following edges from the root node through used nodes only.
+     * Like in the marking itself, a class member can only be used if its
+     * class is used as well.
+     * @param removedNodes the nodes that are removed, or null.
+     * @param unkeptNodes  the nodes that are no longer kept by the
+     *                     configuration, or null.
+     * @return the flags of the nodes that are still used.
+     */
+    public boolean[] computeUsedNodes(boolean[] removedNodes,
+                                      boolean[] unkeptNodes)
+    {
+        int[] numbers = computeUsedNodeNumbers(removedNodes, unkeptNodes);
+
+        boolean[] usedNodes = new boolean[nodeCount];
+        for (int node = 0; node < nodeCount; node++)
+        {
+            usedNodes[node] = numbers[node] >= 0;
+        }
+
+        return usedNodes;
+    }
+
+
+    /**
+     * Computes the immediate dominators of all used nodes. A node dominates
+     * another node if the latter would no longer be used without the
+     * former. Like in the marking itself, a class member is dominated by
+     * the dominators of its class, as well as by the common dominators of
+     * the nodes that refer to it.
+     * <p>
+     * The computation is the iterative algorithm of Cooper, Harvey, and
+     * Kennedy, over the nodes in the order in which they are found to be
+     * used. Where a class member and its class have unrelated dominators,
+     * it can only keep one chain of them, so the dominators are always
+     * correct, but not necessarily complete.
+     * @return the immediate dominator of each node, the root node for
+     *         the root node itself, or -1 for nodes that aren't used.
+     */
+    public int[] computeDominators()
+    {
+        // Number the used nodes in the order in which they are found, so
+        // dominators always have lower numbers than the nodes that they
+        // dominate.
+        int[] numbers     = computeUsedNodeNumbers(null, null);
+        int[] sortedNodes = new int[nodeCount];
+        int   usedCount   = 0;
+
+        for (int node = 0; node < nodeCount; node++)
+        {
+            int number = numbers[node];
+            if (number >= 0)
+            {
+                sortedNodes[number] = node;
+                usedCount++;
+            }
+        }
+
+        // Collect the incoming edges per node.
+        int[] firstEdges  = new int[nodeCount + 1];
+        int[] sortedEdges = sortEdges(edgeTargets, firstEdges);
+
+        int[] dominators = new int[nodeCount];
+        int[] depths     = new int[nodeCount];
+        Arrays.fill(dominators, -1);
+        dominators[ROOT] = ROOT;
+
+        // Iterate until the dominators are stable.
+        boolean changed = true;
+        while (changed)
+        {
+            changed = false;
+
+            for (int number = 1; number < usedCount; number++)
+            {
+                int node      = sortedNodes[number];
+                int dominator = -1;
+
+                // Find the common dominator of the nodes that refer to
+                // this node.
+                for (int index = firstEdges[node]; index < firstEdges[node + 1]; index++)
+                {
+                    int sourceNode = edgeSources[sortedEdges[index]];
+                    if (numbers[sourceNode]    >= 0 &&
+                        dominators[sourceNode] >= 0)
+                    {
+                        dominator = dominator < 0 ?
+                            sourceNode :
+                            intersect(sourceNode, dominator, dominators, numbers);
+                    }
+                }
+
+                // A class member also depends on its class.
+                int classNode = classNodes[node];
+                if (classNode             >  ROOT &&
+                    classNode             != node &&
+                    dominators[classNode] >= 0)
+                {
+                    dominator = union(dominator, classNode, dominators, depths, numbers);
+                }
+
+                // Only ever move up in the dominator tree, so the
+                // iteration is guaranteed to end.
+                int oldDominator = dominators[node];
+                if (oldDominator >= 0)
+                {
+                    dominator = intersect(dominator, oldDominator, dominators, numbers);
+                }
+
+                if (dominator != oldDominator)
+                {
+                    dominators[node] = dominator;
+                    changed = true;
+                }
+
+                depths[node] = depths[dominator] + 1;
+            }
+        }
+
+        return dominators;
+    }
+
+
+    /**
+     * Returns a readable reason for the given kind of edge.
+     */
+    public static String getReason(int edgeKind)
+    {
+        return REASONS[edgeKind];
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Numbers the nodes that are still used without the given removed
+     * nodes, and without the edges from the root node to the given unkept
+     * nodes, in the order in which they are found.
+     * @return the number of each node, or -1 for nodes that are no longer
+     *         used.
+     */
+    private int[] computeUsedNodeNumbers(boolean[] removedNodes,
+                                         boolean[] unkeptNodes)
+    {
+        // Collect the outgoing edges per node.
+        int[] firstEdges  = new int[nodeCount + 1];
+        int[] sortedEdges = sortEdges(edgeSources, firstEdges);
+
+        int[]     numbers      = new int[nodeCount];
+        int       usedCount    = 0;
+        boolean[] pendingNodes = new boolean[nodeCount];
+        Arrays.fill(numbers, -1);
+
+        // Class members that are waiting for their classes are kept in
+        // linked lists per class.
+        int[] firstPendingNodes = new int[nodeCount];
+        int[] nextPendingNodes  = new int[nodeCount];
+        Arrays.fill(firstPendingNodes, -1);
+
+        int[] stack     = new int[nodeCount];
+        int   stackSize = 0;
+
+        numbers[ROOT]      = usedCount++;
+        stack[stackSize++] = ROOT;
+
+        while (stackSize > 0)
+        {
+            int node = stack[--stackSize];
+
+            // Release the class members that were waiting for this class.
+            for (int pendingNode = firstPendingNodes[node];
+                 pendingNode >= 0;
+                 pendingNode = nextPendingNodes[pendingNode])
+            {
+                numbers[pendingNode] = usedCount++;
+                stack[stackSize++]   = pendingNode;
+            }
+
+            for (int index = firstEdges[node]; index < firstEdges[node + 1]; index++)
+            {
+                int targetNode = edgeTargets[sortedEdges[index]];
+
+                if (numbers[targetNode] < 0                                 &&
+                    !pendingNodes[targetNode]                               &&
+                    isUsed(targetNode)                                      &&
+                    (removedNodes == null || !removedNodes[targetNode])     &&
+                    (unkeptNodes  == null || !unkeptNodes[targetNode] || node != ROOT))
+                {
+                    int classNode = classNodes[targetNode];
+                    if (classNode > ROOT        &&
+                        classNode != targetNode &&
+                        numbers[classNode] < 0)
+                    {
+                        pendingNodes[targetNode]     = true;
+                        nextPendingNodes[targetNode] = firstPendingNodes[classNode];
+                        firstPendingNodes[classNode] = targetNode;
+                    }
+                    else
+                    {
+                        numbers[targetNode] = usedCount++;
+                        stack[stackSize++]  = targetNode;
+                    }
+                }
+            }
+        }
+
+        return numbers;
+    }
+
+
+    /**
+     * Returns the closest common dominator of the given nodes, given
+     * dominators that always have lower numbers than the nodes that they
+     * dominate.
+     */
+    private int intersect(int   node1,
+                          int   node2,
+                          int[] dominators,
+                          int[] numbers)
+    {
+        while (node1 != node2)
+        {
+            while (numbers[node1] > numbers[node2])
+            {
+                node1 = dominators[node1];
+            }
+
+            while (numbers[node2] > numbers[node1])
+            {
+                node2 = dominators[node2];
+            }
+        }
+
+        return node1;
+    }
+
+
+    /**
+     * Returns the deeper one of the given nodes, if one of them dominates
+     * the other. Otherwise, their dominators are unrelated and can't both be
+     * represented in the dominator tree. Either one is still correct, so it
+     * then returns the node with the most dominators, preferring the first
+     * node.
+     */
+    private int union(int   node1,
+                      int   node2,
+                      int[] dominators,
+                      int[] depths,
+                      int[] numbers)
+    {
+        if (node1 < 0)
+        {
+            return node2;
+        }
+
+        int commonNode = intersect(node1, node2, dominators, numbers);
+
+        return commonNode    == node1         ? node2 :
+               commonNode    == node2         ? node1 :
+               depths[node1] >= depths[node2] ? node1 :
+                                                node2;
+    }
+
+
+    /**
+     * Returns the edges sorted by the given source or target nodes, filling
+     * out the index of the first edge of each node in the given array, which
+     * must have one more element than the number of nodes.
+     */
+    private int[] sortEdges(int[] edgeNodes, int[] firstEdges)
+    {
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            firstEdges[edgeNodes[edge] + 1]++;
+        }
+
+        for (int node = 0; node < nodeCount; node++)
+        {
+            firstEdges[node + 1] += firstEdges[node];
+        }
+
+        int[] sortedEdges = new int[edgeCount];
+        int[] edgeOffsets = Arrays.copyOf(firstEdges, nodeCount);
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            sortedEdges[edgeOffsets[edgeNodes[edge]]++] = edge;
+        }
+
+        return sortedEdges;
+    }
+
+
+    /**
+     * Returns the given sorted classes of the members in a chain of
+     * dependencies, extended with the class of the given node, if it is a
+     * class member.
+     */
+    private int[] addMemberClassNode(int[] memberClassNodes, int node)
+    {
+        int classNode = classNodes[node];
+        if (classNode <= ROOT ||
+            classNode == node)
+        {
+            return memberClassNodes;
+        }
+
+        int index = Arrays.binarySearch(memberClassNodes, classNode);
+        if (index >= 0)
+        {
+            return memberClassNodes;
+        }
+
+        // Insert the class node, without touching the shared array.
+        index = -index - 1;
+
+        int[] newMemberClassNodes = new int[memberClassNodes.length + 1];
+        System.arraycopy(memberClassNodes, 0, newMemberClassNodes, 0, index);
+        newMemberClassNodes[index] = classNode;
+        System.arraycopy(memberClassNodes, index, newMemberClassNodes, index + 1, memberClassNodes.length - index);
+
+        return newMemberClassNodes;
+    }
+
+
+    /**
+     * Returns whether the given sorted classes of the members in a chain of
+     * dependencies contain the given target node, if it is a class. A class
+     * can't be explained by its own class members, since they are only used
+     * if the class is used.
+     */
+    private boolean isCausedByMember(int[] memberClassNodes,
+                                     int   targetNode)
+    {
+        return getNodeKind(targetNode) == CLASS_NODE &&
+               Arrays.binarySearch(memberClassNodes, targetNode) >= 0;
+    }
+
+
+    /**
+     * Returns the node of the given processable, adding it if necessary.
+     */
+    private int addNode(Processable processable)
+    {
+        Integer node = nodeIds.get(processable);
+        if (node != null)
+        {
+            return node;
+        }
+
+        int kind =
+            processable instanceof Clazz ? CLASS_NODE :
+            processable instanceof Field ? FIELD_NODE :
+                                           METHOD_NODE;
+
+        int flags =
+            processable instanceof LibraryClass ||
+            processable instanceof LibraryMember ? LIBRARY : 0;
+
+        int newNode = newNode(kind | flags);
+
+        processables[newNode] = processable;
+        nodeIds.put(processable, newNode);
+
+        if (processable instanceof Clazz)
+        {
+            classNodes[newNode] = newNode;
+        }
+
+        return newNode;
+    }
+
+
+    /**
+     * Adds a node with the given flags, without any other properties.
+     */
+    private int newNode(int flags)
+    {
+        if (nodeCount == processables.length)
+        {
+            int newLength = nodeCount * 2;
+            processables = Arrays.copyOf(processables, newLength);
+            names        = Arrays.copyOf(names,        newLength);
+            descriptors  = Arrays.copyOf(descriptors,  newLength);
+            classNodes   = Arrays.copyOf(classNodes,   newLength);
+            nodeFlags    = Arrays.copyOf(nodeFlags,    newLength);
+        }
+
+        classNodes[nodeCount] = -1;
+        nodeFlags[nodeCount]  = (byte)flags;
+
+        parentNodes = null;
+
+        return nodeCount++;
+    }
+
+
+    /**
+     * This MemberVisitor fills out the classes of the class member nodes
+     * that it visits.
+     */
+    private class MyClassNodeCompleter
+    implements    MemberVisitor
+    {
+        // Implementations for MemberVisitor.
+
+        @Override
+        public void visitAnyMember(Clazz clazz, Member member)
+        {
+            int node = getNode(member);
+            if (node > ROOT &&
+                classNodes[node] < 0)
+            {
+                classNodes[node] = addNode(clazz);
+            }
+        }
+    }
+}
@@ -0,0 +1,443 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.shrink;
+
+import proguard.classfile.util.ClassUtil;
+import proguard.util.*;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This tool answers queries about a usage graph that ProGuard has written
+ * with its <code>-printusagegraph</code> option, without running ProGuard
+ * again. The queries select classes and class members by their external
+ * names, like <code>com.example.Foo</code>, <code>com.example.Foo.field</code>,
+ * or <code>com.example.Foo.bar(int,java.lang.String)</code>, with the
+ * usual wildcards.
+ * <p>
+ * Usage:
+ * <pre>
+ *   java proguard.shrink.UsageGraphAnalyzer graph_file command [filter]
+ * </pre>
+ * with the following commands:
+ * <dl>
+ *   <dt>summary</dt>
+ *   <dd>prints the numbers of nodes and edges in the graph.</dd>
+ *   <dt>list</dt>
+ *   <dd>prints the matching classes and class members, and whether they
+ *       are kept.</dd>
+ *   <dt>reachable</dt>
+ *   <dd>prints the kept classes and class members that the matching ones
+ *       depend on, directly or indirectly.</dd>
+ *   <dt>path</dt>
+ *   <dd>prints the shortest chains of dependencies that keep the matching
+ *       classes and class members, like <code>-whyareyoukeeping</code>.</dd>
+ *   <dt>removed</dt>
+ *   <dd>prints the program classes and class members that would no longer
+ *       be kept without the matching classes and class members.</dd>
+ *   <dt>unkeep</dt>
+ *   <dd>prints the program classes and class members that would no longer
+ *       be kept if the matching classes and class members weren't kept by
+ *       the configuration.</dd>
+ * </dl>
+ *
+ * @see UsageGraphWriter
+ */
+public class UsageGraphAnalyzer
+{
+    private static final String USAGE =
+        "Usage: java proguard.shrink.UsageGraphAnalyzer graph_file " +
+        "summary|list|reachable|path|removed|unkeep [filter]";
+
+
+    private final UsageGraph  usageGraph;
+    private final PrintWriter pw;
+
+
+    /**
+     * Creates a new UsageGraphAnalyzer.
+     * @param usageGraph  the graph to query. Its used nodes must have been
+     *                    flagged.
+     * @param printWriter the writer to which to print the results.
+     */
+    public UsageGraphAnalyzer(UsageGraph  usageGraph,
+                              PrintWriter printWriter)
+    {
+        this.usageGraph = usageGraph;
+        this.pw         = printWriter;
+    }
+
+
+    /**
+     * Prints the numbers of nodes and edges of the graph.
+     */
+    public void printSummary()
+    {
+        int[] nodeCounts     = new int[4];
+        int[] usedNodeCounts = new int[4];
+        int   libraryCount   = 0;
+
+        for (int node = UsageGraph.ROOT + 1; node < usageGraph.getNodeCount(); node++)
+        {
+            int kind = usageGraph.getNodeKind(node);
+
+            nodeCounts[kind]++;
+
+            if (usageGraph.isUsed(node))
+            {
+                usedNodeCounts[kind]++;
+            }
+
+            if (usageGraph.isLibrary(node))
+            {
+                libraryCount++;
+            }
+        }
+
+        pw.println("Nodes:         " + (usageGraph.getNodeCount() - 1));
+        pw.println("  classes:     " + nodeCounts[UsageGraph.CLASS_NODE]  + " (" + usedNodeCounts[UsageGraph.CLASS_NODE]  + " kept)");
+        pw.println("  fields:      " + nodeCounts[UsageGraph.FIELD_NODE]  + " (" + usedNodeCounts[UsageGraph.FIELD_NODE]  + " kept)");
+        pw.println("  methods:     " + nodeCounts[UsageGraph.METHOD_NODE] + " (" + usedNodeCounts[UsageGraph.METHOD_NODE] + " kept)");
+        pw.println("  in library:  " + libraryCount);
+        pw.println("Edges:         " + usageGraph.getEdgeCount());
+    }
+
+
+    /**
+     * Prints the matching nodes, and whether they are kept.
+     */
+    public void printList(StringMatcher filter)
+    {
+        for (int node : matchingNodes(filter))
+        {
+            pw.println((usageGraph.isUsed(node) ? "kept:     " : "not kept: ") + externalName(node));
+        }
+    }
+
+
+    /**
+     * Prints the used nodes that can be reached from the matching nodes.
+     */
+    public void printReachable(StringMatcher filter)
+    {
+        List<Integer> startNodes = matchingNodes(filter);
+
+        // Collect the outgoing edges per node.
+        int   nodeCount  = usageGraph.getNodeCount();
+        int[] firstEdges = new int[nodeCount + 1];
+        int[] edges      = sortOutgoingEdges(firstEdges);
+
+        boolean[] reached = new boolean[nodeCount];
+        Deque<Integer> stack = new ArrayDeque<>();
+        for (int node : startNodes)
+        {
+            if (usageGraph.isUsed(node))
+            {
+                reached[node] = true;
+                stack.push(node);
+            }
+        }
+
+        while (!stack.isEmpty())
+        {
+            int node = stack.pop();
+            for (int index = firstEdges[node]; index < firstEdges[node + 1]; index++)
+            {
+                int targetNode = usageGraph.getEdgeTarget(edges[index]);
+                if (!reached[targetNode] &&
+                    usageGraph.isUsed(targetNode))
+                {
+                    reached[targetNode] = true;
+                    stack.push(targetNode);
+                }
+            }
+        }
+
+        printNodes(reached, false);
+    }
+
+
+    /**
+     * Prints the shortest chains of dependencies from the root to the
+     * matching nodes.
+     */
+    public void printPaths(StringMatcher filter)
+    {
+        usageGraph.computeShortestPaths();
+
+        for (int node : matchingNodes(filter))
+        {
+            pw.println(externalName(node));
+
+            if (usageGraph.isUsed(node) &&
+                usageGraph.getParentNode(node) >= 0)
+            {
+                while (node != UsageGraph.ROOT)
+                {
+                    pw.print("  " + UsageGraph.getReason(usageGraph.getParentEdgeKind(node)));
+
+                    node = usageGraph.getParentNode(node);
+                    if (node != UsageGraph.ROOT)
+                    {
+                        pw.println(externalName(node));
+                    }
+                }
+            }
+            else
+            {
+                pw.println("  is not being kept.\n");
+            }
+        }
+    }
+
+
+    /**
+     * Prints the program nodes that would no longer be used if the matching
+     * nodes were removed, including the matching nodes themselves.
+     */
+    public void printRemoved(StringMatcher filter)
+    {
+        printRemoved(usageGraph.computeUsedNodes(matchingNodeFlags(filter), null));
+    }
+
+
+    /**
+     * Prints the program nodes that would no longer be used if the matching
+     * nodes weren't kept by the configuration.
+     */
+    public void printUnkept(StringMatcher filter)
+    {
+        printRemoved(usageGraph.computeUsedNodes(null, matchingNodeFlags(filter)));
+    }
+
+
+    /**
+     * Reads the usage graph from the specified file and answers the
+     * specified query on the standard output.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 2)
+        {
+            System.err.println(USAGE);
+            System.exit(-1);
+        }
+
+        String        command = args[1];
+        StringMatcher filter  = args.length > 2 ?
+            new NameParser().parse(args[2]) :
+            new ConstantMatcher(true);
+
+        try
+        {
+            UsageGraph usageGraph;
+            try (InputStream inputStream = new FileInputStream(args[0]))
+            {
+                usageGraph = new UsageGraphReader(inputStream).read();
+            }
+
+            PrintWriter printWriter = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+
+            UsageGraphAnalyzer analyzer =
+                new UsageGraphAnalyzer(usageGraph, printWriter);
+
+            switch (command)
+            {
+                case "summary":   analyzer.printSummary();         break;
+                case "list":      analyzer.printList(filter);      break;
+                case "reachable": analyzer.printReachable(filter); break;
+                case "path":      analyzer.printPaths(filter);     break;
+                case "removed":   analyzer.printRemoved(filter);   break;
+                case "unkeep":    analyzer.printUnkept(filter);    break;
+                default:
+                    System.err.println(USAGE);
+                    System.exit(-1);
+            }
+
+            printWriter.flush();
+        }
+        catch (IOException ex)
+        {
+            System.err.println("Error: " + ex.getMessage());
+            System.exit(1);
+        }
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Prints the used program nodes that are no longer used according to the
+     * given flags.
+     */
+    private void printRemoved(boolean[] usedNodes)
+    {
+        boolean[] removedNodes = new boolean[usedNodes.length];
+        for (int node = UsageGraph.ROOT + 1; node < usedNodes.length; node++)
+        {
+            removedNodes[node] = usageGraph.isUsed(node) && !usedNodes[node];
+        }
+
+        pw.println("Removed " + count(removedNodes, true) + " program classes and class members:");
+        printNodes(removedNodes, true);
+    }
+
+
+    /**
+     * Prints the flagged nodes in alphabetical order, optionally skipping
+     * the library nodes.
+     */
+    private void printNodes(boolean[] flags, boolean programOnly)
+    {
+        List<String> names = new ArrayList<>();
+        for (int node = UsageGraph.ROOT + 1; node < flags.length; node++)
+        {
+            if (flags[node] &&
+                usageGraph.getName(node) != null &&
+                !(programOnly && usageGraph.isLibrary(node)))
+            {
+                names.add(externalName(node));
+            }
+        }
+
+        Collections.sort(names);
+
+        for (String name : names)
+        {
+            pw.println("  " + name);
+        }
+    }
+
+
+    /**
+     * Returns the number of flagged nodes, optionally skipping the library
+     * nodes.
+     */
+    private int count(boolean[] flags, boolean programOnly)
+    {
+        int count = 0;
+        for (int node = UsageGraph.ROOT + 1; node < flags.length; node++)
+        {
+            if (flags[node] &&
+                usageGraph.getName(node) != null &&
+                !(programOnly && usageGraph.isLibrary(node)))
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+
+    /**
+     * Returns the flags of the nodes whose external names match the given
+     * filter.
+     */
+    private boolean[] matchingNodeFlags(StringMatcher filter)
+    {
+        boolean[] flags = new boolean[usageGraph.getNodeCount()];
+        for (int node : matchingNodes(filter))
+        {
+            flags[node] = true;
+        }
+
+        return flags;
+    }
+
+
+    /**
+     * Returns the nodes whose external names match the given filter.
+     */
+    private List<Integer> matchingNodes(StringMatcher filter)
+    {
+        List<Integer> nodes = new ArrayList<>();
+        for (int node = UsageGraph.ROOT + 1; node < usageGraph.getNodeCount(); node++)
+        {
+            if (usageGraph.getName(node) != null &&
+                filter.matches(externalName(node)))
+            {
+                nodes.add(node);
+            }
+        }
+
+        return nodes;
+    }
+
+
+    /**
+     * Returns the edges sorted by their source nodes, filling out the index
+     * of the first edge of each node in the given array.
+     */
+    private int[] sortOutgoingEdges(int[] firstEdges)
+    {
+        int nodeCount = usageGraph.getNodeCount();
+        int edgeCount = usageGraph.getEdgeCount();
+
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            firstEdges[usageGraph.getEdgeSource(edge) + 1]++;
+        }
+
+        for (int node = 0; node < nodeCount; node++)
+        {
+            firstEdges[node + 1] += firstEdges[node];
+        }
+
+        int[] sortedEdges = new int[edgeCount];
+        int[] edgeOffsets = Arrays.copyOf(firstEdges, nodeCount);
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            sortedEdges[edgeOffsets[usageGraph.getEdgeSource(edge)]++] = edge;
+        }
+
+        return sortedEdges;
+    }
+
+
+    /**
+     * Returns the external name of the given node, like
+     * <code>com.example.Foo.bar(int)</code>.
+     */
+    private String externalName(int node)
+    {
+        String name = usageGraph.getName(node);
+        if (name == null)
+        {
+            return "?";
+        }
+
+        if (usageGraph.getNodeKind(node) == UsageGraph.CLASS_NODE)
+        {
+            return ClassUtil.externalClassName(name);
+        }
+
+        int    classNode = usageGraph.getClassNode(node);
+        String className = classNode > UsageGraph.ROOT ?
+            ClassUtil.externalClassName(usageGraph.getName(classNode)) :
+            "?";
+
+        return usageGraph.getNodeKind(node) == UsageGraph.FIELD_NODE ?
+            className + '.' + name :
+            className + '.' + name + '(' + ClassUtil.externalMethodArguments(usageGraph.getDescriptor(node)) + ')';
+    }
+}
@@ -0,0 +1,237 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.shrink;
+
+import proguard.classfile.*;
+import proguard.classfile.constant.*;
+import proguard.classfile.visitor.*;
+import proguard.util.Processable;
+
+/**
+ * This ClassUsageMarker marks classes and class members like its super class,
+ * while recording the dependencies between them in a usage graph. The
+ * marking itself is the same, so the graph doesn't cost an extra pass.
+ *
+ * @see UsageGraph
+ * @see UsageGraphPrinter
+ */
+public class UsageGraphMarker
+extends      ClassUsageMarker
+{
+    private final UsageGraph     usageGraph;
+    private final MyEdgeRecorder edgeRecorder = new MyEdgeRecorder();
+
+    // Fields acting as parameters for the marking methods.
+    private int currentNode     = UsageGraph.ROOT;
+    private int currentEdgeKind = UsageGraph.KEPT;
+
+
+    /**
+     * Creates a new UsageGraphMarker.
+     * @param usageMarker the usage marker for marking the individual
+     *                    classes, class members, etc.
+     * @param usageGraph  the graph to which the dependencies are added.
+     */
+    public UsageGraphMarker(SimpleUsageMarker usageMarker,
+                            UsageGraph        usageGraph)
+    {
+        super(usageMarker);
+
+        this.usageGraph = usageGraph;
+    }
+
+
+    /**
+     * Returns the graph to which the dependencies are added.
+     */
+    public UsageGraph getUsageGraph()
+    {
+        return usageGraph;
+    }
+
+
+    // Overriding implementations for ClassUsageMarker.
+
+    protected void markProgramClassBody(ProgramClass programClass)
+    {
+        int previousNode     = currentNode;
+        int previousEdgeKind = currentEdgeKind;
+
+        currentNode     = usageGraph.addNode(programClass, null);
+        currentEdgeKind = UsageGraph.EXTENDED;
+
+        super.markProgramClassBody(programClass);
+
+        currentNode     = previousNode;
+        currentEdgeKind = previousEdgeKind;
+    }
+
+
+    protected void markProgramFieldBody(ProgramClass programClass, ProgramField programField)
+    {
+        int previousNode     = currentNode;
+        int previousEdgeKind = currentEdgeKind;
+
+        currentNode     = usageGraph.addNode(programClass, programField);
+        currentEdgeKind = UsageGraph.REFERENCED;
+
+        super.markProgramFieldBody(programClass, programField);
+
+        currentNode     = previousNode;
+        currentEdgeKind = previousEdgeKind;
+    }
+
+
+    protected void markProgramMethodBody(ProgramClass programClass, ProgramMethod programMethod)
+    {
+        int previousNode     = currentNode;
+        int previousEdgeKind = currentEdgeKind;
+
+        currentNode     = usageGraph.addNode(programClass, programMethod);
+        currentEdgeKind = UsageGraph.INVOKED;
+
+        super.markProgramMethodBody(programClass, programMethod);
+
+        currentNode     = previousNode;
+        currentEdgeKind = previousEdgeKind;
+    }
+
+
+    protected void markMethodHierarchy(Clazz clazz, Method method)
+    {
+        int previousNode     = currentNode;
+        int previousEdgeKind = currentEdgeKind;
+
+        currentNode     = usageGraph.addNode(clazz, method);
+        currentEdgeKind = UsageGraph.IMPLEMENTED;
+
+        super.markMethodHierarchy(clazz, method);
+
+        currentNode     = previousNode;
+        currentEdgeKind = previousEdgeKind;
+    }
+
+
+    // Constants are shared by all code in a class, so they are only
+    // marked once. We still record the dependencies of the code that
+    // refers to them later on.
+
+    public void visitStringConstant(Clazz clazz, StringConstant stringConstant)
+    {
+        if (isUsed(stringConstant))
+        {
+            stringConstant.referencedClassAccept(edgeRecorder);
+            stringConstant.referencedMemberAccept(edgeRecorder);
+        }
+
+        super.visitStringConstant(clazz, stringConstant);
+    }
+
+
+    public void visitMethodHandleConstant(Clazz clazz, MethodHandleConstant methodHandleConstant)
+    {
+        if (isUsed(methodHandleConstant))
+        {
+            clazz.constantPoolEntryAccept(methodHandleConstant.u2referenceIndex, this);
+        }
+
+        super.visitMethodHandleConstant(clazz, methodHandleConstant);
+    }
+
+
+    public void visitAnyRefConstant(Clazz clazz, RefConstant refConstant)
+    {
+        if (isUsed(refConstant))
+        {
+            refConstant.referencedClassAccept(edgeRecorder);
+            refConstant.referencedMemberAccept(edgeRecorder);
+        }
+
+        super.visitAnyRefConstant(clazz, refConstant);
+    }
+
+
+    public void visitClassConstant(Clazz clazz, ClassConstant classConstant)
+    {
+        if (isUsed(classConstant))
+        {
+            classConstant.referencedClassAccept(edgeRecorder);
+        }
+
+        super.visitClassConstant(clazz, classConstant);
+    }
+
+
+    public void visitMethodTypeConstant(Clazz clazz, MethodTypeConstant methodTypeConstant)
+    {
+        if (isUsed(methodTypeConstant))
+        {
+            methodTypeConstant.referencedClassesAccept(edgeRecorder);
+        }
+
+        super.visitMethodTypeConstant(clazz, methodTypeConstant);
+    }
+
+
+    public boolean shouldBeMarkedAsUsed(Processable processable)
+    {
+        // Record the dependency, even if the processable has already been
+        // marked, since it may be part of a shorter chain.
+        usageGraph.addEdge(currentNode, currentEdgeKind, processable);
+
+        return super.shouldBeMarkedAsUsed(processable);
+    }
+
+
+    public boolean shouldBeMarkedAsPossiblyUsed(Processable processable)
+    {
+        usageGraph.addEdge(currentNode, currentEdgeKind, processable);
+
+        return super.shouldBeMarkedAsPossiblyUsed(processable);
+    }
+
+
+    /**
+     * This ClassVisitor and MemberVisitor records dependencies on the
+     * classes and class members that it visits, without marking them.
+     */
+    private class MyEdgeRecorder
+    implements    ClassVisitor,
+                  MemberVisitor
+    {
+        // Implementations for ClassVisitor.
+
+        @Override
+        public void visitAnyClass(Clazz clazz)
+        {
+            usageGraph.addEdge(currentNode, currentEdgeKind, clazz);
+        }
+
+
+        // Implementations for MemberVisitor.
+
+        @Override
+        public void visitAnyMember(Clazz clazz, Member member)
+        {
+            usageGraph.addEdge(currentNode, currentEdgeKind, member);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.shrink;
+
+import java.io.*;
+
+/**
+ * This class reads a usage graph from an input stream, in the format that a
+ * {@link UsageGraphWriter} writes. The nodes of the resulting graph only
+ * have names and descriptors, instead of actual classes and class members.
+ *
+ * @see UsageGraph
+ */
+public class UsageGraphReader
+{
+    private final DataInputStream dataInputStream;
+
+
+    /**
+     * Creates a new UsageGraphReader that reads from the given input stream.
+     */
+    public UsageGraphReader(InputStream inputStream)
+    {
+        this.dataInputStream =
+            new DataInputStream(
+            new BufferedInputStream(inputStream));
+    }
+
+
+    /**
+     * Reads a usage graph.
+     */
+    public UsageGraph read() throws IOException
+    {
+        if (dataInputStream.readInt() != UsageGraphWriter.MAGIC)
+        {
+            throw new IOException("Not a usage graph file");
+        }
+
+        int version = dataInputStream.readUnsignedShort();
+        if (version != UsageGraphWriter.VERSION)
+        {
+            throw new IOException("Unsupported usage graph version ["+version+"]");
+        }
+
+        String[] strings = new String[readVarInt()];
+        for (int index = 0; index < strings.length; index++)
+        {
+            strings[index] = dataInputStream.readUTF();
+        }
+
+        UsageGraph usageGraph = new UsageGraph();
+
+        int nodeCount = readVarInt();
+        for (int node = UsageGraph.ROOT + 1; node < nodeCount; node++)
+        {
+            int    flags      = dataInputStream.readUnsignedByte();
+            String name       = string(strings, readVarInt());
+            int    classNode  = -1;
+            String descriptor = null;
+
+            if ((flags & UsageGraph.KIND_MASK) != UsageGraph.CLASS_NODE)
+            {
+                classNode  = readVarInt() - 1;
+                descriptor = string(strings, readVarInt());
+            }
+
+            usageGraph.addNode(flags, classNode, name, descriptor);
+        }
+
+        int edgeCount = readVarInt();
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            int sourceNode = readVarInt();
+            int targetNode = readVarInt();
+            int edgeKind   = dataInputStream.readUnsignedByte();
+
+            if (sourceNode >= nodeCount ||
+                targetNode >= nodeCount)
+            {
+                throw new IOException("Invalid edge in usage graph ["+sourceNode+" -> "+targetNode+"]");
+            }
+
+            usageGraph.addEdge(sourceNode, edgeKind, targetNode);
+        }
+
+        return usageGraph;
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns the string with the given index plus 1 in the given string
+     * table, or null for index 0.
+     */
+    private String string(String[] strings, int index)
+    {
+        return index == 0 ? null : strings[index - 1];
+    }
+
+
+    /**
+     * Reads a non-negative integer that was written 7 bits at a time.
+     */
+    private int readVarInt() throws IOException
+    {
+        int value = 0;
+        int shift = 0;
+
+        while (true)
+        {
+            int b = dataInputStream.readUnsignedByte();
+
+            value |= (b & 0x7f) << shift;
+
+            if ((b & 0x80) == 0)
+            {
+                return value;
+            }
+
+            shift += 7;
+        }
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.shrink;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * This class writes a usage graph to an output stream, in a compact binary
+ * format that a {@link UsageGraphReader} can read back:
+ * <pre>
+ *   int    magic        ("PGUG")
+ *   short  version
+ *   varint string count
+ *   utf    strings...
+ *   varint node count, including the root node
+ *   nodes, except the root node:
+ *     byte   kind and flags
+ *     varint name index + 1
+ *     class members only:
+ *     varint class node + 1
+ *     varint descriptor index + 1
+ *   varint edge count
+ *   edges:
+ *     varint source node
+ *     varint target node
+ *     byte   kind
+ * </pre>
+ * Node ids are the ids in the graph, so they are consistent with the order
+ * in which the classes and class members were marked. Names and descriptors
+ * are interned in the string table, so each one is only written once. An
+ * index or node of 0 means that it isn't known.
+ *
+ * @see UsageGraph
+ */
+public class UsageGraphWriter
+{
+    public static final int MAGIC   = 0x50475547;
+    public static final int VERSION = 1;
+
+
+    private final DataOutputStream dataOutputStream;
+
+
+    /**
+     * Creates a new UsageGraphWriter that writes to the given output stream.
+     */
+    public UsageGraphWriter(OutputStream outputStream)
+    {
+        this.dataOutputStream =
+            new DataOutputStream(
+            new BufferedOutputStream(outputStream));
+    }
+
+
+    /**
+     * Writes the given usage graph. Its used nodes should have been flagged,
+     * and the classes of its class member nodes should have been completed,
+     * so the file contains all information.
+     */
+    public void write(UsageGraph usageGraph) throws IOException
+    {
+        int nodeCount = usageGraph.getNodeCount();
+        int edgeCount = usageGraph.getEdgeCount();
+
+        // Collect the distinct names and descriptors.
+        Map<String, Integer> stringIndices = new LinkedHashMap<>();
+        for (int node = UsageGraph.ROOT + 1; node < nodeCount; node++)
+        {
+            intern(stringIndices, usageGraph.getName(node));
+            intern(stringIndices, usageGraph.getDescriptor(node));
+        }
+
+        dataOutputStream.writeInt(MAGIC);
+        dataOutputStream.writeShort(VERSION);
+
+        writeVarInt(stringIndices.size());
+        for (String string : stringIndices.keySet())
+        {
+            dataOutputStream.writeUTF(string);
+        }
+
+        writeVarInt(nodeCount);
+        for (int node = UsageGraph.ROOT + 1; node < nodeCount; node++)
+        {
+            dataOutputStream.writeByte(usageGraph.getNodeFlags(node));
+            writeVarInt(index(stringIndices, usageGraph.getName(node)));
+
+            if (usageGraph.getNodeKind(node) != UsageGraph.CLASS_NODE)
+            {
+                writeVarInt(usageGraph.getClassNode(node) + 1);
+                writeVarInt(index(stringIndices, usageGraph.getDescriptor(node)));
+            }
+        }
+
+        writeVarInt(edgeCount);
+        for (int edge = 0; edge < edgeCount; edge++)
+        {
+            writeVarInt(usageGraph.getEdgeSource(edge));
+            writeVarInt(usageGraph.getEdgeTarget(edge));
+            dataOutputStream.writeByte(usageGraph.getEdgeKind(edge));
+        }
+
+        dataOutputStream.flush();
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Adds the given string to the given string table, if it isn't null.
+     */
+    private void intern(Map<String, Integer> stringIndices, String string)
+    {
+        if (string != null &&
+            !stringIndices.containsKey(string))
+        {
+            stringIndices.put(string, stringIndices.size());
+        }
+    }
+
+
+    /**
+     * Returns the index of the given string in the given string table,
+     * plus 1, or 0 if the string is null.
+     */
+    private int index(Map<String, Integer> stringIndices, String string)
+    {
+        return string == null ? 0 : stringIndices.get(string) + 1;
+    }
+
+
+    /**
+     * Writes the given non-negative integer in as few bytes as possible, 7
+     * bits at a time.
+     */
+    private void writeVarInt(int value) throws IOException
+    {
+        while ((value & ~0x7f) != 0)
+        {
+            dataOutputStream.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+
+        dataOutputStream.writeByte(value);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.util;
+
+import org.apache.logging.log4j.*;
+import proguard.classfile.util.WarningLogger;
+
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This WarningLogger can safely be shared between the threads of a
+ * parallel class visitor, such as a
+ * {@link proguard.classfile.visitor.ParallelAllClassVisitor}. It passes its
+ * messages to a {@link WarningSink}, which logs them in the same order as
+ * a sequential pass would. The warning loggers of a pass should share a
+ * single sink, so their messages are also interleaved in that order.
+ * <p>
+ * Like a plain WarningLogger, it logs all messages, including any repeated
+ * ones, and it counts all warnings, so the output and the warning counts
+ * are the same as for a sequential pass.
+ */
+public class ConcurrentWarningLogger
+extends      WarningLogger
+{
+    private final WarningSink sink;
+    private final LongAdder   warningCount = new LongAdder();
+
+
+    /**
+     * Creates a new ConcurrentWarningLogger that logs to the given logger,
+     * with a sink of its own.
+     */
+    public ConcurrentWarningLogger(Logger logger)
+    {
+        this(new WarningSink(logger), null);
+    }
+
+
+    /**
+     * Creates a new ConcurrentWarningLogger that logs to the given logger,
+     * with a sink of its own, except for classes that match the given class
+     * name filter.
+     */
+    public ConcurrentWarningLogger(Logger logger, List<String> classFilter)
+    {
+        this(new WarningSink(logger), classFilter);
+    }
+
+
+    /**
+     * Creates a new ConcurrentWarningLogger that logs to the given sink,
+     * except for classes that match the given class name filter.
+     */
+    public ConcurrentWarningLogger(WarningSink sink, List<String> classFilter)
+    {
+        super(sink.logger, classFilter);
+
+        this.sink = sink;
+    }
+
+
+    // Implementations for WarningLogger.
+
+    @Override
+    public int getWarningCount()
+    {
+        return warningCount.intValue();
+    }
+
+
+    @Override
+    public void print(String className, String warning)
+    {
+        if (accepts(className))
+        {
+            sink.log(className, Level.WARN, warning);
+
+            warningCount.increment();
+        }
+    }
+
+
+    @Override
+    public void print(String className1, String className2, String warning)
+    {
+        if (accepts(className1, className2))
+        {
+            sink.log(className1, Level.WARN, warning);
+
+            warningCount.increment();
+        }
+    }
+
+
+    @Override
+    public void note(String className, String note)
+    {
+        if (accepts(className))
+        {
+            sink.log(className, Level.INFO, note);
+        }
+    }
+
+
+    @Override
+    public void note(String className1, String className2, String note)
+    {
+        if (accepts(className1, className2))
+        {
+            sink.log(className1, Level.INFO, note);
+        }
+    }
+}
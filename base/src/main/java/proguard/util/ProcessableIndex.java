@@ -0,0 +1,241 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.util;
+
+import java.util.concurrent.atomic.*;
+
+/**
+ * This class assigns dense, unique indices to processables, so other
+ * classes can keep information about them in side tables, like the usage
+ * marks of the {@link proguard.shrink.SimpleUsageMarker}, instead of in
+ * their processing info.
+ * <p>
+ * The index is typically filled with the processables of a class pool up
+ * front, for instance by a {@link ProcessableIndexer}. Processables that
+ * aren't present yet get their indices on demand. Different threads can
+ * retrieve and assign indices concurrently, without boxing and without
+ * locking.
+ * <p>
+ * The processables are kept in open addressing hash tables, based on their
+ * identity. When the probes for a processable exceed a table, they continue
+ * in the next table, which is twice as large. Entries are never moved or
+ * removed, so all threads that look for the same processable follow the
+ * same probes and agree on the same entry.
+ */
+public class ProcessableIndex
+{
+    private static final int DEFAULT_EXPECTED_SIZE = 1024;
+    private static final int MAX_PROBE_COUNT       = 32;
+
+    private final Table         firstTable;
+    private final AtomicInteger size = new AtomicInteger();
+
+
+    /**
+     * Creates a new, empty ProcessableIndex.
+     */
+    public ProcessableIndex()
+    {
+        this(DEFAULT_EXPECTED_SIZE);
+    }
+
+
+    /**
+     * Creates a new, empty ProcessableIndex with room for the given number
+     * of processables.
+     */
+    public ProcessableIndex(int expectedSize)
+    {
+        // Keep the load factor of the first table under 1/2.
+        int capacity = Integer.highestOneBit(Math.max(expectedSize, 8) - 1) << 2;
+
+        firstTable = new Table(capacity);
+    }
+
+
+    /**
+     * Adds the given processable to the index, if it isn't present yet.
+     */
+    public void add(Processable processable)
+    {
+        indexOf(processable);
+    }
+
+
+    /**
+     * Returns the index of the given processable, assigning a new index
+     * if it doesn't have one yet.
+     */
+    public int indexOf(Processable processable)
+    {
+        int hash = hash(processable);
+
+        Table table = firstTable;
+        while (true)
+        {
+            int mask = table.processables.length() - 1;
+
+            for (int probe = 0; probe < MAX_PROBE_COUNT; probe++)
+            {
+                int slot = (hash + probe) & mask;
+
+                Processable slotProcessable = table.processables.get(slot);
+                if (slotProcessable == null)
+                {
+                    if (table.processables.compareAndSet(slot, null, processable))
+                    {
+                        // We've claimed the slot, so we assign the index.
+                        int index = size.getAndIncrement();
+                        table.indices.set(slot, index + 1);
+
+                        return index;
+                    }
+
+                    // Another thread has claimed the slot in the meantime.
+                    slotProcessable = table.processables.get(slot);
+                }
+
+                if (slotProcessable == processable)
+                {
+                    return index(table, slot);
+                }
+            }
+
+            table = table.nextTable();
+        }
+    }
+
+
+    /**
+     * Returns the index of the given processable, or -1 if it doesn't have
+     * one yet.
+     */
+    public int find(Processable processable)
+    {
+        int hash = hash(processable);
+
+        Table table = firstTable;
+        while (table != null)
+        {
+            int mask = table.processables.length() - 1;
+
+            for (int probe = 0; probe < MAX_PROBE_COUNT; probe++)
+            {
+                int slot = (hash + probe) & mask;
+
+                Processable slotProcessable = table.processables.get(slot);
+                if (slotProcessable == null)
+                {
+                    return -1;
+                }
+
+                if (slotProcessable == processable)
+                {
+                    return index(table, slot);
+                }
+            }
+
+            table = table.nextTable;
+        }
+
+        return -1;
+    }
+
+
+    /**
+     * Returns the number of indices that have been assigned.
+     */
+    public int size()
+    {
+        return size.get();
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns the index in the given slot of the given table, waiting for
+     * the thread that has claimed the slot to assign it, if necessary.
+     */
+    private static int index(Table table, int slot)
+    {
+        int index;
+        while ((index = table.indices.get(slot)) == 0)
+        {
+            Thread.yield();
+        }
+
+        return index - 1;
+    }
+
+
+    /**
+     * Returns a spread hash code of the identity of the given processable.
+     */
+    private static int hash(Processable processable)
+    {
+        int hash = System.identityHashCode(processable);
+
+        return hash ^ (hash >>> 16);
+    }
+
+
+    /**
+     * This class contains a table of processables and their indices, plus
+     * one.
+     */
+    private static class Table
+    {
+        private static final AtomicReferenceFieldUpdater<Table, Table> NEXT_TABLE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(Table.class, Table.class, "nextTable");
+
+        private final AtomicReferenceArray<Processable> processables;
+        private final AtomicIntegerArray                indices;
+
+        private volatile Table nextTable;
+
+
+        private Table(int capacity)
+        {
+            processables = new AtomicReferenceArray<>(capacity);
+            indices      = new AtomicIntegerArray(capacity);
+        }
+
+
+        /**
+         * Returns the next table, creating it if necessary.
+         */
+        private Table nextTable()
+        {
+            Table nextTable = this.nextTable;
+            if (nextTable == null)
+            {
+                nextTable = new Table(processables.length() * 2);
+                if (!NEXT_TABLE_UPDATER.compareAndSet(this, null, nextTable))
+                {
+                    nextTable = this.nextTable;
+                }
+            }
+
+            return nextTable;
+        }
+    }
+}
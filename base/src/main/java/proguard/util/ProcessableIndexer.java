@@ -0,0 +1,121 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.util;
+
+import proguard.classfile.*;
+import proguard.classfile.attribute.*;
+import proguard.classfile.attribute.visitor.AttributeVisitor;
+import proguard.classfile.constant.Constant;
+import proguard.classfile.constant.visitor.ConstantVisitor;
+import proguard.classfile.visitor.*;
+
+/**
+ * This ClassVisitor adds the classes that it visits to a given
+ * {@link ProcessableIndex}, along with their class members, constants, and
+ * attributes.
+ */
+public class ProcessableIndexer
+implements   ClassVisitor,
+             MemberVisitor,
+             ConstantVisitor,
+             AttributeVisitor
+{
+    private final ProcessableIndex processableIndex;
+
+
+    public ProcessableIndexer(ProcessableIndex processableIndex)
+    {
+        this.processableIndex = processableIndex;
+    }
+
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz) {}
+
+
+    @Override
+    public void visitProgramClass(ProgramClass programClass)
+    {
+        processableIndex.add(programClass);
+
+        programClass.constantPoolEntriesAccept(this);
+        programClass.fieldsAccept(this);
+        programClass.methodsAccept(this);
+        programClass.attributesAccept(this);
+    }
+
+
+    @Override
+    public void visitLibraryClass(LibraryClass libraryClass)
+    {
+        processableIndex.add(libraryClass);
+
+        libraryClass.fieldsAccept(this);
+        libraryClass.methodsAccept(this);
+    }
+
+
+    // Implementations for MemberVisitor.
+
+    @Override
+    public void visitProgramMember(ProgramClass programClass, ProgramMember programMember)
+    {
+        processableIndex.add(programMember);
+
+        programMember.attributesAccept(programClass, this);
+    }
+
+
+    @Override
+    public void visitLibraryMember(LibraryClass libraryClass, LibraryMember libraryMember)
+    {
+        processableIndex.add(libraryMember);
+    }
+
+
+    // Implementations for ConstantVisitor.
+
+    @Override
+    public void visitAnyConstant(Clazz clazz, Constant constant)
+    {
+        processableIndex.add(constant);
+    }
+
+
+    // Implementations for AttributeVisitor.
+
+    @Override
+    public void visitAnyAttribute(Clazz clazz, Attribute attribute)
+    {
+        processableIndex.add(attribute);
+    }
+
+
+    @Override
+    public void visitCodeAttribute(Clazz clazz, Method method, CodeAttribute codeAttribute)
+    {
+        processableIndex.add(codeAttribute);
+
+        codeAttribute.attributesAccept(clazz, method, this);
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.util;
+
+import proguard.classfile.*;
+import proguard.classfile.constant.*;
+import proguard.classfile.constant.visitor.ConstantVisitor;
+import proguard.classfile.kotlin.*;
+import proguard.classfile.kotlin.visitor.KotlinMetadataVisitor;
+import proguard.classfile.visitor.*;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This ClassVisitor replaces the names, descriptors, and other strings of
+ * the classes that it visits by shared instances, to reduce heap memory
+ * usage. Unlike a {@link proguard.classfile.util.StringSharer}, a single
+ * instance can safely be shared between the threads of a parallel class
+ * visitor, such as a {@link ParallelAllClassVisitor}, so the strings are
+ * shared across all classes, instead of only across the classes that
+ * happen to be visited by the same thread.
+ * <p>
+ * Each visited class only has its own fields updated, so the classes can be
+ * visited concurrently.
+ */
+public class SymbolSharer
+implements   ClassVisitor,
+             MemberVisitor,
+             ConstantVisitor,
+             KotlinMetadataVisitor
+{
+    private final Map<String, String> symbols = new ConcurrentHashMap<>(65536);
+
+
+    /**
+     * Returns the shared instance of the given string, or null if the
+     * given string is null.
+     */
+    public String share(String string)
+    {
+        if (string == null)
+        {
+            return null;
+        }
+
+        String sharedString = symbols.putIfAbsent(string, string);
+
+        return sharedString != null ? sharedString : string;
+    }
+
+
+    /**
+     * Returns the number of distinct shared strings.
+     */
+    public int size()
+    {
+        return symbols.size();
+    }
+
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz) {}
+
+
+    @Override
+    public void visitProgramClass(ProgramClass programClass)
+    {
+        // Share the names, descriptors, and other strings in the constant
+        // pool.
+        programClass.constantPoolEntriesAccept(this);
+
+        programClass.kotlinMetadataAccept(this);
+    }
+
+
+    @Override
+    public void visitLibraryClass(LibraryClass libraryClass)
+    {
+        libraryClass.thisClassName  = share(libraryClass.thisClassName);
+        libraryClass.superClassName = share(libraryClass.superClassName);
+
+        String[] interfaceNames = libraryClass.interfaceNames;
+        if (interfaceNames != null)
+        {
+            for (int index = 0; index < interfaceNames.length; index++)
+            {
+                interfaceNames[index] = share(interfaceNames[index]);
+            }
+        }
+
+        libraryClass.fieldsAccept(this);
+        libraryClass.methodsAccept(this);
+
+        libraryClass.kotlinMetadataAccept(this);
+    }
+
+
+    // Implementations for MemberVisitor.
+
+    @Override
+    public void visitAnyMember(Clazz clazz, Member member) {}
+
+
+    @Override
+    public void visitLibraryMember(LibraryClass libraryClass, LibraryMember libraryMember)
+    {
+        libraryMember.name       = share(libraryMember.name);
+        libraryMember.descriptor = share(libraryMember.descriptor);
+    }
+
+
+    // Implementations for ConstantVisitor.
+
+    @Override
+    public void visitAnyConstant(Clazz clazz, Constant constant) {}
+
+
+    @Override
+    public void visitUtf8Constant(Clazz clazz, Utf8Constant utf8Constant)
+    {
+        String string = utf8Constant.getString();
+        String sharedString = share(string);
+
+        // Only touch the constant if it actually changes.
+        if (sharedString != string)
+        {
+            utf8Constant.setString(sharedString);
+        }
+    }
+
+
+    // Implementations for KotlinMetadataVisitor.
+
+    @Override
+    public void visitAnyKotlinMetadata(Clazz clazz, KotlinMetadata kotlinMetadata) {}
+
+
+    @Override
+    public void visitKotlinClassMetadata(Clazz clazz, KotlinClassKindMetadata kotlinClassKindMetadata)
+    {
+        kotlinClassKindMetadata.className                 = share(kotlinClassKindMetadata.className);
+        kotlinClassKindMetadata.companionObjectName       = share(kotlinClassKindMetadata.companionObjectName);
+        kotlinClassKindMetadata.anonymousObjectOriginName = share(kotlinClassKindMetadata.anonymousObjectOriginName);
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.util;
+
+import org.apache.logging.log4j.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * This class logs the messages of the {@link ConcurrentWarningLogger}
+ * instances of a pass, in the same order as the pass would report them if
+ * it ran sequentially. The warning loggers of a pass share a single sink.
+ * <p>
+ * By default, the sink logs the messages right away. Around a parallel
+ * section, typically a
+ * {@link proguard.classfile.visitor.ParallelAllClassVisitor} that traverses
+ * a class pool, the pass calls {@link #startCollecting()} and
+ * {@link #flush()}. In between, each thread collects its messages in a
+ * buffer of its own, without contention on a lock or on the underlying
+ * logger. The flush then logs the collected messages in class pool order,
+ * based on the names of the classes that they are about. The messages about
+ * the same class, from any of the warning loggers, keep the order in which
+ * they were reported.
+ */
+public class WarningSink
+{
+    final Logger logger;
+
+    private final Queue<List<Message>>       buffers = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<List<Message>> buffer  = ThreadLocal.withInitial(ArrayList::new);
+
+    private volatile boolean collecting;
+
+
+    /**
+     * Creates a new WarningSink that logs to the given logger.
+     */
+    public WarningSink(Logger logger)
+    {
+        this.logger = logger;
+    }
+
+
+    /**
+     * Starts collecting the messages, until the next flush.
+     */
+    public void startCollecting()
+    {
+        collecting = true;
+    }
+
+
+    /**
+     * Logs the collected messages in class pool order, clears them, and
+     * goes back to logging messages right away. The threads that have
+     * collected them must have finished, for instance at the end of a
+     * parallel class visitor.
+     */
+    public void flush()
+    {
+        collecting = false;
+
+        List<Message> messages = new ArrayList<>();
+
+        List<Message> buffer;
+        while ((buffer = buffers.poll()) != null)
+        {
+            messages.addAll(buffer);
+            buffer.clear();
+        }
+
+        // Each class is visited by a single thread, and the sort is stable,
+        // so it preserves the order of the messages about the same class.
+        Collections.sort(messages);
+
+        for (Message message : messages)
+        {
+            logger.log(message.level, message.text);
+        }
+    }
+
+
+    /**
+     * Logs the given message about the given class, or collects it until
+     * the next flush.
+     */
+    void log(String className, Level level, String text)
+    {
+        if (collecting)
+        {
+            // Only the buffers with messages are queued, so the buffers of
+            // finished threads don't pile up.
+            List<Message> buffer = this.buffer.get();
+            if (buffer.isEmpty())
+            {
+                buffers.add(buffer);
+            }
+
+            buffer.add(new Message(className, level, text));
+        }
+        else
+        {
+            logger.log(level, text);
+        }
+    }
+
+
+    /**
+     * A collected message, ordered by the name of the class that it is
+     * about, like the classes in a class pool.
+     */
+    private static class Message
+    implements           Comparable<Message>
+    {
+        private final String className;
+        private final Level  level;
+        private final String text;
+
+
+        public Message(String className, Level level, String text)
+        {
+            this.className = className == null ? "" : className;
+            this.level     = level;
+            this.text      = text;
+        }
+
+
+        // Implementations for Comparable.
+
+        @Override
+        public int compareTo(Message other)
+        {
+            return className.compareTo(other.className);
+        }
+    }
+}
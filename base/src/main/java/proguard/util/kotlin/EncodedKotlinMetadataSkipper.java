@@ -0,0 +1,74 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.util.kotlin;
+
+import proguard.classfile.*;
+import proguard.classfile.visitor.ClassVisitor;
+
+/**
+ * This ClassVisitor lets another ClassVisitor visit the classes that it
+ * visits, while skipping any Kotlin metadata that is still encoded. This
+ * way, visitors that process all classes, such as initializers or string
+ * sharers, don't force all lazily decoded metadata to be decoded.
+ *
+ * @see LazyKotlinMetadata
+ */
+public class EncodedKotlinMetadataSkipper
+implements   ClassVisitor
+{
+    private static final ThreadLocal<Boolean> SKIPPING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+    private final ClassVisitor classVisitor;
+
+
+    public EncodedKotlinMetadataSkipper(ClassVisitor classVisitor)
+    {
+        this.classVisitor = classVisitor;
+    }
+
+
+    /**
+     * Returns whether encoded Kotlin metadata is being skipped in the
+     * current thread.
+     */
+    static boolean isSkipping()
+    {
+        return SKIPPING.get();
+    }
+
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz)
+    {
+        boolean skipping = SKIPPING.get();
+        SKIPPING.set(Boolean.TRUE);
+        try
+        {
+            clazz.accept(classVisitor);
+        }
+        finally
+        {
+            SKIPPING.set(skipping);
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.util.kotlin;
+
+import proguard.classfile.*;
+import proguard.classfile.visitor.ClassVisitor;
+
+/**
+ * This ClassVisitor delegates its visits to another given ClassVisitor, but
+ * only for classes that have Kotlin metadata. Unlike a
+ * {@link proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor},
+ * it doesn't decode any lazily decoded metadata.
+ *
+ * @see LazyKotlinMetadata
+ */
+public class KotlinMetadataPresenceFilter
+implements   ClassVisitor
+{
+    private final ClassVisitor classVisitor;
+
+
+    public KotlinMetadataPresenceFilter(ClassVisitor classVisitor)
+    {
+        this.classVisitor = classVisitor;
+    }
+
+
+    // Implementations for ClassVisitor.
+
+    @Override
+    public void visitAnyClass(Clazz clazz) {}
+
+
+    @Override
+    public void visitProgramClass(ProgramClass programClass)
+    {
+        if (programClass.kotlinMetadata != null)
+        {
+            programClass.accept(classVisitor);
+        }
+    }
+
+
+    @Override
+    public void visitLibraryClass(LibraryClass libraryClass)
+    {
+        if (libraryClass.kotlinMetadata != null)
+        {
+            libraryClass.accept(classVisitor);
+        }
+    }
+}
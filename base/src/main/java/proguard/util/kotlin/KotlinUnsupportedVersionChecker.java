@@ -23,7 +23,7 @@
 package proguard.util.kotlin;
 
 import proguard.*;
-import proguard.classfile.Clazz;
+import proguard.classfile.*;
 import proguard.classfile.kotlin.*;
 import proguard.classfile.kotlin.visitor.*;
 import proguard.classfile.util.kotlin.KotlinMetadataInitializer;
@@ -54,9 +54,38 @@ public class KotlinUnsupportedVersionChecker implements Pass
         );
 
         appView.programClassPool.classesAccept(unsupportedMetadataChecker);
-        appView.libraryClassPool.classesAccept(unsupportedMetadataChecker);
+        appView.libraryClassPool.classesAccept(new EncodedKotlinMetadataSkipper(unsupportedMetadataChecker));
+
+        // Check the versions of any lazily decoded library metadata, without
+        // decoding it. Such metadata is removed anyway if it turns out that
+        // it can't be decoded.
+        appView.libraryClassPool.classesAccept(new MyEncodedKotlinMetadataChecker());
     }
 
+
+    /**
+     * Throws an exception if the given metadata version is not supported.
+     */
+    private static void checkVersion(Clazz clazz, int[] mv)
+    {
+        if (mv != null
+            && (mv.length == 2 || mv.length == 3)
+            && !isSupportedMetadataVersion(new KotlinMetadataVersion(mv)))
+        {
+            throw new RuntimeException(
+                "Unsupported Kotlin metadata version "
+                + new KotlinMetadataVersion(mv)
+                + " found on class '"
+                + clazz.getName()
+                + "'."
+                + System.lineSeparator()
+                + "Kotlin versions up to "
+                + LATEST_STABLE_SUPPORTED
+                + " are supported.");
+        }
+    }
+
+
     private static class MyUnsupportedKotlinMetadataChecker implements KotlinMetadataVisitor
     {
         @Override
@@ -66,25 +95,28 @@ public class KotlinUnsupportedVersionChecker implements Pass
         @Override
         public void visitUnsupportedKotlinMetadata(Clazz clazz, UnsupportedKotlinMetadata kotlinMetadata)
         {
-            if (kotlinMetadata.mv != null
-                && (kotlinMetadata.mv.length == 2 || kotlinMetadata.mv.length == 3)
-                && !isSupportedMetadataVersion(new KotlinMetadataVersion(kotlinMetadata.mv)))
-            {
-                throw new RuntimeException(
-                    "Unsupported Kotlin metadata version "
-                    + new KotlinMetadataVersion(kotlinMetadata.mv)
-                    + " found on class '"
-                    + clazz.getName()
-                    + "'."
-                    + System.lineSeparator()
-                    + "Kotlin versions up to "
-                    + LATEST_STABLE_SUPPORTED
-                    + " are supported.");
-            }
-            else
+            checkVersion(clazz, kotlinMetadata.mv);
+
+            // Unsupported for some other reason, just remove the metadata.
+            clazz.accept(new KotlinMetadataRemover());
+        }
+    }
+
+
+    private static class MyEncodedKotlinMetadataChecker implements ClassVisitor
+    {
+        @Override
+        public void visitAnyClass(Clazz clazz) {}
+
+
+        @Override
+        public void visitLibraryClass(LibraryClass libraryClass)
+        {
+            KotlinMetadata kotlinMetadata = libraryClass.kotlinMetadata;
+            if (kotlinMetadata instanceof LazyKotlinMetadata &&
+                !((LazyKotlinMetadata)kotlinMetadata).isDecoded())
             {
-                // Unsupported for some other reason, just remove the metadata.
-                clazz.accept(new KotlinMetadataRemover());
+                checkVersion(libraryClass, kotlinMetadata.mv);
             }
         }
     }
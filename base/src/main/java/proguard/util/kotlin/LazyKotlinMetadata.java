@@ -0,0 +1,270 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.util.kotlin;
+
+import proguard.classfile.*;
+import proguard.classfile.kotlin.KotlinMetadata;
+import proguard.classfile.kotlin.visitor.KotlinMetadataVisitor;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * This KotlinMetadata stands in for the Kotlin metadata of a library class,
+ * keeping it in its encoded form until it is first accessed. At that point,
+ * it decodes the metadata with its {@link LazyKotlinMetadataDecoder},
+ * replaces itself in the class by the decoded metadata, and passes the
+ * decoded metadata to the visitor.
+ * <p>
+ * It is safe to access the metadata from different threads. The first
+ * thread to access it claims it and decodes it, without any locks, so
+ * different threads can decode the metadata of different classes at the
+ * same time. Other threads wait until it is decoded.
+ * <p>
+ * Metadata that can't be decoded, or that turns out to be inconsistent, is
+ * reported and removed from its class, by the thread that decodes it.
+ *
+ * @see EncodedKotlinMetadataSkipper
+ */
+public class LazyKotlinMetadata
+extends      KotlinMetadata
+{
+    private static final AtomicReferenceFieldUpdater<LazyKotlinMetadata, Thread> DECODING_THREAD_UPDATER =
+        AtomicReferenceFieldUpdater.newUpdater(LazyKotlinMetadata.class, Thread.class, "decodingThread");
+
+    // The metadata that the waiting threads are waiting for, guarded by its
+    // own lock. It is only used when threads access the same metadata at
+    // the same time.
+    private static final Map<Thread, LazyKotlinMetadata> awaitedMetadata = new HashMap<>();
+
+    private final LazyKotlinMetadataDecoder decoder;
+    private final String[]                  d1;
+    private final String[]                  d2;
+
+    private volatile Thread         decodingThread;
+    private          KotlinMetadata decodedMetadata;
+    private volatile boolean        decoded;
+    private volatile int            waitingThreadCount;
+
+
+    /**
+     * Creates a new LazyKotlinMetadata with the given encoded values of the
+     * kotlin.Metadata annotation.
+     */
+    public LazyKotlinMetadata(LazyKotlinMetadataDecoder decoder,
+                              int                       k,
+                              int[]                     mv,
+                              String[]                  d1,
+                              String[]                  d2,
+                              int                       xi,
+                              String                    xs,
+                              String                    pn)
+    {
+        super(k, mv, xi, xs, pn);
+
+        this.decoder = decoder;
+        this.d1      = d1;
+        this.d2      = d2;
+    }
+
+
+    /**
+     * Returns whether the metadata has already been decoded.
+     */
+    public boolean isDecoded()
+    {
+        return decoded;
+    }
+
+
+    /**
+     * Returns the decoded metadata of the given class, decoding it if
+     * necessary, or null if it can't be decoded. While the metadata is
+     * being decoded, re-entrant calls from the same thread, for instance
+     * from the reference initializer, get the decoded metadata whose
+     * references are being initialized.
+     */
+    public KotlinMetadata decodedMetadata(Clazz clazz)
+    {
+        if (!decoded)
+        {
+            Thread currentThread = Thread.currentThread();
+
+            if (DECODING_THREAD_UPDATER.compareAndSet(this, null, currentThread))
+            {
+                decode(clazz);
+            }
+            else if (decodingThread != currentThread)
+            {
+                awaitDecoding(currentThread);
+            }
+
+            // Otherwise we're already decoding in this thread, so the
+            // decoded metadata is only accessible to us.
+        }
+
+        return decodedMetadata;
+    }
+
+
+    // Implementations for KotlinMetadata.
+
+
+    // Implementations for KotlinMetadata.
+
+    @Override
+    public void accept(Clazz clazz, KotlinMetadataVisitor kotlinMetadataVisitor)
+    {
+        // Leave the metadata encoded if the current visitor doesn't need it.
+        if (!decoded && EncodedKotlinMetadataSkipper.isSkipping())
+        {
+            return;
+        }
+
+        KotlinMetadata kotlinMetadata = decodedMetadata(clazz);
+        if (kotlinMetadata != null)
+        {
+            kotlinMetadata.accept(clazz, kotlinMetadataVisitor);
+        }
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Decodes the metadata of the given class, in the current thread, which
+     * has claimed it.
+     */
+    private void decode(Clazz clazz)
+    {
+        try
+        {
+            // Decode the metadata first, so re-entrant calls can already
+            // access it.
+            decodedMetadata = decoder.decode(clazz, k, mv, d1, d2, xi, xs, pn);
+
+            // Initialize the references while the decoded metadata is
+            // still private to this thread.
+            if (decodedMetadata != null)
+            {
+                decoder.initializeReferences(clazz);
+
+                if (!decoder.isConsistent(clazz, decodedMetadata))
+                {
+                    decodedMetadata = null;
+                }
+            }
+
+            // Replace this placeholder, unless the class has been updated
+            // in the meantime.
+            LibraryClass libraryClass = (LibraryClass)clazz;
+            if (libraryClass.kotlinMetadata == this)
+            {
+                libraryClass.kotlinMetadata = decodedMetadata;
+            }
+        }
+        finally
+        {
+            decoded = true;
+
+            // Wake up any threads that are waiting for the metadata.
+            if (waitingThreadCount > 0)
+            {
+                synchronized (awaitedMetadata)
+                {
+                    awaitedMetadata.notifyAll();
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Waits until the thread that has claimed the metadata has decoded it.
+     * If that thread is itself waiting, directly or indirectly, for metadata
+     * that the current thread is decoding, the decoding threads depend on
+     * each other's metadata. The current thread then continues with the
+     * metadata whose references are being initialized, like a re-entrant
+     * call in a single thread.
+     */
+    private void awaitDecoding(Thread currentThread)
+    {
+        boolean interrupted = false;
+
+        synchronized (awaitedMetadata)
+        {
+            waitingThreadCount++;
+            try
+            {
+                while (!decoded &&
+                       !isWaitingFor(currentThread))
+                {
+                    awaitedMetadata.put(currentThread, this);
+                    try
+                    {
+                        awaitedMetadata.wait();
+                    }
+                    catch (InterruptedException e)
+                    {
+                        interrupted = true;
+                    }
+                    finally
+                    {
+                        awaitedMetadata.remove(currentThread);
+                    }
+                }
+            }
+            finally
+            {
+                waitingThreadCount--;
+            }
+        }
+
+        if (interrupted)
+        {
+            currentThread.interrupt();
+        }
+    }
+
+
+    /**
+     * Returns whether the thread that is decoding this metadata is waiting,
+     * directly or indirectly, for metadata that the given thread is
+     * decoding. The caller must hold the lock on the awaited metadata.
+     */
+    private boolean isWaitingFor(Thread thread)
+    {
+        Thread decodingThread = this.decodingThread;
+        while (decodingThread != null)
+        {
+            if (decodingThread == thread)
+            {
+                return true;
+            }
+
+            LazyKotlinMetadata metadata = awaitedMetadata.get(decodingThread);
+
+            decodingThread = metadata == null ? null : metadata.decodingThread;
+        }
+
+        return false;
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.util.kotlin;
+
+import proguard.classfile.*;
+import proguard.classfile.io.LibraryClassReader;
+import proguard.classfile.kotlin.*;
+import proguard.classfile.util.*;
+import proguard.classfile.util.kotlin.KotlinMetadataInitializer;
+import proguard.util.kotlin.asserter.*;
+import proguard.util.kotlin.asserter.constraint.*;
+
+import java.util.*;
+
+/**
+ * This class decodes the Kotlin metadata of library classes on demand, for
+ * {@link LazyKotlinMetadata} instances. It initializes the references of the
+ * decoded metadata right away, since they are normally initialized with all
+ * library classes, well before any metadata is decoded. It then checks the
+ * decoded metadata, like the {@link KotlinMetadataVerifier} does, since the
+ * verifier may have run before. Inconsistent metadata is reported and
+ * discarded.
+ *
+ * @see LazyKotlinMetadata
+ */
+public class LazyKotlinMetadataDecoder
+{
+    private static final String CLASS_ERROR_MESSAGE = "Warning: Kotlin metadata errors encountered in %s. Not processing the metadata for this class.";
+
+    private final ClassPool      programClassPool;
+    private final ClassPool      libraryClassPool;
+    private final WarningPrinter warningPrinter;
+
+
+    /**
+     * Creates a new LazyKotlinMetadataDecoder.
+     * @param programClassPool the program class pool, for initializing the
+     *                         references of the decoded metadata.
+     * @param libraryClassPool the library class pool, for initializing the
+     *                         references of the decoded metadata.
+     * @param warningPrinter   an optional warning printer for metadata
+     *                         that can't be decoded.
+     */
+    public LazyKotlinMetadataDecoder(ClassPool      programClassPool,
+                                     ClassPool      libraryClassPool,
+                                     WarningPrinter warningPrinter)
+    {
+        this.programClassPool = programClassPool;
+        this.libraryClassPool = libraryClassPool;
+        this.warningPrinter   = warningPrinter;
+    }
+
+
+    /**
+     * Returns a consumer for a LibraryClassReader that attaches the encoded
+     * Kotlin metadata to the given library class, as lazily decoded
+     * metadata.
+     */
+    public LibraryClassReader.KotlinMetadataElementValueConsumer lazyKotlinMetadataSetter(LibraryClass libraryClass)
+    {
+        return (k, mv, d1, d2, xi, xs, pn) ->
+            libraryClass.kotlinMetadata = new LazyKotlinMetadata(this, k, mv, d1, d2, xi, xs, pn);
+    }
+
+
+    /**
+     * Decodes the given Kotlin metadata of the given class, without
+     * attaching it to the class. Returns null if the metadata can't be
+     * decoded.
+     */
+    KotlinMetadata decode(Clazz    clazz,
+                          int      k,
+                          int[]    mv,
+                          String[] d1,
+                          String[] d2,
+                          int      xi,
+                          String   xs,
+                          String   pn)
+    {
+        // Let the initializer attach the metadata to a stand-in class, so
+        // the decoded metadata doesn't become visible to other threads
+        // before its references are initialized.
+        LibraryClass standInClass = new LibraryClass(clazz.getAccessFlags(),
+                                                     clazz.getName(),
+                                                     clazz.getSuperName());
+
+        new KotlinMetadataInitializer(warningPrinter)
+            .initialize(standInClass, k, mv, d1, d2, xi, xs, pn);
+
+        KotlinMetadata kotlinMetadata = standInClass.kotlinMetadata;
+
+        return kotlinMetadata instanceof UnsupportedKotlinMetadata ?
+            null :
+            kotlinMetadata;
+    }
+
+
+    /**
+     * Initializes the references of the given class, including its decoded
+     * Kotlin metadata.
+     */
+    void initializeReferences(Clazz clazz)
+    {
+        clazz.accept(new ClassReferenceInitializer(programClassPool,
+                                                   libraryClassPool,
+                                                   null,
+                                                   null,
+                                                   null,
+                                                   null));
+    }
+
+
+    /**
+     * Returns whether the given decoded Kotlin metadata of the given class
+     * is consistent, once its references have been initialized. Reports
+     * any errors to the warning printer, like the KotlinMetadataVerifier.
+     */
+    boolean isConsistent(Clazz clazz, KotlinMetadata kotlinMetadata)
+    {
+        MyReporter reporter = new MyReporter(clazz.getName());
+
+        for (KotlinAsserterConstraint constraint : createConstraints())
+        {
+            constraint.check(reporter,
+                             programClassPool,
+                             libraryClassPool,
+                             clazz,
+                             kotlinMetadata);
+        }
+
+        return reporter.getCount() == 0;
+    }
+
+
+    /**
+     * Creates a fresh list of the constraints that the KotlinMetadataAsserter
+     * checks. The asserter shares a single list of constraints, which store
+     * their reporter and class pools while checking, so they can't be
+     * shared between threads. Moreover, checking them may recursively
+     * decode the metadata of other classes, so they can't be shared between
+     * nested checks either.
+     */
+    private static List<KotlinAsserterConstraint> createConstraints()
+    {
+        return Arrays.asList(
+            new FunctionIntegrity(),
+            new ConstructorIntegrity(),
+            new PropertyIntegrity(),
+            new ClassIntegrity(),
+            new TypeIntegrity(),
+            new KmAnnotationIntegrity(),
+            new ValueParameterIntegrity(),
+            new SyntheticClassIntegrity(),
+            new FileFacadeIntegrity(),
+            new MultiFilePartIntegrity(),
+            new DeclarationContainerIntegrity(),
+            new KotlinModuleIntegrity(),
+            new MultiFileFacadeIntegrity()
+        );
+    }
+
+
+    /**
+     * This Reporter prints the errors about a single class to the warning
+     * printer, if any.
+     */
+    private class MyReporter
+    implements    Reporter
+    {
+        private String contextName;
+        private int    count;
+
+
+        public MyReporter(String contextName)
+        {
+            this.contextName = contextName;
+        }
+
+
+        // Implementations for Reporter.
+
+        @Override
+        public void setErrorMessage(String message) {}
+
+
+        @Override
+        public void report(String error)
+        {
+            if (count == 0)
+            {
+                print(contextName, String.format(CLASS_ERROR_MESSAGE, contextName));
+            }
+
+            count++;
+
+            print(contextName, "  " + error);
+        }
+
+
+        @Override
+        public void resetCounter(String contextName)
+        {
+            this.contextName = contextName;
+        }
+
+
+        @Override
+        public int getCount()
+        {
+            return count;
+        }
+
+
+        @Override
+        public void print(String className, String s)
+        {
+            if (warningPrinter != null)
+            {
+                warningPrinter.print(className, s);
+            }
+        }
+    }
+}
@@ -19,19 +19,35 @@
  * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
  */
 
-
 package proguard.util.kotlin.asserter;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import proguard.AppView;
 import proguard.Configuration;
+import proguard.classfile.*;
+import proguard.classfile.kotlin.*;
+import proguard.classfile.kotlin.flags.KotlinPropertyAccessorMetadata;
+import proguard.classfile.kotlin.reflect.CallableReferenceInfo;
+import proguard.classfile.kotlin.visitor.*;
 import proguard.classfile.util.WarningLogger;
+import proguard.classfile.visitor.*;
 import proguard.pass.Pass;
 import proguard.resources.file.ResourceFilePool;
+import proguard.resources.kotlinmodule.KotlinModule;
+import proguard.util.kotlin.*;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * This pass performs a series of checks to see whether the kotlin metadata is intact.
+ * <p>
+ * The pass remembers which classes it has verified, along with a change
+ * stamp of each class and of the classes that its metadata refers to. When
+ * the same instance is run again, for instance after shrinking or
+ * obfuscation, it only lets the {@link KotlinMetadataAsserter} check the
+ * classes that have changed since, or whose referenced classes have changed.
  */
 public class KotlinMetadataVerifier implements Pass
 {
@@ -39,6 +55,14 @@ public class KotlinMetadataVerifier implements Pass
 
     private final Configuration configuration;
 
+    // The verified classes, with their change stamps and the change stamps
+    // of their referenced classes at the time of their verification.
+    private final Map<Clazz, VerifiedClass> verifiedClasses = new HashMap<>();
+
+    // The change stamps of the classes in the current run.
+    private final Map<Clazz, Long> changeStamps = new ConcurrentHashMap<>();
+
+
     public KotlinMetadataVerifier(Configuration configuration)
     {
         this.configuration = configuration;
@@ -50,14 +74,96 @@ public class KotlinMetadataVerifier implements Pass
     {
         WarningLogger warningLogger = new WarningLogger(logger, configuration.warn);
 
-        KotlinMetadataAsserter kotlinMetadataAsserter = new KotlinMetadataAsserter();
+        ClassPool programClassPool = appView.programClassPool;
+        ClassPool libraryClassPool = appView.libraryClassPool;
+
+        // Forget the classes that have disappeared since the previous run.
+        verifiedClasses.keySet().removeIf(clazz -> !isPresent(programClassPool, libraryClassPool, clazz));
+
+        // Compute the change stamps of the classes with Kotlin metadata, in
+        // parallel. Any encoded Kotlin metadata of library classes is left
+        // alone; it is checked when it is decoded.
+        changeStamps.clear();
+
+        ClassVisitor changeStampComputer = clazz ->
+        {
+            KotlinMetadata kotlinMetadata = kotlinMetadata(clazz);
+            if (kotlinMetadata != null &&
+                !(kotlinMetadata instanceof LazyKotlinMetadata))
+            {
+                changeStamp(clazz);
+            }
+        };
+
+        programClassPool.accept(new ParallelAllClassVisitor(() -> changeStampComputer));
+        libraryClassPool.accept(new ParallelAllClassVisitor(() -> changeStampComputer));
+
+        // Let the asserter check the classes that aren't up to date, and the
+        // Kotlin modules. Removing invalid metadata may invalidate the
+        // metadata of classes that depend on it, so we repeat until the
+        // asserter doesn't remove any more metadata.
+        int checkedClassCount = 0;
+        boolean checkModules  = true;
+        while (true)
+        {
+            ClassPool dirtyProgramClassPool = new ClassPool();
+            ClassPool dirtyLibraryClassPool = new ClassPool();
+
+            programClassPool.classesAccept(new MyDirtyClassCollector(programClassPool, libraryClassPool, dirtyProgramClassPool));
+            libraryClassPool.classesAccept(new MyDirtyClassCollector(programClassPool, libraryClassPool, dirtyLibraryClassPool));
+
+            int dirtyClassCount = dirtyProgramClassPool.size() +
+                                  dirtyLibraryClassPool.size();
+            if (dirtyClassCount == 0 && !checkModules)
+            {
+                break;
+            }
+
+            checkedClassCount += dirtyClassCount;
 
-        kotlinMetadataAsserter.execute(
-            warningLogger,
-            appView.programClassPool,
-            appView.libraryClassPool,
-            appView.resourceFilePool
-        );
+            // Remember the current change stamps of the dirty classes and
+            // of the classes they depend on, before the asserter removes
+            // any invalid metadata. Classes that depend on removed metadata
+            // then become dirty in the next iteration.
+            Map<Clazz, VerifiedClass> checkedClasses = new IdentityHashMap<>();
+            dirtyProgramClassPool.classesAccept(new MyVerifiedClassCreator(checkedClasses));
+            dirtyLibraryClassPool.classesAccept(new MyVerifiedClassCreator(checkedClasses));
+
+            new KotlinMetadataAsserter().execute(warningLogger,
+                                                 dirtyProgramClassPool,
+                                                 dirtyLibraryClassPool,
+                                                 checkModules ?
+                                                     appView.resourceFilePool :
+                                                     new ResourceFilePool());
+            checkModules = false;
+
+            // Remember the classes that have passed, and forget the change
+            // stamps of the classes that have lost their metadata.
+            int removedClassCount = 0;
+            for (Map.Entry<Clazz, VerifiedClass> entry : checkedClasses.entrySet())
+            {
+                Clazz clazz = entry.getKey();
+                if (kotlinMetadata(clazz) != null)
+                {
+                    verifiedClasses.put(clazz, entry.getValue());
+                }
+                else
+                {
+                    verifiedClasses.remove(clazz);
+                    changeStamps.remove(clazz);
+                    removedClassCount++;
+                }
+            }
+
+            if (removedClassCount == 0)
+            {
+                break;
+            }
+        }
+
+        logger.debug("Checked the Kotlin metadata of {} classes ({} verified classes in total)",
+                     checkedClassCount,
+                     verifiedClasses.size());
 
         int warningCount = warningLogger.getWarningCount();
         if (warningCount > 0)
@@ -65,4 +171,652 @@ public class KotlinMetadataVerifier implements Pass
             logger.warn("Warning: there were {} errors during Kotlin metadata verification.", warningCount);
         }
     }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns whether the given class has been verified before and neither
+     * the class nor any of its dependencies have changed since.
+     */
+    private boolean isUpToDate(ClassPool programClassPool,
+                               ClassPool libraryClassPool,
+                               Clazz     clazz)
+    {
+        VerifiedClass verifiedClass = verifiedClasses.get(clazz);
+        if (verifiedClass == null ||
+            verifiedClass.changeStamp != changeStamp(clazz))
+        {
+            return false;
+        }
+
+        Clazz[] dependencies           = verifiedClass.dependencies;
+        long[]  dependencyChangeStamps = verifiedClass.dependencyChangeStamps;
+        for (int index = 0; index < dependencies.length; index++)
+        {
+            Clazz dependency = dependencies[index];
+            if (!isPresent(programClassPool, libraryClassPool, dependency) ||
+                dependencyChangeStamps[index] != changeStamp(dependency))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Returns the change stamp of the given class in the current run.
+     */
+    private long changeStamp(Clazz clazz)
+    {
+        Long changeStamp = changeStamps.get(clazz);
+        if (changeStamp == null)
+        {
+            changeStamp = new MyChangeStamper().changeStamp(clazz);
+            changeStamps.put(clazz, changeStamp);
+        }
+
+        return changeStamp;
+    }
+
+
+    /**
+     * Returns whether the given class is still present in one of the given
+     * class pools.
+     */
+    private static boolean isPresent(ClassPool programClassPool,
+                                     ClassPool libraryClassPool,
+                                     Clazz     clazz)
+    {
+        String className = clazz.getName();
+
+        return programClassPool.getClass(className) == clazz ||
+               libraryClassPool.getClass(className) == clazz;
+    }
+
+
+    /**
+     * Returns the Kotlin metadata of the given class, without decoding any
+     * encoded metadata.
+     */
+    private static KotlinMetadata kotlinMetadata(Clazz clazz)
+    {
+        return clazz instanceof ProgramClass ? ((ProgramClass)clazz).kotlinMetadata :
+               clazz instanceof LibraryClass ? ((LibraryClass)clazz).kotlinMetadata :
+                                               null;
+    }
+
+
+    /**
+     * This data class contains the change stamps and the dependencies of a
+     * verified class.
+     */
+    private static class VerifiedClass
+    {
+        private final long    changeStamp;
+        private final Clazz[] dependencies;
+        private final long[]  dependencyChangeStamps;
+
+
+        private VerifiedClass(long    changeStamp,
+                              Clazz[] dependencies,
+                              long[]  dependencyChangeStamps)
+        {
+            this.changeStamp            = changeStamp;
+            this.dependencies           = dependencies;
+            this.dependencyChangeStamps = dependencyChangeStamps;
+        }
+    }
+
+
+    /**
+     * This ClassVisitor collects the classes with decoded Kotlin metadata
+     * that haven't been verified in their current state.
+     */
+    private class MyDirtyClassCollector
+    implements    ClassVisitor
+    {
+        private final ClassPool programClassPool;
+        private final ClassPool libraryClassPool;
+        private final ClassPool dirtyClassPool;
+
+
+        public MyDirtyClassCollector(ClassPool programClassPool,
+                                     ClassPool libraryClassPool,
+                                     ClassPool dirtyClassPool)
+        {
+            this.programClassPool = programClassPool;
+            this.libraryClassPool = libraryClassPool;
+            this.dirtyClassPool   = dirtyClassPool;
+        }
+
+
+        // Implementations for ClassVisitor.
+
+        @Override
+        public void visitAnyClass(Clazz clazz)
+        {
+            KotlinMetadata kotlinMetadata = kotlinMetadata(clazz);
+            if (kotlinMetadata != null                           &&
+                !(kotlinMetadata instanceof LazyKotlinMetadata) &&
+                !isUpToDate(programClassPool, libraryClassPool, clazz))
+            {
+                dirtyClassPool.addClass(clazz);
+            }
+        }
+    }
+
+
+    /**
+     * This ClassVisitor creates a VerifiedClass with the current change
+     * stamps of each class that it visits and of the classes that the
+     * metadata checks may look at: the referenced classes and the classes
+     * that declare the referenced type aliases.
+     */
+    private class MyVerifiedClassCreator
+    implements    ClassVisitor,
+                  KotlinTypeVisitor,
+                  KotlinTypeAliasVisitor
+    {
+        private final Map<Clazz, VerifiedClass> verifiedClasses;
+
+        private final Set<Clazz>   dependencies        = new LinkedHashSet<>();
+        private final ClassVisitor dependencyCollector =
+            new ReferencedClassVisitor(true, new ClassCollector(dependencies));
+
+
+        public MyVerifiedClassCreator(Map<Clazz, VerifiedClass> verifiedClasses)
+        {
+            this.verifiedClasses = verifiedClasses;
+        }
+
+
+        // Implementations for ClassVisitor.
+
+        @Override
+        public void visitAnyClass(Clazz clazz)
+        {
+            dependencies.clear();
+
+            clazz.accept(dependencyCollector);
+            clazz.kotlinMetadataAccept(new AllTypeVisitor(this));
+            dependencies.remove(clazz);
+
+            Clazz[] dependencyArray        = dependencies.toArray(new Clazz[0]);
+            long[]  dependencyChangeStamps = new long[dependencyArray.length];
+            for (int index = 0; index < dependencyArray.length; index++)
+            {
+                dependencyChangeStamps[index] = changeStamp(dependencyArray[index]);
+            }
+
+            verifiedClasses.put(clazz,
+                                new VerifiedClass(changeStamp(clazz),
+                                                  dependencyArray,
+                                                  dependencyChangeStamps));
+        }
+
+
+        // Implementations for KotlinTypeVisitor.
+
+        @Override
+        public void visitAnyType(Clazz clazz, KotlinTypeMetadata kotlinTypeMetadata)
+        {
+            kotlinTypeMetadata.referencedTypeAliasAccept(clazz, this);
+        }
+
+
+        // Implementations for KotlinTypeAliasVisitor.
+
+        @Override
+        public void visitTypeAlias(Clazz                              clazz,
+                                   KotlinDeclarationContainerMetadata kotlinDeclarationContainerMetadata,
+                                   KotlinTypeAliasMetadata            kotlinTypeAliasMetadata)
+        {
+            kotlinDeclarationContainerMetadata.referencedOwnerClassAccept((ownerClass, ownerMetadata) ->
+                dependencies.add(ownerClass));
+        }
+    }
+
+
+    /**
+     * This ClassVisitor computes a change stamp of the classes that it
+     * visits, covering the properties that the metadata checks look at:
+     * the class names, the class members, the names and signatures in the
+     * metadata, and the classes and class members that the metadata
+     * references. It only combines the hash codes of these properties,
+     * which the strings cache, so it is cheap to compute.
+     */
+    private static class MyChangeStamper
+    implements           ClassVisitor,
+                         MemberVisitor,
+                         KotlinMetadataVisitor,
+                         KotlinConstructorVisitor,
+                         KotlinFunctionVisitor,
+                         KotlinPropertyVisitor,
+                         KotlinEnumEntryVisitor,
+                         KotlinTypeAliasVisitor,
+                         KotlinTypeVisitor,
+                         KotlinAnnotationVisitor,
+                         KotlinAnnotationArgumentVisitor
+    {
+        private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+        private static final long FNV_PRIME        = 0x100000001b3L;
+
+        private long changeStamp;
+
+
+        /**
+         * Returns the change stamp of the given class.
+         */
+        public long changeStamp(Clazz clazz)
+        {
+            changeStamp = FNV_OFFSET_BASIS;
+
+            // Don't decode any encoded Kotlin metadata just for the change
+            // stamp. Decoding it later changes the change stamp.
+            clazz.accept(new EncodedKotlinMetadataSkipper(this));
+
+            return changeStamp;
+        }
+
+
+        // Implementations for ClassVisitor.
+
+        @Override
+        public void visitAnyClass(Clazz clazz)
+        {
+            add(clazz.getAccessFlags());
+            add(clazz.getName());
+            add(clazz.getSuperName());
+
+            int interfaceCount = clazz.getInterfaceCount();
+            add(interfaceCount);
+            for (int index = 0; index < interfaceCount; index++)
+            {
+                add(clazz.getInterfaceName(index));
+            }
+
+            clazz.fieldsAccept(this);
+            add(-1);
+            clazz.methodsAccept(this);
+            add(-1);
+
+            clazz.kotlinMetadataAccept(this);
+        }
+
+
+        // Implementations for MemberVisitor.
+
+        @Override
+        public void visitAnyMember(Clazz clazz, Member member)
+        {
+            add(member.getAccessFlags());
+            add(member.getName(clazz));
+            add(member.getDescriptor(clazz));
+        }
+
+
+        // Implementations for KotlinMetadataVisitor.
+
+        @Override
+        public void visitAnyKotlinMetadata(Clazz clazz, KotlinMetadata kotlinMetadata)
+        {
+            add(kotlinMetadata.k);
+            add(Arrays.hashCode(kotlinMetadata.mv));
+            add(kotlinMetadata.xi);
+            add(kotlinMetadata.xs);
+            add(kotlinMetadata.pn);
+
+            kotlinMetadata.accept(clazz, new AllConstructorVisitor(this));
+            add(-1);
+            kotlinMetadata.accept(clazz, new AllFunctionVisitor(this));
+            add(-1);
+            kotlinMetadata.accept(clazz, new AllPropertyVisitor(this));
+            add(-1);
+            kotlinMetadata.accept(clazz, new AllEnumEntryVisitor(this));
+            add(-1);
+            kotlinMetadata.accept(clazz, new AllTypeAliasVisitor(this));
+            add(-1);
+            kotlinMetadata.accept(clazz, new AllTypeVisitor(this));
+            add(-1);
+            kotlinMetadata.accept(clazz, new AllKotlinAnnotationVisitor(this));
+            add(-1);
+        }
+
+
+        @Override
+        public void visitKotlinDeclarationContainerMetadata(Clazz                              clazz,
+                                                            KotlinDeclarationContainerMetadata kotlinDeclarationContainerMetadata)
+        {
+            visitAnyKotlinMetadata(clazz, kotlinDeclarationContainerMetadata);
+
+            add(kotlinDeclarationContainerMetadata.ownerReferencedClass);
+
+            KotlinModule referencedModule = kotlinDeclarationContainerMetadata.referencedModule;
+            add(referencedModule == null ? null : referencedModule.name);
+        }
+
+
+        @Override
+        public void visitKotlinClassMetadata(Clazz                   clazz,
+                                             KotlinClassKindMetadata kotlinClassKindMetadata)
+        {
+            visitKotlinDeclarationContainerMetadata(clazz, kotlinClassKindMetadata);
+
+            add(kotlinClassKindMetadata.className);
+            add(kotlinClassKindMetadata.referencedClass);
+            add(kotlinClassKindMetadata.companionObjectName);
+            add(kotlinClassKindMetadata.referencedCompanionClass);
+            add(clazz, kotlinClassKindMetadata.referencedCompanionField);
+            addClasses(kotlinClassKindMetadata.referencedNestedClasses);
+            addClasses(kotlinClassKindMetadata.referencedSealedSubClasses);
+            add(kotlinClassKindMetadata.referencedDefaultImplsClass);
+            add(kotlinClassKindMetadata.anonymousObjectOriginClass);
+        }
+
+
+        @Override
+        public void visitKotlinSyntheticClassMetadata(Clazz                            clazz,
+                                                      KotlinSyntheticClassKindMetadata kotlinSyntheticClassKindMetadata)
+        {
+            visitAnyKotlinMetadata(clazz, kotlinSyntheticClassKindMetadata);
+
+            add(kotlinSyntheticClassKindMetadata.flavor.ordinal());
+
+            CallableReferenceInfo callableReferenceInfo = kotlinSyntheticClassKindMetadata.callableReferenceInfo;
+            if (callableReferenceInfo != null)
+            {
+                add(callableReferenceInfo.getName());
+                add(callableReferenceInfo.getSignature());
+            }
+        }
+
+
+        @Override
+        public void visitKotlinMultiFileFacadeMetadata(Clazz                             clazz,
+                                                       KotlinMultiFileFacadeKindMetadata kotlinMultiFileFacadeKindMetadata)
+        {
+            visitAnyKotlinMetadata(clazz, kotlinMultiFileFacadeKindMetadata);
+
+            List<String> partClassNames = kotlinMultiFileFacadeKindMetadata.partClassNames;
+            add(partClassNames == null ? -1 : partClassNames.hashCode());
+            addClasses(kotlinMultiFileFacadeKindMetadata.referencedPartClasses);
+        }
+
+
+        @Override
+        public void visitKotlinMultiFilePartMetadata(Clazz                            clazz,
+                                                     KotlinMultiFilePartKindMetadata kotlinMultiFilePartKindMetadata)
+        {
+            visitKotlinDeclarationContainerMetadata(clazz, kotlinMultiFilePartKindMetadata);
+
+            add(kotlinMultiFilePartKindMetadata.facadeName);
+            add(kotlinMultiFilePartKindMetadata.referencedFacadeClass);
+        }
+
+
+        // Implementations for KotlinConstructorVisitor.
+
+        @Override
+        public void visitConstructor(Clazz                     clazz,
+                                     KotlinClassKindMetadata   kotlinClassKindMetadata,
+                                     KotlinConstructorMetadata kotlinConstructorMetadata)
+        {
+            add(kotlinConstructorMetadata.jvmSignature);
+            add(clazz, kotlinConstructorMetadata.referencedMethod);
+        }
+
+
+        // Implementations for KotlinFunctionVisitor.
+
+        @Override
+        public void visitAnyFunction(Clazz                  clazz,
+                                     KotlinMetadata         kotlinMetadata,
+                                     KotlinFunctionMetadata kotlinFunctionMetadata)
+        {
+            add(kotlinFunctionMetadata.name);
+            add(kotlinFunctionMetadata.jvmSignature);
+            add(kotlinFunctionMetadata.referencedMethodClass,
+                kotlinFunctionMetadata.referencedMethod);
+            add(kotlinFunctionMetadata.referencedDefaultMethodClass,
+                kotlinFunctionMetadata.referencedDefaultMethod);
+            add(kotlinFunctionMetadata.referencedDefaultImplementationMethodClass,
+                kotlinFunctionMetadata.referencedDefaultImplementationMethod);
+            add(kotlinFunctionMetadata.lambdaClassOriginName);
+            add(kotlinFunctionMetadata.referencedLambdaClassOrigin);
+        }
+
+
+        // Implementations for KotlinPropertyVisitor.
+
+        @Override
+        public void visitAnyProperty(Clazz                              clazz,
+                                     KotlinDeclarationContainerMetadata kotlinDeclarationContainerMetadata,
+                                     KotlinPropertyMetadata             kotlinPropertyMetadata)
+        {
+            add(kotlinPropertyMetadata.name);
+            add(kotlinPropertyMetadata.backingFieldSignature);
+            add(kotlinPropertyMetadata.referencedBackingFieldClass,
+                kotlinPropertyMetadata.referencedBackingField);
+            add(kotlinPropertyMetadata.syntheticMethodForAnnotations);
+            add(kotlinPropertyMetadata.referencedSyntheticMethodClass,
+                kotlinPropertyMetadata.referencedSyntheticMethodForAnnotations);
+            add(kotlinPropertyMetadata.syntheticMethodForDelegate);
+            add(kotlinPropertyMetadata.referencedSyntheticMethodForDelegateClass,
+                kotlinPropertyMetadata.referencedSyntheticMethodForDelegateMethod);
+
+            // The accessors can be in the class or in its DefaultImpls
+            // class.
+            Clazz defaultImplsClass =
+                kotlinDeclarationContainerMetadata instanceof KotlinClassKindMetadata ?
+                    ((KotlinClassKindMetadata)kotlinDeclarationContainerMetadata).referencedDefaultImplsClass :
+                    null;
+
+            addAccessor(clazz, defaultImplsClass, kotlinPropertyMetadata.getterMetadata);
+            addAccessor(clazz, defaultImplsClass, kotlinPropertyMetadata.setterMetadata);
+        }
+
+
+        // Implementations for KotlinEnumEntryVisitor.
+
+        @Override
+        public void visitAnyEnumEntry(Clazz                   clazz,
+                                      KotlinClassKindMetadata kotlinClassKindMetadata,
+                                      KotlinEnumEntryMetadata kotlinEnumEntryMetadata)
+        {
+            add(kotlinEnumEntryMetadata.name);
+            add(clazz, kotlinEnumEntryMetadata.referencedEnumEntry);
+        }
+
+
+        // Implementations for KotlinTypeAliasVisitor.
+
+        @Override
+        public void visitTypeAlias(Clazz                              clazz,
+                                   KotlinDeclarationContainerMetadata kotlinDeclarationContainerMetadata,
+                                   KotlinTypeAliasMetadata            kotlinTypeAliasMetadata)
+        {
+            add(kotlinTypeAliasMetadata.name);
+        }
+
+
+        // Implementations for KotlinTypeVisitor.
+
+        @Override
+        public void visitAnyType(Clazz clazz, KotlinTypeMetadata kotlinTypeMetadata)
+        {
+            add(kotlinTypeMetadata.className);
+            add(kotlinTypeMetadata.referencedClass);
+            add(kotlinTypeMetadata.aliasName);
+
+            KotlinTypeAliasMetadata referencedTypeAlias = kotlinTypeMetadata.referencedTypeAlias;
+            add(referencedTypeAlias == null ? null : referencedTypeAlias.name);
+
+            kotlinTypeMetadata.annotationsAccept(clazz, this);
+        }
+
+
+        // Implementations for KotlinAnnotationVisitor.
+
+        @Override
+        public void visitAnyAnnotation(Clazz             clazz,
+                                       KotlinAnnotatable annotatable,
+                                       KotlinAnnotation  kotlinAnnotation)
+        {
+            add(kotlinAnnotation.className);
+            add(kotlinAnnotation.referencedAnnotationClass);
+
+            kotlinAnnotation.argumentsAccept(clazz, annotatable, this);
+        }
+
+
+        // Implementations for KotlinAnnotationArgumentVisitor.
+
+        @Override
+        public void visitAnyArgument(Clazz                          clazz,
+                                     KotlinAnnotatable              annotatable,
+                                     KotlinAnnotation               kotlinAnnotation,
+                                     KotlinAnnotationArgument       kotlinAnnotationArgument,
+                                     KotlinAnnotationArgument.Value value)
+        {
+            add(kotlinAnnotationArgument.name);
+            add(kotlinAnnotationArgument.referencedAnnotationMethodClass,
+                kotlinAnnotationArgument.referencedAnnotationMethod);
+        }
+
+
+        // Small utility methods.
+
+        private void addAccessor(Clazz                          clazz,
+                                 Clazz                          defaultImplsClass,
+                                 KotlinPropertyAccessorMetadata kotlinPropertyAccessorMetadata)
+        {
+            if (kotlinPropertyAccessorMetadata == null)
+            {
+                add(-1);
+            }
+            else
+            {
+                Method referencedMethod = kotlinPropertyAccessorMetadata.referencedMethod;
+
+                add(kotlinPropertyAccessorMetadata.signature);
+                add(defaultImplsClass != null &&
+                    memberIndex(defaultImplsClass, referencedMethod) >= 0 ?
+                        defaultImplsClass :
+                        clazz,
+                    referencedMethod);
+            }
+        }
+
+
+        private void addClasses(List<Clazz> classes)
+        {
+            if (classes == null)
+            {
+                add(-1);
+            }
+            else
+            {
+                add(classes.size());
+                for (Clazz clazz : classes)
+                {
+                    add(clazz);
+                }
+            }
+        }
+
+
+        /**
+         * Adds the given class by name.
+         */
+        private void add(Clazz clazz)
+        {
+            add(clazz == null ? null : clazz.getName());
+        }
+
+
+        /**
+         * Adds the given class member of the given class by its position,
+         * name, and descriptor, or just its presence if it isn't a member
+         * of the class.
+         */
+        private void add(Clazz clazz, Member member)
+        {
+            add(clazz);
+
+            if (member == null)
+            {
+                add(-1);
+            }
+            else
+            {
+                int index = memberIndex(clazz, member);
+                add(index);
+
+                if (index >= 0)
+                {
+                    add(member.getName(clazz));
+                    add(member.getDescriptor(clazz));
+                }
+            }
+        }
+
+
+        private void add(Signature signature)
+        {
+            add(signature == null ? -1 : signature.hashCode());
+        }
+
+
+        private void add(String string)
+        {
+            add(string == null ? -1 : string.hashCode());
+        }
+
+
+        private void add(int value)
+        {
+            changeStamp = (changeStamp ^ value) * FNV_PRIME;
+        }
+
+
+        /**
+         * Returns the index of the given class member in the fields or
+         * methods of the given class, or -1 if it isn't a member.
+         */
+        private static int memberIndex(Clazz clazz, Member member)
+        {
+            if (clazz  != null &&
+                member != null)
+            {
+                Member[] members;
+                int      memberCount;
+
+                if (clazz instanceof ProgramClass)
+                {
+                    ProgramClass programClass = (ProgramClass)clazz;
+                    members     = member instanceof Field ? programClass.fields        : programClass.methods;
+                    memberCount = member instanceof Field ? programClass.u2fieldsCount : programClass.u2methodsCount;
+                }
+                else
+                {
+                    LibraryClass libraryClass = (LibraryClass)clazz;
+                    members     = member instanceof Field ? libraryClass.fields : libraryClass.methods;
+                    memberCount = members == null ? 0 : members.length;
+                }
+
+                for (int index = 0; index < memberCount; index++)
+                {
+                    if (members[index] == member)
+                    {
+                        return index;
+                    }
+                }
+            }
+
+            return -1;
+        }
+    }
 }
@@ -206,6 +206,35 @@ class ConfigurationParserTest : FreeSpec({
             }
         }
     }
+    "Abbreviated option tests" - {
+        "An abbreviated option should stand for the first option that starts with it" {
+            val configuration = parseConfiguration(
+                """
+                -keepn class A
+                -dontw a.**
+                -dontsh
+                """.trimIndent(),
+            )
+
+            configuration.keep shouldHaveSize 1
+            configuration.keep[0].allowShrinking shouldBe true
+            configuration.warn shouldBe listOf("a/**")
+            configuration.shrink shouldBe false
+        }
+
+        "An abbreviated option that is ambiguous should stand for the earliest option" {
+            val configuration = parseConfiguration("-keep class A")
+
+            configuration.keep shouldHaveSize 1
+            configuration.keep[0].markClasses shouldBe true
+            configuration.keep[0].allowShrinking shouldBe false
+        }
+
+        "The -maximumremovedandroidloglevel option can't be abbreviated" {
+            shouldThrow<ParseException> { parseConfiguration("-maximumremovedandroidlog 1") }
+        }
+    }
+
     "Testing -maximumremovedandroidloglevel parsing" - {
         "Given an empty configuration" - {
             val savedPrintStream = System.out
@@ -0,0 +1,84 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import java.io.PrintWriter
+import java.io.StringWriter
+import java.nio.file.Files
+
+class ConfigurationRuleCacheTest : FreeSpec({
+    fun parseConfiguration(rules: String): Configuration {
+        val configuration = Configuration()
+        ConfigurationParser(rules, "", null, System.getProperties()).use {
+            it.parse(configuration)
+        }
+        return configuration
+    }
+
+    fun write(configuration: Configuration): String {
+        val writer = StringWriter()
+        ConfigurationWriter(PrintWriter(writer)).use { it.write(configuration) }
+        return writer.toString()
+    }
+
+    "Given the rules of a consumer rule file" - {
+        val contents =
+            """
+            # Keep the entry point.
+            -keep public class a.Main { public static void main(java.lang.String[]); }
+            -if class a.A
+            -keepclassmembers,allowobfuscation class a.B { <init>(...); int field; }
+            -assumevalues class a.C { int value() return 1..5; }
+            -keepattributes Signature,*Annotation*
+            -dontwarn b.**
+            """.trimIndent()
+
+        val rules = parseConfiguration(contents)
+        val cache = ConfigurationRuleCache(Files.createTempDirectory("rules").toFile(), false)
+
+        "When it isn't in the cache yet" - {
+            "Then it should not be found" {
+                cache.load("-keep class Other".toByteArray()) shouldBe null
+            }
+        }
+
+        "When storing the rules and loading them back" - {
+            cache.store(contents.toByteArray(), rules)
+
+            val loadedRules = cache.load(contents.toByteArray())!!
+
+            "Then the rules should be the same" {
+                write(loadedRules) shouldBe write(rules)
+                loadedRules.keep shouldBe rules.keep
+                loadedRules.assumeValues shouldBe rules.assumeValues
+            }
+
+            "Then adding them should append them to the existing rules" {
+                val configuration = parseConfiguration("-keep class Existing\n-dontwarn a.**")
+
+                ConfigurationRuleCache.addRules(loadedRules, configuration)
+
+                configuration.keep.size shouldBe 3
+                configuration.keep[0].className shouldBe "Existing"
+                configuration.warn shouldBe listOf("a/**", "b/**")
+            }
+        }
+
+        "When storing a file that isn't cacheable" - {
+            val otherContents = "-injars in.jar".toByteArray()
+            cache.store(otherContents, ConfigurationRuleCache.NOT_CACHEABLE)
+
+            "Then it should be marked as not cacheable" {
+                cache.load(otherContents) shouldBeSameInstanceAs ConfigurationRuleCache.NOT_CACHEABLE
+            }
+        }
+    }
+})
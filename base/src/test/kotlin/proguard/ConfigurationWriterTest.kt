@@ -1,10 +1,14 @@
 package proguard
 
 import io.kotest.core.spec.style.FreeSpec
+import io.kotest.engine.spec.tempdir
 import io.kotest.matchers.shouldBe
 import io.kotest.matchers.string.shouldContain
+import java.io.File
 import java.io.PrintWriter
 import java.io.StringWriter
+import java.lang.reflect.Modifier
+import java.net.URL
 
 /**
  * Test printing of the configuration (-printconfiguration option).
@@ -150,4 +154,137 @@ class ConfigurationWriterTest : FreeSpec({
             }
         }
     }
+
+    "Given a configuration with all kinds of options" - {
+        val directory = tempdir()
+        val rules =
+            """
+            -injars ${directory.path}/in.jar(**.class,!**/internal/**)
+            -injars ${directory.path}/resources.jar(META-INF/**)
+            -outjars ${directory.path}/out.jar
+            -libraryjars ${directory.path}/library.jar(!**.jar;!module-info.class)
+            -keepdirectories com/example/**
+            -target 1.8
+            -forceprocessing
+            -keep public class com.example.Main {
+                public static void main(java.lang.String[]);
+            }
+            -keepclassmembers,allowoptimization enum * {
+                public static **[] values();
+                public static ** valueOf(java.lang.String);
+            }
+            -keepclasseswithmembernames,includedescriptorclasses class * {
+                native <methods>;
+            }
+            -keepnames,allowshrinking class * implements java.io.Serializable
+            -keepclassmembernames class com.example.** {
+                @com.example.Keep <fields>;
+            }
+            -if class com.example.Model
+            -keep class com.example.ModelAdapter
+            -keepcode class com.example.Code
+            -printseeds ${directory.path}/seeds.txt
+            -printusage ${directory.path}/usage.txt
+            -printusagegraph ${directory.path}/usage.graph
+            -printkeeprulecosts ${directory.path}/costs.json
+            -whyareyoukeeping class com.example.Main
+            -optimizations !code/simplification/arithmetic,field/*
+            -optimizationpasses 3
+            -assumenosideeffects class android.util.Log {
+                public static int v(...);
+            }
+            -assumenoexternalsideeffects class java.lang.StringBuilder {
+                public java.lang.StringBuilder append(java.lang.String);
+            }
+            -assumenoescapingparameters class com.example.Util {
+                public static void check(java.lang.Object);
+            }
+            -assumenoexternalreturnvalues class com.example.Util {
+                public static java.lang.Object identity(java.lang.Object);
+            }
+            -assumevalues class android.os.Build${'$'}VERSION {
+                int SDK_INT return 21..2147483647;
+            }
+            -allowaccessmodification
+            -mergeinterfacesaggressively
+            -optimizeaggressively
+            -printmapping ${directory.path}/mapping.txt
+            -applymapping ${directory.path}/previous.txt
+            -obfuscationdictionary ${directory.path}/dictionary.txt
+            -classobfuscationdictionary ${directory.path}/classes.txt
+            -packageobfuscationdictionary ${directory.path}/packages.txt
+            -overloadaggressively
+            -useuniqueclassmembernames
+            -dontusemixedcaseclassnames
+            -keeppackagenames com.example.api.**
+            -repackageclasses com.example.internal
+            -keepattributes Signature,*Annotation*,InnerClasses
+            -keepparameternames
+            -renamesourcefileattribute SourceFile
+            -adaptclassstrings com.example.**
+            -adaptresourcefilenames **.properties
+            -adaptresourcefilecontents **.xml
+            -keepkotlinmetadata
+            -microedition
+            -android
+            -verbose
+            -dontnote com.example.Note
+            -dontwarn com.example.Warn
+            -ignorewarnings
+            -printconfiguration ${directory.path}/configuration.txt
+            -dump ${directory.path}/dump.txt
+            -addconfigurationdebugging
+            """.trimIndent()
+
+        /**
+         * Returns a description of all values in the given object graph,
+         * for comparing configurations that don't implement equals.
+         */
+        fun describe(value: Any?): String =
+            when (value) {
+                null -> "null"
+                is String, is Number, is Boolean, is Enum<*> -> value.toString()
+                is File -> value.toPath().toAbsolutePath().normalize().toString()
+                is Iterable<*> -> value.joinToString(", ", "[", "]") { describe(it) }
+                is Map<*, *> -> value.entries.joinToString(", ", "{", "}") { describe(it.key) + "=" + describe(it.value) }
+                is Array<*> -> value.joinToString(", ", "[", "]") { describe(it) }
+                is IntArray -> value.joinToString(", ", "[", "]")
+                is URL -> value.toString()
+                else ->
+                    generateSequence<Class<*>>(value.javaClass) { it.superclass }
+                        .takeWhile { it != Any::class.java }
+                        .flatMap { it.declaredFields.asSequence() }
+                        .filter { !Modifier.isStatic(it.modifiers) }
+                        .joinToString(", ", value.javaClass.simpleName + "(", ")") {
+                            it.isAccessible = true
+                            it.name + "=" + describe(it.get(value))
+                        }
+            }
+
+        fun Configuration.fieldDescriptions() =
+            Configuration::class.java.fields
+                .filter { !Modifier.isStatic(it.modifiers) }
+                .map { it.name + " = " + describe(it.get(this)) }
+
+        "When it is written out and parsed again, like for an isolated worker process" - {
+            val configuration = Configuration()
+            ConfigurationParser(rules, "", directory, System.getProperties()).use {
+                it.parse(configuration)
+            }
+
+            val configurationFile = File(directory, "configuration.pro")
+            ConfigurationWriter(configurationFile).use {
+                it.write(configuration)
+            }
+
+            val parsedConfiguration = Configuration()
+            ConfigurationParser(configurationFile, System.getProperties()).use {
+                it.parse(parsedConfiguration)
+            }
+
+            "Then all options should be the same" {
+                parsedConfiguration.fieldDescriptions() shouldBe configuration.fieldDescriptions()
+            }
+        }
+    }
 })
@@ -0,0 +1,127 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldContain
+import org.apache.logging.log4j.Level
+import org.apache.logging.log4j.core.config.Configurator
+import proguard.classfile.AccessConstants.PUBLIC
+import proguard.classfile.AccessConstants.STATIC
+import proguard.classfile.ClassPool
+import proguard.classfile.LibraryClass
+import proguard.classfile.LibraryMethod
+import proguard.classfile.VersionConstants
+import proguard.classfile.editor.ClassBuilder
+import testutils.getLogOutputOf
+import kotlin.random.Random
+
+class InitializerTest : FreeSpec({
+    val classCount = 300
+
+    /**
+     * Returns an application whose classes have unresolved superclasses,
+     * unresolved references to classes and to class members, and
+     * Class.forName invocations, so the initializer reports warnings and
+     * notes about many of them.
+     */
+    fun appView(): AppView {
+        val random = Random(0)
+
+        val programClassPool = ClassPool()
+        for (classIndex in 0 until classCount) {
+            val superClassName = when (random.nextInt(10)) {
+                0 -> "q/MissingSuper%d".format(random.nextInt(20))
+                1, 2 -> if (classIndex > 0) "p/C%03d".format(random.nextInt(classIndex)) else "java/lang/Object"
+                else -> "java/lang/Object"
+            }
+
+            val classBuilder = ClassBuilder(VersionConstants.CLASS_VERSION_1_8, PUBLIC, "p/C%03d".format(classIndex), superClassName)
+            classBuilder.addMethod(PUBLIC or STATIC, "m", "()V", 100) { composer ->
+                repeat(random.nextInt(6)) {
+                    when (random.nextInt(5)) {
+                        0 -> composer.invokestatic("q/Missing%d".format(random.nextInt(20)), "call", "()V")
+                        1 -> composer.invokestatic("p/C%03d".format(random.nextInt(classCount)), "missing", "()V")
+                        2 -> composer.invokestatic("java/lang/Object", "missing", "()V")
+                        3 -> composer
+                            .ldc("q.Dynamic%d".format(random.nextInt(20)))
+                            .invokestatic("java/lang/Class", "forName", "(Ljava/lang/String;)Ljava/lang/Class;")
+                            .pop()
+                        else -> composer.invokestatic("p/C%03d".format(random.nextInt(classCount)), "m", "()V")
+                    }
+                }
+                composer.return_()
+            }
+            programClassPool.addClass(classBuilder.programClass)
+        }
+
+        val libraryClassPool = ClassPool(
+            LibraryClass(PUBLIC, "java/lang/Object", null),
+            LibraryClass(PUBLIC, "java/lang/String", "java/lang/Object"),
+            LibraryClass(
+                PUBLIC,
+                "java/lang/Class",
+                "java/lang/Object",
+                arrayOf(),
+                arrayOf(),
+                0,
+                arrayOf(),
+                arrayOf(),
+                arrayOf(LibraryMethod(PUBLIC or STATIC, "forName", "(Ljava/lang/String;)Ljava/lang/Class;")),
+                null,
+            ),
+        )
+
+        return AppView(programClassPool, libraryClassPool)
+    }
+
+    /**
+     * Returns the notes and warnings that the initializer logs for a fresh
+     * application. The class references are initialized in parallel,
+     * unless the Kotlin metadata is kept.
+     */
+    fun initializerOutput(parallel: Boolean): String {
+        val configuration = Configuration()
+        configuration.keepKotlinMetadata = !parallel
+        configuration.ignoreWarnings = true
+
+        val appView = appView()
+
+        // Also capture the notes, which are logged at the info level.
+        Configurator.setLevel(Initializer::class.java.name, Level.INFO)
+        try {
+            // Only the sequential initialization counts the library
+            // classes with Kotlin metadata.
+            return getLogOutputOf { Initializer(configuration).execute(appView) }
+                .lines()
+                .filterNot { it.contains("@kotlin.Metadata") }
+                .joinToString("\n")
+        } finally {
+            Configurator.setLevel(Initializer::class.java.name, Level.WARN)
+        }
+    }
+
+    "Given an application with unresolved references and dynamic class references" - {
+        "When initializing it in parallel and sequentially" - {
+            val parallelOutput = initializerOutput(true)
+            val sequentialOutput = initializerOutput(false)
+
+            "Then the initializer should report warnings and notes" {
+                parallelOutput shouldContain "can't find superclass or interface"
+                parallelOutput shouldContain "can't find referenced class"
+                parallelOutput shouldContain "can't find referenced method"
+                parallelOutput shouldContain "Note: "
+            }
+
+            "Then the warnings, notes, and their counts should be the same, in the same order" {
+                parallelOutput shouldBe sequentialOutput
+            }
+        }
+    }
+})
@@ -0,0 +1,179 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard.backport
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.collections.shouldContainExactlyInAnyOrder
+import io.kotest.matchers.shouldBe
+import org.apache.logging.log4j.LogManager
+import proguard.classfile.AccessConstants.PUBLIC
+import proguard.classfile.AccessConstants.STATIC
+import proguard.classfile.ClassPool
+import proguard.classfile.ProgramClass
+import proguard.classfile.VersionConstants
+import proguard.classfile.constant.MethodrefConstant
+import proguard.classfile.editor.ClassBuilder
+import proguard.classfile.util.ClassReferenceInitializer
+import proguard.classfile.util.WarningLogger
+import proguard.classfile.util.WarningPrinter
+
+class AbstractAPIConverterTest : FreeSpec({
+    val logger = LogManager.getLogger(AbstractAPIConverterTest::class.java)
+
+    fun programClass(name: String, vararg fieldTypes: String): ProgramClass {
+        val classBuilder = ClassBuilder(VersionConstants.CLASS_VERSION_1_8, PUBLIC, name, "java/lang/Object")
+        fieldTypes.forEachIndexed { index, fieldType -> classBuilder.addField(PUBLIC, "field$index", fieldType) }
+        return classBuilder.programClass
+    }
+
+    fun ProgramClass.fieldTypes() = (0 until u2fieldsCount).map { fields[it].getDescriptor(this) }
+
+    "Given type replacements with exact and wildcard class names" - {
+        val programClassPool = ClassPool(programClass("x/B"))
+
+        "When a wildcard replacement precedes an exact replacement" - {
+            val converter = TestAPIConverter(programClassPool, WarningLogger(logger))
+            converter.replaceTypes("a/**" to "w/<1>", "a/B" to "x/B")
+
+            val clazz = programClass("P", "La/B;", "La/C;", "Lb/B;")
+            clazz.accept(converter)
+
+            "Then the wildcard replacement should win for both classes" {
+                clazz.fieldTypes() shouldBe listOf("Lw/B;", "Lw/C;", "Lb/B;")
+            }
+        }
+
+        "When an exact replacement precedes a wildcard replacement" - {
+            val converter = TestAPIConverter(programClassPool, WarningLogger(logger))
+            converter.replaceTypes("a/B" to "x/B", "a/**" to "w/<1>")
+
+            val clazz = programClass("P", "La/B;", "La/C;", "Lb/B;")
+            clazz.accept(converter)
+
+            "Then the exact replacement should win for its class" {
+                clazz.fieldTypes() shouldBe listOf("Lx/B;", "Lw/C;", "Lb/B;")
+            }
+        }
+
+        "When the replacements change after converting a class" - {
+            val converter = TestAPIConverter(programClassPool, WarningLogger(logger))
+            converter.replaceTypes("a/B" to "x/B")
+
+            val clazz1 = programClass("P1", "La/B;")
+            clazz1.accept(converter)
+
+            converter.replaceTypes("b/**" to "v/<1>", "a/**" to "w/<1>")
+
+            val clazz2 = programClass("P2", "La/B;")
+            clazz2.accept(converter)
+
+            "Then the memoized replacements should be forgotten" {
+                clazz1.fieldTypes() shouldBe listOf("Lx/B;")
+                clazz2.fieldTypes() shouldBe listOf("Lw/B;")
+            }
+        }
+
+        "When a replacement is missing" - {
+            val warningPrinter = WarningLogger(logger)
+            val converter = TestAPIConverter(programClassPool, warningPrinter)
+            converter.replaceTypes("a/B" to "missing/B")
+
+            programClass("P1", "La/B;").accept(converter)
+            programClass("P2", "La/B;").accept(converter)
+
+            "Then it should be reported for each class, despite the memoization" {
+                warningPrinter.warningCount shouldBe 2
+            }
+        }
+    }
+
+    "Given method replacements with exact and wildcard method names" - {
+        fun staticMethodsClass(name: String, vararg methodNames: String): ProgramClass {
+            val classBuilder = ClassBuilder(VersionConstants.CLASS_VERSION_1_8, PUBLIC, name, "java/lang/Object")
+            methodNames.forEach { methodName -> classBuilder.addMethod(PUBLIC or STATIC, methodName, "()V", 10) { it.return_() } }
+            return classBuilder.programClass
+        }
+
+        fun invokingClass(): Pair<ClassPool, ProgramClass> {
+            val clazz = ClassBuilder(VersionConstants.CLASS_VERSION_1_8, PUBLIC, "P", "java/lang/Object")
+                .addMethod(PUBLIC or STATIC, "main", "()V", 10) {
+                    it.invokestatic("a/B", "foo", "()V")
+                        .invokestatic("a/B", "bar", "()V")
+                        .return_()
+                }
+                .programClass
+
+            val programClassPool = ClassPool(
+                clazz,
+                staticMethodsClass("a/B", "foo", "bar"),
+                staticMethodsClass("r/R", "foo"),
+                staticMethodsClass("r/W", "foo", "bar"),
+            )
+            programClassPool.classesAccept(ClassReferenceInitializer(programClassPool, ClassPool()))
+
+            return programClassPool to clazz
+        }
+
+        fun ProgramClass.invokedMethods() =
+            (1 until u2constantPoolCount)
+                .mapNotNull { constantPool[it] as? MethodrefConstant }
+                .map { it.getClassName(this) + "." + it.getName(this) }
+
+        "When a wildcard replacement precedes an exact replacement" - {
+            val (programClassPool, clazz) = invokingClass()
+
+            val converter = TestAPIConverter(programClassPool, WarningLogger(logger))
+            converter.replaceMethods(
+                listOf("a/B", "*", "()V", "r/W", "<1>", "()V"),
+                listOf("a/B", "foo", "()V", "r/R", "foo", "()V"),
+            )
+            clazz.accept(converter)
+
+            "Then the wildcard replacement should win for both methods" {
+                clazz.invokedMethods() shouldContainExactlyInAnyOrder listOf("r/W.foo", "r/W.bar")
+            }
+        }
+
+        "When an exact replacement precedes a wildcard replacement" - {
+            val (programClassPool, clazz) = invokingClass()
+
+            val converter = TestAPIConverter(programClassPool, WarningLogger(logger))
+            converter.replaceMethods(
+                listOf("a/B", "foo", "()V", "r/R", "foo", "()V"),
+                listOf("a/B", "*", "()V", "r/W", "<1>", "()V"),
+            )
+            clazz.accept(converter)
+
+            "Then the exact replacement should win for its method" {
+                clazz.invokedMethods() shouldContainExactlyInAnyOrder listOf("r/R.foo", "r/W.bar")
+            }
+        }
+    }
+})
+
+/**
+ * This AbstractAPIConverter applies the replacements that are set by the
+ * tests.
+ */
+private class TestAPIConverter(
+    programClassPool: ClassPool,
+    warningPrinter: WarningPrinter,
+) : AbstractAPIConverter(programClassPool, ClassPool(), warningPrinter, null, null) {
+    init {
+        replaceTypes()
+        replaceMethods()
+    }
+
+    fun replaceTypes(vararg replacements: Pair<String, String>) {
+        setTypeReplacements(replacements.map { (className, replacementClassName) -> replace(className, replacementClassName) }.toTypedArray())
+    }
+
+    fun replaceMethods(vararg replacements: List<String>) {
+        setMethodReplacements(replacements.map { replace(it[0], it[1], it[2], it[3], it[4], it[5]) }.toTypedArray())
+    }
+}
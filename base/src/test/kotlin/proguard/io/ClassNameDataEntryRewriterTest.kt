@@ -0,0 +1,94 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard.io
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import proguard.classfile.AccessConstants
+import proguard.classfile.ClassConstants
+import proguard.classfile.ClassPool
+import proguard.classfile.LibraryClass
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.OutputStream
+import java.io.PrintWriter
+import java.nio.charset.Charset
+import java.nio.charset.StandardCharsets
+
+class ClassNameDataEntryRewriterTest : FreeSpec({
+    "Given a class pool with renamed classes" - {
+        val classPool = ClassPool()
+        classPool.addClass("com/example/Original", LibraryClass(AccessConstants.PUBLIC, "a/a", ClassConstants.NAME_JAVA_LANG_OBJECT))
+        classPool.addClass("com/example/Original\$Inner", LibraryClass(AccessConstants.PUBLIC, "a/a\$a", ClassConstants.NAME_JAVA_LANG_OBJECT))
+        classPool.addClass("Simple", LibraryClass(AccessConstants.PUBLIC, "b", ClassConstants.NAME_JAVA_LANG_OBJECT))
+        classPool.addClass("com/exämple/Ünicode", LibraryClass(AccessConstants.PUBLIC, "c/ä", ClassConstants.NAME_JAVA_LANG_OBJECT))
+        classPool.addClass("com/example/Kept", LibraryClass(AccessConstants.PUBLIC, "com/example/Kept", ClassConstants.NAME_JAVA_LANG_OBJECT))
+
+        fun rewrite(reader: (DataEntryWriter) -> DataEntryReader, contents: ByteArray): ByteArray {
+            val outputStream = ByteArrayOutputStream()
+            val writer = object : DataEntryWriter {
+                override fun createDirectory(dataEntry: DataEntry) = false
+                override fun sameOutputStream(dataEntry1: DataEntry, dataEntry2: DataEntry) = false
+                override fun createOutputStream(dataEntry: DataEntry): OutputStream = outputStream
+                override fun close() {}
+                override fun println(pw: PrintWriter, prefix: String) {}
+            }
+
+            reader(writer).read(StreamingDataEntry("resource.txt", ByteArrayInputStream(contents)))
+
+            return outputStream.toByteArray()
+        }
+
+        fun rewriteLikeDataEntryRewriter(charset: Charset, text: String) {
+            val contents = text.toByteArray(charset)
+
+            rewrite({ ClassNameDataEntryRewriter(classPool, charset, it) }, contents) shouldBe
+                rewrite({ DataEntryRewriter(classPool, charset, it) }, contents)
+        }
+
+        "When rewriting UTF-8 contents" - {
+            val text = "<a class=\"com.example.Original\"/>\n" +
+                "com.example.Original\$Inner Simple com.exämple.Ünicode com.example.Kept\n" +
+                "Simple.x xSimple -Simple com/example/Original é€𝄞﻿Simple\n"
+
+            "Then the class names should be replaced" {
+                String(rewrite({ ClassNameDataEntryRewriter(classPool, StandardCharsets.UTF_8, it) }, text.toByteArray(StandardCharsets.UTF_8)), StandardCharsets.UTF_8) shouldBe
+                    "<a class=\"a.a\"/>\n" +
+                    "a.a\$a b c.ä com.example.Kept\n" +
+                    "Simple.x xSimple -Simple com/example/Original é€𝄞﻿Simple\n"
+            }
+
+            "Then the result should be the same as with a DataEntryRewriter" {
+                rewriteLikeDataEntryRewriter(StandardCharsets.UTF_8, text)
+                rewriteLikeDataEntryRewriter(StandardCharsets.UTF_8, "Simple")
+                rewriteLikeDataEntryRewriter(StandardCharsets.UTF_8, "")
+            }
+        }
+
+        "When rewriting US-ASCII contents" - {
+            "Then the result should be the same as with a DataEntryRewriter" {
+                rewriteLikeDataEntryRewriter(StandardCharsets.US_ASCII, "com.example.Original Simple-Simple\r\nSimple\tSimple")
+            }
+        }
+
+        "When rewriting contents in another character set" - {
+            "Then the result should be the same as with a DataEntryRewriter" {
+                rewriteLikeDataEntryRewriter(StandardCharsets.UTF_16, "com.example.Original Simple com.exämple.Ünicode")
+            }
+        }
+
+        "When rewriting malformed UTF-8 contents" - {
+            val contents = byteArrayOf('S'.code.toByte(), 'i'.code.toByte(), 'm'.code.toByte(), 'p'.code.toByte(), 'l'.code.toByte(), 'e'.code.toByte(), 0xc3.toByte(), ' '.code.toByte())
+
+            "Then the malformed bytes should be copied unchanged" {
+                rewrite({ ClassNameDataEntryRewriter(classPool, StandardCharsets.UTF_8, it) }, contents) shouldBe
+                    byteArrayOf('b'.code.toByte(), 0xc3.toByte(), ' '.code.toByte())
+            }
+        }
+    }
+})
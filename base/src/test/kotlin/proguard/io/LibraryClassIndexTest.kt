@@ -0,0 +1,52 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard.io
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.collections.shouldContainAll
+import io.kotest.matchers.shouldBe
+
+class LibraryClassIndexTest : FreeSpec({
+    "Given a library class index" - {
+        val index = LibraryClassIndex()
+        index.addClass("java/lang/Object", 0, "java/lang/Object.class", arrayOf(), arrayOf("java/lang/String"))
+        index.addClass("java/lang/String", 0, "java/lang/String.class", arrayOf("java/lang/Object", "java/lang/CharSequence"), arrayOf("java/util/Locale"))
+        index.addClass("java/lang/CharSequence", 0, "java/lang/CharSequence.class", arrayOf("java/lang/Object"), arrayOf())
+        index.addClass("java/util/Locale", 0, "java/util/Locale.class", arrayOf("java/lang/Object"), arrayOf("java/util/Unrelated"))
+        index.addClass("java/util/Unrelated", 1, "java/util/Unrelated.class", arrayOf("java/lang/Object"), arrayOf())
+        index.addClass("java/util/List", 1, "java/util/List.class", arrayOf("java/lang/Object"), arrayOf())
+
+        "When collecting the classes needed by a reference to String" - {
+            val neededClassNames = index.neededClassNames(listOf("java/lang/String", "not/Indexed"))
+
+            "Then its hierarchy and the classes that it refers to should be needed" {
+                neededClassNames shouldBe setOf(
+                    "java/lang/Object",
+                    "java/lang/String",
+                    "java/lang/CharSequence",
+                    "java/util/Locale",
+                )
+            }
+
+            "Then the data entry names should be per class path entry" {
+                index.dataEntryNames(1, neededClassNames) shouldBe emptySet()
+                index.dataEntryNames(0, neededClassNames).size shouldBe 4
+            }
+        }
+    }
+
+    "Given a string with class types" - {
+        val classNames = mutableSetOf<String>()
+        LibraryClassIndex.addClassNameCandidates("(ILjava/util/List<Ljava/lang/String;>;)Ljava/util/Locale;", classNames)
+        LibraryClassIndex.addClassNameCandidates("java.util.List", classNames)
+
+        "Then the candidates should include all class names" {
+            classNames shouldContainAll listOf("java/util/List", "java/lang/String", "java/util/Locale")
+        }
+    }
+})
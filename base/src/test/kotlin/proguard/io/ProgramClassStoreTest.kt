@@ -0,0 +1,65 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard.io
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.nulls.shouldNotBeNull
+import io.kotest.matchers.shouldBe
+import proguard.classfile.AccessConstants
+import proguard.classfile.ClassConstants
+import proguard.classfile.ClassPool
+import proguard.classfile.ProgramClass
+import proguard.classfile.VersionConstants
+import proguard.classfile.editor.ClassBuilder
+import proguard.classfile.io.ProgramClassReader
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+
+class ProgramClassStoreTest : FreeSpec({
+    "Given a class pool with a renamed class" - {
+        val programClass = ClassBuilder(VersionConstants.CLASS_VERSION_1_8, AccessConstants.PUBLIC, "a/A", ClassConstants.NAME_JAVA_LANG_OBJECT)
+            .addMethod(AccessConstants.PUBLIC, "m", "()V", 10) { it.return_() }
+            .programClass
+
+        val classPool = ClassPool()
+        classPool.addClass("com/example/Original", programClass)
+
+        "When storing the classes" - {
+            val store = ProgramClassStore()
+            store.storeClasses(classPool)
+
+            val outputStream = ByteArrayOutputStream()
+            val found = store.writeClass("com/example/Original", outputStream)
+            val notFound = store.writeClass("com/example/Unknown", ByteArrayOutputStream())
+            store.close()
+
+            "Then the class in memory should only keep its name" {
+                programClass.name shouldBe "a/A"
+                programClass.superName shouldBe null
+                programClass.u2methodsCount shouldBe 0
+            }
+
+            "Then the stored class file should contain the entire class" {
+                found shouldBe true
+                store.size() shouldBe 1
+
+                val readClass = ProgramClass()
+                readClass.accept(ProgramClassReader(DataInputStream(ByteArrayInputStream(outputStream.toByteArray()))))
+
+                readClass.name shouldBe "a/A"
+                readClass.superName shouldBe ClassConstants.NAME_JAVA_LANG_OBJECT
+                readClass.findMethod("m", "()V").shouldNotBeNull()
+            }
+
+            "Then unknown classes should not be found" {
+                notFound shouldBe false
+            }
+        }
+    }
+})
@@ -0,0 +1,222 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard.optimize
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.shouldNotBe
+import proguard.classfile.AccessConstants.PUBLIC
+import proguard.classfile.AccessConstants.STATIC
+import proguard.classfile.ClassConstants.METHOD_NAME_CLINIT
+import proguard.classfile.ClassPool
+import proguard.classfile.Clazz
+import proguard.classfile.LibraryClass
+import proguard.classfile.LibraryMethod
+import proguard.classfile.Member
+import proguard.classfile.Method
+import proguard.classfile.ProgramClass
+import proguard.classfile.ProgramMethod
+import proguard.classfile.VersionConstants
+import proguard.classfile.attribute.visitor.AllAttributeVisitor
+import proguard.classfile.editor.ClassBuilder
+import proguard.classfile.instruction.visitor.AllInstructionVisitor
+import proguard.classfile.util.ClassReferenceInitializer
+import proguard.classfile.visitor.AllMethodVisitor
+import proguard.classfile.visitor.MemberVisitor
+import proguard.optimize.info.ProgramMethodOptimizationInfo
+import kotlin.random.Random
+
+class MethodCallGraphTest : FreeSpec({
+    val classCount = 30
+    val methodCount = 4
+
+    /**
+     * Returns a class pool with classes whose static methods invoke random
+     * static methods, including duplicate invocations, static initializers,
+     * and a library method.
+     */
+    fun programClassPool(): ClassPool {
+        val random = Random(0)
+
+        val programClassPool = ClassPool()
+        for (classIndex in 0 until classCount) {
+            val classBuilder = ClassBuilder(VersionConstants.CLASS_VERSION_1_8, PUBLIC, "C%02d".format(classIndex), "java/lang/Object")
+            for (methodIndex in 0 until methodCount) {
+                classBuilder.addMethod(PUBLIC or STATIC, "m$methodIndex", "()V", 100) { composer ->
+                    repeat(random.nextInt(8)) {
+                        if (random.nextInt(10) == 0) {
+                            composer.invokestatic("lib/Lib", "call", "()V")
+                        } else {
+                            composer.invokestatic("C%02d".format(random.nextInt(classCount)), "m${random.nextInt(methodCount)}", "()V")
+                        }
+                    }
+                    composer.return_()
+                }
+            }
+            if (classIndex % 3 == 0) {
+                classBuilder.addMethod(STATIC, METHOD_NAME_CLINIT, "()V", 10) { it.return_() }
+            }
+            programClassPool.addClass(classBuilder.programClass)
+        }
+
+        val libraryClassPool = ClassPool(
+            LibraryClass(PUBLIC, "java/lang/Object", null),
+            LibraryClass(PUBLIC, "lib/Lib", "java/lang/Object", arrayOf(), arrayOf(), 0, arrayOf(), arrayOf(), arrayOf(LibraryMethod(PUBLIC or STATIC, "call", "()V")), null),
+        )
+
+        programClassPool.classesAccept(ClassReferenceInitializer(programClassPool, libraryClassPool))
+
+        // Give each method its own optimization info, except for some
+        // methods that share their info, like overriding methods.
+        programClassPool.classesAccept(
+            AllMethodVisitor(
+                object : MemberVisitor {
+                    override fun visitProgramMethod(programClass: ProgramClass, programMethod: ProgramMethod) {
+                        programMethod.processingInfo = ProgramMethodOptimizationInfo(programClass, programMethod)
+                    }
+                },
+            ),
+        )
+        for (classIndex in 0 until classCount - 1 step 5) {
+            val method = programClassPool.getClass("C%02d".format(classIndex)).findMethod("m0", "()V")
+            programClassPool.getClass("C%02d".format(classIndex + 1)).findMethod("m0", "()V").processingInfo = method.processingInfo
+        }
+
+        return programClassPool
+    }
+
+    fun Clazz.methods(): List<Method> = mutableListOf<Method>().also { methods ->
+        methodsAccept(
+            object : MemberVisitor {
+                override fun visitAnyMember(clazz: Clazz, member: Member) {
+                    methods += member as Method
+                }
+            },
+        )
+    }
+
+    fun ClassPool.methods(): List<Pair<Clazz, Method>> = classes().flatMap { clazz -> clazz.methods().map { clazz to it } }
+
+    fun Clazz.name(method: Method) = "$name.${method.getName(this)}"
+
+    /**
+     * Returns a visitor that adds the names of the methods that it visits to
+     * the given list.
+     */
+    fun methodNameCollector(names: MutableList<String>) = object : MemberVisitor {
+        override fun visitAnyMember(clazz: Clazz, member: Member) {
+            names += clazz.name(member as Method)
+        }
+    }
+
+    /**
+     * Returns the callers of all methods, as the old dependency store
+     * computed them: the sets of methods that invoke program methods,
+     * explicitly or implicitly. Also returns the number of invocations,
+     * including duplicates.
+     */
+    fun oldCallers(programClassPool: ClassPool): Pair<Map<Method, Set<String>>, Int> {
+        val callers = mutableMapOf<Method, MutableSet<String>>()
+        var invocationCount = 0
+
+        for ((clazz, method) in programClassPool.methods()) {
+            method.accept(
+                clazz,
+                AllAttributeVisitor(
+                    AllInstructionVisitor(
+                        CalledMemberVisitor(
+                            object : MemberVisitor {
+                                override fun visitAnyMember(calledClass: Clazz, calledMember: Member) {}
+
+                                override fun visitProgramMethod(programClass: ProgramClass, programMethod: ProgramMethod) {
+                                    callers.getOrPut(programMethod) { mutableSetOf() } += clazz.name(method)
+                                    invocationCount++
+                                }
+                            },
+                        ),
+                    ),
+                ),
+            )
+        }
+
+        return callers to invocationCount
+    }
+
+    "Given methods that invoke each other" - {
+        val programClassPool = programClassPool()
+        val methods = programClassPool.methods()
+        val (oldCallers, invocationCount) = oldCallers(programClassPool)
+
+        "When constructing their call graph" - {
+            val callGraph = MethodCallGraph(programClassPool)
+
+            "Then all methods should be numbered once" {
+                callGraph.methodCount() shouldBe methods.size
+                methods.map { (_, method) -> callGraph.methodIndex(method) }.sorted() shouldBe methods.indices.toList()
+                methods.forEach { (clazz, method) ->
+                    val methodIndex = callGraph.methodIndex(method)
+                    callGraph.method(methodIndex) shouldBe method
+                    callGraph.methodClass(methodIndex) shouldBe clazz
+                }
+            }
+
+            "Then methods outside the class pool should not be numbered" {
+                callGraph.methodIndex(LibraryMethod(PUBLIC or STATIC, "call", "()V")) shouldBe -1
+            }
+
+            "Then each method should have the same distinct callers as in the old dependency store" {
+                methods.forEach { (clazz, method) ->
+                    val callers = mutableListOf<String>()
+                    callGraph.callersAccept(method, methodNameCollector(callers))
+
+                    callers.distinct() shouldBe callers
+                    callers.toSet() shouldBe (oldCallers[method] ?: emptySet())
+                    callGraph.callerCount(method) shouldBe callers.size
+                }
+            }
+
+            "Then each method should have the reverse edges as distinct callees" {
+                methods.forEach { (clazz, method) ->
+                    val callees = mutableListOf<String>()
+                    callGraph.calleesAccept(method, methodNameCollector(callees))
+
+                    callees.distinct() shouldBe callees
+                    callees.toSet() shouldBe methods
+                        .filter { (_, callee) -> oldCallers[callee]?.contains(clazz.name(method)) == true }
+                        .map { (calleeClass, callee) -> calleeClass.name(callee) }
+                        .toSet()
+                    callGraph.calleeCount(method) shouldBe callees.size
+                }
+            }
+
+            "Then the invocations should include duplicates and static initializers" {
+                oldCallers.values.sumOf { it.size } shouldNotBe invocationCount
+                methods.any { (clazz, method) -> method.getName(clazz) == METHOD_NAME_CLINIT && method in oldCallers } shouldBe true
+            }
+        }
+
+        "When traveling to the influenced methods" - {
+            val store = ReverseDependencyStore(MethodCallGraph(programClassPool))
+
+            "Then the visited methods should be the same as in the old dependency store" {
+                methods.forEach { (clazz, method) ->
+                    val visitedMethods = mutableListOf<String>()
+                    method.accept(clazz, store.InfluencedMethodTraveller(methodNameCollector(visitedMethods)))
+
+                    // The old store visited the callers of all methods
+                    // that share the optimization info of the method.
+                    val expectedMethods = methods
+                        .filter { (_, otherMethod) -> otherMethod.processingInfo === method.processingInfo }
+                        .flatMap { (_, otherMethod) -> oldCallers[otherMethod] ?: emptySet() }
+
+                    visitedMethods.sorted() shouldBe expectedMethods.sorted()
+                }
+            }
+        }
+    }
+})
@@ -0,0 +1,306 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard.optimize.peephole
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.shouldNotBe
+import proguard.classfile.AccessConstants.ABSTRACT
+import proguard.classfile.AccessConstants.FINAL
+import proguard.classfile.AccessConstants.INTERFACE
+import proguard.classfile.AccessConstants.PRIVATE
+import proguard.classfile.AccessConstants.PUBLIC
+import proguard.classfile.AccessConstants.STATIC
+import proguard.classfile.ClassConstants.NAME_JAVA_LANG_THROWABLE
+import proguard.classfile.ClassPool
+import proguard.classfile.Clazz
+import proguard.classfile.LibraryClass
+import proguard.classfile.ProgramClass
+import proguard.classfile.VersionConstants
+import proguard.classfile.editor.ClassBuilder
+import proguard.classfile.util.ClassReferenceInitializer
+import proguard.classfile.util.ClassSubHierarchyInitializer
+import proguard.classfile.visitor.AllFieldVisitor
+import proguard.classfile.visitor.AllMethodVisitor
+import proguard.classfile.visitor.ClassCollector
+import proguard.classfile.visitor.InitializerMethodFilter
+import proguard.classfile.visitor.MemberAccessFilter
+import proguard.classfile.visitor.MemberCollector
+import proguard.classfile.visitor.MemberCounter
+import proguard.classfile.visitor.MultiMemberVisitor
+import proguard.classfile.visitor.ProcessingInfoSetter
+import proguard.classfile.visitor.SimilarMemberVisitor
+import proguard.optimize.info.CaughtClassFilter
+import proguard.optimize.info.ClassOptimizationInfo
+import proguard.optimize.info.InstanceofClassFilter
+import proguard.optimize.info.ProgramClassOptimizationInfo
+import proguard.optimize.info.SideEffectClassFilter
+
+class ClassHierarchySummaryCacheTest : FreeSpec({
+    /**
+     * Returns a class with the given fields and methods, specified as
+     * access flags and names. Methods that aren't abstract get code.
+     */
+    fun programClass(
+        accessFlags: Int,
+        name: String,
+        superName: String,
+        interfaceNames: List<String> = emptyList(),
+        fields: List<Pair<Int, String>> = emptyList(),
+        methods: List<Pair<Int, String>> = emptyList(),
+    ): ProgramClass {
+        val classBuilder = ClassBuilder(VersionConstants.CLASS_VERSION_1_8, accessFlags, name, superName)
+        interfaceNames.forEach { classBuilder.addInterface(it) }
+        fields.forEach { (fieldAccessFlags, fieldName) -> classBuilder.addField(fieldAccessFlags, fieldName, "I") }
+        methods.forEach { (methodAccessFlags, methodName) ->
+            if (methodAccessFlags and ABSTRACT != 0) {
+                classBuilder.addMethod(methodAccessFlags, methodName, "()V")
+            } else {
+                classBuilder.addMethod(methodAccessFlags, methodName, "()V", 10) { it.return_() }
+            }
+        }
+        return classBuilder.programClass
+    }
+
+    /**
+     * Returns a small class hierarchy with overlapping members, with
+     * initialized references and optimization info.
+     */
+    fun classPools(): Pair<ClassPool, ClassPool> {
+        val programClassPool = ClassPool(
+            programClass(
+                PUBLIC or INTERFACE or ABSTRACT, "I", "java/lang/Object",
+                fields = listOf(PUBLIC or STATIC or FINAL to "constant"),
+                methods = listOf(PUBLIC or ABSTRACT to "abstractMethod"),
+            ),
+            programClass(
+                PUBLIC, "A", "java/lang/Object", listOf("I"),
+                fields = listOf(PUBLIC to "field", PRIVATE to "privateField"),
+                methods = listOf(PUBLIC or FINAL to "finalMethod", PUBLIC to "abstractMethod", PRIVATE to "privateMethod", PUBLIC or STATIC to "staticMethod", PUBLIC to "<init>"),
+            ),
+            programClass(
+                PUBLIC, "B", "A",
+                fields = listOf(PRIVATE to "field", PUBLIC to "subField"),
+                methods = listOf(PUBLIC to "method", PRIVATE or STATIC to "finalMethod", PUBLIC to "<init>"),
+            ),
+            programClass(
+                PUBLIC or ABSTRACT, "C", "java/lang/Object",
+                fields = listOf(PUBLIC to "field"),
+                methods = listOf(PUBLIC or ABSTRACT to "abstractMethod", PUBLIC or ABSTRACT to "otherAbstractMethod", PUBLIC to "privateMethod"),
+            ),
+            programClass(
+                PUBLIC, "D", "java/lang/Object",
+                fields = listOf(PUBLIC to "otherField"),
+                methods = listOf(PUBLIC to "finalMethod", PRIVATE to "method", PUBLIC or STATIC to "staticMethod", PUBLIC to "<init>"),
+            ),
+            programClass(
+                PUBLIC, "E", "D",
+                fields = listOf(PUBLIC to "field"),
+                methods = listOf(PUBLIC to "method", PUBLIC to "mergedMethod"),
+            ),
+            programClass(
+                PUBLIC, "M1", "java/lang/Object",
+                fields = listOf(PUBLIC or STATIC to "mergedField1"),
+                methods = listOf(PUBLIC to "mergedMethod"),
+            ),
+            programClass(
+                PUBLIC, "M2", "java/lang/Object",
+                fields = listOf(PUBLIC or STATIC to "mergedField2"),
+                methods = listOf(PUBLIC or FINAL to "otherMethod"),
+            ),
+            programClass(PUBLIC, "X", "java/lang/Throwable"),
+        )
+        val libraryClassPool = ClassPool(
+            LibraryClass(PUBLIC, "java/lang/Object", null),
+            LibraryClass(PUBLIC, NAME_JAVA_LANG_THROWABLE, "java/lang/Object"),
+        )
+
+        programClassPool.classesAccept(ClassReferenceInitializer(programClassPool, libraryClassPool))
+        val classSubHierarchyInitializer = ClassSubHierarchyInitializer()
+        programClassPool.accept(classSubHierarchyInitializer)
+        libraryClassPool.accept(classSubHierarchyInitializer)
+
+        libraryClassPool.classesAccept(ProcessingInfoSetter(ClassOptimizationInfo()))
+        programClassPool.classesAccept { ProgramClassOptimizationInfo().apply { it.processingInfo = this } }
+        ProgramClassOptimizationInfo.getProgramClassOptimizationInfo(programClassPool.getClass("I")).setInstanceofed()
+        ProgramClassOptimizationInfo.getProgramClassOptimizationInfo(programClassPool.getClass("A")).setSideEffects()
+        ProgramClassOptimizationInfo.getProgramClassOptimizationInfo(programClassPool.getClass("X")).setCaught()
+
+        return programClassPool to libraryClassPool
+    }
+
+    // Direct computations of the answers, as the class merger used to
+    // perform them on the fly.
+
+    fun Clazz.countMembers(accept: Clazz.(MemberCounter) -> Unit): Int = MemberCounter().also { accept(it) }.count
+
+    fun shadowsAnyFields(clazz: Clazz, targetClass: Clazz) = clazz.countMembers {
+        hierarchyAccept(true, false, false, true, AllFieldVisitor(SimilarMemberVisitor(targetClass, true, true, true, false, MemberAccessFilter(0, PRIVATE, it))))
+    } > 0
+
+    fun haveAnyIdenticalFields(clazz: Clazz, targetClass: Clazz) = clazz.countMembers {
+        fieldsAccept(SimilarMemberVisitor(targetClass, true, false, false, false, it))
+    } > 0
+
+    fun haveAnyIdenticalMethods(clazz: Clazz, targetClass: Clazz) = clazz.countMembers {
+        methodsAccept(MemberAccessFilter(0, ABSTRACT, SimilarMemberVisitor(targetClass, true, false, false, false, MemberAccessFilter(0, ABSTRACT, it))))
+    } > 0
+
+    fun overridesAnyMethods(clazz: Clazz, targetClass: Clazz) = clazz.countMembers {
+        methodsAccept(MemberAccessFilter(0, ABSTRACT, InitializerMethodFilter(null, SimilarMemberVisitor(targetClass, true, true, false, false, MemberAccessFilter(0, PRIVATE or STATIC or ABSTRACT, it)))))
+    } > 0
+
+    fun shadowsAnyMethods(clazz: Clazz, targetClass: Clazz) = clazz.countMembers {
+        hierarchyAccept(true, false, false, true, AllMethodVisitor(InitializerMethodFilter(null, SimilarMemberVisitor(targetClass, true, true, false, false, MemberAccessFilter(FINAL, 0, it)))))
+        hierarchyAccept(true, false, false, true, AllMethodVisitor(MemberAccessFilter(PRIVATE, 0, InitializerMethodFilter(null, SimilarMemberVisitor(targetClass, true, true, true, false, MemberAccessFilter(0, PRIVATE, it))))))
+        hierarchyAccept(true, false, false, true, AllMethodVisitor(MemberAccessFilter(STATIC, 0, InitializerMethodFilter(null, SimilarMemberVisitor(targetClass, true, true, true, false, MemberAccessFilter(0, PRIVATE, it))))))
+    } > 0
+
+    fun hasAnyUnmatchedAbstractMethods(clazz: Clazz, targetClass: Clazz): Boolean {
+        val targetSet = mutableSetOf<String>()
+        val count = clazz.countMembers {
+            methodsAccept(MemberAccessFilter(ABSTRACT, 0, MultiMemberVisitor(it, SimilarMemberVisitor(targetClass, true, true, true, false, MemberAccessFilter(ABSTRACT, 0, MemberCollector(false, true, true, targetSet))))))
+        }
+        return targetSet.size < count
+    }
+
+    fun sideEffectSuperClasses(clazz: Clazz) = mutableSetOf<Clazz>().also {
+        clazz.hierarchyAccept(true, true, true, false, SideEffectClassFilter(ClassCollector(it)))
+    }
+
+    fun instanceofedSuperClasses(clazz: Clazz) = mutableSetOf<Clazz>().also {
+        clazz.hierarchyAccept(true, true, true, false, InstanceofClassFilter(ClassCollector(it)))
+    }
+
+    fun caughtSuperClasses(clazz: Clazz) = mutableSetOf<Clazz>().also {
+        if (clazz.extends_(NAME_JAVA_LANG_THROWABLE)) {
+            clazz.hierarchyAccept(true, true, false, false, CaughtClassFilter(ClassCollector(it)))
+        }
+    }
+
+    /**
+     * Returns all cached answers for all pairs of classes in the given
+     * class pool, next to the directly computed answers.
+     */
+    fun answers(programClassPool: ClassPool, cache: ClassHierarchySummaryCache): Pair<List<String>, List<String>> {
+        val cachedAnswers = mutableListOf<String>()
+        val directAnswers = mutableListOf<String>()
+
+        for (clazz in programClassPool.classes()) {
+            cachedAnswers += "${clazz.name} side effects ${cache.sideEffectSuperClasses(clazz).map { it.name }.sorted()}"
+            directAnswers += "${clazz.name} side effects ${sideEffectSuperClasses(clazz).map { it.name }.sorted()}"
+            cachedAnswers += "${clazz.name} instanceofed ${cache.instanceofedSuperClasses(clazz).map { it.name }.sorted()}"
+            directAnswers += "${clazz.name} instanceofed ${instanceofedSuperClasses(clazz).map { it.name }.sorted()}"
+            cachedAnswers += "${clazz.name} caught ${cache.caughtSuperClasses(clazz).map { it.name }.sorted()}"
+            directAnswers += "${clazz.name} caught ${caughtSuperClasses(clazz).map { it.name }.sorted()}"
+
+            for (targetClass in programClassPool.classes()) {
+                val pair = "${clazz.name} ${targetClass.name}"
+                cachedAnswers += "$pair shadows fields ${cache.shadowsAnyFields(clazz, targetClass)}"
+                directAnswers += "$pair shadows fields ${shadowsAnyFields(clazz, targetClass)}"
+                cachedAnswers += "$pair identical fields ${cache.haveAnyIdenticalFields(clazz, targetClass)}"
+                directAnswers += "$pair identical fields ${haveAnyIdenticalFields(clazz, targetClass)}"
+                cachedAnswers += "$pair identical methods ${cache.haveAnyIdenticalMethods(clazz, targetClass)}"
+                directAnswers += "$pair identical methods ${haveAnyIdenticalMethods(clazz, targetClass)}"
+                cachedAnswers += "$pair overrides methods ${cache.overridesAnyMethods(clazz, targetClass)}"
+                directAnswers += "$pair overrides methods ${overridesAnyMethods(clazz, targetClass)}"
+                cachedAnswers += "$pair shadows methods ${cache.shadowsAnyMethods(clazz, targetClass)}"
+                directAnswers += "$pair shadows methods ${shadowsAnyMethods(clazz, targetClass)}"
+                cachedAnswers += "$pair unmatched abstract methods ${cache.hasAnyUnmatchedAbstractMethods(clazz, targetClass)}"
+                directAnswers += "$pair unmatched abstract methods ${hasAnyUnmatchedAbstractMethods(clazz, targetClass)}"
+            }
+        }
+
+        return cachedAnswers to directAnswers
+    }
+
+    /**
+     * This ClassHierarchySummaryCache remembers the classes whose
+     * summaries have been invalidated.
+     */
+    class InvalidationRecordingCache : ClassHierarchySummaryCache() {
+        val invalidatedClasses = mutableListOf<String>()
+
+        override fun invalidate(clazz: Clazz) {
+            invalidatedClasses += clazz.name
+            super.invalidate(clazz)
+        }
+    }
+
+    "Given a small class hierarchy" - {
+        "When querying the cache" - {
+            val (programClassPool, _) = classPools()
+            val cache = ClassHierarchySummaryCache()
+
+            val (cachedAnswers, directAnswers) = answers(programClassPool, cache)
+
+            "Then the cached answers should be the same as the direct answers" {
+                cachedAnswers shouldBe directAnswers
+            }
+
+            "Then the answers should cover both outcomes" {
+                directAnswers.count { it.endsWith("true") } shouldNotBe 0
+                directAnswers.count { it.endsWith("false") } shouldNotBe 0
+                directAnswers.count { it.endsWith("]") && !it.endsWith("[]") } shouldNotBe 0
+            }
+
+            "Then querying the cache again should give the same answers" {
+                answers(programClassPool, cache).first shouldBe cachedAnswers
+            }
+        }
+
+        "When merging classes after querying the cache" - {
+            val (programClassPool, _) = classPools()
+            val cache = InvalidationRecordingCache()
+            val targetClass = programClassPool.getClass("D") as ProgramClass
+
+            // Fill the cache with the answers before the merges.
+            val (answersBeforeMerge, _) = answers(programClassPool, cache)
+
+            ClassMerger(targetClass, true, true, false, null, cache)
+                .visitProgramClass(programClassPool.getClass("M1") as ProgramClass)
+            val (cachedAnswersAfterFirstMerge, directAnswersAfterFirstMerge) = answers(programClassPool, cache)
+
+            ClassMerger(targetClass, true, true, false, null, cache)
+                .visitProgramClass(programClassPool.getClass("M2") as ProgramClass)
+            val (cachedAnswersAfterSecondMerge, directAnswersAfterSecondMerge) = answers(programClassPool, cache)
+
+            "Then the classes should have been merged" {
+                targetClass.findField("mergedField1", "I") shouldNotBe null
+                targetClass.findField("mergedField2", "I") shouldNotBe null
+            }
+
+            "Then the merges should have changed the answers" {
+                directAnswersAfterFirstMerge shouldNotBe answersBeforeMerge
+                directAnswersAfterSecondMerge shouldNotBe directAnswersAfterFirstMerge
+            }
+
+            "Then the cached answers should be the same as the direct answers after each merge" {
+                cachedAnswersAfterFirstMerge shouldBe directAnswersAfterFirstMerge
+                cachedAnswersAfterSecondMerge shouldBe directAnswersAfterSecondMerge
+            }
+
+            "Then the summaries of the target class should be invalidated after each merge" {
+                cache.invalidatedClasses shouldBe listOf("D", "D")
+            }
+        }
+
+        "When a merge is refused" - {
+            val (programClassPool, _) = classPools()
+            val cache = InvalidationRecordingCache()
+
+            // The target class is concrete, while the class is abstract.
+            ClassMerger(programClassPool.getClass("A") as ProgramClass, true, true, false, null, cache)
+                .visitProgramClass(programClassPool.getClass("C") as ProgramClass)
+
+            "Then the summaries should not be invalidated" {
+                cache.invalidatedClasses shouldBe emptyList()
+            }
+        }
+    }
+})
@@ -0,0 +1,84 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2021 Guardsquare NV
+ */
+
+package proguard.optimize.peephole
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import proguard.classfile.ProgramClass
+import proguard.classfile.visitor.ProcessingInfoSetter
+import proguard.optimize.info.ClassOptimizationInfo
+import proguard.optimize.info.ProgramClassOptimizationInfo
+import proguard.testutils.ClassPoolBuilder
+import proguard.testutils.JavaSource
+
+class ClassMergingFingerprintTest : FreeSpec({
+    val (programClassPool, libraryClassPool) =
+        ClassPoolBuilder.fromSource(
+            JavaSource(
+                "Target.java",
+                """
+                public class Target {
+                    private boolean value;
+
+                    public Target(boolean value)
+                    {
+                        this.value = value;
+                    }
+                }
+                """.trimIndent(),
+            ),
+            JavaSource(
+                "Source.java",
+                """
+                public class Source {
+                    private String name;
+
+                    public String getName()
+                    {
+                        return name;
+                    }
+                }
+                """.trimIndent(),
+            ),
+            JavaSource(
+                "Clashing.java",
+                """
+                public class Clashing {
+                    public Clashing(boolean value) {}
+                }
+                """.trimIndent(),
+            ),
+        )
+
+    libraryClassPool.classesAccept(ProcessingInfoSetter(ClassOptimizationInfo()))
+    programClassPool.classesAccept(ProcessingInfoSetter(ProgramClassOptimizationInfo()))
+
+    val target = programClassPool.getClass("Target") as ProgramClass
+    val source = programClassPool.getClass("Source") as ProgramClass
+    val clashing = programClassPool.getClass("Clashing") as ProgramClass
+
+    "Given a class without clashing members" - {
+        "Then its fingerprint should not exclude merging" {
+            ClassMergingFingerprint(source).excludesMergingInto(ClassMergingFingerprint(target)) shouldBe false
+            ClassMerger(target, true, true, false).isMergeable(source) shouldBe true
+        }
+    }
+
+    "Given a class with a clashing constructor" - {
+        "Then its fingerprint should exclude merging" {
+            ClassMergingFingerprint(clashing).excludesMergingInto(ClassMergingFingerprint(target)) shouldBe true
+            ClassMerger(target, true, true, false).isMergeable(clashing) shouldBe false
+        }
+    }
+
+    "Given the same class" - {
+        "Then its fingerprint should exclude merging" {
+            ClassMergingFingerprint(target).excludesMergingInto(ClassMergingFingerprint(target)) shouldBe true
+        }
+    }
+})
@@ -0,0 +1,92 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package proguard.shrink
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import proguard.util.ProcessableIndex
+import proguard.util.SimpleProcessable
+import kotlin.concurrent.thread
+
+class SimpleUsageMarkerTest : FreeSpec({
+    "Given processables in a shared index" - {
+        val processableIndex = ProcessableIndex()
+        val processables = List(200_000) { SimpleProcessable() }
+        processables.take(100_000).forEach(processableIndex::add)
+
+        "When marking them" - {
+            val usageMarker = SimpleUsageMarker(processableIndex)
+            val (used, possiblyUsed, unused) = processables.take(3)
+
+            usageMarker.markAsUsed(used)
+            usageMarker.markAsPossiblyUsed(possiblyUsed)
+            usageMarker.markAsUsed(unused)
+            usageMarker.markAsUnused(unused)
+
+            "Then each processable should have its own mark" {
+                usageMarker.isUsed(used) shouldBe true
+                usageMarker.isPossiblyUsed(used) shouldBe false
+                usageMarker.isUsed(possiblyUsed) shouldBe false
+                usageMarker.isPossiblyUsed(possiblyUsed) shouldBe true
+                usageMarker.isUsed(unused) shouldBe false
+                usageMarker.isPossiblyUsed(unused) shouldBe false
+            }
+
+            "Then the processing info should be left alone" {
+                used.processingInfo shouldBe null
+                possiblyUsed.processingInfo shouldBe null
+            }
+
+            "Then a new usage marker should not see the marks" {
+                SimpleUsageMarker(processableIndex).isUsed(used) shouldBe false
+            }
+        }
+
+        "When marking them from many threads at the same time" - {
+            val usageMarker = SimpleUsageMarker(processableIndex)
+
+            // Interleave the processables over the threads, so the threads
+            // update the same longs, in the indexed processables and in the
+            // processables that get their indices on demand.
+            val threadCount = 8
+            val threads = (0 until threadCount).map { threadIndex ->
+                thread {
+                    for (index in threadIndex until processables.size step threadCount) {
+                        if (index % 3 == 0) {
+                            usageMarker.markAsUsed(processables[index])
+                        } else if (index % 3 == 1) {
+                            usageMarker.markAsPossiblyUsed(processables[index])
+                        }
+                    }
+                }
+            }
+            threads.forEach { it.join() }
+
+            "Then all marks should be set" {
+                processables.forEachIndexed { index, processable ->
+                    usageMarker.isUsed(processable) shouldBe (index % 3 == 0)
+                    usageMarker.isPossiblyUsed(processable) shouldBe (index % 3 == 1)
+                }
+            }
+        }
+    }
+})
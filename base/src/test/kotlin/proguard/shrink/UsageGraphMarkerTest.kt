@@ -0,0 +1,143 @@
+package proguard.shrink
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldContain
+import io.kotest.matchers.string.shouldNotContain
+import proguard.Configuration
+import proguard.classfile.ClassPool
+import proguard.classfile.visitor.AllMemberVisitor
+import proguard.classfile.visitor.MultiClassVisitor
+import proguard.classfile.visitor.NamedMethodVisitor
+import proguard.resources.file.ResourceFilePool
+import proguard.testutils.ClassPoolBuilder
+import proguard.testutils.JavaSource
+import proguard.util.ProcessingFlagSetter
+import proguard.util.ProcessingFlags.DONT_SHRINK
+import java.io.PrintWriter
+import java.io.StringWriter
+
+class UsageGraphMarkerTest : FreeSpec({
+    "Given a method that is invoked directly and through another method" - {
+        val (programClassPool, _) = ClassPoolBuilder.fromSource(
+            JavaSource(
+                "Main.java",
+                """
+                public class Main {
+                    public static void main(String[] args) {
+                        Helper.indirect();
+                        Target.target();
+                    }
+                }
+                """.trimIndent(),
+            ),
+            JavaSource(
+                "Helper.java",
+                """
+                public class Helper {
+                    public static void indirect() {
+                        Target.target();
+                    }
+                }
+                """.trimIndent(),
+            ),
+            JavaSource(
+                "Target.java",
+                """
+                public class Target {
+                    public static void target() {}
+                    public static void unused() {}
+                }
+                """.trimIndent(),
+            ),
+        )
+
+        programClassPool.getClass("Main").accept(
+            MultiClassVisitor(
+                ProcessingFlagSetter(DONT_SHRINK),
+                AllMemberVisitor(ProcessingFlagSetter(DONT_SHRINK)),
+            ),
+        )
+
+        "When marking while recording the usage graph" - {
+            val simpleUsageMarker = SimpleUsageMarker()
+            val usageGraph = UsageGraph()
+
+            UsageMarker(Configuration()).mark(
+                programClassPool,
+                ClassPool(),
+                ResourceFilePool(),
+                simpleUsageMarker,
+                UsageGraphMarker(simpleUsageMarker, usageGraph),
+            )
+
+            val targetClass = programClassPool.getClass("Target")
+
+            fun explain(name: String): String {
+                val writer = StringWriter()
+                targetClass.accept(
+                    NamedMethodVisitor(name, "()V", UsageGraphPrinter(simpleUsageMarker, usageGraph, false, PrintWriter(writer))),
+                )
+                return writer.toString()
+            }
+
+            "Then the marking should be the same as without the graph" {
+                simpleUsageMarker.isUsed(targetClass.findMethod("target", "()V")) shouldBe true
+                simpleUsageMarker.isUsed(targetClass.findMethod("unused", "()V")) shouldBe false
+            }
+
+            "Then the used method should be explained by the shortest chain" {
+                val explanation = explain("target")
+
+                explanation shouldContain "is invoked by    Main.main"
+                explanation shouldNotContain "Helper"
+                explanation shouldContain "is kept by a directive in the configuration."
+            }
+
+            "Then the unused method should not be explained" {
+                explain("unused") shouldContain "is not being kept."
+            }
+
+            "Then the class should not be explained by its own method" {
+                val writer = StringWriter()
+                targetClass.accept(UsageGraphPrinter(simpleUsageMarker, usageGraph, false, PrintWriter(writer)))
+
+                writer.toString() shouldContain "Main.main"
+                writer.toString() shouldNotContain "Target.target"
+            }
+        }
+
+        "When marking with the deprecated shortest usage marker" - {
+            val shortestUsageMarker = ShortestUsageMarker()
+
+            UsageMarker(Configuration()).mark(
+                programClassPool,
+                ClassPool(),
+                ResourceFilePool(),
+                shortestUsageMarker,
+                ShortestClassUsageMarker(shortestUsageMarker, "is kept by a directive in the configuration.\n\n"),
+            )
+
+            val targetClass = programClassPool.getClass("Target")
+            val targetMethod = targetClass.findMethod("target", "()V")
+
+            "Then the shortest usage mark should point to the invoking method" {
+                val shortestUsageMark = shortestUsageMarker.getShortestUsageMark(targetMethod)
+
+                shortestUsageMark.reason shouldBe "is invoked by    "
+                shortestUsageMark.isCausedBy(programClassPool.getClass("Main")) shouldBe true
+                shortestUsageMark.isCausedByMember(programClassPool.getClass("Main")) shouldBe true
+            }
+
+            "Then the printer should explain the method like the usage graph printer" {
+                val writer = StringWriter()
+                targetClass.accept(
+                    NamedMethodVisitor("target", "()V", ShortestUsagePrinter(shortestUsageMarker, false, PrintWriter(writer))),
+                )
+
+                writer.toString() shouldContain "is invoked by    Main.main"
+                writer.toString() shouldContain "is kept by a directive in the configuration."
+            }
+        }
+    }
+})
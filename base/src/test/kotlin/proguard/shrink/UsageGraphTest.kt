@@ -0,0 +1,168 @@
+package proguard.shrink
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import proguard.Configuration
+import proguard.classfile.ClassPool
+import proguard.classfile.visitor.AllMemberVisitor
+import proguard.classfile.visitor.MultiClassVisitor
+import proguard.resources.file.ResourceFilePool
+import proguard.testutils.ClassPoolBuilder
+import proguard.testutils.JavaSource
+import proguard.util.ProcessingFlagSetter
+import proguard.util.ProcessingFlags.DONT_SHRINK
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+
+class UsageGraphTest : FreeSpec({
+    "Given a usage graph recorded while marking" - {
+        val (programClassPool, libraryClassPool) = ClassPoolBuilder.fromSource(
+            JavaSource(
+                "Main.java",
+                """
+                public class Main {
+                    public static void main(String[] args) {
+                        Helper.indirect();
+                        Target.target();
+                    }
+                }
+                """.trimIndent(),
+            ),
+            JavaSource(
+                "Helper.java",
+                """
+                public class Helper {
+                    public static void indirect() {
+                        Other.other();
+                    }
+                }
+                """.trimIndent(),
+            ),
+            JavaSource(
+                "Target.java",
+                """
+                public class Target {
+                    public static void target() {}
+                }
+                """.trimIndent(),
+            ),
+            JavaSource(
+                "Other.java",
+                """
+                public class Other {
+                    public static void other() {}
+                }
+                """.trimIndent(),
+            ),
+        )
+
+        programClassPool.getClass("Main").accept(
+            MultiClassVisitor(
+                ProcessingFlagSetter(DONT_SHRINK),
+                AllMemberVisitor(ProcessingFlagSetter(DONT_SHRINK)),
+            ),
+        )
+
+        val simpleUsageMarker = SimpleUsageMarker()
+        val usageGraph = UsageGraph()
+
+        UsageMarker(Configuration()).mark(
+            programClassPool,
+            ClassPool(),
+            ResourceFilePool(),
+            simpleUsageMarker,
+            UsageGraphMarker(simpleUsageMarker, usageGraph),
+        )
+
+        usageGraph.completeClassNodes(programClassPool)
+        usageGraph.completeClassNodes(libraryClassPool)
+        usageGraph.markUsedNodes(simpleUsageMarker)
+
+        "When writing it and reading it back" - {
+            val outputStream = ByteArrayOutputStream()
+            UsageGraphWriter(outputStream).write(usageGraph)
+
+            val readGraph = UsageGraphReader(ByteArrayInputStream(outputStream.toByteArray())).read()
+
+            fun node(name: String) =
+                (1 until readGraph.nodeCount).first { readGraph.getName(it) == name }
+
+            "Then the nodes and edges should be the same" {
+                readGraph.nodeCount shouldBe usageGraph.nodeCount
+                readGraph.edgeCount shouldBe usageGraph.edgeCount
+
+                for (node in 1 until usageGraph.nodeCount) {
+                    readGraph.getNodeFlags(node) shouldBe usageGraph.getNodeFlags(node)
+                    readGraph.getClassNode(node) shouldBe usageGraph.getClassNode(node)
+                    readGraph.getName(node) shouldBe usageGraph.getName(node)
+                    readGraph.getDescriptor(node) shouldBe usageGraph.getDescriptor(node)
+                }
+            }
+
+            "Then all used nodes should still be used without removing any nodes" {
+                val usedNodes = readGraph.computeUsedNodes(null, null)
+
+                for (node in 1 until readGraph.nodeCount) {
+                    usedNodes[node] shouldBe readGraph.isUsed(node)
+                }
+            }
+
+            "Then removing a method should only remove what depends on it alone" {
+                val removedNodes = BooleanArray(readGraph.nodeCount)
+                removedNodes[node("indirect")] = true
+
+                val usedNodes = readGraph.computeUsedNodes(removedNodes, null)
+
+                usedNodes[node("indirect")] shouldBe false
+                usedNodes[node("other")] shouldBe false
+                usedNodes[node("Other")] shouldBe false
+                usedNodes[node("target")] shouldBe true
+                usedNodes[node("Helper")] shouldBe true
+            }
+
+            "Then removing a class should remove its members" {
+                val removedNodes = BooleanArray(readGraph.nodeCount)
+                removedNodes[node("Target")] = true
+
+                val usedNodes = readGraph.computeUsedNodes(removedNodes, null)
+
+                usedNodes[node("target")] shouldBe false
+                usedNodes[node("indirect")] shouldBe true
+            }
+
+            "Then no longer keeping the entry point should remove everything" {
+                val unkeptNodes = BooleanArray(readGraph.nodeCount)
+                unkeptNodes[node("main")] = true
+                unkeptNodes[node("Main")] = true
+
+                val usedNodes = readGraph.computeUsedNodes(null, unkeptNodes)
+
+                usedNodes[node("Main")] shouldBe false
+                usedNodes[node("target")] shouldBe false
+                usedNodes[node("Other")] shouldBe false
+            }
+
+            "Then the dominators should take the classes of class members into account" {
+                val dominators = readGraph.computeDominators()
+
+                dominators[node("other")] shouldBe node("Other")
+                dominators[node("Other")] shouldBe node("indirect")
+                dominators[node("target")] shouldBe node("Target")
+            }
+
+            "Then removing a dominator should remove the nodes that it dominates" {
+                val dominators = readGraph.computeDominators()
+
+                for (node in 1 until readGraph.nodeCount) {
+                    val dominator = dominators[node]
+                    if (dominator > 0) {
+                        val removedNodes = BooleanArray(readGraph.nodeCount)
+                        removedNodes[dominator] = true
+
+                        readGraph.computeUsedNodes(removedNodes, null)[node] shouldBe false
+                    }
+                }
+            }
+        }
+    }
+})
@@ -0,0 +1,88 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard.util
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.string.shouldContain
+import io.kotest.matchers.string.shouldNotContain
+import org.apache.logging.log4j.LogManager
+import proguard.classfile.AccessConstants
+import proguard.classfile.ClassPool
+import proguard.classfile.VersionConstants
+import proguard.classfile.editor.ClassBuilder
+import testutils.getLogOutputOf
+import kotlin.concurrent.thread
+
+class ConcurrentWarningLoggerTest : FreeSpec({
+    "Given many classes that report warnings from parallel threads" - {
+        val classPool = ClassPool()
+        for (index in 0 until 1000) {
+            classPool.addClass(
+                ClassBuilder(VersionConstants.CLASS_VERSION_1_8, AccessConstants.PUBLIC, "a/A%04d".format(index), "java/lang/Object")
+                    .programClass,
+            )
+        }
+
+        val logger = LogManager.getLogger(ConcurrentWarningLoggerTest::class.java)
+
+        "When collecting them with two loggers that share a sink" - {
+            val warningSink = WarningSink(logger)
+            val warningLogger = ConcurrentWarningLogger(warningSink, listOf("a/A0998", "a/A0999"))
+            val otherWarningLogger = ConcurrentWarningLogger(warningSink, null)
+
+            warningSink.startCollecting()
+
+            // Report them in reverse order, interleaved over the threads.
+            val classes = classPool.classes().reversed()
+            val threadCount = 8
+            val threads = (0 until threadCount).map { threadIndex ->
+                thread {
+                    for (classIndex in threadIndex until classes.size step threadCount) {
+                        val clazz = classes[classIndex]
+                        val index = clazz.name.substring(3).toInt()
+                        warningLogger.print(clazz.name, "Warning: class %04d".format(index))
+                        otherWarningLogger.print(clazz.name, "Warning: other class %04d".format(index))
+                        warningLogger.print(clazz.name, "Warning: class %04d".format(index))
+                    }
+                }
+            }
+            threads.forEach { it.join() }
+
+            val output = getLogOutputOf { warningSink.flush() }
+
+            "Then all accepted warnings should be counted, including repeated ones" {
+                warningLogger.warningCount shouldBe 1996
+            }
+
+            "Then all accepted messages should be printed, interleaved per class, in class pool order" {
+                val messages = output.lines().filter { it.startsWith("Warning:") }
+
+                messages shouldBe (0 until 1000).flatMap { index ->
+                    if (index < 998) {
+                        listOf("Warning: class %04d", "Warning: other class %04d", "Warning: class %04d").map { it.format(index) }
+                    } else {
+                        listOf("Warning: other class %04d".format(index))
+                    }
+                }
+            }
+
+            "Then the filtered classes should not be printed" {
+                output shouldNotContain "Warning: class 0999"
+            }
+
+            "Then a second flush should not print anything" {
+                getLogOutputOf { warningSink.flush() } shouldBe ""
+            }
+
+            "Then later messages should be printed right away" {
+                getLogOutputOf { warningLogger.print("a/A0000", "Warning: later") } shouldContain "Warning: later"
+            }
+        }
+    }
+})
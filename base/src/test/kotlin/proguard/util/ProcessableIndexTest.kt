@@ -0,0 +1,71 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package proguard.util
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import java.util.concurrent.CyclicBarrier
+import kotlin.concurrent.thread
+
+class ProcessableIndexTest : FreeSpec({
+    "Given an index that is too small for its processables" - {
+        val processableIndex = ProcessableIndex(16)
+        val processables = List(100_000) { SimpleProcessable() }
+
+        "When indexing them from many threads at the same time" - {
+            // Let all threads index all processables, in the same order,
+            // so they compete for the same entries.
+            val threadCount = 8
+            val barrier = CyclicBarrier(threadCount)
+            val indices = Array(threadCount) { IntArray(processables.size) }
+            val threads = (0 until threadCount).map { threadIndex ->
+                thread {
+                    barrier.await()
+                    processables.forEachIndexed { index, processable ->
+                        indices[threadIndex][index] = processableIndex.indexOf(processable)
+                    }
+                }
+            }
+            threads.forEach { it.join() }
+
+            "Then all threads should get the same index for each processable" {
+                indices.forEach { it.toList() shouldBe indices[0].toList() }
+            }
+
+            "Then the indices should be dense and unique" {
+                processableIndex.size() shouldBe processables.size
+                indices[0].sorted() shouldBe processables.indices.toList()
+            }
+
+            "Then the indices should be found again" {
+                processables.forEachIndexed { index, processable ->
+                    processableIndex.find(processable) shouldBe indices[0][index]
+                }
+            }
+
+            "Then other processables should not be found" {
+                processableIndex.find(SimpleProcessable()) shouldBe -1
+                processableIndex.size() shouldBe processables.size
+            }
+        }
+    }
+})
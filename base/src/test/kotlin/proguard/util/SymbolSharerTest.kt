@@ -0,0 +1,54 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard.util
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import proguard.classfile.AccessConstants
+import proguard.classfile.ClassPool
+import proguard.classfile.LibraryClass
+import proguard.classfile.LibraryMethod
+import proguard.classfile.VersionConstants
+import proguard.classfile.editor.ClassBuilder
+import proguard.classfile.visitor.ParallelAllClassVisitor
+
+class SymbolSharerTest : FreeSpec({
+    "Given classes with equal but distinct strings" - {
+        fun copyOf(string: String) = String(string.toCharArray())
+
+        val programClass = ClassBuilder(VersionConstants.CLASS_VERSION_1_8, AccessConstants.PUBLIC, "a/A", copyOf("java/lang/Object"))
+            .addMethod(AccessConstants.PUBLIC, copyOf("run"), copyOf("()V"), 10) { it.return_() }
+            .programClass
+
+        val libraryClass = LibraryClass(AccessConstants.PUBLIC, copyOf("java/lang/Runnable"), copyOf("java/lang/Object"))
+        libraryClass.methods = arrayOf(LibraryMethod(AccessConstants.PUBLIC, copyOf("run"), copyOf("()V")))
+
+        val programClassPool = ClassPool()
+        val libraryClassPool = ClassPool()
+        programClassPool.addClass(programClass)
+        libraryClassPool.addClass(libraryClass)
+
+        "When sharing the strings of both class pools with a single sharer" - {
+            val symbolSharer = SymbolSharer()
+            programClassPool.accept(ParallelAllClassVisitor { symbolSharer })
+            libraryClassPool.accept(ParallelAllClassVisitor { symbolSharer })
+
+            "Then the classes should refer to the same instances" {
+                programClass.superName shouldBeSameInstanceAs libraryClass.superClassName
+                programClass.methods[0].getName(programClass) shouldBeSameInstanceAs libraryClass.methods[0].name
+                programClass.methods[0].getDescriptor(programClass) shouldBeSameInstanceAs libraryClass.methods[0].descriptor
+            }
+
+            "Then sharing should return the shared instances" {
+                symbolSharer.share(copyOf("()V")) shouldBeSameInstanceAs libraryClass.methods[0].descriptor
+                symbolSharer.share(null) shouldBe null
+            }
+        }
+    }
+})
@@ -0,0 +1,257 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard.util.kotlin
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.collections.shouldBeEmpty
+import io.kotest.matchers.collections.shouldHaveSize
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.types.shouldBeInstanceOf
+import io.kotest.matchers.types.shouldBeSameInstanceAs
+import org.apache.logging.log4j.LogManager
+import proguard.classfile.AccessConstants.PUBLIC
+import proguard.classfile.ClassConstants.NAME_JAVA_LANG_OBJECT
+import proguard.classfile.ClassPool
+import proguard.classfile.Clazz
+import proguard.classfile.LibraryClass
+import proguard.classfile.io.LibraryClassReader
+import proguard.classfile.io.ProgramClassWriter
+import proguard.classfile.kotlin.KotlinClassKindMetadata
+import proguard.classfile.kotlin.KotlinMetadata
+import proguard.classfile.kotlin.visitor.KotlinMetadataVisitor
+import proguard.classfile.kotlin.visitor.ReferencedKotlinMetadataVisitor
+import proguard.classfile.util.ClassSuperHierarchyInitializer
+import proguard.classfile.util.WarningLogger
+import proguard.classfile.util.WarningPrinter
+import proguard.classfile.visitor.ClassPoolFiller
+import proguard.classfile.visitor.ClassVisitor
+import proguard.testutils.ClassPoolBuilder
+import proguard.testutils.KotlinSource
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInputStream
+import java.io.DataOutputStream
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.CyclicBarrier
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+class LazyKotlinMetadataTest : FreeSpec({
+    val logger = LogManager.getLogger(LazyKotlinMetadataTest::class.java)
+
+    /**
+     * Returns a library class pool with the compiled Kotlin classes, with
+     * their metadata still encoded, optionally leaving out a class.
+     */
+    fun lazyLibraryClassPool(warningPrinter: WarningPrinter?, missingClassName: String? = null): ClassPool {
+        val (programClassPool, libraryClassPool) = ClassPoolBuilder.fromSource(
+            KotlinSource(
+                "Test.kt",
+                """
+                open class Base
+                class Test : Base() {
+                    fun function(): Base = Base()
+                }
+                """.trimIndent(),
+            ),
+        )
+
+        val lazyLibraryClassPool = ClassPool()
+        libraryClassPool.classesAccept(ClassPoolFiller(lazyLibraryClassPool))
+
+        val decoder = LazyKotlinMetadataDecoder(ClassPool(), lazyLibraryClassPool, warningPrinter)
+
+        programClassPool.classes()
+            .filter { it.name != missingClassName }
+            .forEach { programClass ->
+                val bytes = ByteArrayOutputStream()
+                programClass.accept(ProgramClassWriter(DataOutputStream(bytes)))
+
+                val libraryClass = LibraryClass()
+                libraryClass.accept(
+                    LibraryClassReader(
+                        DataInputStream(ByteArrayInputStream(bytes.toByteArray())),
+                        false,
+                        false,
+                        decoder.lazyKotlinMetadataSetter(libraryClass),
+                    ),
+                )
+
+                lazyLibraryClassPool.addClass(libraryClass)
+            }
+
+        lazyLibraryClassPool.classesAccept(ClassSuperHierarchyInitializer(ClassPool(), lazyLibraryClassPool))
+
+        return lazyLibraryClassPool
+    }
+
+    fun Clazz.visitedKotlinMetadata(classVisitor: (KotlinMetadataVisitor) -> ClassVisitor = { ReferencedKotlinMetadataVisitor(it) }): List<KotlinMetadata> {
+        val visitedMetadata = mutableListOf<KotlinMetadata>()
+        accept(classVisitor(KotlinMetadataVisitor { _, kotlinMetadata -> visitedMetadata.add(kotlinMetadata) }))
+        return visitedMetadata
+    }
+
+    "Given a library class with encoded Kotlin metadata" - {
+        "When it hasn't been accessed yet" - {
+            val clazz = lazyLibraryClassPool(null).getClass("Test") as LibraryClass
+
+            "Then its metadata should still be encoded" {
+                clazz.kotlinMetadata.shouldBeInstanceOf<LazyKotlinMetadata>()
+                (clazz.kotlinMetadata as LazyKotlinMetadata).isDecoded shouldBe false
+            }
+        }
+
+        "When it is accessed for the first time" - {
+            val libraryClassPool = lazyLibraryClassPool(null)
+            val clazz = libraryClassPool.getClass("Test") as LibraryClass
+            val lazyKotlinMetadata = clazz.kotlinMetadata as LazyKotlinMetadata
+
+            val visitedMetadata = clazz.visitedKotlinMetadata()
+
+            "Then the visitor should get the decoded metadata" {
+                visitedMetadata shouldHaveSize 1
+                visitedMetadata[0].shouldBeInstanceOf<KotlinClassKindMetadata>()
+            }
+
+            "Then the decoded metadata should replace the encoded metadata" {
+                lazyKotlinMetadata.isDecoded shouldBe true
+                clazz.kotlinMetadata shouldBeSameInstanceAs visitedMetadata[0]
+            }
+
+            "Then its references should be initialized by the re-entrant visit of the reference initializer" {
+                val kotlinMetadata = visitedMetadata[0] as KotlinClassKindMetadata
+
+                kotlinMetadata.referencedClass shouldBeSameInstanceAs clazz
+                kotlinMetadata.superTypes[0].referencedClass shouldBeSameInstanceAs libraryClassPool.getClass("Base")
+                kotlinMetadata.functions.single { it.name == "function" }.returnType.referencedClass shouldBeSameInstanceAs libraryClassPool.getClass("Base")
+            }
+        }
+
+        "When it is visited while skipping encoded metadata" - {
+            val clazz = lazyLibraryClassPool(null).getClass("Test") as LibraryClass
+
+            val visitedMetadata = clazz.visitedKotlinMetadata { EncodedKotlinMetadataSkipper(ReferencedKotlinMetadataVisitor(it)) }
+
+            "Then the metadata should be skipped and remain encoded" {
+                visitedMetadata.shouldBeEmpty()
+                (clazz.kotlinMetadata as LazyKotlinMetadata).isDecoded shouldBe false
+            }
+
+            "Then the metadata should be visited once it has been decoded" {
+                clazz.visitedKotlinMetadata()
+                clazz.visitedKotlinMetadata { EncodedKotlinMetadataSkipper(ReferencedKotlinMetadataVisitor(it)) } shouldHaveSize 1
+            }
+        }
+
+        "When it is accessed from many threads at the same time" - {
+            val clazz = lazyLibraryClassPool(null).getClass("Test") as LibraryClass
+            val lazyKotlinMetadata = clazz.kotlinMetadata as LazyKotlinMetadata
+
+            val visitedMetadata = ConcurrentLinkedQueue<KotlinMetadata>()
+            val decodedMetadata = ConcurrentLinkedQueue<KotlinMetadata>()
+            val start = CountDownLatch(1)
+            val threads = (0 until 16).map { index ->
+                thread {
+                    start.await()
+                    if (index % 2 == 0) {
+                        visitedMetadata.addAll(clazz.visitedKotlinMetadata())
+                    } else {
+                        decodedMetadata.add(lazyKotlinMetadata.decodedMetadata(clazz))
+                    }
+                }
+            }
+            start.countDown()
+            threads.forEach { it.join() }
+
+            "Then all threads should get the same decoded metadata" {
+                visitedMetadata shouldHaveSize 8
+                decodedMetadata shouldHaveSize 8
+                (visitedMetadata + decodedMetadata).distinct() shouldHaveSize 1
+                clazz.kotlinMetadata shouldBeSameInstanceAs visitedMetadata.first()
+            }
+        }
+
+        "When its metadata turns out to be inconsistent" - {
+            val warningPrinter = WarningLogger(logger)
+            val clazz = lazyLibraryClassPool(warningPrinter, "Base").getClass("Test") as LibraryClass
+
+            val visitedMetadata = clazz.visitedKotlinMetadata()
+
+            "Then the metadata should be removed" {
+                visitedMetadata.shouldBeEmpty()
+                clazz.kotlinMetadata shouldBe null
+            }
+
+            "Then the errors should be reported" {
+                (warningPrinter.warningCount > 0) shouldBe true
+            }
+        }
+    }
+
+    "Given library classes whose Kotlin metadata refer to each other" - {
+        /**
+         * This decoder lets its threads meet while they initialize the
+         * references of the metadata, before they access the metadata of
+         * the other class.
+         */
+        class CrossReferencingDecoder : LazyKotlinMetadataDecoder(ClassPool(), ClassPool(), null) {
+            val decodeCount = AtomicInteger()
+            val barrier = CyclicBarrier(2)
+            val referencedMetadata = mutableMapOf<String, KotlinMetadata?>()
+            lateinit var classes: Map<String, LibraryClass>
+
+            override fun decode(clazz: Clazz, k: Int, mv: IntArray, d1: Array<String>?, d2: Array<String>?, xi: Int, xs: String?, pn: String?): KotlinMetadata {
+                decodeCount.incrementAndGet()
+                return KotlinClassKindMetadata(mv, xi, xs, pn)
+            }
+
+            override fun initializeReferences(clazz: Clazz) {
+                barrier.await()
+
+                val otherClass = classes.getValue(if (clazz.name == "X") "Y" else "X")
+                val otherMetadata = (otherClass.kotlinMetadata as? LazyKotlinMetadata)?.decodedMetadata(otherClass)
+                    ?: otherClass.kotlinMetadata
+                synchronized(referencedMetadata) {
+                    referencedMetadata[clazz.name] = otherMetadata
+                }
+            }
+
+            override fun isConsistent(clazz: Clazz, kotlinMetadata: KotlinMetadata) = true
+        }
+
+        "When they are decoded in different threads at the same time" - {
+            val decoder = CrossReferencingDecoder()
+            val classes = listOf("X", "Y").associateWith { className ->
+                LibraryClass(PUBLIC, className, NAME_JAVA_LANG_OBJECT).also {
+                    decoder.lazyKotlinMetadataSetter(it).accept(1, intArrayOf(1, 6), arrayOf(), arrayOf(), 0, null, null)
+                }
+            }
+            decoder.classes = classes
+
+            val threads = classes.values.map { clazz ->
+                thread(isDaemon = true) { clazz.visitedKotlinMetadata() }
+            }
+            threads.forEach { it.join(10_000) }
+
+            "Then the threads should not wait for each other forever" {
+                threads.none { it.isAlive } shouldBe true
+            }
+
+            "Then each metadata should be decoded once" {
+                decoder.decodeCount.get() shouldBe 2
+                classes.values.forEach { it.kotlinMetadata.shouldBeInstanceOf<KotlinClassKindMetadata>() }
+            }
+
+            "Then each metadata should refer to the decoded metadata of the other class" {
+                decoder.referencedMetadata["X"] shouldBeSameInstanceAs classes.getValue("Y").kotlinMetadata
+                decoder.referencedMetadata["Y"] shouldBeSameInstanceAs classes.getValue("X").kotlinMetadata
+            }
+        }
+    }
+})
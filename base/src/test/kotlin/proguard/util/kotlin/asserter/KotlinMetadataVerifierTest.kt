@@ -0,0 +1,158 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ */
+
+package proguard.util.kotlin.asserter
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.matchers.shouldBe
+import io.kotest.matchers.shouldNotBe
+import proguard.AppView
+import proguard.Configuration
+import proguard.classfile.ProgramClass
+import proguard.classfile.kotlin.KotlinClassKindMetadata
+import proguard.classfile.kotlin.KotlinFileFacadeKindMetadata
+import proguard.testutils.ClassPoolBuilder
+import proguard.testutils.KotlinSource
+
+class KotlinMetadataVerifierTest : FreeSpec({
+    "Given a Kotlin class whose metadata has been verified" - {
+        fun verifyChangedClass(change: (KotlinClassKindMetadata) -> Unit): ProgramClass {
+            val (programClassPool, libraryClassPool) = ClassPoolBuilder.fromSource(
+                KotlinSource(
+                    "Test.kt",
+                    """
+                    open class Base
+                    class Param
+                    class Result
+                    class Receiver
+
+                    class Test<T : Base> : Base() {
+                        var property: String = ""
+                        fun function(param: Param): Result = Result()
+                        fun Receiver.extension() {}
+                    }
+                    """.trimIndent(),
+                ),
+            )
+
+            val appView = AppView(programClassPool, libraryClassPool)
+            val verifier = KotlinMetadataVerifier(Configuration())
+            verifier.execute(appView)
+
+            val clazz = programClassPool.getClass("Test") as ProgramClass
+            change(clazz.kotlinMetadata as KotlinClassKindMetadata)
+
+            verifier.execute(appView)
+
+            return clazz
+        }
+
+        fun KotlinClassKindMetadata.function(name: String) = functions.single { it.name == name }
+
+        "When the class hasn't changed between runs" - {
+            val clazz = verifyChangedClass { }
+
+            "Then its metadata should be kept" {
+                clazz.kotlinMetadata shouldNotBe null
+            }
+        }
+
+        "When a super type is broken between runs" - {
+            val clazz = verifyChangedClass { it.superTypes[0].referencedClass = null }
+
+            "Then the class should be verified again" {
+                clazz.kotlinMetadata shouldBe null
+            }
+        }
+
+        "When a type parameter is broken between runs" - {
+            val clazz = verifyChangedClass { it.typeParameters[0].upperBounds[0].referencedClass = null }
+
+            "Then the class should be verified again" {
+                clazz.kotlinMetadata shouldBe null
+            }
+        }
+
+        "When a value parameter is broken between runs" - {
+            val clazz = verifyChangedClass { it.function("function").valueParameters[0].type.referencedClass = null }
+
+            "Then the class should be verified again" {
+                clazz.kotlinMetadata shouldBe null
+            }
+        }
+
+        "When a return type is broken between runs" - {
+            val clazz = verifyChangedClass { it.function("function").returnType.referencedClass = null }
+
+            "Then the class should be verified again" {
+                clazz.kotlinMetadata shouldBe null
+            }
+        }
+
+        "When a receiver type is broken between runs" - {
+            val clazz = verifyChangedClass { it.function("extension").receiverType.referencedClass = null }
+
+            "Then the class should be verified again" {
+                clazz.kotlinMetadata shouldBe null
+            }
+        }
+
+        "When a property getter is broken between runs" - {
+            val clazz = verifyChangedClass { it.properties.single { property -> property.name == "property" }.getterMetadata.referencedMethod = null }
+
+            "Then the class should be verified again" {
+                clazz.kotlinMetadata shouldBe null
+            }
+        }
+
+        "When a property setter loses its signature between runs" - {
+            val clazz = verifyChangedClass { it.properties.single { property -> property.name == "property" }.setterMetadata!!.signature = null }
+
+            "Then the class should still be verified" {
+                clazz.kotlinMetadata shouldNotBe null
+            }
+        }
+    }
+
+    "Given a Kotlin class that uses a type alias of a file facade" - {
+        val (programClassPool, libraryClassPool) = ClassPoolBuilder.fromSource(
+            KotlinSource(
+                "Test.kt",
+                """
+                open class Base
+                typealias Alias = Base
+                fun topLevel() {}
+
+                class User {
+                    fun function(param: Alias) {}
+                }
+                """.trimIndent(),
+            ),
+        )
+
+        val appView = AppView(programClassPool, libraryClassPool)
+        val verifier = KotlinMetadataVerifier(Configuration())
+        verifier.execute(appView)
+
+        val facadeClass = programClassPool.getClass("TestKt") as ProgramClass
+        val userClass = programClassPool.getClass("User") as ProgramClass
+
+        "When only the file facade is broken between runs" - {
+            (facadeClass.kotlinMetadata as KotlinFileFacadeKindMetadata).functions.single().referencedMethod = null
+
+            verifier.execute(appView)
+
+            "Then the file facade should lose its metadata" {
+                facadeClass.kotlinMetadata shouldBe null
+            }
+
+            "Then the unchanged class that depends on it should be verified again" {
+                userClass.kotlinMetadata shouldBe null
+            }
+        }
+    }
+})
@@ -0,0 +1,318 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.benchmark;
+
+import com.google.gson.Gson;
+import proguard.*;
+import proguard.classfile.ClassPool;
+import proguard.classfile.kotlin.KotlinConstants;
+import proguard.pass.Pass;
+
+import java.io.*;
+import java.net.URISyntaxException;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * This utility class provides the input corpora for the benchmarks, along
+ * with their configurations. The synthetic corpus is an application that
+ * is generated deterministically, in the directory specified by the system
+ * property "proguard.benchmark.corpus". The proguard corpus consists of the
+ * jars of ProGuard itself. Neither requires network access.
+ *
+ * @see SyntheticApplicationWriter
+ */
+public class Corpus
+{
+    public static final String SYNTHETIC = "synthetic";
+    public static final String PROGUARD  = "proguard";
+
+    private static final String CORPUS_DIRECTORY_PROPERTY = "proguard.benchmark.corpus";
+
+    private static final SyntheticApplicationWriter SYNTHETIC_APPLICATION =
+        new SyntheticApplicationWriter(20220901L, // seed
+                                       2000,      // classCount
+                                       10,        // methodCount
+                                       5,         // hierarchyDepth
+                                       3,         // callCount
+                                       10,        // layerCount
+                                       5,         // enumPercentage
+                                       20,        // lambdaPercentage
+                                       5,         // gsonPercentage
+                                       0,         // kotlinPercentage
+                                       200);      // keepRuleCount
+
+
+    /**
+     * Returns the directory in which the corpora and any output files are
+     * written.
+     */
+    public static File directory()
+    {
+        String directoryName = System.getProperty(CORPUS_DIRECTORY_PROPERTY);
+
+        File directory = directoryName != null ?
+            new File(directoryName) :
+            new File(System.getProperty("java.io.tmpdir"), "proguard-benchmark-corpus");
+
+        directory.mkdirs();
+
+        return directory;
+    }
+
+
+    /**
+     * Parses the configuration for processing the given corpus.
+     * @param corpus          the name of the corpus: {@link #SYNTHETIC} or
+     *                        {@link #PROGUARD}.
+     * @param outputDirectory the optional directory for the output jars.
+     */
+    public static Configuration configuration(String corpus,
+                                              File   outputDirectory)
+    throws IOException, ParseException
+    {
+        switch (corpus)
+        {
+            case SYNTHETIC:
+            {
+                File[] files = syntheticApplication();
+
+                return configuration(SYNTHETIC_APPLICATION.usesGson() ?
+                                         Arrays.asList(files[0], gsonJar()) :
+                                         Collections.singletonList(files[0]),
+                                     "-include '" + files[1].getPath() + "'\n",
+                                     outputDirectory);
+            }
+            case PROGUARD:
+            {
+                return configuration(proguardJars(),
+                                     "-keep public class proguard.ProGuard { public static void main(java.lang.String[]); }\n" +
+                                     "-keep class * implements proguard.pass.Pass { public <init>(...); }\n",
+                                     outputDirectory);
+            }
+            default:
+                throw new IllegalArgumentException("Unknown corpus ["+corpus+"]");
+        }
+    }
+
+
+    /**
+     * Parses the configuration for processing the given program jars, with
+     * the run-time library of the current Java runtime as library jar.
+     * @param programJars     the program jars or class directories.
+     * @param options         any other options, such as keep options,
+     *                        in addition to the usual keep options from
+     *                        the manual.
+     * @param outputDirectory the optional directory for the output jars.
+     *                        Each program jar gets its own output jar, to
+     *                        avoid clashes between any duplicate classes.
+     */
+    public static Configuration configuration(Collection<File> programJars,
+                                              String           options,
+                                              File             outputDirectory)
+    throws IOException, ParseException
+    {
+        StringBuilder configurationText = new StringBuilder();
+
+        for (File jar : programJars)
+        {
+            configurationText.append("-injars '").append(jar.getPath()).append("'(!META-INF/**)\n");
+
+            if (outputDirectory != null)
+            {
+                String outputName = jar.isDirectory() ?
+                    jar.getName() + ".jar" :
+                    jar.getName();
+
+                configurationText.append("-outjars '").append(new File(outputDirectory, outputName).getPath()).append("'\n");
+            }
+        }
+
+        configurationText.append("-libraryjars '").append(runtimeJar().getPath()).append("'(!**.jar;!module-info.class)\n");
+
+        configurationText.append(options);
+
+        // Add the usual keep options from the manual, which all apply to
+        // the entire class pool.
+        configurationText.append("-keepclasseswithmembernames,includedescriptorclasses class * { native <methods>; }\n");
+        configurationText.append("-keepclassmembers,allowoptimization enum * { public static **[] values(); public static ** valueOf(java.lang.String); }\n");
+        configurationText.append("-keepclassmembers class * implements java.io.Serializable { static final long serialVersionUID; private void writeObject(java.io.ObjectOutputStream); private void readObject(java.io.ObjectInputStream); java.lang.Object writeReplace(); java.lang.Object readResolve(); }\n");
+
+        configurationText.append("-dontwarn\n");
+        configurationText.append("-dontnote\n");
+
+        Configuration configuration = new Configuration();
+
+        try (ConfigurationParser parser =
+                 new ConfigurationParser(configurationText.toString(),
+                                         "benchmark configuration",
+                                         directory(),
+                                         System.getProperties()))
+        {
+            parser.parse(configuration);
+        }
+
+        // Set the -keepkotlinmetadata option if necessary, like ProGuard
+        // itself does.
+        configuration.keepKotlinMetadata =
+            configuration.keepKotlinMetadata ||
+            configuration.keep != null &&
+            configuration.keep.stream().anyMatch(keepClassSpecification ->
+                !keepClassSpecification.allowObfuscation &&
+                !keepClassSpecification.allowShrinking   &&
+                KotlinConstants.NAME_KOTLIN_METADATA.equals(keepClassSpecification.className));
+
+        return configuration;
+    }
+
+
+    /**
+     * Reads the input of the given configuration and then executes the
+     * given passes on it.
+     */
+    public static AppView process(Configuration configuration,
+                                  Pass...       passes)
+    throws Exception
+    {
+        AppView appView = new AppView();
+
+        new InputReader(configuration).execute(appView);
+
+        for (Pass pass : passes)
+        {
+            pass.execute(appView);
+        }
+
+        return appView;
+    }
+
+
+    /**
+     * Returns the jar of Gson, which synthetic applications may use.
+     */
+    public static File gsonJar()
+    {
+        return codeSource(Gson.class);
+    }
+
+
+    /**
+     * Returns the jar of the Kotlin runtime, which synthetic applications
+     * with Kotlin metadata refer to.
+     */
+    public static File kotlinJar()
+    {
+        return codeSource(kotlin.Metadata.class);
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns the jar and the configuration of the synthetic application,
+     * writing them if they don't exist yet.
+     */
+    private static synchronized File[] syntheticApplication() throws IOException
+    {
+        // The name reflects all settings, so a changed application gets
+        // different files.
+        File directory         = directory();
+        File jarFile           = new File(directory, SYNTHETIC_APPLICATION.getName() + ".jar");
+        File configurationFile = new File(directory, SYNTHETIC_APPLICATION.getName() + ".pro");
+
+        if (!jarFile.exists() ||
+            !configurationFile.exists())
+        {
+            // Write temporary files first, so concurrent benchmark
+            // processes never see partial files.
+            File temporaryJarFile           = File.createTempFile("synthetic", ".jar", directory);
+            File temporaryConfigurationFile = File.createTempFile("synthetic", ".pro", directory);
+
+            SYNTHETIC_APPLICATION.write(temporaryJarFile, temporaryConfigurationFile);
+
+            move(temporaryJarFile,           jarFile);
+            move(temporaryConfigurationFile, configurationFile);
+        }
+
+        return new File[] { jarFile, configurationFile };
+    }
+
+
+    /**
+     * Atomically moves the given file.
+     */
+    private static void move(File sourceFile, File targetFile) throws IOException
+    {
+        Files.move(sourceFile.toPath(),
+                   targetFile.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    /**
+     * Returns the jars (or class directories) of ProGuard, ProGuardCORE,
+     * and Gson.
+     */
+    private static Collection<File> proguardJars()
+    {
+        Set<File> jars = new LinkedHashSet<>();
+
+        jars.add(codeSource(ProGuard.class));
+        jars.add(codeSource(ClassPool.class));
+        jars.add(gsonJar());
+
+        return jars;
+    }
+
+
+    /**
+     * Returns the jar or class directory from which the given class was
+     * loaded.
+     */
+    private static File codeSource(Class<?> clazz)
+    {
+        try
+        {
+            return new File(clazz.getProtectionDomain().getCodeSource().getLocation().toURI());
+        }
+        catch (URISyntaxException e)
+        {
+            throw new IllegalStateException("Can't locate the jar of ["+clazz.getName()+"]", e);
+        }
+    }
+
+
+    /**
+     * Returns the run-time library of the current Java runtime.
+     */
+    private static File runtimeJar()
+    {
+        File javaHome = new File(System.getProperty("java.home"));
+
+        // Java 9 and higher have modules; Java 8 and lower have rt.jar.
+        File baseModule = new File(javaHome, "jmods/java.base.jmod");
+
+        return baseModule.exists() ?
+            baseModule :
+            new File(javaHome, "lib/rt.jar");
+    }
+}
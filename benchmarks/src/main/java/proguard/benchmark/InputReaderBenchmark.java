@@ -0,0 +1,58 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import proguard.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures reading the program classes and library classes
+ * of a corpus with the {@link InputReader}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class InputReaderBenchmark
+{
+    @Param({Corpus.SYNTHETIC, Corpus.PROGUARD})
+    public String corpus;
+
+    private Configuration configuration;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        configuration = Corpus.configuration(corpus, null);
+    }
+
+
+    @Benchmark
+    public AppView read() throws Exception
+    {
+        return Corpus.process(configuration);
+    }
+}
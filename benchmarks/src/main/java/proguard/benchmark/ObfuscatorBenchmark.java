@@ -0,0 +1,74 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import proguard.*;
+import proguard.mark.Marker;
+import proguard.obfuscate.*;
+import proguard.shrink.Shrinker;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures the {@link Obfuscator} on a corpus. The
+ * obfuscator renames the classes, so each measurement gets freshly shrunk
+ * classes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ObfuscatorBenchmark
+{
+    @Param({Corpus.SYNTHETIC, Corpus.PROGUARD})
+    public String corpus;
+
+    private Configuration configuration;
+    private AppView       appView;
+
+
+    @Setup(Level.Trial)
+    public void setUpConfiguration() throws Exception
+    {
+        configuration = Corpus.configuration(corpus, null);
+    }
+
+
+    @Setup(Level.Iteration)
+    public void setUpClasses() throws Exception
+    {
+        appView = Corpus.process(configuration,
+                                 new Initializer(configuration),
+                                 new Marker(configuration),
+                                 new Shrinker(configuration, false),
+                                 new ObfuscationPreparation(configuration));
+    }
+
+
+    @Benchmark
+    public void obfuscate() throws Exception
+    {
+        new Obfuscator(configuration).execute(appView);
+    }
+}
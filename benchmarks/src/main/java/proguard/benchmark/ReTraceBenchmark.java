@@ -0,0 +1,138 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import proguard.*;
+import proguard.classfile.*;
+import proguard.classfile.util.ClassUtil;
+import proguard.classfile.visitor.*;
+import proguard.mark.Marker;
+import proguard.obfuscate.*;
+import proguard.retrace.ReTrace;
+import proguard.shrink.Shrinker;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This benchmark measures de-obfuscating a stack trace with {@link ReTrace},
+ * including parsing the mapping file. The stack trace contains a frame for
+ * each method of the obfuscated corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReTraceBenchmark
+{
+    @Param({Corpus.SYNTHETIC, Corpus.PROGUARD})
+    public String corpus;
+
+    private File   mappingFile;
+    private String stackTrace;
+
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception
+    {
+        Configuration configuration = Corpus.configuration(corpus, null);
+
+        AppView appView = Corpus.process(configuration,
+                                         new Initializer(configuration),
+                                         new Marker(configuration),
+                                         new Shrinker(configuration, false),
+                                         new ObfuscationPreparation(configuration),
+                                         new Obfuscator(configuration));
+
+        // Write out the mapping.
+        mappingFile = new File(Corpus.directory(), corpus + "-mapping.txt");
+
+        try (PrintWriter printWriter = new PrintWriter(new FileWriter(mappingFile)))
+        {
+            appView.programClassPool.classesAcceptAlphabetically(
+                new MappingPrinter(printWriter));
+        }
+
+        // Compose a stack trace with the obfuscated names.
+        StringWriter stringWriter = new StringWriter();
+        PrintWriter  printWriter  = new PrintWriter(stringWriter);
+
+        printWriter.println("Exception in thread \"main\" java.lang.IllegalStateException: " + corpus);
+
+        appView.programClassPool.classesAcceptAlphabetically(
+            new AllMethodVisitor(
+            new MyFramePrinter(printWriter)));
+
+        printWriter.flush();
+
+        stackTrace = stringWriter.toString();
+    }
+
+
+    @Benchmark
+    public StringWriter retrace() throws IOException
+    {
+        StringWriter stringWriter = new StringWriter();
+
+        new ReTrace(mappingFile).retrace(new LineNumberReader(new StringReader(stackTrace)),
+                                         new PrintWriter(stringWriter));
+
+        return stringWriter;
+    }
+
+
+    /**
+     * This MemberVisitor prints out a stack frame with the obfuscated names
+     * of the methods that it visits.
+     */
+    private static class MyFramePrinter
+    implements           MemberVisitor
+    {
+        private final PrintWriter printWriter;
+
+        private int lineNumber;
+
+
+        public MyFramePrinter(PrintWriter printWriter)
+        {
+            this.printWriter = printWriter;
+        }
+
+
+        // Implementations for MemberVisitor.
+
+        @Override
+        public void visitAnyMember(Clazz clazz, Member member)
+        {
+            String newClassName  = ClassObfuscator.newClassName(clazz);
+            String newMethodName = MemberObfuscator.newMemberName(member);
+
+            printWriter.println("\tat " +
+                                ClassUtil.externalClassName(newClassName != null ? newClassName : clazz.getName()) +
+                                '.' +
+                                (newMethodName != null ? newMethodName : member.getName(clazz)) +
+                                "(SourceFile:" + (++lineNumber % 1000) + ')');
+        }
+    }
+}
@@ -0,0 +1,1018 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.benchmark;
+
+import proguard.classfile.*;
+import proguard.classfile.attribute.*;
+import proguard.classfile.attribute.annotation.*;
+import proguard.classfile.constant.MethodHandleConstant;
+import proguard.classfile.editor.*;
+import proguard.classfile.io.ProgramClassWriter;
+import proguard.classfile.io.kotlin.KotlinMetadataWriter;
+import proguard.classfile.kotlin.*;
+import proguard.classfile.kotlin.flags.*;
+import proguard.classfile.util.ClassUtil;
+
+import java.io.*;
+import java.util.*;
+import java.util.jar.*;
+
+/**
+ * This class writes a synthetic application, generated deterministically
+ * from a seed: a jar with classes and a configuration with matching keep
+ * options. Writing the same application twice results in identical files.
+ * <p>
+ * The classes form hierarchies up to a given depth. Like the layers of a
+ * real application, they are split into consecutive layers, with methods
+ * invoking methods of random classes in the next layer, so only part of them
+ * is reachable from the main class, and the call graph stays shallow. Some
+ * classes can be enums, some methods can invoke the others through lambdas,
+ * some classes can be serialized and deserialized with Gson, and some
+ * classes can have Kotlin metadata, so the application contains the
+ * constructs that need special processing.
+ */
+public class SyntheticApplicationWriter
+{
+    public static final String MAIN_CLASS_NAME = "synthetic/Main";
+
+    private static final int  CLASSES_PER_PACKAGE  = 100;
+    private static final int  ENUM_CONSTANT_COUNT  = 3;
+    private static final long ENTRY_TIME           = 315532800000L;
+
+    private static final char CLASS = 'C';
+    private static final char ENUM  = 'E';
+    private static final char DATA  = 'D';
+
+    private static final String NAME_GSON                   = "com/google/gson/Gson";
+    private static final String NAME_INT_UNARY_OPERATOR     = "java/util/function/IntUnaryOperator";
+    private static final String NAME_LAMBDA_METAFACTORY     = "java/lang/invoke/LambdaMetafactory";
+    private static final String METHOD_NAME_METAFACTORY     = "metafactory";
+    private static final String METHOD_TYPE_METAFACTORY     = "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;";
+    private static final String METHOD_NAME_APPLY_AS_INT    = "applyAsInt";
+    private static final String METHOD_TYPE_INT_INT         = "(I)I";
+    private static final String METHOD_NAME_VIRTUAL         = "v";
+    private static final String FIELD_NAME_VALUE            = "value";
+    private static final String FIELD_NAME_NAME             = "name";
+    private static final String FIELD_NAME_VALUES           = "$VALUES";
+    private static final String NAME_KOTLIN_INT             = "kotlin/Int";
+    private static final String PARAMETER_NAME              = "p";
+    private static final int[]  KOTLIN_METADATA_VERSION     = new int[] { 1, 9, 0 };
+
+    private final long seed;
+    private final int  classCount;
+    private final int  methodCount;
+    private final int  hierarchyDepth;
+    private final int  callCount;
+    private final int  layerCount;
+    private final int  enumPercentage;
+    private final int  lambdaPercentage;
+    private final int  gsonPercentage;
+    private final int  kotlinPercentage;
+    private final int  keepRuleCount;
+
+    // The kinds of the classes: CLASS, ENUM, or DATA, and whether they have
+    // Kotlin metadata.
+    private final char[]    kinds;
+    private final boolean[] kotlin;
+
+
+    /**
+     * Creates a new SyntheticApplicationWriter.
+     * @param seed             the seed for the pseudo-random generator.
+     * @param classCount       the number of classes, aside from the main
+     *                         class.
+     * @param methodCount      the number of static methods per class.
+     * @param hierarchyDepth   the maximum depth of the class hierarchies.
+     * @param callCount        the number of invocations per static method,
+     *                         which is the density of the call graph.
+     * @param layerCount       the number of layers, which is also the maximum
+     *                         depth of the call graph.
+     * @param enumPercentage   the percentage of classes that are enums.
+     * @param lambdaPercentage the percentage of static methods that perform
+     *                         their invocations in a lambda.
+     * @param gsonPercentage   the percentage of classes that are serialized
+     *                         and deserialized with Gson.
+     * @param kotlinPercentage the percentage of classes that aren't enums
+     *                         that have Kotlin metadata.
+     * @param keepRuleCount    the number of keep options for individual
+     *                         classes and class members, aside from the
+     *                         ones for the main class, the enums, and the
+     *                         serialized fields.
+     */
+    public SyntheticApplicationWriter(long seed,
+                                      int  classCount,
+                                      int  methodCount,
+                                      int  hierarchyDepth,
+                                      int  callCount,
+                                      int  layerCount,
+                                      int  enumPercentage,
+                                      int  lambdaPercentage,
+                                      int  gsonPercentage,
+                                      int  kotlinPercentage,
+                                      int  keepRuleCount)
+    {
+        this.seed             = seed;
+        this.classCount       = classCount;
+        this.methodCount      = methodCount;
+        this.hierarchyDepth   = hierarchyDepth;
+        this.callCount        = callCount;
+        this.layerCount       = layerCount;
+        this.enumPercentage   = enumPercentage;
+        this.lambdaPercentage = lambdaPercentage;
+        this.gsonPercentage   = gsonPercentage;
+        this.kotlinPercentage = kotlinPercentage;
+        this.keepRuleCount    = keepRuleCount;
+
+        // Pick the kinds of the classes up front, since the classes refer
+        // to each other by name.
+        kinds  = new char[classCount];
+        kotlin = new boolean[classCount];
+
+        pickKinds(new Random(seed));
+    }
+
+
+    /**
+     * Returns a name that reflects all settings of the application, for
+     * its files.
+     */
+    public String getName()
+    {
+        return "synthetic-" + seed             +
+               '-'          + classCount       +
+               '-'          + methodCount      +
+               '-'          + hierarchyDepth   +
+               '-'          + callCount        +
+               '-'          + layerCount       +
+               '-'          + enumPercentage   +
+               '-'          + lambdaPercentage +
+               '-'          + gsonPercentage   +
+               '-'          + kotlinPercentage +
+               '-'          + keepRuleCount;
+    }
+
+
+    /**
+     * Returns whether the application uses Gson, so Gson has to be part of
+     * its input.
+     */
+    public boolean usesGson()
+    {
+        for (int index = 0; index < classCount; index++)
+        {
+            if (kinds[index] == DATA)
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Returns whether the application has Kotlin metadata, so the Kotlin
+     * runtime has to be part of its input.
+     */
+    public boolean usesKotlin()
+    {
+        for (int index = 0; index < classCount; index++)
+        {
+            if (kotlin[index])
+            {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    /**
+     * Writes the synthetic classes to the given jar file and the matching
+     * keep options to the given configuration file.
+     */
+    public void write(File jarFile, File configurationFile) throws IOException
+    {
+        // Continue the sequence of pseudo-random numbers after the kinds.
+        Random random = new Random(seed);
+        pickKinds(random);
+
+        writeJar(random, jarFile);
+        writeConfiguration(random, configurationFile);
+    }
+
+
+    /**
+     * Returns the internal name of the synthetic class with the given index.
+     */
+    public String className(int index)
+    {
+        return "synthetic/p" + index / CLASSES_PER_PACKAGE + '/' + kinds[index] + index;
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Picks the kinds of the classes, and whether they have Kotlin metadata.
+     */
+    private void pickKinds(Random random)
+    {
+        for (int index = 0; index < classCount; index++)
+        {
+            int percentile = random.nextInt(100);
+
+            kinds[index] =
+                percentile < enumPercentage                  ? ENUM :
+                percentile < enumPercentage + gsonPercentage ? DATA :
+                                                               CLASS;
+
+            // Only draw another number if necessary, so applications
+            // without Kotlin metadata stay the same.
+            kotlin[index] =
+                kotlinPercentage > 0 &&
+                random.nextInt(100) < kotlinPercentage &&
+                kinds[index] != ENUM;
+        }
+    }
+
+
+    /**
+     * Writes the synthetic classes to the given jar file.
+     */
+    private void writeJar(Random random, File jarFile) throws IOException
+    {
+        // The depths of the classes in their hierarchies.
+        int[] depths = new int[classCount];
+
+        try (JarOutputStream jarOutputStream =
+                 new JarOutputStream(
+                 new BufferedOutputStream(
+                 new FileOutputStream(jarFile))))
+        {
+            for (int index = 0; index < classCount; index++)
+            {
+                // Extend an earlier class, if its hierarchy isn't too deep
+                // yet. Enums can't extend classes or be extended. Kotlin
+                // classes only extend other Kotlin classes.
+                int superIndex = -1;
+                if (index > 0 && random.nextInt(4) > 0)
+                {
+                    int candidateIndex = random.nextInt(index);
+                    if (kinds[index]          != ENUM              &&
+                        kinds[candidateIndex] != ENUM              &&
+                        (!kotlin[index] || kotlin[candidateIndex]) &&
+                        depths[candidateIndex] < hierarchyDepth)
+                    {
+                        superIndex     = candidateIndex;
+                        depths[index]  = depths[candidateIndex] + 1;
+                    }
+                }
+
+                writeClass(jarOutputStream, createClass(random, index, superIndex));
+            }
+
+            writeClass(jarOutputStream, createMainClass(random));
+        }
+    }
+
+
+    /**
+     * Writes keep options for the main class, for the enums, for the
+     * serialized fields, and for random classes and class members to the
+     * given configuration file.
+     */
+    private void writeConfiguration(Random random, File configurationFile) throws IOException
+    {
+        try (PrintWriter printWriter =
+                 new PrintWriter(
+                 new BufferedWriter(
+                 new FileWriter(configurationFile))))
+        {
+            printWriter.println("# Synthetic application with " + classCount + " classes, generated from seed " + seed + ".");
+            printWriter.println("-keep public class " + ClassUtil.externalClassName(MAIN_CLASS_NAME) + " {");
+            printWriter.println("    public static void main(java.lang.String[]);");
+            printWriter.println("}");
+
+            printWriter.println("-keepclassmembers enum synthetic.** {");
+            printWriter.println("    public static **[] values();");
+            printWriter.println("    public static ** valueOf(java.lang.String);");
+            printWriter.println("}");
+
+            if (usesKotlin())
+            {
+                printWriter.println("-keep class kotlin.Metadata");
+            }
+
+            if (usesGson())
+            {
+                printWriter.println("-keepclassmembers class synthetic.**." + DATA + "* {");
+                printWriter.println("    <fields>;");
+                printWriter.println("}");
+            }
+
+            for (int ruleIndex = 0; ruleIndex < keepRuleCount; ruleIndex++)
+            {
+                int    classIndex  = random.nextInt(classCount);
+                int    methodIndex = random.nextInt(methodCount);
+                String className   = ClassUtil.externalClassName(className(classIndex));
+
+                // Alternate between rules for specific classes and rules
+                // with wildcards, which are more expensive to match.
+                switch (ruleIndex % 3)
+                {
+                    case 0:
+                        printWriter.println("-keep class " + className + " { public static int m" + methodIndex + "(int); }");
+                        break;
+                    case 1:
+                        printWriter.println("-keepclassmembers class " + className + " { public int " + METHOD_NAME_VIRTUAL + "(int); }");
+                        break;
+                    default:
+                        printWriter.println("-keepnames class " + ClassUtil.externalPackageName(className) + ".*" + classIndex % 10 + " { *** m" + methodIndex + "(...); }");
+                        break;
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Creates the synthetic class with the given index.
+     */
+    private ProgramClass createClass(Random random, int index, int superIndex)
+    {
+        String className = className(index);
+        char   kind      = kinds[index];
+
+        String superClassName =
+            kind == ENUM    ? ClassConstants.NAME_JAVA_LANG_ENUM :
+            superIndex >= 0 ? className(superIndex) :
+                              ClassConstants.NAME_JAVA_LANG_OBJECT;
+
+        // The fields have unique names, since Gson doesn't accept fields
+        // that hide fields of super classes.
+        ClassBuilder classBuilder =
+            new ClassBuilder(VersionConstants.CLASS_VERSION_1_8,
+                             kind == ENUM ?
+                                 AccessConstants.PUBLIC |
+                                 AccessConstants.FINAL  |
+                                 AccessConstants.SUPER  |
+                                 AccessConstants.ENUM :
+                                 AccessConstants.PUBLIC |
+                                 AccessConstants.SUPER,
+                             className,
+                             superClassName)
+                .addField(AccessConstants.PRIVATE, FIELD_NAME_VALUE + index, "I");
+
+        switch (kind)
+        {
+            case ENUM:
+                addEnumMembers(classBuilder, className);
+                break;
+
+            case DATA:
+                classBuilder.addField(AccessConstants.PRIVATE, FIELD_NAME_NAME + index, ClassConstants.TYPE_JAVA_LANG_STRING);
+                // Fall through.
+            default:
+                classBuilder.addMethod(AccessConstants.PUBLIC,
+                                       ClassConstants.METHOD_NAME_INIT,
+                                       ClassConstants.METHOD_TYPE_INIT,
+                                       10,
+                                       code -> code
+                                           .aload_0()
+                                           .invokespecial(superClassName,
+                                                          ClassConstants.METHOD_NAME_INIT,
+                                                          ClassConstants.METHOD_TYPE_INIT)
+                                           .return_());
+                break;
+        }
+
+        // The virtual method overrides the one of the super class, if any.
+        classBuilder.addMethod(AccessConstants.PUBLIC,
+                               METHOD_NAME_VIRTUAL,
+                               METHOD_TYPE_INT_INT,
+                               20,
+                               code -> code
+                                   .iload_1()
+                                   .aload_0()
+                                   .getfield(className, FIELD_NAME_VALUE + index, "I")
+                                   .iadd()
+                                   .pushInt(index)
+                                   .iadd()
+                                   .ireturn());
+
+        List<BootstrapMethodInfo> bootstrapMethodInfos = new ArrayList<>();
+
+        for (int methodIndex = 0; methodIndex < methodCount; methodIndex++)
+        {
+            // Methods in the last layer don't invoke any others.
+            int nextLayer       = layer(index) + 1;
+            int invocationCount = nextLayer < layerCount ? callCount : 0;
+
+            // Pick the invoked methods up front, to keep the sequence of
+            // pseudo-random numbers independent of the code builder.
+            int[] targetClassIndices  = new int[invocationCount];
+            int[] targetMethodIndices = new int[invocationCount];
+            for (int callIndex = 0; callIndex < invocationCount; callIndex++)
+            {
+                targetClassIndices[callIndex]  = randomClassIndex(random, nextLayer);
+                targetMethodIndices[callIndex] = random.nextInt(methodCount);
+            }
+
+            int instanceClassIndex = nextLayer < layerCount ?
+                randomClassIndex(random, nextLayer) :
+                index;
+
+            boolean lambda = random.nextInt(100) < lambdaPercentage;
+
+            String methodName = "m" + methodIndex;
+
+            if (lambda)
+            {
+                // Like a compiler, put the body in a separate method and
+                // invoke it through a lambda.
+                String lambdaMethodName = "lambda$" + methodName + "$0";
+
+                classBuilder.addMethod(AccessConstants.PRIVATE |
+                                       AccessConstants.STATIC  |
+                                       AccessConstants.SYNTHETIC,
+                                       lambdaMethodName,
+                                       METHOD_TYPE_INT_INT,
+                                       50 + 10 * invocationCount,
+                                       code -> composeInvocations(code,
+                                                                  targetClassIndices,
+                                                                  targetMethodIndices,
+                                                                  instanceClassIndex));
+
+                int bootstrapMethodIndex =
+                    addLambdaBootstrapMethod(classBuilder.getConstantPoolEditor(),
+                                             bootstrapMethodInfos,
+                                             className,
+                                             lambdaMethodName);
+
+                classBuilder.addMethod(AccessConstants.PUBLIC |
+                                       AccessConstants.STATIC,
+                                       methodName,
+                                       METHOD_TYPE_INT_INT,
+                                       20,
+                                       code -> code
+                                           .invokedynamic(bootstrapMethodIndex,
+                                                          METHOD_NAME_APPLY_AS_INT,
+                                                          "()L" + NAME_INT_UNARY_OPERATOR + ';',
+                                                          null)
+                                           .iload_0()
+                                           .invokeinterface(NAME_INT_UNARY_OPERATOR,
+                                                            METHOD_NAME_APPLY_AS_INT,
+                                                            METHOD_TYPE_INT_INT)
+                                           .ireturn());
+            }
+            else
+            {
+                classBuilder.addMethod(AccessConstants.PUBLIC |
+                                       AccessConstants.STATIC,
+                                       methodName,
+                                       METHOD_TYPE_INT_INT,
+                                       50 + 10 * invocationCount,
+                                       code -> composeInvocations(code,
+                                                                  targetClassIndices,
+                                                                  targetMethodIndices,
+                                                                  instanceClassIndex));
+            }
+        }
+
+        ProgramClass programClass = classBuilder.getProgramClass();
+
+        if (!bootstrapMethodInfos.isEmpty())
+        {
+            BootstrapMethodsAttribute bootstrapMethodsAttribute =
+                new BootstrapMethodsAttribute(classBuilder.getConstantPoolEditor().addUtf8Constant(Attribute.BOOTSTRAP_METHODS),
+                                              bootstrapMethodInfos.size(),
+                                              bootstrapMethodInfos.toArray(new BootstrapMethodInfo[0]));
+
+            new AttributesEditor(programClass, false).addAttribute(bootstrapMethodsAttribute);
+        }
+
+        if (kotlin[index])
+        {
+            addKotlinMetadata(programClass, classBuilder.getConstantPoolEditor(), index, superClassName);
+        }
+
+        return programClass;
+    }
+
+
+    /**
+     * Adds the constructor, the constants, and the usual methods of an enum
+     * with the given name.
+     */
+    private void addEnumMembers(ClassBuilder classBuilder, String className)
+    {
+        String type      = ClassUtil.internalTypeFromClassName(className);
+        String arrayType = ClassUtil.internalArrayTypeFromClassName(className, 1);
+
+        for (int constantIndex = 0; constantIndex < ENUM_CONSTANT_COUNT; constantIndex++)
+        {
+            classBuilder.addField(AccessConstants.PUBLIC |
+                                  AccessConstants.STATIC |
+                                  AccessConstants.FINAL  |
+                                  AccessConstants.ENUM,
+                                  enumConstantName(constantIndex),
+                                  type);
+        }
+
+        classBuilder
+            .addField(AccessConstants.PRIVATE |
+                      AccessConstants.STATIC  |
+                      AccessConstants.FINAL   |
+                      AccessConstants.SYNTHETIC,
+                      FIELD_NAME_VALUES,
+                      arrayType)
+            .addMethod(AccessConstants.PRIVATE,
+                       ClassConstants.METHOD_NAME_INIT,
+                       ClassConstants.METHOD_TYPE_INIT_ENUM,
+                       10,
+                       code -> code
+                           .aload_0()
+                           .aload_1()
+                           .iload_2()
+                           .invokespecial(ClassConstants.NAME_JAVA_LANG_ENUM,
+                                          ClassConstants.METHOD_NAME_INIT,
+                                          ClassConstants.METHOD_TYPE_INIT_ENUM)
+                           .return_())
+            .addMethod(AccessConstants.PUBLIC |
+                       AccessConstants.STATIC,
+                       ClassConstants.METHOD_NAME_VALUES,
+                       "()" + arrayType,
+                       20,
+                       code -> code
+                           .getstatic(className, FIELD_NAME_VALUES, arrayType)
+                           .invokevirtual(arrayType,
+                                          ClassConstants.METHOD_NAME_CLONE,
+                                          ClassConstants.METHOD_TYPE_CLONE)
+                           .checkcast(arrayType)
+                           .areturn())
+            .addMethod(AccessConstants.PUBLIC |
+                       AccessConstants.STATIC,
+                       ClassConstants.METHOD_NAME_VALUE_OF,
+                       "(" + ClassConstants.TYPE_JAVA_LANG_STRING + ")" + type,
+                       20,
+                       code -> code
+                           .ldc(className, (Clazz)null)
+                           .aload_0()
+                           .invokestatic(ClassConstants.NAME_JAVA_LANG_ENUM,
+                                         ClassConstants.METHOD_NAME_VALUE_OF,
+                                         "(" + ClassConstants.TYPE_JAVA_LANG_CLASS + ClassConstants.TYPE_JAVA_LANG_STRING + ")L" + ClassConstants.NAME_JAVA_LANG_ENUM + ';')
+                           .checkcast(className)
+                           .areturn())
+            .addMethod(AccessConstants.STATIC,
+                       ClassConstants.METHOD_NAME_CLINIT,
+                       ClassConstants.METHOD_TYPE_CLINIT,
+                       30 * ENUM_CONSTANT_COUNT + 20,
+                       code ->
+                       {
+                           for (int constantIndex = 0; constantIndex < ENUM_CONSTANT_COUNT; constantIndex++)
+                           {
+                               code.new_(className)
+                                   .dup()
+                                   .ldc(enumConstantName(constantIndex))
+                                   .pushInt(constantIndex)
+                                   .invokespecial(className,
+                                                  ClassConstants.METHOD_NAME_INIT,
+                                                  ClassConstants.METHOD_TYPE_INIT_ENUM)
+                                   .putstatic(className, enumConstantName(constantIndex), type);
+                           }
+
+                           code.pushInt(ENUM_CONSTANT_COUNT)
+                               .anewarray(className, null);
+
+                           for (int constantIndex = 0; constantIndex < ENUM_CONSTANT_COUNT; constantIndex++)
+                           {
+                               code.dup()
+                                   .pushInt(constantIndex)
+                                   .getstatic(className, enumConstantName(constantIndex), type)
+                                   .aastore();
+                           }
+
+                           code.putstatic(className, FIELD_NAME_VALUES, arrayType)
+                               .return_();
+                       });
+    }
+
+
+    /**
+     * Adds Kotlin metadata to the given class, like the Kotlin compiler
+     * would for a class with an instance method and a private property:
+     * <pre>
+     *     open class Cn : Super() {
+     *         private var value = 0
+     *         open fun v(p: Int): Int = ...
+     *     }
+     * </pre>
+     */
+    private void addKotlinMetadata(ProgramClass       programClass,
+                                   ConstantPoolEditor constantPoolEditor,
+                                   int                index,
+                                   String             superClassName)
+    {
+        KotlinClassKindMetadata kotlinClassKindMetadata =
+            new KotlinClassKindMetadata(KOTLIN_METADATA_VERSION, 0, null, null);
+
+        kotlinClassKindMetadata.className = programClass.getName();
+        kotlinClassKindMetadata.flags     = new KotlinClassFlags(publicVisibility(), openModality());
+
+        kotlinClassKindMetadata.superTypes =
+            Collections.singletonList(kotlinType(superClassName.equals(ClassConstants.NAME_JAVA_LANG_OBJECT) ?
+                                                     KotlinConstants.NAME_KOTLIN_ANY :
+                                                     superClassName));
+
+        KotlinConstructorMetadata kotlinConstructorMetadata =
+            new KotlinConstructorMetadata(new KotlinConstructorFlags(publicVisibility()));
+
+        kotlinConstructorMetadata.valueParameters = new ArrayList<>();
+        kotlinConstructorMetadata.annotations     = new ArrayList<>();
+        kotlinConstructorMetadata.jvmSignature    = new MethodSignature(programClass.getName(),
+                                                                        ClassConstants.METHOD_NAME_INIT,
+                                                                        ClassConstants.METHOD_TYPE_INIT);
+
+        kotlinClassKindMetadata.constructors = Collections.singletonList(kotlinConstructorMetadata);
+
+        KotlinValueParameterMetadata kotlinValueParameterMetadata =
+            new KotlinValueParameterMetadata(new KotlinValueParameterFlags(), 0, PARAMETER_NAME);
+
+        kotlinValueParameterMetadata.type        = kotlinType(NAME_KOTLIN_INT);
+        kotlinValueParameterMetadata.annotations = new ArrayList<>();
+
+        KotlinFunctionMetadata kotlinFunctionMetadata =
+            new KotlinFunctionMetadata(new KotlinFunctionFlags(publicVisibility(), openModality()),
+                                       METHOD_NAME_VIRTUAL);
+
+        kotlinFunctionMetadata.valueParameters   = Collections.singletonList(kotlinValueParameterMetadata);
+        kotlinFunctionMetadata.returnType        = kotlinType(NAME_KOTLIN_INT);
+        kotlinFunctionMetadata.typeParameters    = new ArrayList<>();
+        kotlinFunctionMetadata.contextReceivers  = new ArrayList<>();
+        kotlinFunctionMetadata.contextParameters = new ArrayList<>();
+        kotlinFunctionMetadata.contracts         = new ArrayList<>();
+        kotlinFunctionMetadata.annotations       = new ArrayList<>();
+        kotlinFunctionMetadata.jvmSignature      = new MethodSignature(programClass.getName(),
+                                                                       METHOD_NAME_VIRTUAL,
+                                                                       METHOD_TYPE_INT_INT);
+
+        kotlinClassKindMetadata.functions = Collections.singletonList(kotlinFunctionMetadata);
+
+        // A private property doesn't have accessors.
+        KotlinVisibilityFlags privateVisibility = new KotlinVisibilityFlags();
+        privateVisibility.isPrivate = true;
+
+        KotlinModalityFlags finalModality = new KotlinModalityFlags();
+        finalModality.isFinal = true;
+
+        KotlinPropertyAccessorMetadata getterMetadata =
+            new KotlinPropertyAccessorMetadata(privateVisibility, finalModality);
+
+        getterMetadata.annotations = new ArrayList<>();
+
+        KotlinPropertyMetadata kotlinPropertyMetadata =
+            new KotlinPropertyMetadata(new KotlinPropertyFlags(privateVisibility, finalModality),
+                                       FIELD_NAME_VALUE + index,
+                                       getterMetadata,
+                                       null);
+
+        kotlinPropertyMetadata.type                                  = kotlinType(NAME_KOTLIN_INT);
+        kotlinPropertyMetadata.typeParameters                        = new ArrayList<>();
+        kotlinPropertyMetadata.contextReceivers                      = new ArrayList<>();
+        kotlinPropertyMetadata.contextParameters                     = new ArrayList<>();
+        kotlinPropertyMetadata.annotations                           = new ArrayList<>();
+        kotlinPropertyMetadata.extensionReceiverParameterAnnotations = new ArrayList<>();
+        kotlinPropertyMetadata.backingFieldAnnotations               = new ArrayList<>();
+        kotlinPropertyMetadata.delegateFieldAnnotations              = new ArrayList<>();
+        kotlinPropertyMetadata.backingFieldSignature                 = new FieldSignature(programClass.getName(), FIELD_NAME_VALUE + index, "I");
+
+        kotlinClassKindMetadata.properties = Collections.singletonList(kotlinPropertyMetadata);
+
+        kotlinClassKindMetadata.typeAliases                = new ArrayList<>();
+        kotlinClassKindMetadata.localDelegatedProperties   = new ArrayList<>();
+        kotlinClassKindMetadata.enumEntries                = new ArrayList<>();
+        kotlinClassKindMetadata.nestedClassNames           = new ArrayList<>();
+        kotlinClassKindMetadata.referencedNestedClasses    = new ArrayList<>();
+        kotlinClassKindMetadata.sealedSubclassNames        = new ArrayList<>();
+        kotlinClassKindMetadata.referencedSealedSubClasses = new ArrayList<>();
+        kotlinClassKindMetadata.typeParameters             = new ArrayList<>();
+        kotlinClassKindMetadata.contextReceivers           = new ArrayList<>();
+        kotlinClassKindMetadata.annotations                = new ArrayList<>();
+
+        // Add an empty Kotlin metadata annotation, for the writer to fill
+        // out.
+        Annotation annotation =
+            new Annotation(constantPoolEditor.addUtf8Constant(KotlinConstants.TYPE_KOTLIN_METADATA),
+                           5,
+                           new ElementValue[]
+                           {
+                               new ConstantElementValue(TypeConstants.INT,
+                                                        constantPoolEditor.addUtf8Constant(KotlinConstants.KOTLIN_METADATA_FIELD_K),
+                                                        constantPoolEditor.addIntegerConstant(KotlinConstants.METADATA_KIND_CLASS)),
+                               emptyArrayElementValue(constantPoolEditor, KotlinConstants.KOTLIN_METADATA_FIELD_MV),
+                               emptyArrayElementValue(constantPoolEditor, KotlinConstants.KOTLIN_METADATA_FIELD_D1),
+                               emptyArrayElementValue(constantPoolEditor, KotlinConstants.KOTLIN_METADATA_FIELD_D2),
+                               new ConstantElementValue(TypeConstants.INT,
+                                                        constantPoolEditor.addUtf8Constant(KotlinConstants.KOTLIN_METADATA_FIELD_XI),
+                                                        constantPoolEditor.addIntegerConstant(0)),
+                           });
+
+        new AttributesEditor(programClass, false)
+            .addAttribute(new RuntimeVisibleAnnotationsAttribute(constantPoolEditor.addUtf8Constant(Attribute.RUNTIME_VISIBLE_ANNOTATIONS),
+                                                                 1,
+                                                                 new Annotation[] { annotation }));
+
+        programClass.kotlinMetadata = kotlinClassKindMetadata;
+        programClass.accept(new KotlinMetadataWriter((clazz, message) ->
+        {
+            throw new IllegalStateException(message);
+        }));
+    }
+
+
+    /**
+     * Creates a Kotlin type for the given class name.
+     */
+    private static KotlinTypeMetadata kotlinType(String className)
+    {
+        KotlinTypeMetadata kotlinTypeMetadata =
+            new KotlinTypeMetadata(new KotlinTypeFlags(), KotlinTypeVariance.INVARIANT);
+
+        kotlinTypeMetadata.className     = className;
+        kotlinTypeMetadata.typeArguments = new ArrayList<>();
+        kotlinTypeMetadata.upperBounds   = new ArrayList<>();
+        kotlinTypeMetadata.annotations   = new ArrayList<>();
+
+        return kotlinTypeMetadata;
+    }
+
+
+    /**
+     * Creates public visibility flags for Kotlin metadata.
+     */
+    private static KotlinVisibilityFlags publicVisibility()
+    {
+        KotlinVisibilityFlags kotlinVisibilityFlags = new KotlinVisibilityFlags();
+        kotlinVisibilityFlags.isPublic = true;
+
+        return kotlinVisibilityFlags;
+    }
+
+
+    /**
+     * Creates open modality flags for Kotlin metadata.
+     */
+    private static KotlinModalityFlags openModality()
+    {
+        KotlinModalityFlags kotlinModalityFlags = new KotlinModalityFlags();
+        kotlinModalityFlags.isOpen = true;
+
+        return kotlinModalityFlags;
+    }
+
+
+    /**
+     * Creates an empty array element value with the given name.
+     */
+    private static ArrayElementValue emptyArrayElementValue(ConstantPoolEditor constantPoolEditor,
+                                                            String             name)
+    {
+        return new ArrayElementValue(constantPoolEditor.addUtf8Constant(name), 0, new ElementValue[0]);
+    }
+
+
+    /**
+     * Composes code that adds the results of the given invocations to the
+     * integer argument, and of an invocation of the virtual method on an
+     * instance of the given class.
+     */
+    private void composeInvocations(CompactCodeAttributeComposer code,
+                                    int[]                        targetClassIndices,
+                                    int[]                        targetMethodIndices,
+                                    int                          instanceClassIndex)
+    {
+        code.iload_0();
+
+        for (int callIndex = 0; callIndex < targetClassIndices.length; callIndex++)
+        {
+            code.iload_0()
+                .invokestatic(className(targetClassIndices[callIndex]),
+                              "m" + targetMethodIndices[callIndex],
+                              METHOD_TYPE_INT_INT)
+                .iadd();
+        }
+
+        String instanceClassName = className(instanceClassIndex);
+
+        switch (kinds[instanceClassIndex])
+        {
+            case ENUM:
+            {
+                // Use an enum constant and the array of all constants.
+                String type      = ClassUtil.internalTypeFromClassName(instanceClassName);
+                String arrayType = ClassUtil.internalArrayTypeFromClassName(instanceClassName, 1);
+
+                code.getstatic(instanceClassName, enumConstantName(0), type)
+                    .iload_0()
+                    .invokevirtual(instanceClassName, METHOD_NAME_VIRTUAL, METHOD_TYPE_INT_INT)
+                    .iadd()
+                    .invokestatic(instanceClassName, ClassConstants.METHOD_NAME_VALUES, "()" + arrayType)
+                    .arraylength()
+                    .iadd();
+                break;
+            }
+            case DATA:
+            {
+                // Serialize a new instance and deserialize it again.
+                code.new_(NAME_GSON)
+                    .dup()
+                    .invokespecial(NAME_GSON,
+                                   ClassConstants.METHOD_NAME_INIT,
+                                   ClassConstants.METHOD_TYPE_INIT)
+                    .dup()
+                    .new_(instanceClassName)
+                    .dup()
+                    .invokespecial(instanceClassName,
+                                   ClassConstants.METHOD_NAME_INIT,
+                                   ClassConstants.METHOD_TYPE_INIT)
+                    .invokevirtual(NAME_GSON,
+                                   "toJson",
+                                   "(" + ClassConstants.TYPE_JAVA_LANG_OBJECT + ")" + ClassConstants.TYPE_JAVA_LANG_STRING)
+                    .ldc(instanceClassName, (Clazz)null)
+                    .invokevirtual(NAME_GSON,
+                                   "fromJson",
+                                   "(" + ClassConstants.TYPE_JAVA_LANG_STRING + ClassConstants.TYPE_JAVA_LANG_CLASS + ")" + ClassConstants.TYPE_JAVA_LANG_OBJECT)
+                    .checkcast(instanceClassName)
+                    .iload_0()
+                    .invokevirtual(instanceClassName, METHOD_NAME_VIRTUAL, METHOD_TYPE_INT_INT)
+                    .iadd();
+                break;
+            }
+            default:
+            {
+                code.new_(instanceClassName)
+                    .dup()
+                    .invokespecial(instanceClassName,
+                                   ClassConstants.METHOD_NAME_INIT,
+                                   ClassConstants.METHOD_TYPE_INIT)
+                    .iload_0()
+                    .invokevirtual(instanceClassName, METHOD_NAME_VIRTUAL, METHOD_TYPE_INT_INT)
+                    .iadd();
+                break;
+            }
+        }
+
+        code.ireturn();
+    }
+
+
+    /**
+     * Adds a bootstrap method for a lambda that implements an
+     * IntUnaryOperator with the given method, returning its index.
+     */
+    private int addLambdaBootstrapMethod(ConstantPoolEditor        constantPoolEditor,
+                                         List<BootstrapMethodInfo> bootstrapMethodInfos,
+                                         String                    className,
+                                         String                    lambdaMethodName)
+    {
+        int metafactoryIndex =
+            constantPoolEditor.addMethodHandleConstant(MethodHandleConstant.REF_INVOKE_STATIC,
+            constantPoolEditor.addMethodrefConstant(NAME_LAMBDA_METAFACTORY,
+                                                    METHOD_NAME_METAFACTORY,
+                                                    METHOD_TYPE_METAFACTORY,
+                                                    null,
+                                                    null));
+
+        int methodTypeIndex =
+            constantPoolEditor.addMethodTypeConstant(METHOD_TYPE_INT_INT, null);
+
+        int implementationIndex =
+            constantPoolEditor.addMethodHandleConstant(MethodHandleConstant.REF_INVOKE_STATIC,
+            constantPoolEditor.addMethodrefConstant(className,
+                                                    lambdaMethodName,
+                                                    METHOD_TYPE_INT_INT,
+                                                    null,
+                                                    null));
+
+        bootstrapMethodInfos.add(
+            new BootstrapMethodInfo(metafactoryIndex,
+                                    3,
+                                    new int[] { methodTypeIndex, implementationIndex, methodTypeIndex }));
+
+        return bootstrapMethodInfos.size() - 1;
+    }
+
+
+    /**
+     * Creates the main class, which invokes a tenth of the classes in the
+     * first layer.
+     */
+    private ProgramClass createMainClass(Random random)
+    {
+        int   entryCount         = Math.max(1, classCount / layerCount / 10);
+        int[] entryClassIndices  = new int[entryCount];
+        int[] entryMethodIndices = new int[entryCount];
+        for (int entryIndex = 0; entryIndex < entryCount; entryIndex++)
+        {
+            entryClassIndices[entryIndex]  = randomClassIndex(random, 0);
+            entryMethodIndices[entryIndex] = random.nextInt(methodCount);
+        }
+
+        return
+            new ClassBuilder(VersionConstants.CLASS_VERSION_1_8,
+                             AccessConstants.PUBLIC |
+                             AccessConstants.SUPER,
+                             MAIN_CLASS_NAME,
+                             ClassConstants.NAME_JAVA_LANG_OBJECT)
+                .addMethod(AccessConstants.PUBLIC |
+                           AccessConstants.STATIC,
+                           "main",
+                           "([Ljava/lang/String;)V",
+                           10 + 10 * entryCount,
+                           code ->
+                           {
+                               for (int entryIndex = 0; entryIndex < entryCount; entryIndex++)
+                               {
+                                   code.pushInt(entryIndex)
+                                       .invokestatic(className(entryClassIndices[entryIndex]),
+                                                     "m" + entryMethodIndices[entryIndex],
+                                                     METHOD_TYPE_INT_INT)
+                                       .pop();
+                               }
+
+                               code.return_();
+                           })
+                .getProgramClass();
+    }
+
+
+    /**
+     * Returns the name of the enum constant with the given index.
+     */
+    private static String enumConstantName(int constantIndex)
+    {
+        return "VALUE" + constantIndex;
+    }
+
+
+    /**
+     * Returns the layer of the class with the given index.
+     */
+    private int layer(int index)
+    {
+        return (int)((long)index * layerCount / classCount);
+    }
+
+
+    /**
+     * Returns the index of a random class in the given layer.
+     */
+    private int randomClassIndex(Random random, int layer)
+    {
+        int startIndex = (int)(((long)layer       * classCount + layerCount - 1) / layerCount);
+        int endIndex   = (int)(((long)(layer + 1) * classCount + layerCount - 1) / layerCount);
+
+        return startIndex + random.nextInt(endIndex - startIndex);
+    }
+
+
+    /**
+     * Writes the given class to the given jar, with a fixed time stamp.
+     */
+    private static void writeClass(JarOutputStream jarOutputStream,
+                                   ProgramClass    programClass) throws IOException
+    {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+
+        programClass.accept(
+            new ProgramClassWriter(
+            new DataOutputStream(byteArrayOutputStream)));
+
+        JarEntry jarEntry = new JarEntry(programClass.getName() + ClassConstants.CLASS_FILE_EXTENSION);
+        jarEntry.setTime(ENTRY_TIME);
+
+        jarOutputStream.putNextEntry(jarEntry);
+        byteArrayOutputStream.writeTo(jarOutputStream);
+        jarOutputStream.closeEntry();
+    }
+}
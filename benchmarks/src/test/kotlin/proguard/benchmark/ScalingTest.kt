@@ -0,0 +1,167 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package proguard.benchmark
+
+import io.kotest.core.annotation.Tags
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.engine.spec.tempdir
+import io.kotest.matchers.doubles.shouldBeLessThan
+import proguard.Configuration
+import proguard.Initializer
+import proguard.mark.Marker
+import proguard.obfuscate.ObfuscationPreparation
+import proguard.obfuscate.Obfuscator
+import proguard.optimize.Optimizer
+import proguard.pass.Pass
+import proguard.shrink.Shrinker
+import java.io.File
+import kotlin.math.ln
+
+/**
+ * Checks that the main passes scale near-linearly with the size of the
+ * input, by processing synthetic Java and Kotlin applications of increasing
+ * sizes, up to 128K classes. It fits the growth exponent of the times over
+ * all sizes, so a pass that is quadratic in the number of classes stands
+ * out, even if it only dominates in the largest applications. It measures
+ * wall clock times and needs a large heap, so it is tagged, and it only
+ * runs in its own task:
+ *     gradle :benchmarks:scalingTest
+ * The largest size can be capped on smaller machines, for example:
+ *     gradle :benchmarks:scalingTest -Pscaling.maxClassCount=32000
+ */
+@Tags("Scaling")
+class ScalingTest : FreeSpec({
+    val classCounts = listOf(2000, 8000, 32000, 128000)
+        .filter { it <= System.getProperty("proguard.scaling.maxClassCount", "128000").toInt() }
+        .also { require(it.size >= 2) { "The scaling test needs at least two sizes, up to 8000 classes or more" } }
+
+    // The allowed growth exponents, with margins for noise: over all sizes,
+    // and between consecutive sizes.
+    val maximumExponent = 1.3
+    val maximumLocalExponent = 1.5
+
+    fun configuration(directory: File, classCount: Int): Configuration {
+        val writer = SyntheticApplicationWriter(
+            1L, // seed
+            classCount,
+            4, // methodCount
+            5, // hierarchyDepth
+            3, // callCount
+            10, // layerCount
+            5, // enumPercentage
+            20, // lambdaPercentage
+            5, // gsonPercentage
+            20, // kotlinPercentage
+            classCount / 10, // keepRuleCount
+        )
+
+        val jarFile = File(directory, writer.name + ".jar")
+        val configurationFile = File(directory, writer.name + ".pro")
+        writer.write(jarFile, configurationFile)
+
+        // Gson and the Kotlin standard library are libraries here, so the
+        // passes only process the application itself.
+        return Corpus.configuration(
+            listOf(jarFile),
+            "-libraryjars '${Corpus.gsonJar().path}'\n" +
+                "-libraryjars '${Corpus.kotlinJar().path}'\n" +
+                "-include '${configurationFile.path}'\n",
+            null,
+        )
+    }
+
+    // Returns the shortest time of a few executions of the given pass, each
+    // on input that is freshly prepared by the given passes. The large
+    // applications have less noise, so they get fewer executions.
+    fun time(configuration: Configuration, classCount: Int, preparation: (Configuration) -> List<Pass>, pass: (Configuration) -> Pass): Long =
+        (1..(if (classCount < 32000) 3 else 1)).minOf {
+            val appView = Corpus.process(configuration, *preparation(configuration).toTypedArray())
+
+            val startTime = System.nanoTime()
+            pass(configuration).execute(appView)
+            System.nanoTime() - startTime
+        }
+
+    // Returns the growth exponents of the times of the given pass: the
+    // least-squares slope over all sizes in a log-log plot, and the slopes
+    // between consecutive sizes.
+    fun exponents(directory: File, preparation: (Configuration) -> List<Pass>, pass: (Configuration) -> Pass): Pair<Double, List<Double>> {
+        // Warm up, so the small application isn't processed by colder code.
+        time(configuration(directory, classCounts.first()), classCounts.first(), preparation, pass)
+
+        val x = classCounts.map { ln(it.toDouble()) }
+        val y = classCounts.map { ln(time(configuration(directory, it), it, preparation, pass).toDouble()) }
+
+        val meanX = x.average()
+        val meanY = y.average()
+        val exponent =
+            x.indices.sumOf { (x[it] - meanX) * (y[it] - meanY) } /
+                x.indices.sumOf { (x[it] - meanX) * (x[it] - meanX) }
+
+        val localExponents = (1 until x.size).map { (y[it] - y[it - 1]) / (x[it] - x[it - 1]) }
+
+        println("ScalingTest: times grow with exponent $exponent (steps: $localExponents)")
+
+        return exponent to localExponents
+    }
+
+    fun checkExponents(exponents: Pair<Double, List<Double>>) {
+        val (exponent, localExponents) = exponents
+
+        exponent shouldBeLessThan maximumExponent
+        localExponents.forEach { it shouldBeLessThan maximumLocalExponent }
+    }
+
+    "Given synthetic applications of increasing sizes" - {
+        val directory = tempdir()
+
+        "Then the shrinker should scale near-linearly" {
+            checkExponents(
+                exponents(
+                    directory,
+                    { listOf(Initializer(it), Marker(it)) },
+                    { Shrinker(it, false) },
+                ),
+            )
+        }
+
+        "Then a pass of the optimizer should scale near-linearly" {
+            checkExponents(
+                exponents(
+                    directory,
+                    { listOf(Initializer(it), Marker(it), Shrinker(it, false)) },
+                    { Optimizer(it) },
+                ),
+            )
+        }
+
+        "Then the obfuscator should scale near-linearly" {
+            checkExponents(
+                exponents(
+                    directory,
+                    { listOf(Initializer(it), Marker(it), Shrinker(it, false), ObfuscationPreparation(it)) },
+                    { Obfuscator(it) },
+                ),
+            )
+        }
+    }
+})
@@ -0,0 +1,99 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.gradle;
+
+import org.gradle.api.Project;
+import org.gradle.api.provider.*;
+import org.gradle.api.services.*;
+import proguard.io.LibraryClassCache;
+
+/**
+ * This build service shares a cache of parsed library classes between the
+ * ProGuard tasks of a build, so tasks that process different variants
+ * against the same libraries only read and parse those libraries once.
+ * <p>
+ * The maximum number of cached classes can be set with the project property
+ * {@value #MAXIMUM_CLASS_COUNT_PROPERTY}. A value of 0 disables the cache.
+ *
+ * @see LibraryClassCache
+ */
+public abstract class LibraryClassCacheService
+implements            BuildService<LibraryClassCacheService.Parameters>
+{
+    public static final String NAME                         = "proguardLibraryClassCache";
+    public static final String MAXIMUM_CLASS_COUNT_PROPERTY = "proguard.libraryClassCacheSize";
+
+    private static final int DEFAULT_MAXIMUM_CLASS_COUNT = 200000;
+
+
+    /**
+     * The parameters of the service.
+     */
+    public interface Parameters extends BuildServiceParameters
+    {
+        /**
+         * Returns the maximum total number of cached classes.
+         */
+        Property<Integer> getMaximumClassCount();
+    }
+
+
+    private LibraryClassCache libraryClassCache;
+
+
+    /**
+     * Registers the shared service with the build of the given project, if
+     * it hasn't been registered yet.
+     */
+    public static Provider<LibraryClassCacheService> register(Project project)
+    {
+        Object maximumClassCount = project.findProperty(MAXIMUM_CLASS_COUNT_PROPERTY);
+
+        return project.getGradle().getSharedServices().registerIfAbsent(
+            NAME,
+            LibraryClassCacheService.class,
+            spec -> spec.getParameters().getMaximumClassCount().set(
+                maximumClassCount != null ?
+                    Integer.parseInt(maximumClassCount.toString()) :
+                    DEFAULT_MAXIMUM_CLASS_COUNT));
+    }
+
+
+    /**
+     * Returns the shared library class cache, or null if caching is
+     * disabled.
+     */
+    public synchronized LibraryClassCache getLibraryClassCache()
+    {
+        int maximumClassCount = getParameters().getMaximumClassCount().get();
+        if (maximumClassCount <= 0)
+        {
+            return null;
+        }
+
+        if (libraryClassCache == null)
+        {
+            libraryClassCache = new LibraryClassCache(maximumClassCount);
+        }
+
+        return libraryClassCache;
+    }
+}
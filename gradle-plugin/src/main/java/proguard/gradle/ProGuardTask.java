@@ -25,9 +25,11 @@ import org.gradle.api.DefaultTask;
 import org.gradle.api.file.*;
 import org.gradle.api.logging.*;
 import org.gradle.api.model.ObjectFactory;
+import org.gradle.api.provider.Provider;
 import org.gradle.api.tasks.*;
 import org.gradle.api.tasks.Optional;
 import org.gradle.util.GradleVersion;
+import org.gradle.workers.WorkerExecutor;
 import proguard.*;
 import proguard.classfile.*;
 import proguard.classfile.util.ClassUtil;
@@ -50,6 +52,8 @@ public abstract class ProGuardTask extends DefaultTask
     protected abstract ObjectFactory getObjectFactory();
     @Inject
     protected abstract ProjectLayout getProjectLayout();
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
 
     // Accumulated input and output, for the sake of Gradle's lazy file
     // resolution and lazy task execution.
@@ -75,7 +79,17 @@ public abstract class ProGuardTask extends DefaultTask
     // INTERNAL USE ONLY - write extra data entries to this jar
     private File extraJar;
 
+    // The library classes that are shared between the tasks of a build.
+    private final Provider<LibraryClassCacheService> libraryClassCacheService;
+
+    // Settings for running ProGuard in a separate worker process.
+    private       boolean      processIsolation;
+    private       String       workerMaxHeapSize;
+    private final List<String> workerJvmArgs = new ArrayList<>();
+
     public ProGuardTask() {
+        libraryClassCacheService = LibraryClassCacheService.register(getProject());
+        usesService(libraryClassCacheService);
     }
 
     // Gradle task inputs and outputs, because annotations on the List fields
@@ -722,6 +736,43 @@ public abstract class ProGuardTask extends DefaultTask
         return optionalFile(configuration.printUsage);
     }
 
+    public void printusagegraph(Object printUsageGraph)
+    throws ParseException
+    {
+        configuration.printUsageGraph = getProjectLayout().files(printUsageGraph).getSingleFile();
+    }
+
+    @Optional
+    @OutputFile
+    public File getPrintUsageGraphFile() {
+        return optionalFile(configuration.printUsageGraph);
+    }
+
+    @Internal
+    // Hack: support the keyword without parentheses in Groovy.
+    public Object getprintkeeprulecosts()
+    {
+        printkeeprulecosts();
+        return null;
+    }
+
+    public void printkeeprulecosts()
+    {
+        configuration.printKeepRuleCosts = Configuration.STD_OUT;
+    }
+
+    public void printkeeprulecosts(Object printKeepRuleCosts)
+    throws ParseException
+    {
+        configuration.printKeepRuleCosts = getProjectLayout().files(printKeepRuleCosts).getSingleFile();
+    }
+
+    @Optional
+    @OutputFile
+    public File getPrintKeepRuleCostsFile() {
+        return optionalFile(configuration.printKeepRuleCosts);
+    }
+
     public void whyareyoukeeping(String classSpecificationString)
     throws ParseException
     {
@@ -1419,6 +1470,63 @@ public abstract class ProGuardTask extends DefaultTask
     }
 
 
+    // Gradle task settings for running ProGuard in a separate process.
+
+    @Internal
+    public boolean isProcessIsolation()
+    {
+        return processIsolation;
+    }
+
+    @Internal
+    // Hack: support the keyword without parentheses in Groovy.
+    public Object getprocessisolation()
+    {
+        processIsolation();
+        return null;
+    }
+
+    /**
+     * Runs ProGuard in a separate worker process, with its own heap and
+     * garbage collector settings, instead of inside the Gradle daemon.
+     * Gradle keeps the worker process alive for subsequent builds, as long
+     * as the worker settings remain the same.
+     */
+    public void processIsolation()
+    {
+        processIsolation = true;
+    }
+
+    @Internal
+    public String getWorkerMaxHeapSize()
+    {
+        return workerMaxHeapSize;
+    }
+
+    /**
+     * Sets the maximum heap size of the worker process, for example "8g".
+     */
+    public void workerMaxHeapSize(String maxHeapSize)
+    {
+        workerMaxHeapSize = maxHeapSize;
+    }
+
+    @Internal
+    public List<String> getWorkerJvmArgs()
+    {
+        return workerJvmArgs;
+    }
+
+    /**
+     * Adds the given JVM arguments for the worker process, for example
+     * "-XX:+UseParallelGC".
+     */
+    public void workerJvmArgs(String... jvmArgs)
+    {
+        workerJvmArgs.addAll(Arrays.asList(jvmArgs));
+    }
+
+
     // Gradle task execution.
 
     @TaskAction
@@ -1430,9 +1538,58 @@ public abstract class ProGuardTask extends DefaultTask
         loggingManager.captureStandardOutput(LogLevel.INFO);
         loggingManager.captureStandardError(LogLevel.WARN);
 
-        // Run ProGuard with the collected configuration.
-        new ProGuard(getConfiguration()).execute();
+        if (processIsolation)
+        {
+            // Run ProGuard in a separate worker process.
+            submitWorkAction();
+        }
+        else
+        {
+            // Run ProGuard with the collected configuration.
+            new ProGuard(getConfiguration(),
+                         libraryClassCacheService.get().getLibraryClassCache()).execute();
+        }
+
+    }
+
 
+    /**
+     * Writes out the configuration collected so far and submits it to a
+     * ProGuard work action in an isolated worker process.
+     */
+    private void submitWorkAction() throws Exception
+    {
+        Configuration configuration = getConfiguration();
+
+        // Write out the configuration, so the worker can parse it again.
+        File configurationFile = new File(getTemporaryDir(), "configuration.pro");
+        try (ConfigurationWriter writer = new ConfigurationWriter(configurationFile))
+        {
+            writer.write(configuration);
+        }
+
+        int libraryClassCacheSize =
+            libraryClassCacheService.get().getParameters().getMaximumClassCount().get();
+
+        getWorkerExecutor()
+            .processIsolation(spec -> spec.forkOptions(options ->
+            {
+                if (workerMaxHeapSize != null)
+                {
+                    options.setMaxHeapSize(workerMaxHeapSize);
+                }
+
+                options.jvmArgs(workerJvmArgs);
+            }))
+            .submit(ProGuardWorkAction.class, parameters ->
+            {
+                parameters.getConfigurationFile().set(configurationFile);
+                if (configuration.extraJar != null)
+                {
+                    parameters.getExtraJar().set(configuration.extraJar);
+                }
+                parameters.getLibraryClassCacheSize().set(libraryClassCacheSize);
+            });
     }
 
 
@@ -0,0 +1,127 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.gradle;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.workers.*;
+import proguard.*;
+import proguard.io.LibraryClassCache;
+
+/**
+ * This work action runs ProGuard in a Gradle worker, typically in a separate
+ * worker process with its own heap and garbage collector settings. The
+ * configuration is passed as a configuration file, written out by the
+ * ProGuardTask.
+ * <p>
+ * Gradle keeps worker processes alive across builds, so subsequent runs in
+ * the same process benefit from the compiled code and from the library
+ * classes that remain in the process-wide library class cache.
+ *
+ * @see ProGuardTask#processIsolation()
+ */
+public abstract class ProGuardWorkAction
+implements            WorkAction<ProGuardWorkAction.Parameters>
+{
+    // The library classes that are shared between the runs in this process.
+    private static LibraryClassCache libraryClassCache;
+
+
+    /**
+     * The parameters of the work action.
+     */
+    public interface Parameters extends WorkParameters
+    {
+        /**
+         * Returns the ProGuard configuration file to process.
+         */
+        RegularFileProperty getConfigurationFile();
+
+        /**
+         * Returns the optional jar to which extra data entries are written.
+         */
+        RegularFileProperty getExtraJar();
+
+        /**
+         * Returns the maximum number of library classes that the worker
+         * process caches, or 0 to disable caching.
+         */
+        Property<Integer> getLibraryClassCacheSize();
+    }
+
+
+    // Implementations for WorkAction.
+
+    @Override
+    public void execute()
+    {
+        Parameters parameters = getParameters();
+
+        try
+        {
+            // Parse the configuration that the task has written out.
+            Configuration configuration = new Configuration();
+
+            try (ConfigurationParser parser =
+                     new ConfigurationParser(parameters.getConfigurationFile().get().getAsFile(),
+                                             System.getProperties()))
+            {
+                parser.parse(configuration);
+            }
+
+            if (parameters.getExtraJar().isPresent())
+            {
+                configuration.extraJar = parameters.getExtraJar().get().getAsFile();
+            }
+
+            // Run ProGuard.
+            new ProGuard(configuration,
+                         libraryClassCache(parameters.getLibraryClassCacheSize().get())).execute();
+        }
+        catch (Exception e)
+        {
+            throw new GradleException(e.getMessage(), e);
+        }
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Returns the library class cache of this process, or null if caching
+     * is disabled.
+     */
+    private static synchronized LibraryClassCache libraryClassCache(int maximumClassCount)
+    {
+        if (maximumClassCount <= 0)
+        {
+            return null;
+        }
+
+        if (libraryClassCache == null)
+        {
+            libraryClassCache = new LibraryClassCache(maximumClassCount);
+        }
+
+        return libraryClassCache;
+    }
+}
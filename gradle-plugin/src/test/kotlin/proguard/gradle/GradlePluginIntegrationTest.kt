@@ -33,6 +33,7 @@ import org.gradle.testkit.runner.TaskOutcome
 import testutils.TestPluginClasspath
 import java.io.File
 import java.lang.management.ManagementFactory
+import java.util.zip.ZipFile
 
 class GradlePluginIntegrationTest : FreeSpec({
     "Gradle plugin can be applied to spring-boot sample" - {
@@ -82,6 +83,82 @@ class GradlePluginIntegrationTest : FreeSpec({
         }
     }
 
+    "ProguardTask produces the same output in an isolated worker as in the daemon" - {
+        val projectRoot = tempdir()
+        val fixture = File(GradlePluginIntegrationTest::class.java.classLoader.getResource("gradle-kotlin-dsl").path)
+        FileUtils.copyDirectory(fixture, projectRoot)
+        TestPluginClasspath.applyToRootGradleKts(projectRoot)
+
+        // The isolated worker parses the configuration that the task writes
+        // out, so it should end up with the same effective configuration.
+        val buildFile = File(projectRoot, "build.gradle.kts")
+        buildFile.writeText(
+            buildFile.readText() +
+                """
+
+                tasks.named<proguard.gradle.ProGuardTask>("proguard") {
+                    printconfiguration("build/proguard-configuration.txt")
+                    printseeds("build/proguard-seeds.txt")
+                    printusage("build/proguard-usage.txt")
+                    if (project.hasProperty("isolated")) {
+                        processIsolation()
+                    }
+                }
+                """.trimIndent(),
+        )
+
+        val outputRoot = tempdir()
+
+        fun runProGuard(
+            outputDirectoryName: String,
+            vararg arguments: String,
+        ): File {
+            val result =
+                GradleRunner.create()
+                    .forwardOutput()
+                    .withArguments(listOf("proguard", "--rerun-tasks") + arguments)
+                    .withPluginClasspath()
+                    .withProjectDir(projectRoot)
+                    .build()
+
+            result.task(":proguard")?.outcome shouldBe TaskOutcome.SUCCESS
+
+            val outputDirectory = File(outputRoot, outputDirectoryName)
+            File(projectRoot, "build")
+                .listFiles { file -> file.name.startsWith("proguard-") }!!
+                .forEach { it.copyTo(File(outputDirectory, it.name)) }
+            return outputDirectory
+        }
+
+        fun jarEntries(jarFile: File): Map<String, List<Byte>> =
+            ZipFile(jarFile).use { zipFile ->
+                zipFile.entries().asSequence().associate { entry ->
+                    entry.name to zipFile.getInputStream(entry).readBytes().asList()
+                }
+            }
+
+        "When the build is executed in the daemon and in an isolated worker" - {
+            val inDaemon = runProGuard("in-daemon")
+            val isolated = runProGuard("isolated", "-Pisolated")
+
+            "Then the printed configurations are the same" {
+                File(isolated, "proguard-configuration.txt").readText() shouldBe
+                    File(inDaemon, "proguard-configuration.txt").readText()
+            }
+
+            "Then the seeds, usage, and mapping are the same" {
+                listOf("proguard-seeds.txt", "proguard-usage.txt", "proguard-mapping.txt").forEach {
+                    File(isolated, it).readText() shouldBe File(inDaemon, it).readText()
+                }
+            }
+
+            "Then the output jars contain the same entries" {
+                jarEntries(File(isolated, "proguard-obfuscated.jar")) shouldBe
+                    jarEntries(File(inDaemon, "proguard-obfuscated.jar"))
+            }
+        }
+    }
+
     "gradle plugin can be configured via #configOption" {
         include(testConfigOption("proguard"))
         include(testConfigOption("proguardWithConfigFile"))
@@ -0,0 +1,107 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+
+package proguard.gradle
+
+import io.kotest.core.spec.style.FreeSpec
+import io.kotest.engine.spec.tempdir
+import io.kotest.matchers.longs.shouldBeGreaterThan
+import io.kotest.matchers.string.shouldContain
+import org.apache.commons.io.FileUtils
+import org.gradle.testkit.runner.GradleRunner
+import testutils.TestPluginClasspath
+import java.io.File
+
+/**
+ * Compares the duration of the ProGuard task when it runs for the first time
+ * inside the Gradle daemon, in a new isolated worker process, and in a warm
+ * isolated worker process. It reports the durations in the test reports.
+ * It only runs if the environment variable PROGUARD_BENCHMARK is set.
+ */
+class ProcessIsolationBenchmark : FreeSpec({
+    "Given a project that runs ProGuard in-daemon or in an isolated worker".config(
+        enabled = System.getenv("PROGUARD_BENCHMARK") != null,
+    ) - {
+        val projectRoot = tempdir()
+        val fixture = File(ProcessIsolationBenchmark::class.java.classLoader.getResource("gradle-kotlin-dsl").path)
+        FileUtils.copyDirectory(fixture, projectRoot)
+        TestPluginClasspath.applyToRootGradleKts(projectRoot)
+
+        // A unique JVM argument per benchmark run makes sure the first
+        // isolated run starts a new worker process.
+        val buildFile = File(projectRoot, "build.gradle.kts")
+        buildFile.writeText(
+            buildFile.readText() +
+                """
+
+                tasks.named<proguard.gradle.ProGuardTask>("proguard") {
+                    if (project.hasProperty("isolated")) {
+                        processIsolation()
+                        workerMaxHeapSize("2g")
+                        workerJvmArgs("-XX:+UseParallelGC", "-Dproguard.benchmark.run=${System.nanoTime()}")
+                    }
+                }
+                """.trimIndent(),
+        )
+
+        fun runBuild(vararg arguments: String): Long {
+            // Only remove the output, so only the ProGuard task runs again.
+            File(projectRoot, "build/proguard-obfuscated.jar").delete()
+
+            val startTime = System.nanoTime()
+            val result =
+                GradleRunner.create()
+                    .withArguments(arguments.asList())
+                    .withPluginClasspath()
+                    .withProjectDir(projectRoot)
+                    .build()
+            val duration = (System.nanoTime() - startTime) / 1_000_000
+
+            result.output shouldContain "SUCCESSFUL"
+
+            return duration
+        }
+
+        "When running ProGuard in the different modes" - {
+            // Start the daemon and compile the project, without running
+            // ProGuard yet.
+            runBuild("jar")
+
+            val inDaemon = runBuild("proguard")
+            val isolatedCold = runBuild("proguard", "-Pisolated")
+            val isolatedWarm = runBuild("proguard", "-Pisolated")
+
+            // The names of the tests carry the durations, so they show up in
+            // the test reports.
+            "Then the cold in-daemon run takes $inDaemon ms" {
+                inDaemon shouldBeGreaterThan 0L
+            }
+
+            "Then the cold isolated run takes $isolatedCold ms" {
+                isolatedCold shouldBeGreaterThan 0L
+            }
+
+            "Then the warm isolated run takes $isolatedWarm ms" {
+                isolatedWarm shouldBeGreaterThan 0L
+            }
+        }
+    }
+})
@@ -1716,7 +1716,10 @@ public class ProGuardGUI extends JFrame
                     // This shouldn't happen.
                 }
 
-                // Scroll to the top of the configuration.
+                // Make sure the configuration has been appended to the
+                // console text area, and scroll to its top.
+                printWriter.flush();
+                TextAreaConsole.getConsole(consoleTextArea).flush();
                 consoleTextArea.setCaretPosition(0);
             }
         }
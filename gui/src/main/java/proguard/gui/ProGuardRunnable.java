@@ -115,8 +115,11 @@ final class ProGuardRunnable implements Runnable
         }
         finally
         {
-            // Make sure all output has been sent to the console text area.
+            // Make sure all output has been sent to the console text area,
+            // and has been appended to it.
             outWriter.close();
+            outStream.flush();
+            TextAreaConsole.getConsole(consoleTextArea).flush();
 
             // Restore the old System's out and err streams.
             System.setOut(oldOut);
@@ -107,6 +107,11 @@ final class ReTraceRunnable implements Runnable
                                                     JOptionPane.ERROR_MESSAGE);
         }
 
+        // Make sure all output has been appended to the console text area,
+        // before scrolling back to the top.
+        writer.flush();
+        TextAreaConsole.getConsole(consoleTextArea).flush();
+
         consoleTextArea.setCursor(Cursor.getPredefinedCursor(Cursor.DEFAULT_CURSOR));
         consoleTextArea.setCaretPosition(0);
     }
@@ -0,0 +1,235 @@
+/*
+ * ProGuard -- shrinking, optimization, obfuscation, and preverification
+ *             of Java bytecode.
+ *
+ * Copyright (c) 2002-2022 Guardsquare NV
+ *
+ * This program is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for
+ * more details.
+ *
+ * You should have received a copy of the GNU General Public License along
+ * with this program; if not, write to the Free Software Foundation, Inc.,
+ * 59 Temple Place, Suite 330, Boston, MA 02111-1307 USA
+ */
+package proguard.gui;
+
+import javax.swing.*;
+import javax.swing.text.*;
+import java.awt.event.*;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+
+/**
+ * This class collects text for a given text area. Any thread can append text
+ * without blocking. The event dispatching thread then appends the collected
+ * text to the text area in batches, at regular intervals. The text area only
+ * keeps the most recent text, up to a maximum number of characters, so very
+ * long logs don't exhaust the memory or slow down the text area.
+ * <p>
+ * At the end of a run, the runner should flush the console, so all text
+ * has been appended before it continues, for instance to scroll the text
+ * area, and no text is left behind for the next run.
+ */
+final class TextAreaConsole implements ActionListener
+{
+    private static final int DRAIN_DELAY         = 100;
+    private static final int MAX_CHARACTER_COUNT = 1024 * 1024;
+
+
+    private final JTextArea     textArea;
+    private final Timer         timer;
+    private final Queue<String> pendingTexts = new ConcurrentLinkedQueue<>();
+
+
+    /**
+     * Returns the console of the given text area, creating it if necessary.
+     * All writers and streams for the same text area share the same console,
+     * so their output remains in order.
+     */
+    public static synchronized TextAreaConsole getConsole(JTextArea textArea)
+    {
+        TextAreaConsole console =
+            (TextAreaConsole)textArea.getClientProperty(TextAreaConsole.class);
+
+        if (console == null)
+        {
+            console = new TextAreaConsole(textArea);
+
+            textArea.putClientProperty(TextAreaConsole.class, console);
+        }
+
+        return console;
+    }
+
+
+    private TextAreaConsole(JTextArea textArea)
+    {
+        this.textArea = textArea;
+
+        // Drain the pending text at regular intervals, once text is being
+        // appended.
+        this.timer = new Timer(DRAIN_DELAY, this);
+    }
+
+
+    /**
+     * Appends the given text to the text area, not necessarily right away.
+     * This method may be called from any thread, and it doesn't block.
+     */
+    public void append(String text)
+    {
+        pendingTexts.add(text);
+
+        if (!timer.isRunning())
+        {
+            timer.start();
+        }
+    }
+
+
+    /**
+     * Appends all pending text to the text area right away, and stops
+     * draining at regular intervals until more text is appended. Unless
+     * this method is called from the event dispatching thread, it waits
+     * until the text has been appended.
+     */
+    public void flush()
+    {
+        if (SwingUtilities.isEventDispatchThread())
+        {
+            drain();
+        }
+        else
+        {
+            try
+            {
+                SwingUtilities.invokeAndWait(this::drain);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+            }
+            catch (InvocationTargetException ex)
+            {
+                // Nothing.
+            }
+        }
+    }
+
+
+    // Implementation for ActionListener.
+
+    public void actionPerformed(ActionEvent e)
+    {
+        appendPendingTexts();
+    }
+
+
+    // Small utility methods.
+
+    /**
+     * Stops the timer and appends all pending text to the text area.
+     */
+    private void drain()
+    {
+        timer.stop();
+
+        appendPendingTexts();
+
+        // Restart the timer if another thread has appended text in the
+        // meantime, while the timer was still running.
+        if (!pendingTexts.isEmpty())
+        {
+            timer.start();
+        }
+    }
+
+
+    /**
+     * Appends all pending text to the text area, in a single batch.
+     */
+    private void appendPendingTexts()
+    {
+        // Collect all pending text in a single batch, only keeping the tail
+        // if there is more than the text area can hold.
+        StringBuilder batch = new StringBuilder();
+
+        String text;
+        while ((text = pendingTexts.poll()) != null)
+        {
+            batch.append(text);
+
+            if (batch.length() > 2 * MAX_CHARACTER_COUNT)
+            {
+                trimBatch(batch);
+            }
+        }
+
+        if (batch.length() > MAX_CHARACTER_COUNT)
+        {
+            trimBatch(batch);
+        }
+
+        if (batch.length() > 0)
+        {
+            // Append the batch to the text area.
+            textArea.append(batch.toString());
+
+            // Remove the oldest text, if the text area has grown too large.
+            trimTextArea();
+        }
+    }
+
+
+    /**
+     * Removes the oldest lines from the given batch, so it doesn't contain
+     * more than the maximum number of characters.
+     */
+    private void trimBatch(StringBuilder batch)
+    {
+        int excessCount = batch.length() - MAX_CHARACTER_COUNT;
+
+        // Remove entire lines, if possible.
+        int lineEnd = batch.indexOf("\n", excessCount - 1);
+
+        batch.delete(0, lineEnd >= 0 ? lineEnd + 1 : excessCount);
+    }
+
+
+    /**
+     * Removes the oldest lines from the text area, until it doesn't contain
+     * more than the maximum number of characters.
+     */
+    private void trimTextArea()
+    {
+        Document document = textArea.getDocument();
+
+        int excessCount = document.getLength() - MAX_CHARACTER_COUNT;
+        if (excessCount > 0)
+        {
+            try
+            {
+                // Remove entire lines, if possible.
+                int line = textArea.getLineOfOffset(excessCount);
+                int end  = textArea.getLineStartOffset(line) < excessCount ?
+                    textArea.getLineEndOffset(line) :
+                    excessCount;
+
+                document.remove(0, end);
+            }
+            catch (BadLocationException ex)
+            {
+                // Nothing.
+            }
+        }
+    }
+}
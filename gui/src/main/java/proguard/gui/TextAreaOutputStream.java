@@ -26,52 +26,46 @@ import java.io.*;
 
 /**
  * This <code>PrintStream</code> appends its output to a given text area.
+ * Flushing doesn't block: it hands the text over to the console of the text
+ * area, which appends it from the event dispatching thread.
  *
+ * @see TextAreaConsole
  * @author Eric Lafortune
  */
-final class TextAreaOutputStream extends FilterOutputStream implements Runnable
+final class TextAreaOutputStream extends FilterOutputStream
 {
-    private final JTextArea textArea;
+    private final TextAreaConsole console;
 
 
     public TextAreaOutputStream(JTextArea textArea)
     {
         super(new ByteArrayOutputStream());
 
-        this.textArea = textArea;
+        this.console = TextAreaConsole.getConsole(textArea);
     }
 
 
     // Implementation for FilterOutputStream.
 
-    public void flush() throws IOException
+    public void write(byte[] b, int off, int len) throws IOException
     {
-        super.flush();
-
-        try
-        {
-            // Append the accumulated buffer contents to the text area.
-            SwingUtil.invokeAndWait(this);
-        }
-        catch (Exception e)
-        {
-            // Nothing.
-        }
+        // Write the entire array at once, instead of byte by byte.
+        out.write(b, off, len);
     }
 
 
-    // Implementation for Runnable.
-
-    public void run()
+    public void flush() throws IOException
     {
+        super.flush();
+
         ByteArrayOutputStream out = (ByteArrayOutputStream)super.out;
 
         // Has any new text been written?
         String text = out.toString();
         if (text.length() > 0)
         {
-            // Append the accumulated text to the text area.
-            textArea.append(text);
+            // Hand the accumulated text over to the console.
+            console.append(text);
 
             // Clear the buffer.
             out.reset();
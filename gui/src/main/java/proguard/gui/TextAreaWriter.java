@@ -25,20 +25,23 @@ import java.io.*;
 
 
 /**
- * This writer appends its output to a given text area.
+ * This writer appends its output to a given text area. Flushing doesn't
+ * block: it hands the text over to the console of the text area, which
+ * appends it from the event dispatching thread.
  *
+ * @see TextAreaConsole
  * @author Eric Lafortune
  */
-final class TextAreaWriter extends FilterWriter implements Runnable
+final class TextAreaWriter extends FilterWriter
 {
-    private final JTextArea textArea;
+    private final TextAreaConsole console;
 
 
     public TextAreaWriter(JTextArea textArea)
     {
         super(new CharArrayWriter());
 
-        this.textArea = textArea;
+        this.console = TextAreaConsole.getConsole(textArea);
     }
 
 
@@ -46,35 +49,22 @@ final class TextAreaWriter extends FilterWriter implements Runnable
 
     public void flush() throws IOException
     {
-        super.flush();
-
-        try
-        {
-            // Append the accumulated buffer contents to the text area.
-            SwingUtil.invokeAndWait(this);
-        }
-        catch (Exception e)
+        synchronized (lock)
         {
-            // Nothing.
-        }
-    }
+            super.flush();
 
+            CharArrayWriter writer = (CharArrayWriter)super.out;
 
-    // Implementation for Runnable.
-
-    public void run()
-    {
-        CharArrayWriter writer = (CharArrayWriter)super.out;
-
-        // Has any new text been written?
-        String text = writer.toString();
-        if (text.length() > 0)
-        {
-            // Append the accumulated text to the text area.
-            textArea.append(text);
+            // Has any new text been written?
+            String text = writer.toString();
+            if (text.length() > 0)
+            {
+                // Hand the accumulated text over to the console.
+                console.append(text);
 
-            // Clear the buffer.
-            writer.reset();
+                // Clear the buffer.
+                writer.reset();
+            }
         }
     }
 }